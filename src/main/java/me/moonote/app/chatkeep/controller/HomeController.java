@@ -1,13 +1,30 @@
 package me.moonote.app.chatkeep.controller;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.context.request.WebRequest;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.web.IWebExchange;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import me.moonote.app.chatkeep.service.ChatNoteService;
+import me.moonote.app.chatkeep.service.ChatNoteShareService;
 import me.moonote.app.chatkeep.service.OAuth2ProviderService;
 
 /**
@@ -18,8 +35,18 @@ import me.moonote.app.chatkeep.service.OAuth2ProviderService;
 @RequiredArgsConstructor
 public class HomeController {
 
-  private final ChatNoteService chatNoteService;
+  private final ChatNoteShareService shareService;
   private final OAuth2ProviderService oauth2ProviderService;
+  private final ITemplateEngine templateEngine;
+
+  private static final MediaType TEXT_HTML_UTF8 =
+      new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8);
+
+  // The locale of share pages is resolved from the LOCALE cookie or the Accept-Language header
+  private static final String SHARE_VARY = "Accept-Language, Cookie";
+
+  @Value("${chatkeep.share.max-age:1h}")
+  private Duration shareMaxAge = Duration.ofHours(1);
 
   /**
    * Home page - Shows active ChatNotes GET /
@@ -82,32 +109,57 @@ public class HomeController {
 
   /**
    * Public ChatNote sharing page GET /share/{id}
+   *
+   * The page is rendered here but cached by {@link ChatNoteShareService} per note version and
+   * locale, so it cannot depend on anything else of the request. Browsers and proxies may reuse it
+   * for {@code chatkeep.share.max-age}, then revalidate it with its ETag.
    */
   @GetMapping("/share/{id}")
-  public String shareView(@PathVariable String id, Model model) {
-    log.info("Loading public share view for ChatNote: {}", id);
+  public ResponseEntity<String> shareView(@PathVariable String id, Locale locale,
+      WebRequest webRequest, HttpServletRequest request, HttpServletResponse response) {
+    log.debug("Loading public share view for ChatNote: {}", id);
+    CacheControl cacheControl = CacheControl.maxAge(shareMaxAge).cachePublic();
 
     try {
-      var note = chatNoteService.getChatNoteById(id);
-
-      // Check if note is public
-      if (!note.getIsPublic()) {
-        log.warn("Attempted to access non-public ChatNote via share link: {}", id);
-        model.addAttribute("error", "This ChatNote is not public");
-        return "pages/error";
+      // The browser already has the current version of the page
+      String eTag = shareService.getSharePageETag(id, locale);
+      if (eTag != null && webRequest.checkNotModified(eTag)) {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        response.setHeader(HttpHeaders.VARY, SHARE_VARY);
+        return null;
       }
 
-      model.addAttribute("note", note);
-      model.addAttribute("pageTitle", "ChatKeep - " + note.getTitle());
-      return "pages/share";
+      String html = shareService.getSharePage(id, locale,
+          (note, conversationHtml) -> render("pages/share",
+              Map.of("note", note, "conversationHtml", conversationHtml, "pageTitle",
+                  "ChatKeep - " + note.getTitle()),
+              locale, request, response));
+
+      ResponseEntity.BodyBuilder ok =
+          ResponseEntity.ok().cacheControl(cacheControl).varyBy(SHARE_VARY);
+      if (eTag != null) {
+        ok.eTag(eTag);
+      }
+      return ok.contentType(TEXT_HTML_UTF8).body(html);
 
     } catch (Exception e) {
       log.error("Error loading public ChatNote", e);
-      model.addAttribute("error", "ChatNote not found");
-      return "pages/error";
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(TEXT_HTML_UTF8)
+          .body(render("pages/error", Map.of("error", "ChatNote not found"), locale, request,
+              response));
     }
   }
 
+  /**
+   * Render a full page outside of view resolution, for pages whose HTML is cached
+   */
+  private String render(String template, Map<String, Object> variables, Locale locale,
+      HttpServletRequest request, HttpServletResponse response) {
+    IWebExchange exchange = JakartaServletWebApplication
+        .buildApplication(request.getServletContext()).buildExchange(request, response);
+    return templateEngine.process(template, new WebContext(exchange, locale, variables));
+  }
+
   /**
    * OAuth2 Login page GET /login
    */
@@ -1,8 +1,15 @@
 package me.moonote.app.chatkeep.controller.api;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.RejectedExecutionException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -16,19 +23,32 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxTrigger;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import me.moonote.app.chatkeep.dto.request.ChatNoteCursor;
 import me.moonote.app.chatkeep.dto.request.UploadChatNoteRequest;
 import me.moonote.app.chatkeep.dto.response.ApiResponse;
+import me.moonote.app.chatkeep.dto.response.BulkImportResponse;
 import me.moonote.app.chatkeep.dto.response.ChatNoteDetailLightResponse;
 import me.moonote.app.chatkeep.dto.response.ChatNoteDetailResponse;
+import me.moonote.app.chatkeep.dto.response.ChatNotePreviewResponse;
 import me.moonote.app.chatkeep.dto.response.ChatNoteResponse;
+import me.moonote.app.chatkeep.dto.response.IngestJobResponse;
 import me.moonote.app.chatkeep.model.Artifact;
 import me.moonote.app.chatkeep.model.Attachment;
+import me.moonote.app.chatkeep.model.ChatNote;
+import me.moonote.app.chatkeep.model.IngestJobType;
+import me.moonote.app.chatkeep.service.ChatNoteExportService;
+import me.moonote.app.chatkeep.service.ChatNoteImportService;
 import me.moonote.app.chatkeep.service.ChatNoteService;
+import me.moonote.app.chatkeep.service.IngestJobService;
+import me.moonote.app.chatkeep.validation.ArchiveTooLargeException;
 import me.moonote.app.chatkeep.validation.ChatNoteNotFoundException;
+import me.moonote.app.chatkeep.validation.ChatNotePreviewNotFoundException;
 import me.moonote.app.chatkeep.validation.InvalidChatNoteException;
 
 @Slf4j
@@ -37,15 +57,21 @@ import me.moonote.app.chatkeep.validation.InvalidChatNoteException;
 @RequiredArgsConstructor
 public class ChatNoteApiController {
 
+  private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
   private final ChatNoteService chatNoteService;
+  private final ChatNoteImportService chatNoteImportService;
+  private final ChatNoteExportService chatNoteExportService;
+  private final IngestJobService ingestJobService;
 
   /**
    * Upload and process a new archive POST /api/v1/chat-notes Also supports copying an existing
    * public note to user's workspace
    */
   @PostMapping
-  public ResponseEntity<ApiResponse<ChatNoteDetailResponse>> uploadChatNote(
-      @RequestBody UploadChatNoteRequest request) {
+  public ResponseEntity<ApiResponse<?>> uploadChatNote(
+      @RequestBody UploadChatNoteRequest request,
+      @RequestParam(defaultValue = "false") boolean async) {
     try {
       // Get current user from security context (works for both anonymous and authenticated users)
       String userId = me.moonote.app.chatkeep.security.SecurityUtils.getCurrentUserId();
@@ -66,13 +92,18 @@ public class ChatNoteApiController {
             .body(ApiResponse.success("Chat note copied to workspace successfully", response));
       }
 
+      // Background upload, progress is followed via /api/v1/ingest-jobs/{id}/events
+      if (async) {
+        log.info("Received async archive upload request for user: {}", userId);
+        return accepted(ingestJobService.submit(request.getMarkdownContent(), userId));
+      }
+
       // Standard upload
       log.info("Received archive upload request for user: {}", userId);
-      ChatNoteDetailResponse response =
-          chatNoteService.uploadChatNote(request.getMarkdownContent(), userId);
+      ChatNoteDetailResponse response = chatNoteService.uploadChatNote(
+          request.getMarkdownContent(), userId, Boolean.TRUE.equals(request.getCopyOnDuplicate()));
 
-      return ResponseEntity.status(HttpStatus.CREATED)
-          .body(ApiResponse.success("Chat note uploaded successfully", response));
+      return uploaded(response, "Chat note uploaded successfully");
     } catch (InvalidChatNoteException e) {
       log.error("Invalid archive: {}", e.getMessage());
       return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -81,6 +112,8 @@ public class ChatNoteApiController {
       log.error("Source note not found: {}", e.getMessage());
       return ResponseEntity.status(HttpStatus.NOT_FOUND)
           .body(ApiResponse.error("Source note not found: " + e.getMessage()));
+    } catch (RejectedExecutionException e) {
+      return tooBusy();
     } catch (Exception e) {
       log.error("Error uploading archive", e);
       return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -92,8 +125,10 @@ public class ChatNoteApiController {
    * Upload markdown file (multipart file upload) POST /api/v1/chat-notes/upload
    */
   @PostMapping("/upload")
-  public ResponseEntity<ApiResponse<ChatNoteDetailResponse>> uploadMarkdownFile(
-      @RequestParam("file") MultipartFile file) {
+  public ResponseEntity<ApiResponse<?>> uploadMarkdownFile(
+      @RequestParam("file") MultipartFile file,
+      @RequestParam(defaultValue = "false") boolean async,
+      @RequestParam(defaultValue = "false") boolean copyOnDuplicate) {
     try {
       // Get current user from security context
       String userId = me.moonote.app.chatkeep.security.SecurityUtils.getCurrentUserId();
@@ -118,15 +153,25 @@ public class ChatNoteApiController {
             .body(ApiResponse.error("Only .md or .markdown files are allowed"));
       }
 
-      // Read file content
-      String markdownContent = new String(file.getBytes(), java.nio.charset.StandardCharsets.UTF_8);
+      log.info("Received markdown file upload for user: {}, filename: {}, size: {} bytes", userId,
+          originalFilename, file.getSize());
+      if (async) {
+        try (InputStream markdownStream = file.getInputStream()) {
+          return accepted(ingestJobService.submit(IngestJobType.UPLOAD, originalFilename,
+              markdownStream, userId));
+        }
+      }
 
-      log.info("Received markdown file upload for user: {}, filename: {}", userId,
-          originalFilename);
-      ChatNoteDetailResponse response = chatNoteService.uploadChatNote(markdownContent, userId);
+      ChatNoteDetailResponse response;
+      try (InputStream markdownStream = file.getInputStream()) {
+        response = chatNoteService.uploadChatNote(markdownStream, userId, copyOnDuplicate);
+      }
 
-      return ResponseEntity.status(HttpStatus.CREATED)
-          .body(ApiResponse.success("Markdown file uploaded successfully", response));
+      return uploaded(response, "Markdown file uploaded successfully");
+    } catch (ArchiveTooLargeException e) {
+      log.warn("Rejected markdown file: {}", e.getMessage());
+      return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+          .body(ApiResponse.error(e.getMessage()));
     } catch (InvalidChatNoteException e) {
       log.error("Invalid markdown file: {}", e.getMessage());
       return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -135,6 +180,8 @@ public class ChatNoteApiController {
       log.error("Error reading file", e);
       return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
           .body(ApiResponse.error("Failed to read file: " + e.getMessage()));
+    } catch (RejectedExecutionException e) {
+      return tooBusy();
     } catch (Exception e) {
       log.error("Error uploading markdown file", e);
       return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -142,15 +189,137 @@ public class ChatNoteApiController {
     }
   }
 
+  /**
+   * Bulk import archives POST /api/v1/chat-notes/import Accepts a ZIP of .md files, or one .md file
+   * holding several archives separated by "_End of archived conversation_". Returns a result per
+   * archive; invalid archives do not fail the rest of the import.
+   */
+  @PostMapping("/import")
+  public ResponseEntity<ApiResponse<?>> importArchives(@RequestParam("file") MultipartFile file,
+      @RequestParam(defaultValue = "false") boolean async) {
+    try {
+      String userId = me.moonote.app.chatkeep.security.SecurityUtils.getCurrentUserId();
+
+      if (userId == null) {
+        log.error("Import attempted without authenticated user");
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse
+            .error("User not authenticated. Please provide X-Anonymous-User-Id header or login."));
+      }
+
+      if (file.isEmpty()) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+            .body(ApiResponse.error("File is empty"));
+      }
+
+      String originalFilename = file.getOriginalFilename();
+      if (originalFilename == null || (!originalFilename.endsWith(".zip")
+          && !originalFilename.endsWith(".md") && !originalFilename.endsWith(".markdown"))) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+            .body(ApiResponse.error("Only .zip, .md or .markdown files are allowed"));
+      }
+
+      log.info("Received bulk import for user: {}, filename: {}, size: {} bytes", userId,
+          originalFilename, file.getSize());
+      if (async) {
+        try (InputStream in = file.getInputStream()) {
+          return accepted(
+              ingestJobService.submit(IngestJobType.IMPORT, originalFilename, in, userId));
+        }
+      }
+
+      BulkImportResponse response;
+      try (InputStream in = file.getInputStream()) {
+        response = chatNoteImportService.importArchives(in, originalFilename, userId);
+      }
+
+      return ResponseEntity.ok(ApiResponse.success(String.format("Imported %d of %d archives",
+          response.getImportedCount(), response.getTotalCount()), response));
+    } catch (ArchiveTooLargeException e) {
+      log.warn("Rejected import file: {}", e.getMessage());
+      return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+          .body(ApiResponse.error(e.getMessage()));
+    } catch (java.util.zip.ZipException e) {
+      log.error("Invalid ZIP file: {}", e.getMessage());
+      return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+          .body(ApiResponse.error("Invalid ZIP file: " + e.getMessage()));
+    } catch (RejectedExecutionException e) {
+      return tooBusy();
+    } catch (Exception e) {
+      log.error("Error importing archives", e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(ApiResponse.error("Failed to import archives: " + e.getMessage()));
+    }
+  }
+
+  /**
+   * Dry run of an upload POST /api/v1/chat-notes/preview Parses and validates the archive without
+   * storing it. A valid archive can be stored with the returned token for a few minutes.
+   */
+  @PostMapping("/preview")
+  public ResponseEntity<ApiResponse<?>> previewChatNote(
+      @RequestBody UploadChatNoteRequest request) {
+    try {
+      String userId = me.moonote.app.chatkeep.security.SecurityUtils.getCurrentUserId();
+
+      if (userId == null) {
+        log.error("Preview attempted without authenticated user");
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse
+            .error("User not authenticated. Please provide X-Anonymous-User-Id header or login."));
+      }
+
+      ChatNotePreviewResponse response =
+          chatNoteService.previewChatNote(request.getMarkdownContent(), userId);
+      return ResponseEntity.ok(ApiResponse.success(
+          response.isValid() ? "Archive is valid" : "Archive is invalid", response));
+    } catch (InvalidChatNoteException e) {
+      log.error("Invalid archive: {}", e.getMessage());
+      return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+          .body(ApiResponse.error("Invalid archive: " + e.getMessage()));
+    } catch (Exception e) {
+      log.error("Error previewing archive", e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(ApiResponse.error("Failed to preview archive: " + e.getMessage()));
+    }
+  }
+
+  /**
+   * Store a previewed archive POST /api/v1/chat-notes/preview/{token}/confirm
+   */
+  @PostMapping("/preview/{token}/confirm")
+  public ResponseEntity<ApiResponse<?>> confirmPreview(@PathVariable String token) {
+    try {
+      String userId = me.moonote.app.chatkeep.security.SecurityUtils.getCurrentUserId();
+
+      if (userId == null) {
+        log.error("Preview confirmation attempted without authenticated user");
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse
+            .error("User not authenticated. Please provide X-Anonymous-User-Id header or login."));
+      }
+
+      return uploaded(chatNoteService.confirmPreview(token, userId),
+          "Chat note uploaded successfully");
+    } catch (ChatNotePreviewNotFoundException e) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error(e.getMessage()));
+    } catch (Exception e) {
+      log.error("Error confirming preview", e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(ApiResponse.error("Failed to upload archive: " + e.getMessage()));
+    }
+  }
+
   /**
    * Get archive by ID (lightweight - without artifact/attachment content) GET
-   * /api/v1/chat-notes/{id}
+   * /api/v1/chat-notes/{id}?fullMarkdown=false
    */
   @GetMapping("/{id}")
   public ResponseEntity<ApiResponse<ChatNoteDetailLightResponse>> getArchive(
-      @PathVariable String id) {
+      @PathVariable String id, @RequestParam(defaultValue = "false") boolean fullMarkdown,
+      WebRequest request) {
     try {
-      ChatNoteDetailLightResponse response = chatNoteService.getChatNoteById(id);
+      if (isNotModified(id, fullMarkdown ? "full" : "light", request)) {
+        return null;
+      }
+      ChatNoteDetailLightResponse response = chatNoteService.getChatNoteById(id, fullMarkdown);
       return ResponseEntity.ok(ApiResponse.success(response));
     } catch (ChatNoteNotFoundException e) {
       return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -206,27 +375,82 @@ public class ChatNoteApiController {
 
   /**
    * Download full markdown archive GET /api/v1/chat-notes/{id}/download
+   *
+   * The archive is written straight to the response, one artifact and attachment at a time.
    */
   @GetMapping("/{id}/download")
-  public ResponseEntity<String> downloadChatNote(@PathVariable String id) {
+  public ResponseEntity<StreamingResponseBody> downloadChatNote(@PathVariable String id,
+      WebRequest request) {
     try {
-      ChatNoteDetailLightResponse chatNote = chatNoteService.getChatNoteById(id);
-      String markdown = chatNote.getFullMarkdown();
+      if (isNotModified(id, "markdown", request)) {
+        return null;
+      }
+      ChatNote chatNote = chatNoteService.getChatNoteForDownload(id);
 
       // Generate safe filename from title
       String filename = chatNote.getTitle().replaceAll("[^a-zA-Z0-9-]", "_") + ".md";
 
+      StreamingResponseBody body = outputStream -> {
+        try {
+          chatNoteService.writeMarkdown(chatNote, outputStream);
+        } catch (IOException e) {
+          // The response is already committed, most likely the client went away
+          log.warn("Download of chat note {} aborted: {}", id, e.getMessage());
+        }
+      };
       return ResponseEntity.ok().header("Content-Type", "text/markdown; charset=UTF-8")
           .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
-          .body(markdown);
+          .body(body);
     } catch (ChatNoteNotFoundException e) {
       log.error("Chat note not found for download: {}", id);
-      return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Chat note not found: " + id);
+      return ResponseEntity.status(HttpStatus.NOT_FOUND)
+          .body(textBody("Chat note not found: " + id));
     } catch (Exception e) {
       log.error("Error downloading chat note", e);
       return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-          .body("Failed to download chat note: " + e.getMessage());
+          .body(textBody("Failed to download chat note: " + e.getMessage()));
+    }
+  }
+
+  /**
+   * Export the current user's workspace GET /api/v1/chat-notes/export?documents=false
+   *
+   * Streams a ZIP of the markdown archive of every note outside the trash, with the raw documents
+   * as NDJSON when requested.
+   */
+  @GetMapping("/export")
+  public ResponseEntity<StreamingResponseBody> exportWorkspace(
+      @RequestParam(defaultValue = "false") boolean documents) {
+    String userId = me.moonote.app.chatkeep.security.SecurityUtils.getCurrentUserId();
+    if (userId == null) {
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+          .body(textBody("User not authenticated"));
     }
+
+    StreamingResponseBody body = outputStream -> {
+      try {
+        chatNoteExportService.exportWorkspace(userId, documents, outputStream);
+      } catch (IOException e) {
+        // The response is already committed, most likely the client went away
+        log.warn("Export of the workspace of user {} aborted: {}", userId, e.getMessage());
+      }
+    };
+    String filename = "chatkeep-export-" + LocalDate.now() + ".zip";
+    return ResponseEntity.ok().header("Content-Type", "application/zip")
+        .header("Content-Disposition", "attachment; filename=\"" + filename + "\"").body(body);
+  }
+
+  private static StreamingResponseBody textBody(String text) {
+    return outputStream -> outputStream.write(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Sets the ETag of the variant of the note's current version and answers 304 if the client
+   * already has it
+   */
+  private boolean isNotModified(String id, String variant, WebRequest request) {
+    String eTag = chatNoteService.getChatNoteETag(id, variant);
+    return eTag != null && request.checkNotModified(eTag);
   }
 
   /**
@@ -577,14 +801,21 @@ public class ChatNoteApiController {
   }
 
   /**
-   * Get archived chat notes for a user GET /api/v1/chat-notes/user/{userId}/archived
+   * Get archived chat notes for a user, newest first GET
+   * /api/v1/chat-notes/user/{userId}/archived?cursor=&size=
+   *
+   * The X-Next-Cursor header holds the cursor of the next page, when there is one
    */
   @GetMapping("/user/{userId}/archived")
-  public ResponseEntity<ApiResponse<java.util.List<ChatNoteResponse>>> getArchivedChatNotes(
-      @PathVariable String userId) {
+  public ResponseEntity<ApiResponse<Slice<ChatNoteResponse>>> getArchivedChatNotes(
+      @PathVariable String userId, @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "20") int size) {
     try {
-      java.util.List<ChatNoteResponse> chatNotes = chatNoteService.getArchivedChatNotes(userId);
-      return ResponseEntity.ok(ApiResponse.success(chatNotes));
+      Slice<ChatNoteResponse> chatNotes =
+          chatNoteService.getArchivedChatNotes(userId, ChatNoteCursor.decode(cursor), size);
+      return withNextCursor(chatNotes);
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(ApiResponse.error("Invalid cursor: " + cursor));
     } catch (Exception e) {
       log.error("Error retrieving archived chat notes", e);
       return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -593,14 +824,21 @@ public class ChatNoteApiController {
   }
 
   /**
-   * Get trashed chat notes for a user GET /api/v1/chat-notes/user/{userId}/trash
+   * Get trashed chat notes for a user, newest first GET
+   * /api/v1/chat-notes/user/{userId}/trash?cursor=&size=
+   *
+   * The X-Next-Cursor header holds the cursor of the next page, when there is one
    */
   @GetMapping("/user/{userId}/trash")
-  public ResponseEntity<ApiResponse<java.util.List<ChatNoteResponse>>> getTrashedChatNotes(
-      @PathVariable String userId) {
+  public ResponseEntity<ApiResponse<Slice<ChatNoteResponse>>> getTrashedChatNotes(
+      @PathVariable String userId, @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "20") int size) {
     try {
-      java.util.List<ChatNoteResponse> chatNotes = chatNoteService.getTrashedChatNotes(userId);
-      return ResponseEntity.ok(ApiResponse.success(chatNotes));
+      Slice<ChatNoteResponse> chatNotes =
+          chatNoteService.getTrashedChatNotes(userId, ChatNoteCursor.decode(cursor), size);
+      return withNextCursor(chatNotes);
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(ApiResponse.error("Invalid cursor: " + cursor));
     } catch (Exception e) {
       log.error("Error retrieving trashed chat notes", e);
       return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -608,6 +846,20 @@ public class ChatNoteApiController {
     }
   }
 
+  /**
+   * A keyset slice, with the cursor after its last card when more cards follow
+   */
+  private ResponseEntity<ApiResponse<Slice<ChatNoteResponse>>> withNextCursor(
+      Slice<ChatNoteResponse> chatNotes) {
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+    if (chatNotes.hasNext() && chatNotes.hasContent()) {
+      ChatNoteResponse last = chatNotes.getContent().get(chatNotes.getNumberOfElements() - 1);
+      response.header(NEXT_CURSOR_HEADER,
+          ChatNoteCursor.after(last.getCreatedAt(), last.getId()).encode());
+    }
+    return response.body(ApiResponse.success(chatNotes));
+  }
+
   /**
    * Get all archived chat notes (paginated) - admin/global view GET /api/v1/chat-notes/archived
    */
@@ -924,4 +1176,30 @@ public class ChatNoteApiController {
     }
   }
 
+  /**
+   * 201 Created for a new note, 200 OK when the same archive had already been uploaded
+   */
+  private static ResponseEntity<ApiResponse<?>> uploaded(ChatNoteDetailResponse response,
+      String message) {
+    if (Boolean.TRUE.equals(response.getDuplicate())) {
+      return ResponseEntity.ok(ApiResponse.success("Identical archive already uploaded", response));
+    }
+    return ResponseEntity.status(HttpStatus.CREATED).body(ApiResponse.success(message, response));
+  }
+
+  /**
+   * 202 Accepted pointing at the job status endpoint
+   */
+  private static ResponseEntity<ApiResponse<?>> accepted(IngestJobResponse job) {
+    return ResponseEntity.status(HttpStatus.ACCEPTED)
+        .location(URI.create("/api/v1/ingest-jobs/" + job.getId()))
+        .body(ApiResponse.success("Upload queued for processing", job));
+  }
+
+  private static ResponseEntity<ApiResponse<?>> tooBusy() {
+    log.warn("Ingest queue is full, rejecting upload");
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "30")
+        .body(ApiResponse.error("Too many uploads in progress. Please try again later."));
+  }
+
 }
@@ -0,0 +1,64 @@
+package me.moonote.app.chatkeep.controller.api;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import me.moonote.app.chatkeep.dto.response.ApiResponse;
+import me.moonote.app.chatkeep.dto.response.IngestJobResponse;
+import me.moonote.app.chatkeep.security.SecurityUtils;
+import me.moonote.app.chatkeep.service.IngestJobService;
+import me.moonote.app.chatkeep.validation.IngestJobNotFoundException;
+
+/**
+ * Status and progress of background uploads and imports, started with {@code ?async=true} on the
+ * chat note upload endpoints.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/ingest-jobs")
+@RequiredArgsConstructor
+public class IngestJobApiController {
+
+  private final IngestJobService ingestJobService;
+
+  /**
+   * Get job status GET /api/v1/ingest-jobs/{id}
+   */
+  @GetMapping("/{id}")
+  public ResponseEntity<ApiResponse<IngestJobResponse>> getJob(@PathVariable String id) {
+    try {
+      String userId = SecurityUtils.getCurrentUserId();
+      return ResponseEntity.ok(ApiResponse.success(ingestJobService.getJob(id, userId)));
+    } catch (IngestJobNotFoundException e) {
+      log.error("Ingest job not found: {}", id);
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error(e.getMessage()));
+    } catch (Exception e) {
+      log.error("Error retrieving ingest job", e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(ApiResponse.error("Failed to retrieve ingest job: " + e.getMessage()));
+    }
+  }
+
+  /**
+   * Stream job progress GET /api/v1/ingest-jobs/{id}/events Sends "progress" events until a final
+   * "completed" or "failed" event
+   */
+  @GetMapping(path = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public ResponseEntity<SseEmitter> streamJobEvents(@PathVariable String id) {
+    try {
+      String userId = SecurityUtils.getCurrentUserId();
+      return ResponseEntity.ok(ingestJobService.subscribe(id, userId));
+    } catch (IngestJobNotFoundException e) {
+      log.error("Ingest job not found: {}", id);
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    }
+  }
+
+}
@@ -0,0 +1,97 @@
+package me.moonote.app.chatkeep.controller.api;
+
+import java.util.function.Supplier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import me.moonote.app.chatkeep.dto.response.ApiResponse;
+import me.moonote.app.chatkeep.dto.response.ReprocessingJobResponse;
+import me.moonote.app.chatkeep.security.SecurityUtils;
+import me.moonote.app.chatkeep.service.ChatNoteReprocessingService;
+import me.moonote.app.chatkeep.validation.ReprocessingJobNotFoundException;
+
+/**
+ * Re-parses the stored sources of all chat notes with the current parser. Restricted to the users
+ * listed in {@code chatkeep.admin.user-ids}.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/admin/reprocessing-jobs")
+@RequiredArgsConstructor
+public class ReprocessingJobApiController {
+
+  private final ChatNoteReprocessingService reprocessingService;
+
+  /**
+   * Start a job POST /api/v1/admin/reprocessing-jobs?dryRun=false A dry run (the default) only
+   * reports the notes that would change
+   */
+  @PostMapping
+  public ResponseEntity<ApiResponse<ReprocessingJobResponse>> startJob(
+      @RequestParam(defaultValue = "true") boolean dryRun) {
+    String userId = SecurityUtils.getCurrentUserId();
+    return handle(userId, "start",
+        () -> ResponseEntity.status(HttpStatus.ACCEPTED).body(ApiResponse
+            .success("Reprocessing started", reprocessingService.start(dryRun, userId))));
+  }
+
+  /**
+   * Get job status GET /api/v1/admin/reprocessing-jobs/{id}
+   */
+  @GetMapping("/{id}")
+  public ResponseEntity<ApiResponse<ReprocessingJobResponse>> getJob(@PathVariable String id) {
+    return handle(SecurityUtils.getCurrentUserId(), "retrieve",
+        () -> ResponseEntity.ok(ApiResponse.success(reprocessingService.getJob(id))));
+  }
+
+  /**
+   * Continue a cancelled or failed job POST /api/v1/admin/reprocessing-jobs/{id}/resume
+   */
+  @PostMapping("/{id}/resume")
+  public ResponseEntity<ApiResponse<ReprocessingJobResponse>> resumeJob(@PathVariable String id) {
+    return handle(SecurityUtils.getCurrentUserId(), "resume",
+        () -> ResponseEntity.status(HttpStatus.ACCEPTED)
+            .body(ApiResponse.success("Reprocessing resumed", reprocessingService.resume(id))));
+  }
+
+  /**
+   * Stop a job after its current batch POST /api/v1/admin/reprocessing-jobs/{id}/cancel
+   */
+  @PostMapping("/{id}/cancel")
+  public ResponseEntity<ApiResponse<ReprocessingJobResponse>> cancelJob(@PathVariable String id) {
+    return handle(SecurityUtils.getCurrentUserId(), "cancel",
+        () -> ResponseEntity.ok(ApiResponse.success(reprocessingService.cancel(id))));
+  }
+
+  private ResponseEntity<ApiResponse<ReprocessingJobResponse>> handle(String userId,
+      String action, Supplier<ResponseEntity<ApiResponse<ReprocessingJobResponse>>> call) {
+    if (userId == null) {
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+          .body(ApiResponse.error("User not authenticated"));
+    }
+    if (!reprocessingService.isAdmin(userId)) {
+      return ResponseEntity.status(HttpStatus.FORBIDDEN)
+          .body(ApiResponse.error("Reprocessing is restricted to administrators"));
+    }
+    try {
+      return call.get();
+    } catch (ReprocessingJobNotFoundException e) {
+      log.error("Reprocessing job not found: {}", e.getMessage());
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error(e.getMessage()));
+    } catch (IllegalStateException e) {
+      return ResponseEntity.status(HttpStatus.CONFLICT).body(ApiResponse.error(e.getMessage()));
+    } catch (Exception e) {
+      log.error("Error trying to {} reprocessing job", action, e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(ApiResponse.error("Failed to " + action + " reprocessing job: " + e.getMessage()));
+    }
+  }
+
+}
@@ -4,11 +4,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -18,6 +15,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.SessionAttributes;
+import org.springframework.web.context.request.WebRequest;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxRequest;
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxTrigger;
@@ -25,20 +23,14 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import me.moonote.app.chatkeep.dto.request.ChatNoteCursor;
 import me.moonote.app.chatkeep.dto.response.ChatNoteDetailLightResponse;
 import me.moonote.app.chatkeep.dto.response.ChatNoteResponse;
-import me.moonote.app.chatkeep.dto.response.LabelResponse;
-import me.moonote.app.chatkeep.mapper.ChatNoteMapper;
-import me.moonote.app.chatkeep.mapper.LabelMapper;
 import me.moonote.app.chatkeep.model.Artifact;
 import me.moonote.app.chatkeep.model.Attachment;
-import me.moonote.app.chatkeep.model.ChatNote;
-import me.moonote.app.chatkeep.model.Label;
-import me.moonote.app.chatkeep.repository.ArtifactRepository;
-import me.moonote.app.chatkeep.repository.AttachmentRepository;
-import me.moonote.app.chatkeep.repository.ChatNoteRepository;
-import me.moonote.app.chatkeep.repository.LabelRepository;
+import me.moonote.app.chatkeep.model.ChatNoteCard;
 import me.moonote.app.chatkeep.security.SecurityUtils;
+import me.moonote.app.chatkeep.service.ChatNoteCardLoader;
 import me.moonote.app.chatkeep.service.ChatNoteService;
 
 /**
@@ -53,30 +45,28 @@ import me.moonote.app.chatkeep.service.ChatNoteService;
 public class ChatNoteFragmentController {
 
   private final ChatNoteService chatNoteService;
-  private final ChatNoteRepository chatNoteRepository;
-  private final ArtifactRepository artifactRepository;
-  private final AttachmentRepository attachmentRepository;
-  private final ChatNoteMapper chatNoteMapper;
+  private final ChatNoteCardLoader cardLoader;
   private final ObjectMapper objectMapper;
-  private final LabelRepository labelRepository;
-  private final LabelMapper labelMapper;
 
   // ==================== Main Grid Loading ====================
 
   /**
    * Load ChatNotes grid GET /fragments/chat-notes?view=masonry&filter=chatnotes
-   * Supports infinite scroll via append parameter
+   * Supports infinite scroll via append parameter, each request continuing from the cursor of the
+   * previous one
    */
   @GetMapping("/chat-notes")
   public String getChatNotes(@RequestParam(required = false) String view,
       @RequestParam(defaultValue = "chatnotes") String filter,
       @RequestParam(required = false) String labelIds,
       @RequestParam(required = false) String search,
-      @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "20") int size,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "20") int size,
       @RequestParam(defaultValue = "false") boolean append,
       Model model, HttpSession session) {
-    log.info("Loading chat notes: view={}, filter={}, labelIds={}, search={}, page={}, append={}",
-        view, filter, labelIds, search, page, append);
+    log.info(
+        "Loading chat notes: view={}, filter={}, labelIds={}, search={}, cursor={}, append={}",
+        view, filter, labelIds, search, cursor, append);
 
     // Store view preference in session
     if (view != null) {
@@ -98,60 +88,40 @@ public class ChatNoteFragmentController {
           : "fragments/chat-note-cards";
     }
 
-    // Load notes based on filter or label
-    List<ChatNoteResponse> notes;
-    if (labelIds != null && !labelIds.isEmpty()) {
-      // Filter by label(s) - show only active notes
-      // Parse comma-separated labelIds into list (supports multiple label filtering)
-      List<String> labelIdList = Arrays.asList(labelIds.split(","));
-      Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
-      notes = chatNoteService.filterActiveByLabelsForUser(userId, labelIdList, "OR", pageable)
-          .getContent();
-    } else {
-      // Regular filter
-      notes = loadNotesByFilter(filter, userId, page, size);
+    // Load notes based on filter or label, after the cursor
+    Slice<ChatNoteResponse> slice;
+    try {
+      ChatNoteCursor after = ChatNoteCursor.decode(cursor);
+      if (labelIds != null && !labelIds.isEmpty()) {
+        // Filter by label(s) - show only active notes
+        // Parse comma-separated labelIds into list (supports multiple label filtering)
+        List<String> labelIdList = Arrays.asList(labelIds.split(","));
+        slice = chatNoteService.filterActiveByAnyLabelForUser(userId, labelIdList, after, size);
+      } else {
+        // Regular filter
+        slice = loadNotesByFilter(filter, userId, after, size);
+      }
+    } catch (IllegalArgumentException e) {
+      log.warn("Invalid chat note cursor: {}", cursor);
+      slice = new SliceImpl<>(List.of());
     }
 
-    // Batch fetch all unique label IDs to avoid N+1 query
-    Set<String> allLabelIds = notes.stream()
-        .filter(note -> note.getLabelIds() != null)
-        .flatMap(note -> note.getLabelIds().stream())
-        .collect(Collectors.toSet());
-
-    // Single batch query to fetch all labels
-    Map<String, Label> labelMap = allLabelIds.isEmpty() ? Map.of()
-        : labelRepository.findAllById(allLabelIds).stream()
-            .collect(Collectors.toMap(Label::getId, label -> label));
-
-    // Add content previews and labels
-    notes = notes.stream().map(note -> {
-      ChatNote entity = chatNoteRepository.findById(note.getId()).orElse(null);
-      if (entity != null) {
-        note.setContentPreview(chatNoteMapper.generateContentPreview(entity));
-        // Populate labels using pre-fetched label map
-        if (note.getLabelIds() != null && !note.getLabelIds().isEmpty()) {
-          List<LabelResponse> labels = note.getLabelIds().stream()
-              .map(labelMap::get)
-              .filter(java.util.Objects::nonNull)
-              .map(labelMapper::toResponse)
-              .collect(Collectors.toList());
-          note.setLabels(labels);
-        }
-      }
-      return note;
-    }).collect(Collectors.toList());
+    // Labels of every card, loaded with one query
+    List<ChatNoteResponse> notes = cardLoader.withLabels(slice.getContent());
 
     // Normalize filter name for template
     String normalizedFilter = normalizeFilter(filter);
 
-    // Detect if there are more results for infinite scroll
-    boolean hasMore = notes.size() == size;
+    // The slice read one card past the page to tell whether there are more
+    boolean hasMore = slice.hasNext() && !notes.isEmpty();
+    ChatNoteResponse last = hasMore ? notes.get(notes.size() - 1) : null;
 
     model.addAttribute("notes", notes);
     model.addAttribute("viewMode", currentView);
     model.addAttribute("filter", normalizedFilter);
     model.addAttribute("hasMore", hasMore);
-    model.addAttribute("currentPage", page);
+    model.addAttribute("nextCursor",
+        last != null ? ChatNoteCursor.after(last.getCreatedAt(), last.getId()).encode() : "");
 
     // Preserve current filter state for infinite scroll sentinel
     model.addAttribute("currentFilter", filter);
@@ -176,8 +146,8 @@ public class ChatNoteFragmentController {
     log.info("Loading single card for note: {}", id);
 
     try {
-      ChatNote entity = chatNoteRepository.findById(id).orElseThrow();
-      Map<String, Object> noteData = buildNoteModel(entity);
+      ChatNoteCard card = cardLoader.card(id).orElseThrow();
+      Map<String, Object> noteData = buildNoteModel(card);
 
       model.addAttribute("note", noteData);
 
@@ -192,22 +162,20 @@ public class ChatNoteFragmentController {
   /**
    * Helper: Load notes by filter type
    */
-  private List<ChatNoteResponse> loadNotesByFilter(String filter, String userId, int page,
-      int size) {
-    Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
-
+  private Slice<ChatNoteResponse> loadNotesByFilter(String filter, String userId,
+      ChatNoteCursor after, int size) {
     switch (filter) {
       case "favorites":
-        return chatNoteService.getFavoriteChatNotes(userId, pageable).getContent();
+        return chatNoteService.getFavoriteChatNotes(userId, after, size);
       case "shared":
-        return chatNoteService.getPublicChatNotes(pageable).getContent();
+        return chatNoteService.getPublicChatNotes(after, size);
       case "archive":
-        return chatNoteService.getArchivedChatNotes(userId);
+        return chatNoteService.getArchivedChatNotes(userId, after, size);
       case "trash":
-        return chatNoteService.getTrashedChatNotes(userId);
+        return chatNoteService.getTrashedChatNotes(userId, after, size);
       case "chatnotes":
       default:
-        return chatNoteService.getActiveChatNotes(userId, pageable).getContent();
+        return chatNoteService.getActiveChatNotes(userId, after, size);
     }
   }
 
@@ -228,8 +196,8 @@ public class ChatNoteFragmentController {
       chatNoteService.toggleFavorite(id, isFavorite);
 
       // Load updated note
-      ChatNote entity = chatNoteRepository.findById(id).orElseThrow();
-      Map<String, Object> noteData = buildNoteModel(entity);
+      ChatNoteCard card = cardLoader.card(id).orElseThrow();
+      Map<String, Object> noteData = buildNoteModel(card);
 
       model.addAttribute("note", noteData);
 
@@ -262,8 +230,8 @@ public class ChatNoteFragmentController {
     try {
       chatNoteService.updateArchiveStatus(id, isArchived);
 
-      ChatNote entity = chatNoteRepository.findById(id).orElseThrow();
-      model.addAttribute("note", buildNoteModel(entity));
+      ChatNoteCard card = cardLoader.card(id).orElseThrow();
+      model.addAttribute("note", buildNoteModel(card));
 
       String message = isArchived ? "Archived" : "Unarchived";
       response.setHeader("HX-Trigger-After-Settle",
@@ -292,8 +260,8 @@ public class ChatNoteFragmentController {
     try {
       chatNoteService.moveToTrash(id);
 
-      ChatNote entity = chatNoteRepository.findById(id).orElseThrow();
-      model.addAttribute("note", buildNoteModel(entity));
+      ChatNoteCard card = cardLoader.card(id).orElseThrow();
+      model.addAttribute("note", buildNoteModel(card));
 
       response.setHeader("HX-Trigger-After-Settle",
           "{\"showToast\":{\"message\":\"Moved to trash\",\"type\":\"success\"}}");
@@ -322,8 +290,8 @@ public class ChatNoteFragmentController {
     try {
       chatNoteService.restoreFromTrash(id);
 
-      ChatNote entity = chatNoteRepository.findById(id).orElseThrow();
-      model.addAttribute("note", buildNoteModel(entity));
+      ChatNoteCard card = cardLoader.card(id).orElseThrow();
+      model.addAttribute("note", buildNoteModel(card));
 
       response.setHeader("HX-Trigger-After-Settle",
           "{\"showToast\":{\"message\":\"Restored from trash\",\"type\":\"success\"}}");
@@ -352,8 +320,8 @@ public class ChatNoteFragmentController {
     try {
       chatNoteService.updateVisibility(id, isPublic);
 
-      ChatNote entity = chatNoteRepository.findById(id).orElseThrow();
-      model.addAttribute("note", buildNoteModel(entity));
+      ChatNoteCard card = cardLoader.card(id).orElseThrow();
+      model.addAttribute("note", buildNoteModel(card));
 
       String message = isPublic ? "Made public" : "Made private";
       response.setHeader("HX-Trigger-After-Settle",
@@ -417,38 +385,11 @@ public class ChatNoteFragmentController {
 
     // If query is empty, return active notes (same as default view)
     if (query == null || query.trim().isEmpty()) {
-      Pageable pageable = PageRequest.of(0, 100, Sort.by(Sort.Direction.DESC, "createdAt"));
       List<ChatNoteResponse> notes =
-          chatNoteService.getActiveChatNotes(userId, pageable).getContent();
-
-      // Batch fetch all unique label IDs to avoid N+1 query
-      Set<String> allLabelIds = notes.stream()
-          .filter(note -> note.getLabelIds() != null)
-          .flatMap(note -> note.getLabelIds().stream())
-          .collect(Collectors.toSet());
-
-      // Single batch query to fetch all labels
-      Map<String, Label> labelMap = allLabelIds.isEmpty() ? Map.of()
-          : labelRepository.findAllById(allLabelIds).stream()
-              .collect(Collectors.toMap(Label::getId, label -> label));
-
-      // Add content previews and labels
-      notes = notes.stream().map(note -> {
-        ChatNote entity = chatNoteRepository.findById(note.getId()).orElse(null);
-        if (entity != null) {
-          note.setContentPreview(chatNoteMapper.generateContentPreview(entity));
-          // Populate labels using pre-fetched label map
-          if (note.getLabelIds() != null && !note.getLabelIds().isEmpty()) {
-            List<LabelResponse> labels = note.getLabelIds().stream()
-                .map(labelMap::get)
-                .filter(java.util.Objects::nonNull)
-                .map(labelMapper::toResponse)
-                .collect(Collectors.toList());
-            note.setLabels(labels);
-          }
-        }
-        return note;
-      }).collect(Collectors.toList());
+          chatNoteService.getActiveChatNotes(userId, ChatNoteCursor.START, 100).getContent();
+
+      // Labels of every card, loaded with one query
+      notes = cardLoader.withLabels(notes);
 
       String viewMode = (String) session.getAttribute("viewMode");
       model.addAttribute("notes", notes);
@@ -463,34 +404,8 @@ public class ChatNoteFragmentController {
       // Use comprehensive search: title, tags, and content
       List<ChatNoteResponse> results = chatNoteService.searchUserChatNotes(userId, query);
 
-      // Batch fetch all unique label IDs to avoid N+1 query
-      Set<String> allLabelIds = results.stream()
-          .filter(note -> note.getLabelIds() != null)
-          .flatMap(note -> note.getLabelIds().stream())
-          .collect(Collectors.toSet());
-
-      // Single batch query to fetch all labels
-      Map<String, Label> labelMap = allLabelIds.isEmpty() ? Map.of()
-          : labelRepository.findAllById(allLabelIds).stream()
-              .collect(Collectors.toMap(Label::getId, label -> label));
-
-      // Add content previews and labels
-      results = results.stream().map(note -> {
-        ChatNote entity = chatNoteRepository.findById(note.getId()).orElse(null);
-        if (entity != null) {
-          note.setContentPreview(chatNoteMapper.generateContentPreview(entity));
-          // Populate labels using pre-fetched label map
-          if (note.getLabelIds() != null && !note.getLabelIds().isEmpty()) {
-            List<LabelResponse> labels = note.getLabelIds().stream()
-                .map(labelMap::get)
-                .filter(java.util.Objects::nonNull)
-                .map(labelMapper::toResponse)
-                .collect(Collectors.toList());
-            note.setLabels(labels);
-          }
-        }
-        return note;
-      }).collect(Collectors.toList());
+      // Labels of every card, loaded with one query
+      results = cardLoader.withLabels(results);
 
       String viewMode = (String) session.getAttribute("viewMode");
       model.addAttribute("notes", results);
@@ -514,11 +429,17 @@ public class ChatNoteFragmentController {
    * Get chat note modal GET /fragments/chat-note-modal?id={id}
    */
   @GetMapping("/chat-note-modal")
-  public String getChatNoteModal(@RequestParam String id, Model model) {
+  public String getChatNoteModal(@RequestParam String id, Model model, WebRequest request) {
 
     log.info("Load modal for ID: {}", id);
 
     try {
+      // The browser already has the current version of the note
+      String eTag = chatNoteService.getChatNoteETag(id, "modal");
+      if (eTag != null && request.checkNotModified(eTag)) {
+        return null;
+      }
+
       ChatNoteDetailLightResponse note = chatNoteService.getChatNoteById(id);
 
       // Set additional fields
@@ -539,12 +460,9 @@ public class ChatNoteFragmentController {
       model.addAttribute("conversationContent", note.getConversationContent());
       model.addAttribute("referencesJson", referencesJson);
 
-      // Fetch artifacts and attachments from separate collections
-      List<Artifact> artifacts = artifactRepository.findByChatNoteIdOrderByCreatedAtDesc(id);
-      List<Attachment> attachments = attachmentRepository.findByChatNoteIdOrderByCreatedAtDesc(id);
-
-      model.addAttribute("artifacts", artifacts);
-      model.addAttribute("attachments", attachments);
+      // Artifact and attachment metadata only, their content is loaded on demand
+      model.addAttribute("artifacts", note.getArtifacts());
+      model.addAttribute("attachments", note.getAttachments());
 
       return "fragments/chat-note-modal :: modal";
 
@@ -614,34 +532,25 @@ public class ChatNoteFragmentController {
   /**
    * Build note model for Thymeleaf template
    */
-  private Map<String, Object> buildNoteModel(ChatNote entity) {
+  private Map<String, Object> buildNoteModel(ChatNoteCard card) {
     Map<String, Object> noteData = new HashMap<>();
-    noteData.put("id", entity.getId());
-    noteData.put("title", entity.getTitle());
-    noteData.put("conversationDate", entity.getConversationDate());
-    noteData.put("contentPreview", chatNoteMapper.generateContentPreview(entity));
-    noteData.put("tags", entity.getTags() != null ? entity.getTags() : List.of());
-    noteData.put("labelIds", entity.getLabelIds() != null ? entity.getLabelIds() : List.of());
-
-    // Populate labels with full details (batch fetch to avoid N+1 query)
-    if (entity.getLabelIds() != null && !entity.getLabelIds().isEmpty()) {
-      List<LabelResponse> labels = labelRepository.findAllById(entity.getLabelIds()).stream()
-          .map(labelMapper::toResponse)
-          .collect(Collectors.toList());
-      noteData.put("labels", labels);
-    } else {
-      noteData.put("labels", List.of());
-    }
-
-    noteData.put("isFavorite", entity.getIsFavorite() != null ? entity.getIsFavorite() : false);
-    noteData.put("isArchived", entity.getIsArchived() != null ? entity.getIsArchived() : false);
-    noteData.put("isPublic", entity.getIsPublic() != null ? entity.getIsPublic() : false);
-    noteData.put("isTrashed", entity.getIsTrashed() != null ? entity.getIsTrashed() : false);
-
-    // Use counts from ChatNote entity (already stored there)
-    noteData.put("artifactCount", entity.getArtifactCount() != null ? entity.getArtifactCount() : 0);
+    noteData.put("id", card.getId());
+    noteData.put("title", card.getTitle());
+    noteData.put("conversationDate", card.getConversationDate());
+    noteData.put("contentPreview", card.getContentPreview());
+    noteData.put("tags", card.getTags() != null ? card.getTags() : List.of());
+    noteData.put("labelIds", card.getLabelIds() != null ? card.getLabelIds() : List.of());
+    noteData.put("labels", cardLoader.labels(card.getLabelIds()));
+
+    noteData.put("isFavorite", card.getIsFavorite() != null ? card.getIsFavorite() : false);
+    noteData.put("isArchived", card.getIsArchived() != null ? card.getIsArchived() : false);
+    noteData.put("isPublic", card.getIsPublic() != null ? card.getIsPublic() : false);
+    noteData.put("isTrashed", card.getIsTrashed() != null ? card.getIsTrashed() : false);
+
+    // Use counts from the card (already stored there)
+    noteData.put("artifactCount", card.getArtifactCount() != null ? card.getArtifactCount() : 0);
     noteData.put("attachmentCount",
-        entity.getAttachmentCount() != null ? entity.getAttachmentCount() : 0);
+        card.getAttachmentCount() != null ? card.getAttachmentCount() : 0);
     return noteData;
   }
 
@@ -17,9 +17,9 @@ import lombok.extern.slf4j.Slf4j;
 import me.moonote.app.chatkeep.dto.request.CreateLabelRequest;
 import me.moonote.app.chatkeep.dto.request.UpdateLabelRequest;
 import me.moonote.app.chatkeep.dto.response.LabelResponse;
+import me.moonote.app.chatkeep.model.ChatNoteCard;
+import me.moonote.app.chatkeep.service.ChatNoteCardLoader;
 import me.moonote.app.chatkeep.service.LabelService;
-import me.moonote.app.chatkeep.repository.ChatNoteRepository;
-import me.moonote.app.chatkeep.model.ChatNote;
 
 /**
  * Fragment controller for label management via HTMX Returns HTML fragments rendered by Thymeleaf
@@ -31,7 +31,7 @@ import me.moonote.app.chatkeep.model.ChatNote;
 public class LabelFragmentController {
 
   private final LabelService labelService;
-  private final ChatNoteRepository chatNoteRepository;
+  private final ChatNoteCardLoader cardLoader;
 
   /**
    * Render label list for sidebar GET /fragments/labels/list
@@ -215,11 +215,9 @@ public class LabelFragmentController {
 
     List<LabelResponse> labels = labelService.getUserLabels();
 
-    // Fetch note's current labels
-    ChatNote chatNote = chatNoteRepository.findById(noteId).orElse(null);
-    List<String> selectedLabelIds = (chatNote != null && chatNote.getLabelIds() != null)
-        ? chatNote.getLabelIds()
-        : List.of();
+    // Fetch note's current labels from its card, not the whole note
+    List<String> selectedLabelIds = cardLoader.card(noteId).map(ChatNoteCard::getLabelIds)
+        .orElse(List.of());
 
     model.addAttribute("noteId", noteId);
     model.addAttribute("labels", labels);
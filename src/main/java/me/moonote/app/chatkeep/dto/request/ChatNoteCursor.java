@@ -0,0 +1,68 @@
+package me.moonote.app.chatkeep.dto.request;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Base64;
+import org.bson.types.ObjectId;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * Position in a list of chat note cards sorted by {@code createdAt}, then ID, both descending. The
+ * keyset card lists of {@code ChatNoteService} return the cards after it, so a page costs the same
+ * however deep it is, unlike a skip.
+ *
+ * Clients get it as an opaque URL-safe token holding the creation time and ID of the last card they
+ * received.
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ChatNoteCursor {
+
+  /**
+   * Before every card, for the first page
+   */
+  public static final ChatNoteCursor START = new ChatNoteCursor(
+      Instant.ofEpochMilli(Long.MAX_VALUE), new ObjectId("ffffffffffffffffffffffff"));
+
+  private static final int TOKEN_BYTES = Long.BYTES + 12;
+
+  Instant createdAt;
+  ObjectId id;
+
+  /**
+   * The position after the given card
+   */
+  public static ChatNoteCursor after(Instant createdAt, String id) {
+    if (createdAt == null || !ObjectId.isValid(id)) {
+      throw new IllegalArgumentException("Cards need a creation time and an ObjectId");
+    }
+    return new ChatNoteCursor(Instant.ofEpochMilli(createdAt.toEpochMilli()), new ObjectId(id));
+  }
+
+  /**
+   * @param token a token from {@link #encode()}, or null or blank for the first page
+   * @throws IllegalArgumentException if the token was not made by {@link #encode()}
+   */
+  public static ChatNoteCursor decode(String token) {
+    if (token == null || token.isBlank()) return START;
+
+    byte[] bytes = Base64.getUrlDecoder().decode(token);
+    if (bytes.length != TOKEN_BYTES) {
+      throw new IllegalArgumentException("Invalid cursor: " + token);
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    Instant createdAt = Instant.ofEpochMilli(buffer.getLong());
+    byte[] id = new byte[12];
+    buffer.get(id);
+    return new ChatNoteCursor(createdAt, new ObjectId(id));
+  }
+
+  public String encode() {
+    ByteBuffer buffer = ByteBuffer.allocate(TOKEN_BYTES).putLong(createdAt.toEpochMilli());
+    buffer.put(id.toByteArray());
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+  }
+
+}
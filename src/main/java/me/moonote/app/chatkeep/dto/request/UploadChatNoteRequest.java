@@ -16,6 +16,9 @@ public class UploadChatNoteRequest {
 
   String markdownContent;
 
+  // Copy the existing note when the same archive was already uploaded
+  Boolean copyOnDuplicate;
+
   // For copying an existing note to the user's workspace
   String sourceNoteId;
   Boolean copyFromPublic;
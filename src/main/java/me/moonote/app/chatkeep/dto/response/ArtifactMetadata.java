@@ -20,6 +20,8 @@ public class ArtifactMetadata {
   String version;
   String iterations;
   String evolutionNotes;
+  String contentPreview; // First characters of the content
+  Integer contentLength; // Length of the content in characters
   // Note: content field is intentionally omitted for bandwidth optimization
 
 }
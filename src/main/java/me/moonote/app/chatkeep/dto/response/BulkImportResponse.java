@@ -0,0 +1,23 @@
+package me.moonote.app.chatkeep.dto.response;
+
+import static lombok.AccessLevel.PRIVATE;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = PRIVATE)
+public class BulkImportResponse {
+
+  int totalCount;
+  int importedCount;
+  int failedCount;
+  List<BulkImportResult> results; // In input order
+
+}
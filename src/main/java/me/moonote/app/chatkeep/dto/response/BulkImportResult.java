@@ -0,0 +1,28 @@
+package me.moonote.app.chatkeep.dto.response;
+
+import static lombok.AccessLevel.PRIVATE;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Outcome of one archive of a bulk import
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = PRIVATE)
+public class BulkImportResult {
+
+  String source; // File name, with "#n" for the n-th archive of a multi-archive file
+  boolean success;
+  boolean duplicate; // Already uploaded; chatNoteId points at the existing note
+  String chatNoteId;
+  String title;
+  List<String> errors;
+
+}
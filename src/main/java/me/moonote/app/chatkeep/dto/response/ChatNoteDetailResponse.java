@@ -9,8 +9,6 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.experimental.FieldDefaults;
-import me.moonote.app.chatkeep.model.Artifact;
-import me.moonote.app.chatkeep.model.Attachment;
 import me.moonote.app.chatkeep.model.ConversationSummary;
 import me.moonote.app.chatkeep.model.Workaround;
 
@@ -36,8 +34,8 @@ public class ChatNoteDetailResponse {
   List<String> tags;
   List<String> labelIds; // Label IDs assigned to this note
   ConversationSummary summary;
-  List<Artifact> artifacts;
-  List<Attachment> attachments;
+  List<ArtifactMetadata> artifacts; // Metadata only, no content
+  List<AttachmentMetadata> attachments; // Metadata only, no content
   List<Workaround> workarounds;
   String userId;
   Boolean isPublic;
@@ -48,5 +46,6 @@ public class ChatNoteDetailResponse {
   Long viewCount;
   Instant createdAt;
   Instant updatedAt;
+  Boolean duplicate; // Set on upload when an identical archive was already uploaded
 
 }
@@ -0,0 +1,30 @@
+package me.moonote.app.chatkeep.dto.response;
+
+import static lombok.AccessLevel.PRIVATE;
+import java.time.Instant;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import me.moonote.app.chatkeep.dto.ChatNoteMetadataDto;
+
+/**
+ * Result of an upload dry run: what would be imported, or why the archive is invalid
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = PRIVATE)
+public class ChatNotePreviewResponse {
+
+  String token; // Confirms the preview; null if the archive is invalid or too large to cache
+  boolean valid;
+  List<String> errors;
+  ChatNoteMetadataDto metadata; // Title, tags and counts parsed from the archive
+  String duplicateOf; // Id of the note the user already uploaded from the same archive
+  Instant expiresAt;
+
+}
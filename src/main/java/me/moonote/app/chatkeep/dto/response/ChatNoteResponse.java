@@ -33,6 +33,7 @@ public class ChatNoteResponse {
   List<String> labelIds; // Label IDs assigned to this note
   List<LabelResponse> labels; // Full label objects for display (optional, populated by fragments)
   String contentPreview; // First ~200 characters of content for card display
+  Integer wordCount; // Words in the summary texts
   Instant createdAt;
   Instant updatedAt;
 
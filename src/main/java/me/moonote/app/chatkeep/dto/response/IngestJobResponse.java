@@ -0,0 +1,30 @@
+package me.moonote.app.chatkeep.dto.response;
+
+import static lombok.AccessLevel.PRIVATE;
+import java.time.Instant;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = PRIVATE)
+public class IngestJobResponse {
+
+  String id;
+  String type;
+  String filename;
+  String status;
+  boolean finished;
+  String message;
+  List<String> chatNoteIds;
+  List<String> errors;
+  Instant createdAt;
+  Instant updatedAt;
+
+}
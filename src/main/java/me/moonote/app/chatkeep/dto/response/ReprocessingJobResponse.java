@@ -0,0 +1,35 @@
+package me.moonote.app.chatkeep.dto.response;
+
+import static lombok.AccessLevel.PRIVATE;
+import java.time.Instant;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import me.moonote.app.chatkeep.model.ReprocessedNote;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = PRIVATE)
+public class ReprocessingJobResponse {
+
+  String id;
+  boolean dryRun;
+  String status;
+  boolean finished;
+  String message;
+  String checkpoint;
+  long totalCount;
+  long processedCount;
+  long changedCount;
+  long failedCount;
+  List<ReprocessedNote> changes;
+  List<String> errors;
+  Instant createdAt;
+  Instant updatedAt;
+
+}
@@ -3,7 +3,10 @@ package me.moonote.app.chatkeep.mapper;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.springframework.stereotype.Component;
+import me.moonote.app.chatkeep.dto.ArtifactDto;
+import me.moonote.app.chatkeep.dto.AttachmentDto;
 import me.moonote.app.chatkeep.dto.ChatNoteDto;
 import me.moonote.app.chatkeep.dto.ConversationSummaryDto;
 import me.moonote.app.chatkeep.dto.FollowUpSectionDto;
@@ -11,6 +14,8 @@ import me.moonote.app.chatkeep.dto.InsightsSectionDto;
 import me.moonote.app.chatkeep.dto.QuerySectionDto;
 import me.moonote.app.chatkeep.dto.ReferenceDto;
 import me.moonote.app.chatkeep.dto.WorkaroundDto;
+import me.moonote.app.chatkeep.model.Artifact;
+import me.moonote.app.chatkeep.model.Attachment;
 import me.moonote.app.chatkeep.model.ChatNote;
 import me.moonote.app.chatkeep.model.ChatNoteCompleteness;
 import me.moonote.app.chatkeep.model.ConversationSummary;
@@ -24,7 +29,7 @@ import me.moonote.app.chatkeep.model.Workaround;
 public class ChatNoteMapper {
 
   public ChatNote toEntity(ChatNoteDto dto, String userId) {
-    return ChatNote.builder().archiveVersion(dto.getMetadata().getArchiveVersion())
+    return updateDerivedFields(ChatNote.builder().archiveVersion(dto.getMetadata().getArchiveVersion())
         .archiveType(dto.getMetadata().getArchiveType())
         .createdDate(dto.getMetadata().getCreatedDate())
         .originalPlatform(dto.getMetadata().getOriginalPlatform())
@@ -45,7 +50,51 @@ public class ChatNoteMapper {
         .isTrashed(false) // Default to not trashed
         .isFavorite(false) // Default to not favorited
         .trashedAt(null) // No trash timestamp initially
-        .viewCount(0L).build();
+        .viewCount(0L).build());
+  }
+
+  /**
+   * Compute the card fields derived from the summary, stored so lists never read the summary. Call
+   * whenever the summary changes.
+   */
+  public ChatNote updateDerivedFields(ChatNote chatNote) {
+    chatNote.setContentPreview(generateContentPreview(chatNote));
+    chatNote.setWordCount(estimateWordCount(chatNote));
+    return chatNote;
+  }
+
+  /**
+   * Artifacts are stored in a separate collection, referencing their chat note by id and keeping
+   * their position in the archive as ordinal
+   */
+  public List<Artifact> toArtifacts(List<ArtifactDto> dtos, String chatNoteId) {
+    if (dtos == null) return Collections.emptyList();
+
+    return IntStream.range(0, dtos.size()).mapToObj(ordinal -> {
+      ArtifactDto dto = dtos.get(ordinal);
+      return Artifact.builder().chatNoteId(chatNoteId).ordinal(ordinal).type(dto.getType())
+          .title(dto.getTitle()).language(dto.getLanguage()).version(dto.getVersion())
+          .iterations(dto.getIterations()).evolutionNotes(dto.getEvolutionNotes())
+          .content(dto.getContent()).build();
+    }).collect(Collectors.toList());
+  }
+
+  /**
+   * Attachments are stored in a separate collection, referencing their chat note by id and keeping
+   * their position in the archive as ordinal
+   */
+  public List<Attachment> toAttachments(List<AttachmentDto> dtos, String chatNoteId) {
+    if (dtos == null) return Collections.emptyList();
+
+    return IntStream.range(0, dtos.size()).mapToObj(ordinal -> {
+      AttachmentDto dto = dtos.get(ordinal);
+      return Attachment.builder().chatNoteId(chatNoteId).ordinal(ordinal)
+          .filename(dto.getFilename()).content(dto.getContent())
+          .isSummarized(dto.getIsSummarized()).originalSize(dto.getOriginalSize())
+          .summarizationLevel(dto.getSummarizationLevel())
+          .contentPreserved(dto.getContentPreserved())
+          .processingLimitation(dto.getProcessingLimitation()).build();
+    }).collect(Collectors.toList());
   }
 
   private ConversationSummary toSummary(ConversationSummaryDto dto) {
@@ -139,23 +188,44 @@ public class ChatNoteMapper {
   }
 
   /**
-   * Count total words in conversation summary
+   * Count total words in the texts of the conversation summary
    */
   public int estimateWordCount(ChatNote chatNote) {
+    ConversationSummary summary = chatNote.getSummary();
+    if (summary == null) return 0;
+
     int wordCount = 0;
-    if (chatNote.getSummary() != null) {
-      wordCount += countWords(chatNote.getSummary().getInitialQuery());
-      wordCount += countWords(chatNote.getSummary().getKeyInsights());
-      wordCount += countWords(chatNote.getSummary().getFollowUpExplorations());
+    if (summary.getInitialQuery() != null) {
+      wordCount += countWords(summary.getInitialQuery().getDescription());
+    }
+    if (summary.getKeyInsights() != null) {
+      wordCount += countWords(summary.getKeyInsights().getDescription());
+      if (summary.getKeyInsights().getKeyPoints() != null) {
+        for (String keyPoint : summary.getKeyInsights().getKeyPoints()) {
+          wordCount += countWords(keyPoint);
+        }
+      }
+    }
+    if (summary.getFollowUpExplorations() != null) {
+      wordCount += countWords(summary.getFollowUpExplorations().getDescription());
     }
     return wordCount;
   }
 
-  private int countWords(Object section) {
-    if (section == null) return 0;
-    String text = section.toString();
-    if (text.trim().isEmpty()) return 0;
-    return text.split("\\s+").length;
+  /**
+   * Count the runs of non-whitespace characters, without splitting the text
+   */
+  static int countWords(String text) {
+    if (text == null) return 0;
+
+    int words = 0;
+    boolean inWord = false;
+    for (int i = 0; i < text.length(); i++) {
+      boolean whitespace = Character.isWhitespace(text.charAt(i));
+      if (!whitespace && !inWord) words++;
+      inWord = !whitespace;
+    }
+    return words;
   }
 
 }
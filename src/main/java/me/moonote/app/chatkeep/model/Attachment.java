@@ -4,7 +4,9 @@ import static lombok.AccessLevel.PRIVATE;
 import java.time.Instant;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.ReadOnlyProperty;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import lombok.AllArgsConstructor;
@@ -23,7 +25,10 @@ import lombok.experimental.FieldDefaults;
 @AllArgsConstructor
 @FieldDefaults(level = PRIVATE)
 @Document
-@CompoundIndex(def = "{'chatNoteId': 1, 'createdAt': -1}")
+@CompoundIndexes({@CompoundIndex(def = "{'chatNoteId': 1, 'createdAt': -1}"),
+    // Documents stored before ordinals existed are left out until they are backfilled
+    @CompoundIndex(def = "{'chatNoteId': 1, 'ordinal': 1}", unique = true,
+        partialFilter = "{ 'ordinal': { $exists: true } }")})
 public class Attachment {
 
   @Id
@@ -32,8 +37,16 @@ public class Attachment {
   @Indexed
   String chatNoteId; // Reference to ChatNote
 
+  Integer ordinal; // Position within the chat note, starting at 0
+
   String filename;
   String content;
+
+  // Computed by detail queries in place of the content, never stored
+  @ReadOnlyProperty
+  String contentPreview; // First characters of the content
+  @ReadOnlyProperty
+  Integer contentLength; // Length of the content in characters
   Boolean isSummarized;
   String originalSize;
   String summarizationLevel;
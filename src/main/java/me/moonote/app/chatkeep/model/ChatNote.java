@@ -7,6 +7,8 @@ import java.util.List;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import lombok.AllArgsConstructor;
@@ -21,6 +23,35 @@ import lombok.experimental.FieldDefaults;
 @AllArgsConstructor
 @Document
 @FieldDefaults(level = PRIVATE)
+// Indexes follow the query shapes of ChatNoteRepository, checked by ChatNoteIndexExplainTest.
+// Those of card lists end with _id, the tie-breaker of keyset pagination.
+@CompoundIndexes({
+    // Duplicate upload detection
+    @CompoundIndex(name = "userId_contentHash", def = "{'userId': 1, 'contentHash': 1}"),
+    // Active and archived notes of a user, newest first, and the workspace export
+    @CompoundIndex(name = "userId_isTrashed_isArchived_createdAt_id",
+        def = "{'userId': 1, 'isTrashed': 1, 'isArchived': 1, 'createdAt': 1, '_id': 1}"),
+    // Trashed notes of a user, newest first, whether archived or not
+    @CompoundIndex(name = "userId_isTrashed_createdAt_id",
+        def = "{'userId': 1, 'isTrashed': 1, 'createdAt': -1, '_id': -1}"),
+    // Favorites of a user, newest first, and most recently updated first as the API lists them
+    @CompoundIndex(name = "userId_isFavorite_createdAt_id",
+        def = "{'userId': 1, 'isFavorite': 1, 'createdAt': -1, '_id': -1}"),
+    @CompoundIndex(name = "userId_isFavorite_updatedAt",
+        def = "{'userId': 1, 'isFavorite': 1, 'updatedAt': -1}"),
+    // Tag and label filters of a user, newest first
+    @CompoundIndex(name = "userId_tags_createdAt",
+        def = "{'userId': 1, 'tags': 1, 'createdAt': -1}"),
+    @CompoundIndex(name = "userId_labelIds_createdAt_id",
+        def = "{'userId': 1, 'labelIds': 1, 'createdAt': -1, '_id': -1}"),
+    // Label filter of the API, most recently updated first
+    @CompoundIndex(name = "userId_labelIds_updatedAt",
+        def = "{'userId': 1, 'labelIds': 1, 'updatedAt': -1}"),
+    // Shared notes, newest first
+    @CompoundIndex(name = "isPublic_createdAt_id",
+        def = "{'isPublic': 1, 'createdAt': -1, '_id': -1}"),
+    // Trash listing and auto-purge by trash date
+    @CompoundIndex(name = "isTrashed_trashedAt", def = "{'isTrashed': 1, 'trashedAt': 1}")})
 public class ChatNote {
 
   @Id
@@ -49,12 +80,18 @@ public class ChatNote {
   // Use ArtifactRepository and AttachmentRepository to fetch them by chatNoteId
   List<Workaround> workarounds;
 
+  // Derived from the summary by ChatNoteMapper, for cards
+  String contentPreview; // First ~200 characters of the summary
+  Integer wordCount; // Words in the summary texts
+
   // Metadata for web app
   @CreatedDate
   Instant createdAt;
   @LastModifiedDate
   Instant updatedAt;
   String userId; // For multi-user support
+  String contentHash; // Hash of the normalized archive, for duplicate upload detection
+  List<String> editedFields; // Parsed fields changed by the user, kept when reprocessing
   Boolean isPublic; // For sharing feature
   Boolean isArchived; // Archived (hidden from main view)
   Boolean isTrashed; // Soft deleted (in trash)
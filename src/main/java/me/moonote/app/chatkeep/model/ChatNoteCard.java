@@ -0,0 +1,44 @@
+package me.moonote.app.chatkeep.model;
+
+import static lombok.AccessLevel.PRIVATE;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * The fields of a ChatNote shown on its card in lists. List queries return this DTO projection,
+ * so Spring Data fetches only these fields instead of the summary and workarounds. Unlike a
+ * partially loaded ChatNote, it cannot be saved back by mistake.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = PRIVATE)
+public class ChatNoteCard {
+
+  String id;
+  String title;
+  LocalDate conversationDate;
+  List<String> tags;
+  List<String> labelIds;
+  String originalPlatform;
+  String contentPreview;
+  Integer wordCount;
+  ChatNoteCompleteness chatNoteCompleteness;
+  Integer attachmentCount;
+  Integer artifactCount;
+  Long viewCount;
+  Boolean isPublic;
+  Boolean isArchived;
+  Boolean isTrashed;
+  Boolean isFavorite;
+  Instant createdAt;
+  Instant updatedAt;
+
+}
@@ -0,0 +1,26 @@
+package me.moonote.app.chatkeep.model;
+
+import static lombok.AccessLevel.PRIVATE;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * A ChatNote together with its artifacts and attachments, loaded in one round-trip. The artifacts
+ * and attachments carry metadata and a content preview only, their content is left out.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = PRIVATE)
+public class ChatNoteDetail {
+
+  ChatNote chatNote;
+  List<Artifact> artifacts; // In archive order, without content
+  List<Attachment> attachments; // In archive order, without content
+
+}
@@ -0,0 +1,39 @@
+package me.moonote.app.chatkeep.model;
+
+import static lombok.AccessLevel.PRIVATE;
+import java.time.Instant;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * ChatNoteSource - The archive markdown a chat note was parsed from, gzip-compressed. Kept in its
+ * own collection so note queries never load it; used to reprocess notes with a newer parser.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = PRIVATE)
+@Document
+public class ChatNoteSource {
+
+  @Id
+  String id;
+
+  @Indexed(unique = true)
+  String chatNoteId; // Reference to ChatNote
+
+  byte[] content; // Gzip-compressed UTF-8 markdown, as uploaded
+  Long originalSize; // Uncompressed size in bytes
+
+  @CreatedDate
+  Instant createdAt;
+
+}
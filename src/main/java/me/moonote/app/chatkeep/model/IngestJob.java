@@ -0,0 +1,48 @@
+package me.moonote.app.chatkeep.model;
+
+import static lombok.AccessLevel.PRIVATE;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * IngestJob - An upload or import processed in the background. Clients poll it or follow its
+ * progress events; finished jobs expire after a week.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = PRIVATE)
+@Document
+public class IngestJob {
+
+  @Id
+  String id;
+
+  @Indexed
+  String userId;
+
+  IngestJobType type;
+  String filename;
+  IngestJobStatus status;
+  String message; // Latest progress message, e.g. "3 of 12 artifacts stored"
+  List<String> chatNoteIds; // Chat notes created by the job
+  List<String> errors;
+
+  @CreatedDate
+  @Indexed(expireAfter = "7d")
+  Instant createdAt;
+  @LastModifiedDate
+  Instant updatedAt;
+
+}
@@ -0,0 +1,12 @@
+package me.moonote.app.chatkeep.model;
+
+/**
+ * Progress of an ingest job, in the order the stages are reached
+ */
+public enum IngestJobStatus {
+  QUEUED, STRIPPED, PARSED, VALIDATED, STORING, COMPLETED, FAILED;
+
+  public boolean isFinished() {
+    return this == COMPLETED || this == FAILED;
+  }
+}
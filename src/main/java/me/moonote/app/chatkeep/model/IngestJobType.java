@@ -0,0 +1,6 @@
+package me.moonote.app.chatkeep.model;
+
+public enum IngestJobType {
+  UPLOAD, // A single archive
+  IMPORT // A ZIP or multi-archive file
+}
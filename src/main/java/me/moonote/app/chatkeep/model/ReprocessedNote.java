@@ -0,0 +1,25 @@
+package me.moonote.app.chatkeep.model;
+
+import static lombok.AccessLevel.PRIVATE;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * ReprocessedNote - A chat note whose parsed output changed, with the fields that changed
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = PRIVATE)
+public class ReprocessedNote {
+
+  String chatNoteId;
+  String title;
+  List<String> changedFields;
+
+}
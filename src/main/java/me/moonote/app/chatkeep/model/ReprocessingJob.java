@@ -0,0 +1,52 @@
+package me.moonote.app.chatkeep.model;
+
+import static lombok.AccessLevel.PRIVATE;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * ReprocessingJob - Runs the stored source of every chat note through the current parser. A dry
+ * run only reports the notes that would change.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = PRIVATE)
+@Document
+public class ReprocessingJob {
+
+  @Id
+  String id;
+
+  String requestedBy; // User ID of the admin who started the job
+  boolean dryRun;
+
+  @Indexed
+  ReprocessingJobStatus status;
+  String message;
+  String checkpoint; // Last chat note ID processed; notes are visited in ID order
+
+  long totalCount; // Stored sources when the job started
+  long processedCount;
+  long changedCount;
+  long failedCount;
+  List<ReprocessedNote> changes; // Changed notes, up to the configured report limit
+  List<String> errors; // Notes whose source no longer parses, up to the report limit
+
+  @CreatedDate
+  Instant createdAt;
+  @LastModifiedDate
+  Instant updatedAt;
+
+}
@@ -0,0 +1,12 @@
+package me.moonote.app.chatkeep.model;
+
+/**
+ * State of a reprocessing job. Cancelled and failed jobs can be resumed from their checkpoint.
+ */
+public enum ReprocessingJobStatus {
+  RUNNING, COMPLETED, CANCELLED, FAILED;
+
+  public boolean isFinished() {
+    return this != RUNNING;
+  }
+}
@@ -1,7 +1,12 @@
 package me.moonote.app.chatkeep.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 import me.moonote.app.chatkeep.model.Artifact;
 
@@ -15,9 +20,50 @@ public interface ArtifactRepository extends MongoRepository<Artifact, String> {
    * Find all artifacts belonging to a specific ChatNote.
    *
    * @param chatNoteId ChatNote ID
-   * @return List of artifacts ordered by creation date (newest first)
+   * @return List of artifacts in archive order
    */
-  List<Artifact> findByChatNoteIdOrderByCreatedAtDesc(String chatNoteId);
+  List<Artifact> findByChatNoteIdOrderByOrdinal(String chatNoteId);
+
+  /**
+   * Find a single artifact by its position within a ChatNote.
+   *
+   * @param chatNoteId ChatNote ID
+   * @param ordinal Position of the artifact, starting at 0
+   * @return The artifact, if the ChatNote has one at that position
+   */
+  Optional<Artifact> findByChatNoteIdAndOrdinal(String chatNoteId, int ordinal);
+
+  /**
+   * Replace the content of a single artifact in place.
+   *
+   * @param chatNoteId ChatNote ID
+   * @param ordinal Position of the artifact, starting at 0
+   * @param content New content
+   * @return Number of updated artifacts, 0 if the ChatNote has none at that position
+   */
+  @Query("{ 'chatNoteId': ?0, 'ordinal': ?1 }")
+  @Update("{ $set: { 'content': ?2 } }")
+  long updateContentByChatNoteIdAndOrdinal(String chatNoteId, int ordinal, String content);
+
+  /**
+   * Stream the artifacts of a ChatNote from a cursor, one document at a time. The stream must be
+   * closed.
+   *
+   * @param chatNoteId ChatNote ID
+   * @return Stream of artifacts in archive order
+   */
+  Stream<Artifact> streamByChatNoteIdOrderByOrdinal(String chatNoteId);
+
+  /**
+   * Stream the artifacts of several ChatNotes from a cursor, grouped by ChatNote. The query repeats
+   * the filter of the ordinal index so the index serves the sort. The stream must be closed.
+   *
+   * @param chatNoteIds ChatNote IDs
+   * @return Stream of artifacts sorted by ChatNote ID, each ChatNote's in archive order
+   */
+  @Query(value = "{ 'chatNoteId': { $in: ?0 }, 'ordinal': { $exists: true } }",
+      sort = "{ 'chatNoteId': 1, 'ordinal': 1 }")
+  Stream<Artifact> streamByChatNoteIdIn(Collection<String> chatNoteIds);
 
   /**
    * Delete all artifacts belonging to a specific ChatNote. Used for cascading deletion.
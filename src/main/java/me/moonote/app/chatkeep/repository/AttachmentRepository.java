@@ -1,7 +1,12 @@
 package me.moonote.app.chatkeep.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 import me.moonote.app.chatkeep.model.Attachment;
 
@@ -16,9 +21,50 @@ public interface AttachmentRepository extends MongoRepository<Attachment, String
    * Find all attachments belonging to a specific ChatNote.
    *
    * @param chatNoteId ChatNote ID
-   * @return List of attachments ordered by creation date (newest first)
+   * @return List of attachments in archive order
    */
-  List<Attachment> findByChatNoteIdOrderByCreatedAtDesc(String chatNoteId);
+  List<Attachment> findByChatNoteIdOrderByOrdinal(String chatNoteId);
+
+  /**
+   * Find a single attachment by its position within a ChatNote.
+   *
+   * @param chatNoteId ChatNote ID
+   * @param ordinal Position of the attachment, starting at 0
+   * @return The attachment, if the ChatNote has one at that position
+   */
+  Optional<Attachment> findByChatNoteIdAndOrdinal(String chatNoteId, int ordinal);
+
+  /**
+   * Replace the content of a single attachment in place.
+   *
+   * @param chatNoteId ChatNote ID
+   * @param ordinal Position of the attachment, starting at 0
+   * @param content New content
+   * @return Number of updated attachments, 0 if the ChatNote has none at that position
+   */
+  @Query("{ 'chatNoteId': ?0, 'ordinal': ?1 }")
+  @Update("{ $set: { 'content': ?2 } }")
+  long updateContentByChatNoteIdAndOrdinal(String chatNoteId, int ordinal, String content);
+
+  /**
+   * Stream the attachments of a ChatNote from a cursor, one document at a time. The stream must be
+   * closed.
+   *
+   * @param chatNoteId ChatNote ID
+   * @return Stream of attachments in archive order
+   */
+  Stream<Attachment> streamByChatNoteIdOrderByOrdinal(String chatNoteId);
+
+  /**
+   * Stream the attachments of several ChatNotes from a cursor, grouped by ChatNote. The query repeats
+   * the filter of the ordinal index so the index serves the sort. The stream must be closed.
+   *
+   * @param chatNoteIds ChatNote IDs
+   * @return Stream of attachments sorted by ChatNote ID, each ChatNote's in archive order
+   */
+  @Query(value = "{ 'chatNoteId': { $in: ?0 }, 'ordinal': { $exists: true } }",
+      sort = "{ 'chatNoteId': 1, 'ordinal': 1 }")
+  Stream<Attachment> streamByChatNoteIdIn(Collection<String> chatNoteIds);
 
   /**
    * Delete all attachments belonging to a specific ChatNote. Used for cascading deletion.
@@ -2,112 +2,139 @@ package me.moonote.app.chatkeep.repository;
 
 import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 import me.moonote.app.chatkeep.model.ChatNote;
+import me.moonote.app.chatkeep.model.ChatNoteCard;
 import me.moonote.app.chatkeep.model.ChatNoteCompleteness;
 
 @Repository
-public interface ChatNoteRepository extends MongoRepository<ChatNote, String> {
+public interface ChatNoteRepository
+    extends MongoRepository<ChatNote, String>, ChatNoteRepositoryCustom {
+
+  // Keyset bound of the card lists: cards created before the cursor, or at the same time with a
+  // lower ID. Its createdAt and ID are always the first two parameters.
+  String BEFORE_CURSOR =
+      "'createdAt': { $lte: ?0 }, $or: [ { 'createdAt': { $lt: ?0 } }, { '_id': { $lt: ?1 } } ]";
 
   // Find by user
   List<ChatNote> findByUserId(String userId);
 
+  // Card queries - returning ChatNoteCard projects the query onto the card fields
+  List<ChatNoteCard> findCardsByUserId(String userId);
+
+  @Query("{}")
+  Page<ChatNoteCard> findAllCards(Pageable pageable);
+
+  List<ChatNoteCard> findCardsByIdIn(Collection<String> ids);
+
+  // Duplicate detection - the same normalized archive already uploaded by the user
+  Optional<ChatNote> findFirstByUserIdAndContentHashAndIsTrashedFalse(String userId,
+      String contentHash);
+
   // Find public archives
   List<ChatNote> findByIsPublicTrue();
 
-  Page<ChatNote> findByIsPublic(Boolean isPublic, Pageable pageable);
+  Page<ChatNoteCard> findByIsPublic(Boolean isPublic, Pageable pageable);
 
   // Find by tags - Single tag
-  List<ChatNote> findByTagsContaining(String tag);
+  List<ChatNoteCard> findByTagsContaining(String tag);
 
   // Find by tags - Multiple tags (AND operation - contains ALL tags)
   @Query("{ 'tags': { $all: ?0 } }")
-  List<ChatNote> findByTagsContainingAll(List<String> tags);
+  List<ChatNoteCard> findByTagsContainingAll(List<String> tags);
 
   @Query("{ 'tags': { $all: ?0 } }")
-  Page<ChatNote> findByTagsContainingAll(List<String> tags, Pageable pageable);
+  Page<ChatNoteCard> findByTagsContainingAll(List<String> tags, Pageable pageable);
 
   @Query("{ 'tags': { $all: ?0 }, 'userId': ?1 }")
-  Page<ChatNote> findByTagsContainingAllAndUserId(List<String> tags, String userId,
+  Page<ChatNoteCard> findByTagsContainingAllAndUserId(List<String> tags, String userId,
       Pageable pageable);
 
   // Find by tags - Multiple tags (OR operation - contains ANY tag)
   @Query("{ 'tags': { $in: ?0 } }")
-  List<ChatNote> findByTagsIn(List<String> tags);
+  List<ChatNoteCard> findByTagsIn(List<String> tags);
 
   @Query("{ 'tags': { $in: ?0 } }")
-  Page<ChatNote> findByTagsIn(List<String> tags, Pageable pageable);
+  Page<ChatNoteCard> findByTagsIn(List<String> tags, Pageable pageable);
 
   @Query("{ 'tags': { $in: ?0 }, 'userId': ?1 }")
-  Page<ChatNote> findByTagsInAndUserId(List<String> tags, String userId, Pageable pageable);
+  Page<ChatNoteCard> findByTagsInAndUserId(List<String> tags, String userId, Pageable pageable);
 
   // Find by tags with lifecycle filters - Active notes only (AND operation)
   @Query("{ 'tags': { $all: ?0 }, 'isArchived': false, 'isTrashed': false }")
-  Page<ChatNote> findActiveByTagsContainingAll(List<String> tags, Pageable pageable);
+  Page<ChatNoteCard> findActiveByTagsContainingAll(List<String> tags, Pageable pageable);
 
   @Query("{ 'tags': { $all: ?0 }, 'userId': ?1, 'isArchived': false, 'isTrashed': false }")
-  Page<ChatNote> findActiveByTagsContainingAllAndUserId(List<String> tags, String userId,
+  Page<ChatNoteCard> findActiveByTagsContainingAllAndUserId(List<String> tags, String userId,
       Pageable pageable);
 
   // Find by tags with lifecycle filters - Active notes only (OR operation)
   @Query("{ 'tags': { $in: ?0 }, 'isArchived': false, 'isTrashed': false }")
-  Page<ChatNote> findActiveByTagsIn(List<String> tags, Pageable pageable);
+  Page<ChatNoteCard> findActiveByTagsIn(List<String> tags, Pageable pageable);
 
   @Query("{ 'tags': { $in: ?0 }, 'userId': ?1, 'isArchived': false, 'isTrashed': false }")
-  Page<ChatNote> findActiveByTagsInAndUserId(List<String> tags, String userId, Pageable pageable);
+  Page<ChatNoteCard> findActiveByTagsInAndUserId(List<String> tags, String userId,
+      Pageable pageable);
 
   // Find by label IDs - Multiple labels (AND operation - contains ALL label IDs)
   @Query("{ 'labelIds': { $all: ?0 } }")
-  Page<ChatNote> findByLabelIdsContainingAll(List<String> labelIds, Pageable pageable);
+  Page<ChatNoteCard> findByLabelIdsContainingAll(List<String> labelIds, Pageable pageable);
 
   @Query("{ 'labelIds': { $all: ?0 }, 'userId': ?1 }")
-  Page<ChatNote> findByLabelIdsContainingAllAndUserId(List<String> labelIds, String userId,
+  Page<ChatNoteCard> findByLabelIdsContainingAllAndUserId(List<String> labelIds, String userId,
       Pageable pageable);
 
   // Find by label IDs - Multiple labels (OR operation - contains ANY label ID)
   @Query("{ 'labelIds': { $in: ?0 } }")
-  Page<ChatNote> findByLabelIdsIn(List<String> labelIds, Pageable pageable);
+  Page<ChatNoteCard> findByLabelIdsIn(List<String> labelIds, Pageable pageable);
 
   @Query("{ 'labelIds': { $in: ?0 }, 'userId': ?1 }")
-  Page<ChatNote> findByLabelIdsInAndUserId(List<String> labelIds, String userId, Pageable pageable);
+  Page<ChatNoteCard> findByLabelIdsInAndUserId(List<String> labelIds, String userId,
+      Pageable pageable);
 
   // Find by label IDs with lifecycle filters - Active notes only (AND operation)
   @Query("{ 'labelIds': { $all: ?0 }, 'isArchived': false, 'isTrashed': false }")
-  Page<ChatNote> findActiveByLabelIdsContainingAll(List<String> labelIds, Pageable pageable);
+  Page<ChatNoteCard> findActiveByLabelIdsContainingAll(List<String> labelIds, Pageable pageable);
 
   @Query("{ 'labelIds': { $all: ?0 }, 'userId': ?1, 'isArchived': false, 'isTrashed': false }")
-  Page<ChatNote> findActiveByLabelIdsContainingAllAndUserId(List<String> labelIds, String userId,
-      Pageable pageable);
+  Page<ChatNoteCard> findActiveByLabelIdsContainingAllAndUserId(List<String> labelIds,
+      String userId, Pageable pageable);
 
   // Find by label IDs with lifecycle filters - Active notes only (OR operation)
   @Query("{ 'labelIds': { $in: ?0 }, 'isArchived': false, 'isTrashed': false }")
-  Page<ChatNote> findActiveByLabelIdsIn(List<String> labelIds, Pageable pageable);
+  Page<ChatNoteCard> findActiveByLabelIdsIn(List<String> labelIds, Pageable pageable);
 
   @Query("{ 'labelIds': { $in: ?0 }, 'userId': ?1, 'isArchived': false, 'isTrashed': false }")
-  Page<ChatNote> findActiveByLabelIdsInAndUserId(List<String> labelIds, String userId,
+  Page<ChatNoteCard> findActiveByLabelIdsInAndUserId(List<String> labelIds, String userId,
       Pageable pageable);
 
   // Find ChatNotes containing a specific label ID (for cascade deletion)
   List<ChatNote> findByLabelIdsContaining(String labelId);
 
   // Search by title
-  List<ChatNote> findByTitleContainingIgnoreCase(String keyword);
+  List<ChatNoteCard> findByTitleContainingIgnoreCase(String keyword);
 
   // Search by title (user-scoped, active notes only)
   @Query("{ 'userId': ?0, 'title': { $regex: ?1, $options: 'i' }, 'isArchived': false, 'isTrashed': false }")
-  List<ChatNote> searchActiveTitleByUserId(String userId, String keyword);
+  List<ChatNoteCard> searchActiveTitleByUserId(String userId, String keyword);
 
   // Comprehensive search (title, tags, content) - user-scoped, active notes only
   @Query("{ 'userId': ?0, $or: [ " + "{ 'title': { $regex: ?1, $options: 'i' } }, "
       + "{ 'tags': { $regex: ?1, $options: 'i' } }, "
       + "{ 'conversationContent': { $regex: ?1, $options: 'i' } } "
       + "], 'isArchived': false, 'isTrashed': false }")
-  List<ChatNote> searchActiveByUserId(String userId, String keyword);
+  List<ChatNoteCard> searchActiveByUserId(String userId, String keyword);
 
   // Find by date range
   List<ChatNote> findByConversationDateBetween(LocalDate start, LocalDate end);
@@ -118,32 +145,69 @@ public interface ChatNoteRepository extends MongoRepository<ChatNote, String> {
   // Lifecycle queries - Active notes (not archived, not trashed)
   List<ChatNote> findByIsArchivedFalseAndIsTrashedFalse();
 
-  Page<ChatNote> findByUserIdAndIsArchivedFalseAndIsTrashedFalse(String userId, Pageable pageable);
+  Page<ChatNoteCard> findByUserIdAndIsArchivedFalseAndIsTrashedFalse(String userId,
+      Pageable pageable);
 
   // Archived notes
-  List<ChatNote> findByUserIdAndIsArchivedTrueAndIsTrashedFalse(String userId);
-
-  Page<ChatNote> findByIsArchivedTrueAndIsTrashedFalse(Pageable pageable);
+  Page<ChatNoteCard> findByIsArchivedTrueAndIsTrashedFalse(Pageable pageable);
 
   // Trashed notes
-  List<ChatNote> findByUserIdAndIsTrashedTrue(String userId);
+  Page<ChatNoteCard> findByIsTrashedTrue(Pageable pageable);
 
-  Page<ChatNote> findByIsTrashedTrue(Pageable pageable);
+  // Workspace export - every note of the user outside the trash, read from a cursor. Active notes
+  // come before archived ones, so the sort follows the userId_isTrashed_isArchived_createdAt index
+  Stream<ChatNote> streamByUserIdAndIsTrashedFalseOrderByIsArchivedAscCreatedAtAsc(String userId);
 
   // Auto-purge candidates (trashed > 30 days ago)
   List<ChatNote> findByIsTrashedTrueAndTrashedAtBefore(Instant cutoffDate);
 
   // Favorite notes
-  List<ChatNote> findByUserIdAndIsFavoriteTrue(String userId);
+  List<ChatNoteCard> findByUserIdAndIsFavoriteTrue(String userId);
 
-  Page<ChatNote> findByUserIdAndIsFavoriteTrue(String userId, Pageable pageable);
+  Page<ChatNoteCard> findByUserIdAndIsFavoriteTrue(String userId, Pageable pageable);
 
   // Favorite active notes (not archived, not trashed)
   @Query("{ 'userId': ?0, 'isFavorite': true, 'isArchived': false, 'isTrashed': false }")
-  List<ChatNote> findFavoriteActiveByUserId(String userId);
+  List<ChatNoteCard> findFavoriteActiveByUserId(String userId);
 
   @Query("{ 'userId': ?0, 'isFavorite': true, 'isArchived': false, 'isTrashed': false }")
-  Page<ChatNote> findFavoriteActiveByUserId(String userId, Pageable pageable);
+  Page<ChatNoteCard> findFavoriteActiveByUserId(String userId, Pageable pageable);
+
+  // Keyset card lists for infinite scroll, newest first. Pass the creation time and ID of the last
+  // card read, and a first page sorted by createdAt, then id, both descending; a Slice reads one
+  // more card to tell whether there are more, instead of counting.
+  @Query("{ " + BEFORE_CURSOR + ", 'userId': ?2, 'isTrashed': false, 'isArchived': false }")
+  Slice<ChatNoteCard> findActiveCardsBefore(Instant createdAt, ObjectId id, String userId,
+      Pageable pageable);
+
+  @Query("{ " + BEFORE_CURSOR + ", 'userId': ?2, 'isTrashed': false, 'isArchived': true }")
+  Slice<ChatNoteCard> findArchivedCardsBefore(Instant createdAt, ObjectId id, String userId,
+      Pageable pageable);
+
+  @Query("{ " + BEFORE_CURSOR + ", 'userId': ?2, 'isTrashed': true }")
+  Slice<ChatNoteCard> findTrashedCardsBefore(Instant createdAt, ObjectId id, String userId,
+      Pageable pageable);
+
+  @Query("{ " + BEFORE_CURSOR + ", 'userId': ?2, 'isFavorite': true }")
+  Slice<ChatNoteCard> findFavoriteCardsBefore(Instant createdAt, ObjectId id, String userId,
+      Pageable pageable);
+
+  @Query("{ " + BEFORE_CURSOR + ", 'isPublic': true }")
+  Slice<ChatNoteCard> findPublicCardsBefore(Instant createdAt, ObjectId id, Pageable pageable);
+
+  @Query("{ " + BEFORE_CURSOR + ", 'userId': ?2, 'labelIds': { $in: ?3 }, "
+      + "'isArchived': false, 'isTrashed': false }")
+  Slice<ChatNoteCard> findActiveCardsWithAnyLabelBefore(Instant createdAt, ObjectId id,
+      String userId, List<String> labelIds, Pageable pageable);
+
+  // Version lookup for conditional requests - only the id, updatedAt and isPublic are read
+  @Query(value = "{ '_id': ?0 }", fields = "{ 'updatedAt': 1, 'isPublic': 1 }")
+  Optional<ChatNote> findVersionById(String id);
+
+  // View counting - an in-place increment leaves updatedAt, the content cache version, untouched
+  @Query("{ '_id': ?0 }")
+  @Update("{ $inc: { 'viewCount': 1 } }")
+  long incrementViewCount(String id);
 
   // Custom queries
   @Query("{ 'user_id': ?0, 'is_public': true }")
@@ -0,0 +1,20 @@
+package me.moonote.app.chatkeep.repository;
+
+import java.util.Optional;
+import me.moonote.app.chatkeep.model.ChatNoteDetail;
+
+/**
+ * ChatNote queries that need the aggregation framework
+ */
+public interface ChatNoteRepositoryCustom {
+
+  /**
+   * Find a ChatNote with the metadata of its artifacts and attachments, in a single aggregation.
+   *
+   * @param id ChatNote ID
+   * @return The ChatNote with its artifacts and attachments, carrying a content preview and the
+   *         content length instead of the content
+   */
+  Optional<ChatNoteDetail> findDetailById(String id);
+
+}
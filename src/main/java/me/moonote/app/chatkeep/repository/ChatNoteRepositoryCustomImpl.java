@@ -0,0 +1,77 @@
+package me.moonote.app.chatkeep.repository;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import java.util.List;
+import java.util.Optional;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import lombok.RequiredArgsConstructor;
+import me.moonote.app.chatkeep.model.Artifact;
+import me.moonote.app.chatkeep.model.Attachment;
+import me.moonote.app.chatkeep.model.ChatNote;
+import me.moonote.app.chatkeep.model.ChatNoteDetail;
+
+/**
+ * Assembles a ChatNote with its artifact and attachment metadata through {@code $lookup}, instead
+ * of one query per collection. Their content is cut down to a preview on the server, so the bodies
+ * are only loaded when a single artifact or attachment is opened.
+ */
+@RequiredArgsConstructor
+class ChatNoteRepositoryCustomImpl implements ChatNoteRepositoryCustom {
+
+  private final MongoTemplate mongoTemplate;
+
+  @Value("${chatkeep.content-preview.length:300}")
+  private int previewLength = 300;
+
+  @Override
+  public Optional<ChatNoteDetail> findDetailById(String id) {
+    TypedAggregation<ChatNote> aggregation = newAggregation(ChatNote.class,
+        match(where("_id").is(id)), lookupMetadata(Artifact.class, "artifacts"),
+        lookupMetadata(Attachment.class, "attachments"));
+    Document result =
+        mongoTemplate.aggregate(aggregation, Document.class).getUniqueMappedResult();
+    if (result == null) {
+      return Optional.empty();
+    }
+
+    List<Artifact> artifacts = read(Artifact.class, result.remove("artifacts"));
+    List<Attachment> attachments = read(Attachment.class, result.remove("attachments"));
+    ChatNote chatNote = mongoTemplate.getConverter().read(ChatNote.class, result);
+    return Optional.of(ChatNoteDetail.builder().chatNote(chatNote).artifacts(artifacts)
+        .attachments(attachments).build());
+  }
+
+  /**
+   * Embeds the documents of the given type referencing the note in ordinal order, with a preview
+   * and the length of their content in place of the content itself. Notes are referenced by the
+   * string form of their id.
+   */
+  private AggregationOperation lookupMetadata(Class<?> type, String as) {
+    Document content = new Document("$ifNull", List.of("$content", ""));
+    Document lookup = new Document("from", mongoTemplate.getCollectionName(type))
+        .append("let", new Document("noteId", new Document("$toString", "$_id")))
+        .append("pipeline", List.of(
+            new Document("$match",
+                new Document("$expr", new Document("$eq", List.of("$chatNoteId", "$$noteId")))),
+            new Document("$sort", new Document("ordinal", 1)),
+            new Document("$set", new Document()
+                .append("contentPreview",
+                    new Document("$substrCP", List.of(content, 0, previewLength)))
+                .append("contentLength", new Document("$strLenCP", content))),
+            new Document("$project", new Document("content", 0))))
+        .append("as", as);
+    return context -> new Document("$lookup", lookup);
+  }
+
+  private <T> List<T> read(Class<T> type, Object documents) {
+    return ((List<?>) documents).stream()
+        .map(document -> mongoTemplate.getConverter().read(type, (Document) document)).toList();
+  }
+
+}
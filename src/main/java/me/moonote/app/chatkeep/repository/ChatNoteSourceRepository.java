@@ -0,0 +1,15 @@
+package me.moonote.app.chatkeep.repository;
+
+import java.util.Optional;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+import me.moonote.app.chatkeep.model.ChatNoteSource;
+
+@Repository
+public interface ChatNoteSourceRepository extends MongoRepository<ChatNoteSource, String> {
+
+  Optional<ChatNoteSource> findByChatNoteId(String chatNoteId);
+
+  void deleteByChatNoteId(String chatNoteId);
+
+}
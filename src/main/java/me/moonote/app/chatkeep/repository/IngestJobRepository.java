@@ -0,0 +1,20 @@
+package me.moonote.app.chatkeep.repository;
+
+import java.util.Optional;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+import me.moonote.app.chatkeep.model.IngestJob;
+
+@Repository
+public interface IngestJobRepository extends MongoRepository<IngestJob, String> {
+
+  /**
+   * Find a job owned by a specific user.
+   *
+   * @param id Job ID
+   * @param userId User ID
+   * @return Optional IngestJob if found
+   */
+  Optional<IngestJob> findByIdAndUserId(String id, String userId);
+
+}
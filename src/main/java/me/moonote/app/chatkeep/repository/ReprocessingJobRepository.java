@@ -0,0 +1,13 @@
+package me.moonote.app.chatkeep.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+import me.moonote.app.chatkeep.model.ReprocessingJob;
+import me.moonote.app.chatkeep.model.ReprocessingJobStatus;
+
+@Repository
+public interface ReprocessingJobRepository extends MongoRepository<ReprocessingJob, String> {
+
+  boolean existsByStatus(ReprocessingJobStatus status);
+
+}
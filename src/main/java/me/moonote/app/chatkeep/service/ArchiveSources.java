@@ -0,0 +1,86 @@
+package me.moonote.app.chatkeep.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import me.moonote.app.chatkeep.model.ChatNoteSource;
+
+/**
+ * Compresses archive sources for storage and restores them for reprocessing.
+ */
+final class ArchiveSources {
+
+  private static final int CHUNK_SIZE = 8192;
+
+  private ArchiveSources() {}
+
+  /**
+   * Gzips the UTF-8 encoding of the text. Large texts, e.g. memory-mapped uploads, are encoded in
+   * chunks instead of being copied to one string.
+   *
+   * @return the source, to be assigned to its chat note
+   */
+  static ChatNoteSource compress(CharSequence text) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, text.length() / 4));
+    long[] originalSize = new long[1];
+    try (Writer writer = new OutputStreamWriter(
+        new CountingOutputStream(new GZIPOutputStream(bytes, CHUNK_SIZE), originalSize),
+        StandardCharsets.UTF_8)) {
+      for (int from = 0; from < text.length(); from += CHUNK_SIZE) {
+        writer.append(text, from, Math.min(from + CHUNK_SIZE, text.length()));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not compress archive source", e);
+    }
+    return ChatNoteSource.builder().content(bytes.toByteArray()).originalSize(originalSize[0])
+        .build();
+  }
+
+  static String decompress(ChatNoteSource source) {
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(source.getContent()))) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(
+          "Could not decompress source of chat note " + source.getChatNoteId(), e);
+    }
+  }
+
+  /**
+   * A copy of the source for another chat note
+   */
+  static ChatNoteSource copy(ChatNoteSource source, String chatNoteId) {
+    return ChatNoteSource.builder().chatNoteId(chatNoteId).content(source.getContent())
+        .originalSize(source.getOriginalSize()).build();
+  }
+
+  private static final class CountingOutputStream extends FilterOutputStream {
+    private final long[] count;
+
+    CountingOutputStream(OutputStream out, long[] count) {
+      super(out);
+      this.count = count;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count[0]++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count[0] += len;
+    }
+  }
+
+}
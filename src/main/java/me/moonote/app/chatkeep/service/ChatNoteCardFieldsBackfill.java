@@ -0,0 +1,88 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import me.moonote.app.chatkeep.mapper.ChatNoteMapper;
+import me.moonote.app.chatkeep.model.ChatNote;
+
+/**
+ * Computes the content preview and word count of chat notes stored before they were kept on the
+ * note.
+ *
+ * Notes are read in batches with their summary only, and the fields are set with one bulk write
+ * per batch. The writes leave {@code updatedAt} alone, so cached content and ETags stay valid.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+class ChatNoteCardFieldsBackfill {
+
+  private final MongoTemplate mongoTemplate;
+  private final ChatNoteMapper mapper;
+
+  @Value("${chatkeep.card-backfill.batch-size:200}")
+  private int batchSize = 200;
+
+  /**
+   * Runs in the background to keep startup independent of MongoDB.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  void backfill() {
+    Thread.ofVirtual().name("card-fields-backfill").start(() -> {
+      try {
+        int notes = backfillAll();
+        if (notes > 0) {
+          log.info("Computed content previews and word counts of {} chat notes", notes);
+        }
+      } catch (Exception e) {
+        log.warn("Could not compute content previews and word counts: {}", e.getMessage());
+      }
+    });
+  }
+
+  /**
+   * @return the number of chat notes that got their card fields
+   */
+  int backfillAll() {
+    int total = 0;
+    for (int updated = backfillBatch(); updated > 0; updated = backfillBatch()) {
+      total += updated;
+    }
+    return total;
+  }
+
+  /**
+   * Notes that got their fields no longer match, so each batch picks up where the last one ended.
+   *
+   * @return the number of chat notes updated in this batch
+   */
+  int backfillBatch() {
+    Query missing = query(where("wordCount").exists(false)).limit(batchSize);
+    missing.fields().include("summary");
+    List<ChatNote> notes = mongoTemplate.find(missing, ChatNote.class);
+    if (notes.isEmpty()) return 0;
+
+    BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, ChatNote.class);
+    for (ChatNote note : notes) {
+      mapper.updateDerivedFields(note);
+      bulk.updateOne(query(where("_id").is(note.getId())),
+          new Update().set("contentPreview", note.getContentPreview())
+              .set("wordCount", note.getWordCount()));
+    }
+    bulk.execute();
+    return notes.size();
+  }
+
+}
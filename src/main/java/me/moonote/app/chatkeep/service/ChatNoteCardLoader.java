@@ -0,0 +1,88 @@
+package me.moonote.app.chatkeep.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+import lombok.RequiredArgsConstructor;
+import me.moonote.app.chatkeep.dto.response.ChatNoteResponse;
+import me.moonote.app.chatkeep.dto.response.LabelResponse;
+import me.moonote.app.chatkeep.mapper.LabelMapper;
+import me.moonote.app.chatkeep.model.ChatNoteCard;
+import me.moonote.app.chatkeep.model.Label;
+import me.moonote.app.chatkeep.repository.ChatNoteRepository;
+import me.moonote.app.chatkeep.repository.LabelRepository;
+
+/**
+ * Loads the chat note cards and labels a fragment renders, once per request.
+ *
+ * Label IDs are gathered first and resolved together on the first read, with one {@code $in} query
+ * however many cards the fragment holds; each card is read at most once. Loaded values are kept until the end of the
+ * request, so anything read after a write must not have been loaded before it.
+ */
+@Component
+@RequestScope
+@RequiredArgsConstructor
+public class ChatNoteCardLoader {
+
+  private final ChatNoteRepository chatNoteRepository;
+  private final LabelRepository labelRepository;
+  private final LabelMapper labelMapper;
+
+  private final Map<String, ChatNoteCard> cards = new HashMap<>();
+  private final Map<String, LabelResponse> labels = new HashMap<>();
+  private final Set<String> loadedCardIds = new LinkedHashSet<>();
+  private final Set<String> loadedLabelIds = new LinkedHashSet<>();
+  private final Set<String> pendingLabelIds = new LinkedHashSet<>();
+
+  /**
+   * Label IDs to load with the next labels that are read
+   */
+  public ChatNoteCardLoader preloadLabels(Collection<String> ids) {
+    ids.stream().filter(Objects::nonNull).filter(id -> !loadedLabelIds.contains(id))
+        .forEach(pendingLabelIds::add);
+    return this;
+  }
+
+  public Optional<ChatNoteCard> card(String id) {
+    if (loadedCardIds.add(id)) {
+      chatNoteRepository.findCardsByIdIn(List.of(id))
+          .forEach(card -> cards.put(card.getId(), card));
+    }
+    return Optional.ofNullable(cards.get(id));
+  }
+
+  /**
+   * Labels of the given IDs that still exist, in the same order
+   */
+  public List<LabelResponse> labels(List<String> ids) {
+    if (ids == null || ids.isEmpty()) return List.of();
+
+    preloadLabels(ids);
+    if (!pendingLabelIds.isEmpty()) {
+      for (Label label : labelRepository.findAllById(pendingLabelIds)) {
+        labels.put(label.getId(), labelMapper.toResponse(label));
+      }
+      loadedLabelIds.addAll(pendingLabelIds);
+      pendingLabelIds.clear();
+    }
+    return ids.stream().map(labels::get).filter(Objects::nonNull).toList();
+  }
+
+  /**
+   * Populate the labels of every note, loading all of them with one query
+   */
+  public List<ChatNoteResponse> withLabels(List<ChatNoteResponse> notes) {
+    notes.stream().map(ChatNoteResponse::getLabelIds).filter(Objects::nonNull)
+        .forEach(this::preloadLabels);
+    notes.forEach(note -> note.setLabels(labels(note.getLabelIds())));
+    return notes;
+  }
+
+}
@@ -0,0 +1,31 @@
+package me.moonote.app.chatkeep.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Generated conversation content of recently viewed chat notes, keyed by note ID. The full markdown
+ * is only generated on explicit request and streamed on download, so it is not cached.
+ * {@link ChatNoteService} also invalidates entries explicitly on every update.
+ */
+@Component
+class ChatNoteContentCache extends VersionedTextCache {
+
+  @Value("${chatkeep.content-cache.max-entries:500}")
+  private int maxEntries = 500;
+
+  @Value("${chatkeep.content-cache.max-size:64MB}")
+  private DataSize maxSize = DataSize.ofMegabytes(64);
+
+  @Override
+  int maxEntries() {
+    return maxEntries;
+  }
+
+  @Override
+  DataSize maxSize() {
+    return maxSize;
+  }
+
+}
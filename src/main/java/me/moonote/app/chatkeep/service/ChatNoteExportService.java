@@ -0,0 +1,222 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import me.moonote.app.chatkeep.model.Artifact;
+import me.moonote.app.chatkeep.model.Attachment;
+import me.moonote.app.chatkeep.model.ChatNote;
+import me.moonote.app.chatkeep.repository.ArtifactRepository;
+import me.moonote.app.chatkeep.repository.AttachmentRepository;
+import me.moonote.app.chatkeep.repository.ChatNoteRepository;
+
+/**
+ * Exports the workspace of a user as a ZIP archive written straight to a stream.
+ *
+ * Notes are read from a single cursor. Their artifacts and attachments are read per batch of notes,
+ * from one cursor each sorted by note, and written as they arrive. Only a batch of notes and a
+ * single artifact or attachment are held in memory, whatever the size of the workspace. Every
+ * cursor is closed when writing fails, e.g. because the client disconnected.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatNoteExportService {
+
+  private final ChatNoteRepository chatNoteRepository;
+  private final ArtifactRepository artifactRepository;
+  private final AttachmentRepository attachmentRepository;
+  private final ChatNoteMarkdownGenerator markdownGenerator;
+  private final MongoTemplate mongoTemplate;
+
+  @Value("${chatkeep.export.batch-size:50}")
+  private int batchSize = 50;
+
+  /**
+   * Write the markdown archive of every note of the user outside the trash as a ZIP entry. With
+   * documents, the raw documents of the notes, artifacts and attachments are added as NDJSON
+   * entries, one per collection. The stream is left open.
+   *
+   * @return the number of exported notes
+   */
+  public int exportWorkspace(String userId, boolean includeDocuments, OutputStream outputStream)
+      throws IOException {
+    ZipOutputStream zip = new ZipOutputStream(outputStream, StandardCharsets.UTF_8);
+    Writer writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+
+    int exported = 0;
+    try (Stream<ChatNote> notes =
+        chatNoteRepository.streamByUserIdAndIsTrashedFalseOrderByIsArchivedAscCreatedAtAsc(userId)) {
+      List<ChatNote> batch = new ArrayList<>(batchSize);
+      for (Iterator<ChatNote> it = notes.iterator(); it.hasNext();) {
+        batch.add(it.next());
+        if (batch.size() == batchSize || !it.hasNext()) {
+          writeMarkdownEntries(batch, zip, writer);
+          exported += batch.size();
+          batch.clear();
+        }
+      }
+    }
+
+    if (includeDocuments) {
+      writeDocumentEntries(userId, zip, writer);
+    }
+
+    writer.flush();
+    zip.finish();
+    log.info("Exported {} chat notes of user {}", exported, userId);
+    return exported;
+  }
+
+  /**
+   * The batch is written in the order of note IDs, the order its artifacts and attachments are read
+   * in, so each cursor is consumed in step with the notes.
+   */
+  private void writeMarkdownEntries(List<ChatNote> batch, ZipOutputStream zip, Writer writer)
+      throws IOException {
+    batch.sort(Comparator.comparing(ChatNote::getId));
+    List<String> chatNoteIds = batch.stream().map(ChatNote::getId).toList();
+
+    try (Stream<Artifact> artifacts = artifactRepository.streamByChatNoteIdIn(chatNoteIds);
+        Stream<Attachment> attachments =
+            attachmentRepository.streamByChatNoteIdIn(chatNoteIds)) {
+      GroupedByNote<Artifact> artifactsByNote =
+          new GroupedByNote<>(artifacts.iterator(), Artifact::getChatNoteId);
+      GroupedByNote<Attachment> attachmentsByNote =
+          new GroupedByNote<>(attachments.iterator(), Attachment::getChatNoteId);
+
+      for (ChatNote chatNote : batch) {
+        zip.putNextEntry(new ZipEntry("notes/" + entryName(chatNote) + ".md"));
+        markdownGenerator.writeMarkdown(chatNote, artifactsByNote.of(chatNote.getId()),
+            attachmentsByNote.of(chatNote.getId()), writer);
+        closeEntry(zip, writer);
+      }
+    }
+  }
+
+  /**
+   * Raw documents as relaxed extended JSON, one per line. Artifacts and attachments are read for
+   * batches of note IDs, which takes another pass over the notes of the user for each.
+   */
+  private void writeDocumentEntries(String userId, ZipOutputStream zip, Writer writer)
+      throws IOException {
+    String notesCollection = mongoTemplate.getCollectionName(ChatNote.class);
+    putDocumentsEntry(ChatNote.class, zip);
+    appendDocuments(notesCollection, notesOf(userId), writer);
+    closeEntry(zip, writer);
+
+    for (Class<?> type : List.of(Artifact.class, Attachment.class)) {
+      putDocumentsEntry(type, zip);
+      Query noteIds = notesOf(userId);
+      noteIds.fields().include("_id");
+      try (Stream<Document> ids = mongoTemplate.stream(noteIds, Document.class, notesCollection)) {
+        List<String> batch = new ArrayList<>(batchSize);
+        for (Iterator<Document> it = ids.iterator(); it.hasNext();) {
+          batch.add(it.next().get("_id").toString());
+          if (batch.size() == batchSize || !it.hasNext()) {
+            appendDocuments(mongoTemplate.getCollectionName(type),
+                query(where("chatNoteId").in(batch)).with(Sort.by("chatNoteId", "ordinal")),
+                writer);
+            batch.clear();
+          }
+        }
+      }
+      closeEntry(zip, writer);
+    }
+  }
+
+  private static Query notesOf(String userId) {
+    return query(where("userId").is(userId).and("isTrashed").is(false))
+        .with(Sort.by("isArchived", "createdAt"));
+  }
+
+  private void putDocumentsEntry(Class<?> type, ZipOutputStream zip) throws IOException {
+    zip.putNextEntry(
+        new ZipEntry("documents/" + mongoTemplate.getCollectionName(type) + ".ndjson"));
+  }
+
+  private static void closeEntry(ZipOutputStream zip, Writer writer) throws IOException {
+    writer.flush();
+    zip.closeEntry();
+  }
+
+  private void appendDocuments(String collection, Query query, Writer writer) throws IOException {
+    try (Stream<Document> documents = mongoTemplate.stream(query, Document.class, collection)) {
+      for (Iterator<Document> it = documents.iterator(); it.hasNext();) {
+        writer.append(it.next().toJson()).append('\n');
+      }
+    }
+  }
+
+  /**
+   * Safe file name from the title, like single downloads, made unique by the note ID
+   */
+  private static String entryName(ChatNote chatNote) {
+    String title = chatNote.getTitle() == null ? "" : chatNote.getTitle();
+    return title.replaceAll("[^a-zA-Z0-9-]", "_") + "-" + chatNote.getId();
+  }
+
+  /**
+   * Splits a cursor sorted by chat note ID into the items of each note. Notes must be asked for in
+   * the same order; items of notes that were skipped are dropped.
+   */
+  static final class GroupedByNote<T> {
+    private final Iterator<T> items;
+    private final Function<T, String> chatNoteId;
+    private T pending;
+
+    GroupedByNote(Iterator<T> items, Function<T, String> chatNoteId) {
+      this.items = items;
+      this.chatNoteId = chatNoteId;
+    }
+
+    Iterator<T> of(String id) {
+      return new Iterator<>() {
+        @Override
+        public boolean hasNext() {
+          while (pending == null || chatNoteId.apply(pending).compareTo(id) < 0) {
+            if (!items.hasNext()) {
+              pending = null;
+              return false;
+            }
+            pending = items.next();
+          }
+          return chatNoteId.apply(pending).equals(id);
+        }
+
+        @Override
+        public T next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          T item = pending;
+          pending = null;
+          return item;
+        }
+      };
+    }
+  }
+
+}
@@ -0,0 +1,485 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import com.mongodb.bulk.BulkWriteError;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import me.moonote.app.chatkeep.dto.ChatNoteDto;
+import me.moonote.app.chatkeep.dto.response.BulkImportResponse;
+import me.moonote.app.chatkeep.dto.response.BulkImportResult;
+import me.moonote.app.chatkeep.mapper.ChatNoteMapper;
+import me.moonote.app.chatkeep.model.Artifact;
+import me.moonote.app.chatkeep.model.Attachment;
+import me.moonote.app.chatkeep.model.ChatNote;
+import me.moonote.app.chatkeep.model.ChatNoteSource;
+import me.moonote.app.chatkeep.model.IngestJobStatus;
+import me.moonote.app.chatkeep.repository.ChatNoteRepository;
+import me.moonote.app.chatkeep.validation.ChatNoteValidationResult;
+import me.moonote.app.chatkeep.validation.InvalidChatNoteException;
+
+/**
+ * Imports many archives at once, from a ZIP of markdown files or from one markdown file holding
+ * several archives that each end with {@code _End of archived conversation_}.
+ *
+ * Archives are parsed in parallel on virtual threads, bounded by the configured parallelism, and
+ * stored with one unordered bulk insert per collection and batch. A bad archive only fails its own
+ * result. Archives the user already uploaded, or that repeat an earlier archive of the import, are
+ * not parsed or stored again; their result points at the existing note.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatNoteImportService {
+
+  private static final Pattern ARCHIVE_END =
+      Pattern.compile(Pattern.quote(MarkdownArchiveIndex.END_MARKER));
+
+  private final MarkdownChatNotePreprocessor preprocessor;
+  private final MarkdownUploadReader uploadReader;
+  private final ChatNoteMapper mapper;
+  private final MongoTemplate mongoTemplate;
+  private final ChatNoteRepository repository;
+
+  /**
+   * Size limit of a multi-archive markdown file. ZIP entries use the single upload limit.
+   */
+  @Value("${chatkeep.import.max-size:50MB}")
+  private DataSize maxSize = DataSize.ofMegabytes(50);
+
+  @Value("${chatkeep.import.max-archives:500}")
+  private int maxArchives = 500;
+
+  /**
+   * Number of archives parsed at the same time.
+   */
+  @Value("${chatkeep.import.parallelism:4}")
+  private int parallelism = 4;
+
+  /**
+   * Number of chat notes stored per bulk write.
+   */
+  @Value("${chatkeep.import.batch-size:100}")
+  private int batchSize = 100;
+
+  /**
+   * A parsed archive of an import, or the reason it could not be parsed.
+   */
+  static final class ParsedArchive {
+    final String source;
+    final String contentHash;
+    final ChatNoteDto chatNoteDto;
+    final ChatNoteSource compressedSource;
+    final List<String> errors;
+    final ChatNote existing; // Note the user already uploaded from the same archive
+    final boolean repeated; // Same archive as an earlier one of the import
+
+    private ParsedArchive(String source, String contentHash, ChatNoteDto chatNoteDto,
+        ChatNoteSource compressedSource, List<String> errors, ChatNote existing,
+        boolean repeated) {
+      this.source = source;
+      this.contentHash = contentHash;
+      this.chatNoteDto = chatNoteDto;
+      this.compressedSource = compressedSource;
+      this.errors = errors;
+      this.existing = existing;
+      this.repeated = repeated;
+    }
+
+    /**
+     * A parse result; the archive text is compressed for storage if it is valid
+     */
+    static ParsedArchive of(String source, String contentHash, ChatNoteValidationResult result,
+        CharSequence text) {
+      return result.isValid()
+          ? new ParsedArchive(source, contentHash, result.getChatNoteDto(),
+              ArchiveSources.compress(text), List.of(), null, false)
+          : new ParsedArchive(source, contentHash, null, null, result.getErrors(), null, false);
+    }
+
+    static ParsedArchive failed(String source, String error) {
+      return new ParsedArchive(source, null, null, null, List.of(error), null, false);
+    }
+
+    static ParsedArchive existing(String source, String contentHash, ChatNote existing) {
+      return new ParsedArchive(source, contentHash, null, null, List.of(), existing, false);
+    }
+
+    static ParsedArchive repeated(String source, String contentHash) {
+      return new ParsedArchive(source, contentHash, null, null, List.of(), null, true);
+    }
+
+    boolean isValid() {
+      return chatNoteDto != null;
+    }
+
+    boolean isDuplicate() {
+      return existing != null || repeated;
+    }
+  }
+
+  /**
+   * Import all archives of a ZIP (by file extension) or multi-archive markdown file
+   *
+   * @throws InvalidChatNoteException if a markdown file exceeds the import size limit
+   */
+  public BulkImportResponse importArchives(InputStream in, String filename, String userId)
+      throws IOException {
+    return importArchives(in, filename, userId, IngestProgressListener.NONE);
+  }
+
+  /**
+   * Import all archives, reporting when they are parsed and after each stored batch
+   */
+  public BulkImportResponse importArchives(InputStream in, String filename, String userId,
+      IngestProgressListener listener) throws IOException {
+    log.info("Processing bulk import of {} for user: {}", filename, userId);
+
+    List<ParsedArchive> parsed = parse(in, filename, contentHash -> repository
+        .findFirstByUserIdAndContentHashAndIsTrashedFalse(userId, contentHash));
+    listener.onProgress(IngestJobStatus.PARSED, parsed.size() + " archives parsed");
+
+    List<BulkImportResult> results = new ArrayList<>(parsed.size());
+    Map<String, BulkImportResult> resultsByHash = new HashMap<>();
+    for (int from = 0; from < parsed.size(); from += batchSize) {
+      int to = Math.min(from + batchSize, parsed.size());
+      results.addAll(persist(parsed.subList(from, to), userId, resultsByHash));
+      listener.onProgress(IngestJobStatus.STORING,
+          String.format("%d of %d archives processed", to, parsed.size()));
+    }
+
+    int importedCount = (int) results.stream().filter(BulkImportResult::isSuccess).count();
+    log.info("Bulk import of {} for user {}: {} of {} archives imported", filename, userId,
+        importedCount, results.size());
+
+    return BulkImportResponse.builder().totalCount(results.size()).importedCount(importedCount)
+        .failedCount(results.size() - importedCount).results(results).build();
+  }
+
+  /**
+   * Parses every archive of the input, in input order. Archives are hashed first; those found by
+   * {@code findExisting} or repeating an earlier archive are not parsed.
+   */
+  List<ParsedArchive> parse(InputStream in, String filename,
+      Function<String, Optional<ChatNote>> findExisting) throws IOException {
+    List<Future<ParsedArchive>> futures = new ArrayList<>();
+    List<UploadedArchive> files = new ArrayList<>();
+    Semaphore permits = new Semaphore(parallelism);
+    ArchiveSubmitter submitter = new ArchiveSubmitter(findExisting, permits, futures);
+
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      if (filename.toLowerCase(Locale.ROOT).endsWith(".zip")) {
+        ZipInputStream zip = new ZipInputStream(in, StandardCharsets.UTF_8);
+        for (ZipEntry entry; (entry = zip.getNextEntry()) != null;) {
+          String name = entry.getName();
+          if (entry.isDirectory() || isHidden(name)) {
+            continue;
+          }
+          if (!isMarkdown(name)) {
+            futures.add(CompletableFuture.completedFuture(
+                ParsedArchive.failed(name, "Only .md or .markdown files are allowed")));
+            continue;
+          }
+          if (futures.size() >= maxArchives) {
+            futures.add(CompletableFuture.completedFuture(skipped(name)));
+            continue;
+          }
+
+          UploadedArchive file;
+          try {
+            file = uploadReader.read(zip);
+          } catch (InvalidChatNoteException e) {
+            futures.add(
+                CompletableFuture.completedFuture(ParsedArchive.failed(name, e.getMessage())));
+            continue;
+          }
+          files.add(file);
+          submitter.submit(file, name, executor);
+        }
+      } else {
+        UploadedArchive file = uploadReader.read(in, maxSize);
+        files.add(file);
+        submitter.submit(file, filename, executor);
+      }
+    } finally {
+      // Closing the executor above waited for all parse tasks
+      files.forEach(UploadedArchive::close);
+    }
+
+    return futures.stream().map(Future::resultNow).toList();
+  }
+
+  /**
+   * Submits the parse tasks of an import, remembering the hashes seen so far.
+   */
+  private final class ArchiveSubmitter {
+    private final Function<String, Optional<ChatNote>> findExisting;
+    private final Semaphore permits;
+    private final List<Future<ParsedArchive>> futures;
+    private final Set<String> seenHashes = new HashSet<>();
+
+    private ArchiveSubmitter(Function<String, Optional<ChatNote>> findExisting,
+        Semaphore permits, List<Future<ParsedArchive>> futures) {
+      this.findExisting = findExisting;
+      this.permits = permits;
+      this.futures = futures;
+    }
+
+    /**
+     * Splits a file into its archives and submits one parse task per archive. Blocks while all
+     * permits are taken, so reading never runs far ahead of parsing.
+     */
+    void submit(UploadedArchive file, String source, ExecutorService executor)
+        throws IOException {
+      List<CharSequence> archives = split(file.text());
+      for (int i = 0; i < archives.size(); i++) {
+        String name = archives.size() == 1 ? source : source + "#" + (i + 1);
+        if (futures.size() >= maxArchives) {
+          futures.add(CompletableFuture.completedFuture(skipped(name)));
+          continue;
+        }
+
+        CharSequence archive = archives.get(i);
+        String contentHash;
+        try {
+          contentHash = preprocessor.contentHash(archive);
+        } catch (InvalidChatNoteException e) {
+          futures.add(
+              CompletableFuture.completedFuture(ParsedArchive.failed(name, e.getMessage())));
+          continue;
+        }
+        // Hashes are checked here, in input order, so the first of repeated archives is stored
+        if (!seenHashes.add(contentHash)) {
+          futures.add(CompletableFuture.completedFuture(ParsedArchive.repeated(name, contentHash)));
+          continue;
+        }
+
+        // The counted size only applies when the file holds a single archive
+        long sizeInBytes = archives.size() == 1 ? file.sizeInBytes() : -1;
+        try {
+          permits.acquire();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Import interrupted");
+        }
+        futures.add(executor.submit(() -> {
+          try {
+            return findExisting.apply(contentHash)
+                .map(existing -> ParsedArchive.existing(name, contentHash, existing))
+                .orElseGet(() -> ParsedArchive.of(name, contentHash,
+                    preprocessor.preprocess(archive, sizeInBytes), archive));
+          } finally {
+            permits.release();
+          }
+        }));
+      }
+    }
+  }
+
+  /**
+   * Splits the text after every end marker. Trailing text after the last marker is only kept if
+   * it is not blank.
+   */
+  static List<CharSequence> split(CharSequence text) {
+    List<CharSequence> archives = new ArrayList<>();
+    Matcher matcher = ARCHIVE_END.matcher(text);
+    int from = 0;
+    while (matcher.find()) {
+      archives.add(text.subSequence(from, matcher.end()));
+      from = matcher.end();
+    }
+    for (int i = from; i < text.length(); i++) {
+      if (!Character.isWhitespace(text.charAt(i))) {
+        archives.add(text.subSequence(from, text.length()));
+        break;
+      }
+    }
+    return archives;
+  }
+
+  private ParsedArchive skipped(String source) {
+    return ParsedArchive.failed(source,
+        "Skipped: an import may contain at most " + maxArchives + " archives");
+  }
+
+  private static boolean isMarkdown(String name) {
+    String lower = name.toLowerCase(Locale.ROOT);
+    return lower.endsWith(".md") || lower.endsWith(".markdown");
+  }
+
+  /**
+   * Skips metadata that archivers add, e.g. {@code __MACOSX/} and dot files.
+   */
+  private static boolean isHidden(String name) {
+    String basename = name.substring(name.lastIndexOf('/') + 1);
+    return name.startsWith("__MACOSX/") || basename.startsWith(".");
+  }
+
+  /**
+   * Stores a batch of parsed archives: chat notes first, then their artifacts, attachments and
+   * sources. A chat note whose artifacts, attachments or source could not be stored is removed
+   * again. Duplicates
+   * resolve to the existing note, or to the result of the first archive with the same hash.
+   */
+  private List<BulkImportResult> persist(List<ParsedArchive> batch, String userId,
+      Map<String, BulkImportResult> resultsByHash) {
+    BulkImportResult[] results = new BulkImportResult[batch.size()];
+    List<ChatNote> notes = new ArrayList<>();
+    List<Integer> notePositions = new ArrayList<>();
+    Instant now = Instant.now();
+
+    for (int i = 0; i < batch.size(); i++) {
+      ParsedArchive archive = batch.get(i);
+      if (archive.existing != null) {
+        results[i] = duplicate(archive.source, archive.existing.getId(),
+            archive.existing.getTitle());
+        continue;
+      }
+      if (archive.repeated) {
+        continue; // Resolved once the batch is stored
+      }
+      if (!archive.isValid()) {
+        results[i] = failure(archive.source, archive.errors);
+        continue;
+      }
+      // Ids are assigned up front so artifacts and attachments can reference them in bulk
+      ChatNote note = mapper.toEntity(archive.chatNoteDto, userId);
+      note.setId(new ObjectId().toHexString());
+      note.setContentHash(archive.contentHash);
+      note.setCreatedAt(now);
+      note.setUpdatedAt(now);
+      notes.add(note);
+      notePositions.add(i);
+    }
+
+    Map<String, String> failedNotes = new HashMap<>();
+    insertUnordered(ChatNote.class, notes)
+        .forEach((index, error) -> failedNotes.put(notes.get(index).getId(), error));
+
+    List<Artifact> artifacts = new ArrayList<>();
+    List<Attachment> attachments = new ArrayList<>();
+    List<ChatNoteSource> sources = new ArrayList<>();
+    for (int n = 0; n < notes.size(); n++) {
+      String noteId = notes.get(n).getId();
+      if (!failedNotes.containsKey(noteId)) {
+        ParsedArchive archive = batch.get(notePositions.get(n));
+        artifacts.addAll(mapper.toArtifacts(archive.chatNoteDto.getArtifacts(), noteId));
+        attachments.addAll(mapper.toAttachments(archive.chatNoteDto.getAttachments(), noteId));
+        archive.compressedSource.setChatNoteId(noteId);
+        sources.add(archive.compressedSource);
+      }
+    }
+
+    Map<String, String> incompleteNotes = new HashMap<>();
+    insertUnordered(Artifact.class, artifacts).forEach(
+        (index, error) -> incompleteNotes.putIfAbsent(artifacts.get(index).getChatNoteId(), error));
+    insertUnordered(Attachment.class, attachments).forEach((index, error) -> incompleteNotes
+        .putIfAbsent(attachments.get(index).getChatNoteId(), error));
+    insertUnordered(ChatNoteSource.class, sources).forEach(
+        (index, error) -> incompleteNotes.putIfAbsent(sources.get(index).getChatNoteId(), error));
+    if (!incompleteNotes.isEmpty()) {
+      removeNotes(List.copyOf(incompleteNotes.keySet()));
+      failedNotes.putAll(incompleteNotes);
+    }
+
+    for (int n = 0; n < notes.size(); n++) {
+      ChatNote note = notes.get(n);
+      int position = notePositions.get(n);
+      String error = failedNotes.get(note.getId());
+      results[position] = error != null
+          ? failure(batch.get(position).source, List.of("Could not store chat note: " + error))
+          : BulkImportResult.builder().source(batch.get(position).source).success(true)
+              .chatNoteId(note.getId()).title(note.getTitle()).errors(List.of()).build();
+    }
+
+    for (int i = 0; i < batch.size(); i++) {
+      ParsedArchive archive = batch.get(i);
+      if (archive.contentHash == null) {
+        continue;
+      }
+      if (!archive.repeated) {
+        resultsByHash.putIfAbsent(archive.contentHash, results[i]);
+        continue;
+      }
+      BulkImportResult first = resultsByHash.get(archive.contentHash);
+      results[i] = first != null && first.isSuccess()
+          ? duplicate(archive.source, first.getChatNoteId(), first.getTitle())
+          : failure(archive.source, List.of("Same archive as " + (first != null
+              ? first.getSource() : "an earlier archive") + ", which could not be imported"));
+    }
+
+    log.info("Stored {} chat notes, {} artifacts and {} attachments of an import batch",
+        notes.size() - failedNotes.size(), artifacts.size(), attachments.size());
+    return List.of(results);
+  }
+
+  /**
+   * Inserts the documents with one unordered bulk write.
+   *
+   * @return the error message of every document that failed, by its index
+   */
+  private Map<Integer, String> insertUnordered(Class<?> type, List<?> documents) {
+    if (documents.isEmpty()) {
+      return Map.of();
+    }
+    try {
+      mongoTemplate.bulkOps(BulkMode.UNORDERED, type).insert(documents).execute();
+      return Map.of();
+    } catch (BulkOperationException e) {
+      Map<Integer, String> errors = new HashMap<>();
+      for (BulkWriteError error : e.getErrors()) {
+        errors.put(error.getIndex(), error.getMessage());
+      }
+      log.warn("{} of {} {} documents failed to insert", errors.size(), documents.size(),
+          type.getSimpleName());
+      return errors;
+    }
+  }
+
+  private void removeNotes(List<String> chatNoteIds) {
+    mongoTemplate.remove(query(where("chatNoteId").in(chatNoteIds)), Artifact.class);
+    mongoTemplate.remove(query(where("chatNoteId").in(chatNoteIds)), Attachment.class);
+    mongoTemplate.remove(query(where("chatNoteId").in(chatNoteIds)), ChatNoteSource.class);
+    mongoTemplate.remove(query(where("id").in(chatNoteIds)), ChatNote.class);
+  }
+
+  private static BulkImportResult duplicate(String source, String chatNoteId, String title) {
+    return BulkImportResult.builder().source(source).success(true).duplicate(true)
+        .chatNoteId(chatNoteId).title(title).errors(List.of()).build();
+  }
+
+  private static BulkImportResult failure(String source, List<String> errors) {
+    return BulkImportResult.builder().source(source).success(false).errors(errors).build();
+  }
+
+}
@@ -1,12 +1,18 @@
 package me.moonote.app.chatkeep.service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.springframework.stereotype.Service;
 import lombok.RequiredArgsConstructor;
 import me.moonote.app.chatkeep.model.Artifact;
 import me.moonote.app.chatkeep.model.Attachment;
 import me.moonote.app.chatkeep.model.ChatNote;
+import me.moonote.app.chatkeep.model.ConversationSummary;
 import me.moonote.app.chatkeep.model.FollowUpSection;
 import me.moonote.app.chatkeep.model.InsightsSection;
 import me.moonote.app.chatkeep.model.QuerySection;
@@ -93,6 +99,18 @@ public class ChatNoteMarkdownGenerator {
         - Treat the archived information as established context, not as a question
         - Artifacts represent finalized work that can be built upon or referenced""";
 
+  /**
+   * The instructions as they appear in the YAML frontmatter, indented once instead of per call
+   */
+  private static final String INSTRUCTIONS_YAML = INSTRUCTIONS_FOR_AI.lines()
+      .map(line -> "  " + line + "\n").collect(Collectors.joining());
+
+  /**
+   * Room for the headers, metadata and markers around the stored text of a note
+   */
+  private static final int SECTIONS_CAPACITY = INSTRUCTIONS_YAML.length() + 2048;
+  private static final int ITEM_CAPACITY = 256;
+
   /**
    * Generates complete archive markdown from a ChatNote entity.
    *
@@ -107,45 +125,81 @@ public class ChatNoteMarkdownGenerator {
       throw new IllegalArgumentException("ChatNote cannot be null");
     }
 
-    StringBuilder markdown = new StringBuilder();
+    // Artifacts and attachments (fetch from separate collections)
+    List<Artifact> artifacts =
+        artifactRepository.findByChatNoteIdOrderByOrdinal(chatNote.getId());
+    List<Attachment> attachments =
+        attachmentRepository.findByChatNoteIdOrderByOrdinal(chatNote.getId());
 
-    // 1. YAML Frontmatter
-    markdown.append(generateYamlFrontmatter(chatNote));
+    // Sized from the stored text, so every section is written once into a single buffer
+    int capacity = SECTIONS_CAPACITY + summaryLength(chatNote);
+    for (Artifact artifact : artifacts) {
+      capacity += ITEM_CAPACITY + length(artifact.getContent());
+    }
+    for (Attachment attachment : attachments) {
+      capacity += ITEM_CAPACITY + length(attachment.getContent());
+    }
 
-    // 2. Title and Metadata
-    markdown.append(generateTitleAndMetadata(chatNote));
+    StringBuilder markdown = new StringBuilder(capacity);
+    try {
+      writeMarkdown(chatNote, artifacts.iterator(), attachments.iterator(), markdown);
+    } catch (IOException e) {
+      // A StringBuilder never throws
+      throw new UncheckedIOException(e);
+    }
+    return markdown.toString();
+  }
 
-    // 3. Initial Query
-    markdown.append(generateInitialQuery(chatNote.getSummary().getInitialQuery()));
+  /**
+   * Writes complete archive markdown from a ChatNote entity, with the same content as
+   * {@link #generateMarkdown(ChatNote)}.
+   *
+   * Artifacts and attachments are read from a database cursor and written one at a time, so only
+   * a single artifact or attachment is held in memory at once.
+   *
+   * @param chatNote The ChatNote entity to convert to markdown
+   * @param out Destination of the markdown, usually a buffered writer of a response
+   */
+  public void writeMarkdown(ChatNote chatNote, Appendable out) throws IOException {
+    if (chatNote == null) {
+      throw new IllegalArgumentException("ChatNote cannot be null");
+    }
 
-    // 4. Key Insights
-    markdown.append(generateKeyInsights(chatNote.getSummary().getKeyInsights()));
+    try (Stream<Artifact> artifacts =
+        artifactRepository.streamByChatNoteIdOrderByOrdinal(chatNote.getId());
+        Stream<Attachment> attachments =
+            attachmentRepository.streamByChatNoteIdOrderByOrdinal(chatNote.getId())) {
+      writeMarkdown(chatNote, artifacts.iterator(), attachments.iterator(), out);
+    }
+  }
 
-    // 5. Follow-up Explorations
-    markdown.append(generateFollowUpExplorations(chatNote.getSummary().getFollowUpExplorations()));
+  /**
+   * Writes complete archive markdown with artifacts and attachments the caller already loaded,
+   * each iterated once in archive order.
+   */
+  void writeMarkdown(ChatNote chatNote, Iterator<Artifact> artifacts,
+      Iterator<Attachment> attachments, Appendable out) throws IOException {
+    // 1. YAML Frontmatter
+    writeYamlFrontmatter(chatNote, out);
 
-    // 6. References
-    markdown.append(generateReferences(chatNote.getSummary().getReferences()));
+    // 2-6. Title, metadata and summary sections
+    writeConversationContent(chatNote, out);
 
-    // 7. Artifacts (fetch from separate collection)
-    List<Artifact> artifacts = artifactRepository.findByChatNoteIdOrderByCreatedAtDesc(chatNote.getId());
-    markdown.append(generateArtifacts(artifacts));
+    // 7. Artifacts
+    writeArtifacts(artifacts, out);
 
-    // 8. Attachments (fetch from separate collection)
-    List<Attachment> attachments = attachmentRepository.findByChatNoteIdOrderByCreatedAtDesc(chatNote.getId());
-    markdown.append(generateAttachments(attachments));
+    // 8. Attachments
+    writeAttachments(attachments, out);
 
     // 9. Workarounds
-    markdown.append(generateWorkarounds(chatNote.getWorkarounds()));
+    writeWorkarounds(chatNote.getWorkarounds(), out);
 
     // 10. Archive Metadata
-    markdown.append(generateArchiveMetadata(chatNote));
+    writeArchiveMetadata(chatNote, out);
 
     // 11. End marker
-    markdown.append("\n---\n\n");
-    markdown.append("_End of archived conversation_\n");
-
-    return markdown.toString();
+    out.append("\n---\n\n");
+    out.append("_End of archived conversation_\n");
   }
 
   /**
@@ -164,81 +218,80 @@ public class ChatNoteMarkdownGenerator {
       throw new IllegalArgumentException("ChatNote cannot be null");
     }
 
-    StringBuilder markdown = new StringBuilder();
+    StringBuilder markdown = new StringBuilder(ITEM_CAPACITY * 4 + summaryLength(chatNote));
+    try {
+      writeConversationContent(chatNote, markdown);
+    } catch (IOException e) {
+      // A StringBuilder never throws
+      throw new UncheckedIOException(e);
+    }
+    return markdown.toString();
+  }
 
+  private void writeConversationContent(ChatNote chatNote, Appendable out) throws IOException {
     // 1. Title and Metadata
-    markdown.append(generateTitleAndMetadata(chatNote));
+    writeTitleAndMetadata(chatNote, out);
 
     // 2. Initial Query
-    markdown.append(generateInitialQuery(chatNote.getSummary().getInitialQuery()));
+    writeInitialQuery(chatNote.getSummary().getInitialQuery(), out);
 
     // 3. Key Insights
-    markdown.append(generateKeyInsights(chatNote.getSummary().getKeyInsights()));
+    writeKeyInsights(chatNote.getSummary().getKeyInsights(), out);
 
     // 4. Follow-up Explorations
-    markdown.append(generateFollowUpExplorations(chatNote.getSummary().getFollowUpExplorations()));
+    writeFollowUpExplorations(chatNote.getSummary().getFollowUpExplorations(), out);
 
     // 5. References
-    markdown.append(generateReferences(chatNote.getSummary().getReferences()));
-
-    return markdown.toString();
+    writeReferences(chatNote.getSummary().getReferences(), out);
   }
 
   /**
-   * Generates YAML frontmatter section.
+   * Writes YAML frontmatter section.
    */
-  private String generateYamlFrontmatter(ChatNote chatNote) {
-    StringBuilder yaml = new StringBuilder();
-
+  private void writeYamlFrontmatter(ChatNote chatNote, Appendable yaml) throws IOException {
     yaml.append("---\n");
     yaml.append("ARCHIVE_FORMAT_VERSION: ").append(chatNote.getArchiveVersion()).append("\n");
     yaml.append("ARCHIVE_TYPE: ").append(chatNote.getArchiveType()).append("\n");
-    yaml.append("CREATED_DATE: ")
-        .append(chatNote.getCreatedDate().format(DATE_FORMATTER)).append("\n");
+    yaml.append("CREATED_DATE: ");
+    DATE_FORMATTER.formatTo(chatNote.getCreatedDate(), yaml);
+    yaml.append("\n");
     yaml.append("ORIGINAL_PLATFORM: ").append(chatNote.getOriginalPlatform()).append("\n");
     yaml.append("\n");
 
     // Instructions for AI
     yaml.append("INSTRUCTIONS_FOR_AI: |\n");
-    for (String line : INSTRUCTIONS_FOR_AI.split("\n")) {
-      yaml.append("  ").append(line).append("\n");
-    }
+    yaml.append(INSTRUCTIONS_YAML);
     yaml.append("---\n\n");
-
-    return yaml.toString();
   }
 
   /**
-   * Generates title and metadata section.
+   * Writes title and metadata section.
    */
-  private String generateTitleAndMetadata(ChatNote chatNote) {
-    StringBuilder section = new StringBuilder();
-
+  private void writeTitleAndMetadata(ChatNote chatNote, Appendable section) throws IOException {
     section.append("# ").append(chatNote.getTitle()).append("\n\n");
-    section.append("**Date:** ")
-        .append(chatNote.getConversationDate().format(DATE_FORMATTER)).append("  \n");
+    section.append("**Date:** ");
+    DATE_FORMATTER.formatTo(chatNote.getConversationDate(), section);
+    section.append("  \n");
 
     // Tags
     if (chatNote.getTags() != null && !chatNote.getTags().isEmpty()) {
       section.append("**Tags:** [");
-      section.append(String.join(", ", chatNote.getTags()));
+      appendJoined(chatNote.getTags(), section);
       section.append("]\n");
     }
 
     section.append("\n---\n\n");
-
-    return section.toString();
   }
 
   /**
-   * Generates Initial Query section.
+   * Writes Initial Query section.
    */
-  private String generateInitialQuery(QuerySection initialQuery) {
+  private void writeInitialQuery(QuerySection initialQuery, Appendable section)
+      throws IOException {
     if (initialQuery == null) {
-      return "";
+      return;
     }
 
-    StringBuilder section = new StringBuilder();
     section.append("## Initial Query\n\n");
 
     if (initialQuery.getDescription() != null && !initialQuery.getDescription().isEmpty()) {
@@ -249,7 +302,7 @@ public class ChatNoteMarkdownGenerator {
     if (initialQuery.getAttachmentsReferenced() != null
         && !initialQuery.getAttachmentsReferenced().isEmpty()) {
       section.append("**Attachments referenced:** ");
-      section.append(String.join(", ", initialQuery.getAttachmentsReferenced()));
+      appendJoined(initialQuery.getAttachmentsReferenced(), section);
       section.append("\n");
     }
 
@@ -257,24 +310,22 @@ public class ChatNoteMarkdownGenerator {
     if (initialQuery.getArtifactsCreated() != null
         && !initialQuery.getArtifactsCreated().isEmpty()) {
       section.append("**Artifacts created:** ");
-      section.append(String.join(", ", initialQuery.getArtifactsCreated()));
+      appendJoined(initialQuery.getArtifactsCreated(), section);
       section.append("\n");
     }
 
     section.append("\n---\n\n");
-
-    return section.toString();
   }
 
   /**
-   * Generates Key Insights section.
+   * Writes Key Insights section.
    */
-  private String generateKeyInsights(InsightsSection keyInsights) {
+  private void writeKeyInsights(InsightsSection keyInsights, Appendable section)
+      throws IOException {
     if (keyInsights == null) {
-      return "";
+      return;
     }
 
-    StringBuilder section = new StringBuilder();
     section.append("## Key Insights\n\n");
 
     if (keyInsights.getDescription() != null && !keyInsights.getDescription().isEmpty()) {
@@ -294,31 +345,29 @@ public class ChatNoteMarkdownGenerator {
     if (keyInsights.getAttachmentsReferenced() != null
         && !keyInsights.getAttachmentsReferenced().isEmpty()) {
       section.append("**Attachments referenced:** ");
-      section.append(String.join(", ", keyInsights.getAttachmentsReferenced()));
+      appendJoined(keyInsights.getAttachmentsReferenced(), section);
       section.append("\n");
     }
 
     // Artifacts created
     if (keyInsights.getArtifactsCreated() != null && !keyInsights.getArtifactsCreated().isEmpty()) {
       section.append("**Artifacts created:** ");
-      section.append(String.join(", ", keyInsights.getArtifactsCreated()));
+      appendJoined(keyInsights.getArtifactsCreated(), section);
       section.append("\n");
     }
 
     section.append("\n---\n\n");
-
-    return section.toString();
   }
 
   /**
-   * Generates Follow-up Explorations section.
+   * Writes Follow-up Explorations section.
    */
-  private String generateFollowUpExplorations(FollowUpSection followUp) {
+  private void writeFollowUpExplorations(FollowUpSection followUp, Appendable section)
+      throws IOException {
     if (followUp == null) {
-      return "";
+      return;
     }
 
-    StringBuilder section = new StringBuilder();
     section.append("## Follow-up Explorations\n\n");
 
     if (followUp.getDescription() != null && !followUp.getDescription().isEmpty()) {
@@ -329,31 +378,29 @@ public class ChatNoteMarkdownGenerator {
     if (followUp.getAttachmentsReferenced() != null
         && !followUp.getAttachmentsReferenced().isEmpty()) {
       section.append("**Attachments referenced:** ");
-      section.append(String.join(", ", followUp.getAttachmentsReferenced()));
+      appendJoined(followUp.getAttachmentsReferenced(), section);
       section.append("\n");
     }
 
     // Artifacts created
     if (followUp.getArtifactsCreated() != null && !followUp.getArtifactsCreated().isEmpty()) {
       section.append("**Artifacts created:** ");
-      section.append(String.join(", ", followUp.getArtifactsCreated()));
+      appendJoined(followUp.getArtifactsCreated(), section);
       section.append("\n");
     }
 
     section.append("\n---\n\n");
-
-    return section.toString();
   }
 
   /**
-   * Generates References/Links section.
+   * Writes References/Links section.
    */
-  private String generateReferences(List<Reference> references) {
+  private void writeReferences(List<Reference> references, Appendable section)
+      throws IOException {
     if (references == null || references.isEmpty()) {
-      return "";
+      return;
     }
 
-    StringBuilder section = new StringBuilder();
     section.append("## References/Links\n\n");
 
     for (Reference ref : references) {
@@ -368,24 +415,23 @@ public class ChatNoteMarkdownGenerator {
     }
 
     section.append("\n---\n\n");
-
-    return section.toString();
   }
 
   /**
-   * Generates Conversation Artifacts section.
+   * Writes Conversation Artifacts section.
    */
-  private String generateArtifacts(List<Artifact> artifacts) {
-    if (artifacts == null || artifacts.isEmpty()) {
-      return "";
+  private void writeArtifacts(Iterator<Artifact> artifacts, Appendable section)
+      throws IOException {
+    if (!artifacts.hasNext()) {
+      return;
     }
 
-    StringBuilder section = new StringBuilder();
     section.append("## Conversation Artifacts\n\n");
     section.append(
         "_This section preserves the valuable outputs created during the conversation._\n\n");
 
-    for (Artifact artifact : artifacts) {
+    while (artifacts.hasNext()) {
+      Artifact artifact = artifacts.next();
       // Build artifact start marker with attributes
       section.append(":::artifact");
 
@@ -424,22 +470,21 @@ public class ChatNoteMarkdownGenerator {
     }
 
     section.append("---\n\n");
-
-    return section.toString();
   }
 
   /**
-   * Generates Attachments section.
+   * Writes Attachments section.
    */
-  private String generateAttachments(List<Attachment> attachments) {
-    if (attachments == null || attachments.isEmpty()) {
-      return "";
+  private void writeAttachments(Iterator<Attachment> attachments, Appendable section)
+      throws IOException {
+    if (!attachments.hasNext()) {
+      return;
     }
 
-    StringBuilder section = new StringBuilder();
     section.append("## Attachments\n\n");
 
-    for (Attachment attachment : attachments) {
+    while (attachments.hasNext()) {
+      Attachment attachment = attachments.next();
       section.append(":::attachment filename=\"").append(attachment.getFilename())
           .append("\"\n\n");
 
@@ -476,15 +521,13 @@ public class ChatNoteMarkdownGenerator {
     }
 
     section.append("---\n\n");
-
-    return section.toString();
   }
 
   /**
-   * Generates Workarounds Used section.
+   * Writes Workarounds Used section.
    */
-  private String generateWorkarounds(List<Workaround> workarounds) {
-    StringBuilder section = new StringBuilder();
+  private void writeWorkarounds(List<Workaround> workarounds, Appendable section)
+      throws IOException {
     section.append("## Workarounds Used\n\n");
     section.append("_This section documents any limitations encountered during archiving._\n\n");
 
@@ -519,32 +562,79 @@ public class ChatNoteMarkdownGenerator {
     }
 
     section.append("---\n\n");
-
-    return section.toString();
   }
 
   /**
-   * Generates Archive Metadata section.
+   * Writes Archive Metadata section.
    */
-  private String generateArchiveMetadata(ChatNote chatNote) {
-    StringBuilder section = new StringBuilder();
+  private void writeArchiveMetadata(ChatNote chatNote, Appendable section) throws IOException {
     section.append("## Archive Metadata\n\n");
 
-    section.append("**Original conversation date:** ")
-        .append(chatNote.getConversationDate().format(DATE_FORMATTER)).append("  \n");
-    section.append("**Archive created:** ")
-        .append(chatNote.getCreatedDate().format(DATE_FORMATTER)).append("  \n");
+    section.append("**Original conversation date:** ");
+    DATE_FORMATTER.formatTo(chatNote.getConversationDate(), section);
+    section.append("  \n");
+    section.append("**Archive created:** ");
+    DATE_FORMATTER.formatTo(chatNote.getCreatedDate(), section);
+    section.append("  \n");
     section.append("**Archive version:** ").append(chatNote.getArchiveVersion()).append("  \n");
-    section.append("**Archive completeness:** ").append(chatNote.getChatNoteCompleteness())
+    section.append("**Archive completeness:** ")
+        .append(String.valueOf(chatNote.getChatNoteCompleteness())).append("  \n");
+    section.append("**Total attachments:** ").append(String.valueOf(chatNote.getAttachmentCount()))
         .append("  \n");
-    section.append("**Total attachments:** ").append(chatNote.getAttachmentCount()).append("  \n");
-    section.append("**Total artifacts:** ").append(chatNote.getArtifactCount()).append("  \n");
-    section.append("**Attachments with workarounds:** ").append(chatNote.getWorkaroundsCount())
+    section.append("**Total artifacts:** ").append(String.valueOf(chatNote.getArtifactCount()))
         .append("  \n");
+    section.append("**Attachments with workarounds:** ")
+        .append(String.valueOf(chatNote.getWorkaroundsCount())).append("  \n");
     section.append("**Total file size:** ").append(chatNote.getTotalFileSize()).append("  \n");
 
     section.append("\n");
+  }
+
+  /**
+   * Appends the values separated by commas, like {@link String#join} without the joined copy.
+   */
+  private static void appendJoined(List<String> values, Appendable out) throws IOException {
+    for (int i = 0; i < values.size(); i++) {
+      if (i > 0) {
+        out.append(", ");
+      }
+      out.append(values.get(i));
+    }
+  }
 
-    return section.toString();
+  /**
+   * Length of the free text of the summary sections, for sizing buffers
+   */
+  private static int summaryLength(ChatNote chatNote) {
+    ConversationSummary summary = chatNote.getSummary();
+    if (summary == null) {
+      return 0;
+    }
+    int length = 0;
+    if (summary.getInitialQuery() != null) {
+      length += length(summary.getInitialQuery().getDescription());
+    }
+    if (summary.getKeyInsights() != null) {
+      length += length(summary.getKeyInsights().getDescription());
+      if (summary.getKeyInsights().getKeyPoints() != null) {
+        for (String point : summary.getKeyInsights().getKeyPoints()) {
+          length += length(point) + 3;
+        }
+      }
+    }
+    if (summary.getFollowUpExplorations() != null) {
+      length += length(summary.getFollowUpExplorations().getDescription());
+    }
+    if (summary.getReferences() != null) {
+      for (Reference ref : summary.getReferences()) {
+        length += length(ref.getUrl()) + length(ref.getDescription()) + 8;
+      }
+    }
+    return length;
+  }
+
+  private static int length(String text) {
+    return text == null ? 0 : text.length();
   }
+
 }
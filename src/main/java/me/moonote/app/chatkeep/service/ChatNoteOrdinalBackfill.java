@@ -0,0 +1,76 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.util.List;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import me.moonote.app.chatkeep.model.Artifact;
+import me.moonote.app.chatkeep.model.Attachment;
+
+/**
+ * Assigns ordinals to artifacts and attachments stored before they had one.
+ *
+ * Those were addressed by their position when ordered by {@code createdAt} descending, so they get
+ * their ordinals in that order and existing links keep pointing at the same artifact or attachment.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+class ChatNoteOrdinalBackfill {
+
+  private final MongoTemplate mongoTemplate;
+
+  /**
+   * Runs in the background to keep startup independent of MongoDB.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  void backfill() {
+    Thread.ofVirtual().name("ordinal-backfill").start(() -> {
+      try {
+        int artifactNotes = backfill(Artifact.class);
+        int attachmentNotes = backfill(Attachment.class);
+        if (artifactNotes + attachmentNotes > 0) {
+          log.info("Assigned ordinals to the artifacts of {} and the attachments of {} chat notes",
+              artifactNotes, attachmentNotes);
+        }
+      } catch (Exception e) {
+        log.warn("Could not assign artifact and attachment ordinals: {}", e.getMessage());
+      }
+    });
+  }
+
+  /**
+   * @return the number of chat notes whose documents got ordinals
+   */
+  int backfill(Class<?> type) {
+    List<String> chatNoteIds = mongoTemplate.findDistinct(query(where("ordinal").exists(false)),
+        "chatNoteId", type, String.class);
+    for (String chatNoteId : chatNoteIds) {
+      Query documents = query(where("chatNoteId").is(chatNoteId))
+          .with(Sort.by(Sort.Direction.DESC, "createdAt"));
+      documents.fields().include("_id");
+
+      BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.ORDERED, type);
+      int ordinal = 0;
+      for (Document document : mongoTemplate.find(documents, Document.class,
+          mongoTemplate.getCollectionName(type))) {
+        bulk.updateOne(query(where("_id").is(document.get("_id"))),
+            new Update().set("ordinal", ordinal++));
+      }
+      bulk.execute();
+    }
+    return chatNoteIds.size();
+  }
+
+}
@@ -0,0 +1,141 @@
+package me.moonote.app.chatkeep.service;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import lombok.extern.slf4j.Slf4j;
+import me.moonote.app.chatkeep.dto.ChatNoteDto;
+import me.moonote.app.chatkeep.model.ChatNoteSource;
+
+/**
+ * Parsed archives of upload previews, waiting to be confirmed.
+ *
+ * Entries expire after the configured TTL and can be taken once. The cache is bounded by entry
+ * count and by the approximate heap size of the cached archives; the oldest previews are dropped
+ * first when either bound is reached.
+ */
+@Slf4j
+@Component
+class ChatNotePreviewCache {
+
+  private final SecureRandom random = new SecureRandom();
+  private final Map<String, Entry> entries = new LinkedHashMap<>();
+  private long totalWeight;
+
+  Clock clock = Clock.systemUTC();
+
+  @Value("${chatkeep.preview.ttl:10m}")
+  private Duration ttl = Duration.ofMinutes(10);
+
+  @Value("${chatkeep.preview.max-entries:200}")
+  private int maxEntries = 200;
+
+  @Value("${chatkeep.preview.max-size:100MB}")
+  private DataSize maxSize = DataSize.ofMegabytes(100);
+
+  /**
+   * A cached preview with its compressed source. The weight estimates the heap held by both.
+   */
+  static final class Entry {
+    final String userId;
+    final String contentHash;
+    final ChatNoteDto chatNoteDto;
+    final ChatNoteSource source;
+    final long weight;
+    final Instant expiresAt;
+
+    private Entry(String userId, String contentHash, ChatNoteDto chatNoteDto,
+        ChatNoteSource source, long weight, Instant expiresAt) {
+      this.userId = userId;
+      this.contentHash = contentHash;
+      this.chatNoteDto = chatNoteDto;
+      this.source = source;
+      this.weight = weight;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * Caches a parsed archive of the user.
+   *
+   * @param weight approximate heap size of the archive in bytes
+   * @return the token to confirm the preview with, or null if the archive is too large to cache
+   */
+  synchronized String put(String userId, String contentHash, ChatNoteDto chatNoteDto,
+      ChatNoteSource source, long weight) {
+    if (weight > maxSize.toBytes()) {
+      log.info("Preview of {} bytes exceeds the preview cache size, not cached", weight);
+      return null;
+    }
+
+    Instant now = clock.instant();
+    removeExpired(now);
+    Iterator<Entry> oldest = entries.values().iterator();
+    while (oldest.hasNext()
+        && (entries.size() >= maxEntries || totalWeight + weight > maxSize.toBytes())) {
+      totalWeight -= oldest.next().weight;
+      oldest.remove();
+    }
+
+    String token = newToken();
+    entries.put(token, new Entry(userId, contentHash, chatNoteDto, source, weight,
+        now.plus(ttl)));
+    totalWeight += weight;
+    return token;
+  }
+
+  /**
+   * Removes and returns the preview of the user, or null if it is unknown, expired or belongs to
+   * another user.
+   */
+  synchronized Entry take(String token, String userId) {
+    Entry entry = entries.get(token);
+    if (entry == null || !entry.userId.equals(userId)) {
+      return null;
+    }
+    entries.remove(token);
+    totalWeight -= entry.weight;
+    return entry.expiresAt.isAfter(clock.instant()) ? entry : null;
+  }
+
+  /**
+   * When a preview put now would expire
+   */
+  Instant expiresAt() {
+    return clock.instant().plus(ttl);
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Entries are kept in insertion order with the same TTL, so expired ones are at the head.
+   */
+  private void removeExpired(Instant now) {
+    Iterator<Entry> oldest = entries.values().iterator();
+    while (oldest.hasNext()) {
+      Entry entry = oldest.next();
+      if (entry.expiresAt.isAfter(now)) {
+        break;
+      }
+      totalWeight -= entry.weight;
+      oldest.remove();
+    }
+  }
+
+  private String newToken() {
+    byte[] bytes = new byte[16];
+    random.nextBytes(bytes);
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+  }
+
+}
@@ -0,0 +1,514 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import me.moonote.app.chatkeep.dto.ChatNoteDto;
+import me.moonote.app.chatkeep.dto.response.ReprocessingJobResponse;
+import me.moonote.app.chatkeep.mapper.ChatNoteMapper;
+import me.moonote.app.chatkeep.model.Artifact;
+import me.moonote.app.chatkeep.model.Attachment;
+import me.moonote.app.chatkeep.model.ChatNote;
+import me.moonote.app.chatkeep.model.ChatNoteSource;
+import me.moonote.app.chatkeep.model.ConversationSummary;
+import me.moonote.app.chatkeep.model.ReprocessedNote;
+import me.moonote.app.chatkeep.model.ReprocessingJob;
+import me.moonote.app.chatkeep.model.ReprocessingJobStatus;
+import me.moonote.app.chatkeep.repository.ChatNoteRepository;
+import me.moonote.app.chatkeep.repository.ChatNoteSourceRepository;
+import me.moonote.app.chatkeep.repository.ReprocessingJobRepository;
+import me.moonote.app.chatkeep.validation.ChatNoteValidationResult;
+import me.moonote.app.chatkeep.validation.ReprocessingJobNotFoundException;
+
+/**
+ * Runs the stored source of every chat note through the current parser, so parser fixes reach
+ * notes that were uploaded before them.
+ *
+ * Sources are visited in chat note ID order, one batch at a time, each batch parsed in parallel.
+ * After every batch the job stores its checkpoint and counters, stops if it was cancelled and
+ * pauses for the configured throttle. Only notes whose parsed output changed are written, and
+ * fields the user edited keep the user's version. A dry run writes nothing and reports the notes
+ * that would change.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatNoteReprocessingService {
+
+  private final ReprocessingJobRepository jobRepository;
+  private final ChatNoteRepository chatNoteRepository;
+  private final ChatNoteSourceRepository sourceRepository;
+  private final MarkdownChatNotePreprocessor preprocessor;
+  private final ChatNoteMapper mapper;
+  private final MongoTemplate mongoTemplate;
+  private final ChatNoteContentCache contentCache;
+
+  /**
+   * Users allowed to run reprocessing jobs. Nobody is, unless configured.
+   */
+  @Value("${chatkeep.admin.user-ids:}")
+  private List<String> adminUserIds = List.of();
+
+  @Value("${chatkeep.reprocess.batch-size:50}")
+  private int batchSize = 50;
+
+  /**
+   * Number of sources of a batch parsed at the same time.
+   */
+  @Value("${chatkeep.reprocess.parallelism:4}")
+  private int parallelism = 4;
+
+  /**
+   * Pause between batches, leaving room for regular traffic.
+   */
+  @Value("${chatkeep.reprocess.throttle:250ms}")
+  private Duration throttle = Duration.ofMillis(250);
+
+  /**
+   * At most this many changed notes and errors are kept in the job report.
+   */
+  @Value("${chatkeep.reprocess.max-reported:500}")
+  private int maxReported = 500;
+
+  private final AtomicReference<String> runningJobId = new AtomicReference<>();
+
+  /**
+   * Outcome of reprocessing one note. Artifacts and attachments are null if they are unchanged.
+   */
+  private static final class Outcome {
+    final ChatNote note;
+    final List<String> changedFields;
+    final List<Artifact> artifacts;
+    final List<Attachment> attachments;
+    final String error;
+
+    private Outcome(ChatNote note, List<String> changedFields, List<Artifact> artifacts,
+        List<Attachment> attachments, String error) {
+      this.note = note;
+      this.changedFields = changedFields;
+      this.artifacts = artifacts;
+      this.attachments = attachments;
+      this.error = error;
+    }
+
+    static Outcome failed(ChatNote note, String error) {
+      return new Outcome(note, List.of(), null, null, error);
+    }
+  }
+
+  public boolean isAdmin(String userId) {
+    return userId != null && adminUserIds.contains(userId);
+  }
+
+  /**
+   * Marks jobs that were running when the server stopped as failed, so they can be resumed.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  void failInterruptedJobs() {
+    Instant startedAt = Instant.now();
+    Thread.ofVirtual().name("reprocess-recovery").start(() -> {
+      try {
+        long count = mongoTemplate.updateMulti(
+            query(where("status").is(ReprocessingJobStatus.RUNNING).and("updatedAt")
+                .lt(startedAt)),
+            new Update().set("status", ReprocessingJobStatus.FAILED)
+                .set("message", "Interrupted by a server restart. Resume to continue.")
+                .set("updatedAt", Instant.now()),
+            ReprocessingJob.class).getModifiedCount();
+        if (count > 0) {
+          log.warn("Marked {} interrupted reprocessing jobs as failed", count);
+        }
+      } catch (Exception e) {
+        log.warn("Could not check for interrupted reprocessing jobs: {}", e.getMessage());
+      }
+    });
+  }
+
+  /**
+   * Start reprocessing all stored sources.
+   *
+   * @param dryRun only report the notes that would change
+   * @throws IllegalStateException if a job is already running
+   */
+  public synchronized ReprocessingJobResponse start(boolean dryRun, String userId) {
+    checkNotRunning();
+    ReprocessingJob job = jobRepository.save(ReprocessingJob.builder().requestedBy(userId)
+        .dryRun(dryRun).status(ReprocessingJobStatus.RUNNING).message("Reprocessing started")
+        .checkpoint("").totalCount(sourceRepository.count()).changes(List.of())
+        .errors(List.of()).build());
+    log.info("Reprocessing job {} started by {} (dry run: {})", job.getId(), userId, dryRun);
+    launch(job);
+    return toResponse(job);
+  }
+
+  /**
+   * Continue a cancelled or failed job after its checkpoint.
+   *
+   * @throws ReprocessingJobNotFoundException if the job does not exist
+   * @throws IllegalStateException if the job completed or a job is already running
+   */
+  public synchronized ReprocessingJobResponse resume(String jobId) {
+    ReprocessingJob job = findJob(jobId);
+    if (job.getStatus() == ReprocessingJobStatus.COMPLETED) {
+      throw new IllegalStateException("The reprocessing job has already completed");
+    }
+    checkNotRunning();
+
+    job.setStatus(ReprocessingJobStatus.RUNNING);
+    job.setMessage("Reprocessing resumed");
+    job = jobRepository.save(job);
+    log.info("Reprocessing job {} resumed after '{}'", jobId, job.getCheckpoint());
+    launch(job);
+    return toResponse(job);
+  }
+
+  /**
+   * Stop a running job after its current batch.
+   *
+   * @throws ReprocessingJobNotFoundException if the job does not exist
+   */
+  public ReprocessingJobResponse cancel(String jobId) {
+    ReprocessingJob job = mongoTemplate.findAndModify(
+        query(where("id").is(jobId).and("status").is(ReprocessingJobStatus.RUNNING)),
+        new Update().set("status", ReprocessingJobStatus.CANCELLED)
+            .set("message", "Cancelled, resume to continue").set("updatedAt", Instant.now()),
+        FindAndModifyOptions.options().returnNew(true), ReprocessingJob.class);
+    return toResponse(job != null ? job : findJob(jobId));
+  }
+
+  /**
+   * @throws ReprocessingJobNotFoundException if the job does not exist
+   */
+  public ReprocessingJobResponse getJob(String jobId) {
+    return toResponse(findJob(jobId));
+  }
+
+  private ReprocessingJob findJob(String jobId) {
+    return jobRepository.findById(jobId)
+        .orElseThrow(() -> new ReprocessingJobNotFoundException(jobId));
+  }
+
+  private void checkNotRunning() {
+    if (runningJobId.get() != null
+        || jobRepository.existsByStatus(ReprocessingJobStatus.RUNNING)) {
+      throw new IllegalStateException("A reprocessing job is already running");
+    }
+  }
+
+  private void launch(ReprocessingJob job) {
+    runningJobId.set(job.getId());
+    Thread.ofVirtual().name("reprocess-" + job.getId()).start(() -> {
+      try {
+        run(job);
+      } catch (InterruptedException e) {
+        finish(job.getId(), ReprocessingJobStatus.FAILED, "Interrupted, resume to continue");
+      } catch (Exception e) {
+        log.error("Reprocessing job {} failed", job.getId(), e);
+        finish(job.getId(), ReprocessingJobStatus.FAILED, "Failed: " + e.getMessage());
+      } finally {
+        runningJobId.set(null);
+      }
+    });
+  }
+
+  private void run(ReprocessingJob job) throws InterruptedException {
+    String checkpoint = job.getCheckpoint() != null ? job.getCheckpoint() : "";
+    while (true) {
+      // The unique chatNoteId index serves both the range and the sort
+      List<ChatNoteSource> sources =
+          mongoTemplate.find(query(where("chatNoteId").gt(checkpoint))
+              .with(Sort.by("chatNoteId")).limit(batchSize), ChatNoteSource.class);
+      if (sources.isEmpty()) {
+        finish(job.getId(), ReprocessingJobStatus.COMPLETED, "Reprocessing completed");
+        return;
+      }
+
+      List<Outcome> outcomes = reprocess(sources);
+      if (!job.isDryRun()) {
+        outcomes = outcomes.stream().map(this::write).toList();
+      }
+
+      checkpoint = sources.get(sources.size() - 1).getChatNoteId();
+      ReprocessingJob updated = recordBatch(job.getId(), checkpoint, sources.size(), outcomes);
+      if (updated == null || updated.getStatus() != ReprocessingJobStatus.RUNNING) {
+        log.info("Reprocessing job {} stopped after '{}'", job.getId(), checkpoint);
+        return;
+      }
+      Thread.sleep(throttle.toMillis());
+    }
+  }
+
+  /**
+   * Parses a batch of sources in parallel, comparing each result with the stored note. Sources
+   * whose note no longer exists are skipped.
+   */
+  private List<Outcome> reprocess(List<ChatNoteSource> sources) throws InterruptedException {
+    List<String> ids = sources.stream().map(ChatNoteSource::getChatNoteId).toList();
+    Map<String, ChatNote> notes = chatNoteRepository.findAllById(ids).stream()
+        .collect(Collectors.toMap(ChatNote::getId, Function.identity()));
+    Map<String, List<Artifact>> artifacts =
+        mongoTemplate.find(query(where("chatNoteId").in(ids)), Artifact.class).stream()
+            .collect(Collectors.groupingBy(Artifact::getChatNoteId));
+    Map<String, List<Attachment>> attachments =
+        mongoTemplate.find(query(where("chatNoteId").in(ids)), Attachment.class).stream()
+            .collect(Collectors.groupingBy(Attachment::getChatNoteId));
+
+    List<Future<Outcome>> futures = new ArrayList<>();
+    Semaphore permits = new Semaphore(parallelism);
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (ChatNoteSource source : sources) {
+        ChatNote note = notes.get(source.getChatNoteId());
+        if (note == null) {
+          continue;
+        }
+        permits.acquire();
+        futures.add(executor.submit(() -> {
+          try {
+            return compare(source, note,
+                artifacts.getOrDefault(note.getId(), List.of()),
+                attachments.getOrDefault(note.getId(), List.of()));
+          } finally {
+            permits.release();
+          }
+        }));
+      }
+    }
+    return futures.stream().map(Future::resultNow).toList();
+  }
+
+  /**
+   * Parses the source and applies the parsed fields to the note, except the ones the user edited.
+   */
+  private Outcome compare(ChatNoteSource source, ChatNote note, List<Artifact> storedArtifacts,
+      List<Attachment> storedAttachments) {
+    try {
+      String markdown = ArchiveSources.decompress(source);
+      ChatNoteValidationResult result = preprocessor.preprocess(markdown);
+      if (!result.isValid()) {
+        return Outcome.failed(note, String.join(", ", result.getErrors()));
+      }
+
+      ChatNoteDto dto = result.getChatNoteDto();
+      ChatNote parsed = mapper.toEntity(dto, note.getUserId());
+      Set<String> edited =
+          note.getEditedFields() != null ? Set.copyOf(note.getEditedFields()) : Set.of();
+      List<String> changed = new ArrayList<>();
+      Changes changes = new Changes(edited, changed);
+
+      // totalFileSize describes the upload rather than its content, so it is left as is
+      changes.apply("archiveVersion", note::getArchiveVersion, parsed.getArchiveVersion(),
+          note::setArchiveVersion);
+      changes.apply("archiveType", note::getArchiveType, parsed.getArchiveType(),
+          note::setArchiveType);
+      changes.apply("createdDate", note::getCreatedDate,
+          parsedDate(note.getCreatedDate(), parsed.getCreatedDate()), note::setCreatedDate);
+      changes.apply("originalPlatform", note::getOriginalPlatform, parsed.getOriginalPlatform(),
+          note::setOriginalPlatform);
+      changes.apply("attachmentCount", note::getAttachmentCount, parsed.getAttachmentCount(),
+          note::setAttachmentCount);
+      changes.apply("artifactCount", note::getArtifactCount, parsed.getArtifactCount(),
+          note::setArtifactCount);
+      changes.apply("chatNoteCompleteness", note::getChatNoteCompleteness,
+          parsed.getChatNoteCompleteness(), note::setChatNoteCompleteness);
+      changes.apply("workaroundsCount", note::getWorkaroundsCount, parsed.getWorkaroundsCount(),
+          note::setWorkaroundsCount);
+      changes.apply("title", note::getTitle, parsed.getTitle(), note::setTitle);
+      changes.apply("conversationDate", note::getConversationDate,
+          parsedDate(note.getConversationDate(), parsed.getConversationDate()),
+          note::setConversationDate);
+      changes.apply("tags", note::getTags, parsed.getTags(), note::setTags);
+      changes.apply("workarounds", note::getWorkarounds, parsed.getWorkarounds(),
+          note::setWorkarounds);
+      changes.apply("contentHash", note::getContentHash, preprocessor.contentHash(markdown),
+          note::setContentHash);
+
+      ConversationSummary summary =
+          note.getSummary() != null ? note.getSummary() : ConversationSummary.builder().build();
+      ConversationSummary parsedSummary =
+          parsed.getSummary() != null ? parsed.getSummary() : ConversationSummary.builder().build();
+      int before = changed.size();
+      changes.apply("initialQuery", summary::getInitialQuery, parsedSummary.getInitialQuery(),
+          summary::setInitialQuery);
+      changes.apply("keyInsights", summary::getKeyInsights, parsedSummary.getKeyInsights(),
+          summary::setKeyInsights);
+      changes.apply("followUpExplorations", summary::getFollowUpExplorations,
+          parsedSummary.getFollowUpExplorations(), summary::setFollowUpExplorations);
+      changes.apply("references", summary::getReferences, parsedSummary.getReferences(),
+          summary::setReferences);
+      if (changed.size() > before) {
+        note.setSummary(summary);
+        mapper.updateDerivedFields(note);
+      }
+
+      List<Artifact> artifacts = null;
+      List<Artifact> parsedArtifacts = mapper.toArtifacts(dto.getArtifacts(), note.getId());
+      if (!edited.contains("artifacts") && !sameContent(storedArtifacts, parsedArtifacts,
+          ChatNoteReprocessingService::artifactFields)) {
+        changed.add("artifacts");
+        artifacts = parsedArtifacts;
+      }
+      List<Attachment> attachments = null;
+      List<Attachment> parsedAttachments =
+          mapper.toAttachments(dto.getAttachments(), note.getId());
+      if (!edited.contains("attachments") && !sameContent(storedAttachments, parsedAttachments,
+          ChatNoteReprocessingService::attachmentFields)) {
+        changed.add("attachments");
+        attachments = parsedAttachments;
+      }
+
+      return new Outcome(note, changed, artifacts, attachments, null);
+    } catch (RuntimeException e) {
+      return Outcome.failed(note, String.valueOf(e.getMessage()));
+    }
+  }
+
+  /**
+   * Collects the names of the fields that changed, skipping the fields the user edited.
+   */
+  private static final class Changes {
+    private final Set<String> edited;
+    private final List<String> changed;
+
+    Changes(Set<String> edited, List<String> changed) {
+      this.edited = edited;
+      this.changed = changed;
+    }
+
+    <T> void apply(String field, Supplier<T> current, T parsed, Consumer<T> setter) {
+      if (!edited.contains(field) && !Objects.equals(current.get(), parsed)) {
+        setter.accept(parsed);
+        changed.add(field);
+      }
+    }
+  }
+
+  /**
+   * The parser falls back to today's date when an archive has none, which is not a change.
+   */
+  private static LocalDate parsedDate(LocalDate stored, LocalDate parsed) {
+    return stored != null && LocalDate.now().equals(parsed) ? stored : parsed;
+  }
+
+  /**
+   * Compares the parsed fields of stored and reparsed documents, ignoring their order.
+   */
+  private static <T> boolean sameContent(List<T> stored, List<T> parsed,
+      Function<T, List<Object>> fields) {
+    return stored.size() == parsed.size() && stored.stream()
+        .collect(Collectors.groupingBy(fields, Collectors.counting()))
+        .equals(parsed.stream().collect(Collectors.groupingBy(fields, Collectors.counting())));
+  }
+
+  private static List<Object> artifactFields(Artifact artifact) {
+    return Arrays.asList(artifact.getType(), artifact.getTitle(), artifact.getLanguage(),
+        artifact.getVersion(), artifact.getIterations(), artifact.getEvolutionNotes(),
+        artifact.getContent());
+  }
+
+  private static List<Object> attachmentFields(Attachment attachment) {
+    return Arrays.asList(attachment.getFilename(), attachment.getContent(),
+        attachment.getIsSummarized(), attachment.getOriginalSize(),
+        attachment.getSummarizationLevel(), attachment.getContentPreserved(),
+        attachment.getProcessingLimitation());
+  }
+
+  /**
+   * Writes a changed note back, replacing its artifacts and attachments if they changed.
+   *
+   * @return the outcome, or a failed outcome if the note could not be written
+   */
+  private Outcome write(Outcome outcome) {
+    if (outcome.error != null || outcome.changedFields.isEmpty()) {
+      return outcome;
+    }
+    String chatNoteId = outcome.note.getId();
+    try {
+      if (outcome.artifacts != null) {
+        mongoTemplate.remove(query(where("chatNoteId").is(chatNoteId)), Artifact.class);
+        mongoTemplate.insert(outcome.artifacts, Artifact.class);
+      }
+      if (outcome.attachments != null) {
+        mongoTemplate.remove(query(where("chatNoteId").is(chatNoteId)), Attachment.class);
+        mongoTemplate.insert(outcome.attachments, Attachment.class);
+      }
+      chatNoteRepository.save(outcome.note);
+      contentCache.invalidate(chatNoteId);
+      return outcome;
+    } catch (RuntimeException e) {
+      log.warn("Could not write reprocessed chat note {}: {}", chatNoteId, e.getMessage());
+      return Outcome.failed(outcome.note, "Could not store: " + e.getMessage());
+    }
+  }
+
+  private ReprocessingJob recordBatch(String jobId, String checkpoint, int sourceCount,
+      List<Outcome> outcomes) {
+    List<ReprocessedNote> changes = outcomes.stream()
+        .filter(outcome -> outcome.error == null && !outcome.changedFields.isEmpty())
+        .map(outcome -> ReprocessedNote.builder().chatNoteId(outcome.note.getId())
+            .title(outcome.note.getTitle()).changedFields(outcome.changedFields).build())
+        .toList();
+    List<String> errors = outcomes.stream().filter(outcome -> outcome.error != null)
+        .map(outcome -> outcome.note.getId() + ": " + outcome.error).toList();
+
+    Update update = new Update().set("checkpoint", checkpoint)
+        .inc("processedCount", sourceCount).inc("changedCount", changes.size())
+        .inc("failedCount", errors.size()).set("updatedAt", Instant.now());
+    if (!changes.isEmpty()) {
+      update.push("changes").slice(maxReported).each(changes.toArray());
+    }
+    if (!errors.isEmpty()) {
+      update.push("errors").slice(maxReported).each(errors.toArray());
+    }
+    return mongoTemplate.findAndModify(query(where("id").is(jobId)), update,
+        FindAndModifyOptions.options().returnNew(true), ReprocessingJob.class);
+  }
+
+  /**
+   * Sets the final status, unless the job was cancelled in the meantime.
+   */
+  private void finish(String jobId, ReprocessingJobStatus status, String message) {
+    log.info("Reprocessing job {} {}: {}", jobId, status, message);
+    mongoTemplate.updateFirst(
+        query(where("id").is(jobId).and("status").is(ReprocessingJobStatus.RUNNING)),
+        new Update().set("status", status).set("message", message).set("updatedAt",
+            Instant.now()),
+        ReprocessingJob.class);
+  }
+
+  static ReprocessingJobResponse toResponse(ReprocessingJob job) {
+    return ReprocessingJobResponse.builder().id(job.getId()).dryRun(job.isDryRun())
+        .status(job.getStatus().name()).finished(job.getStatus().isFinished())
+        .message(job.getMessage()).checkpoint(job.getCheckpoint()).totalCount(job.getTotalCount())
+        .processedCount(job.getProcessedCount()).changedCount(job.getChangedCount())
+        .failedCount(job.getFailedCount()).changes(job.getChanges()).errors(job.getErrors())
+        .createdAt(job.getCreatedAt()).updatedAt(job.getUpdatedAt()).build();
+  }
+
+}
@@ -1,23 +1,41 @@
 package me.moonote.app.chatkeep.service;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import me.moonote.app.chatkeep.dto.ChatNoteDto;
 import me.moonote.app.chatkeep.dto.ReferenceDto;
+import me.moonote.app.chatkeep.dto.request.ChatNoteCursor;
 import me.moonote.app.chatkeep.dto.response.ArtifactMetadata;
 import me.moonote.app.chatkeep.dto.response.AttachmentMetadata;
 import me.moonote.app.chatkeep.dto.response.ChatNoteDetailLightResponse;
 import me.moonote.app.chatkeep.dto.response.ChatNoteDetailResponse;
+import me.moonote.app.chatkeep.dto.response.ChatNotePreviewResponse;
 import me.moonote.app.chatkeep.dto.response.ChatNoteResponse;
 import me.moonote.app.chatkeep.mapper.ChatNoteMapper;
 import me.moonote.app.chatkeep.model.Artifact;
 import me.moonote.app.chatkeep.model.Attachment;
 import me.moonote.app.chatkeep.model.ChatNote;
+import me.moonote.app.chatkeep.model.ChatNoteCard;
+import me.moonote.app.chatkeep.model.ChatNoteDetail;
+import me.moonote.app.chatkeep.model.ChatNoteSource;
 import me.moonote.app.chatkeep.model.ConversationSummary;
+import me.moonote.app.chatkeep.model.IngestJobStatus;
 import me.moonote.app.chatkeep.model.FollowUpSection;
 import me.moonote.app.chatkeep.model.InsightsSection;
 import me.moonote.app.chatkeep.model.Label;
@@ -26,9 +44,11 @@ import me.moonote.app.chatkeep.model.Reference;
 import me.moonote.app.chatkeep.repository.ArtifactRepository;
 import me.moonote.app.chatkeep.repository.AttachmentRepository;
 import me.moonote.app.chatkeep.repository.ChatNoteRepository;
+import me.moonote.app.chatkeep.repository.ChatNoteSourceRepository;
 import me.moonote.app.chatkeep.repository.LabelRepository;
 import me.moonote.app.chatkeep.security.SecurityUtils;
 import me.moonote.app.chatkeep.validation.ChatNoteNotFoundException;
+import me.moonote.app.chatkeep.validation.ChatNotePreviewNotFoundException;
 import me.moonote.app.chatkeep.validation.ChatNoteValidationResult;
 import me.moonote.app.chatkeep.validation.InvalidChatNoteException;
 
@@ -37,6 +57,8 @@ import me.moonote.app.chatkeep.validation.InvalidChatNoteException;
 @RequiredArgsConstructor
 public class ChatNoteService {
 
+  private static final int STORE_BATCH_SIZE = 20;
+
   private final MarkdownChatNotePreprocessor preprocessor;
   private final ChatNoteRepository repository;
   private final ArtifactRepository artifactRepository;
@@ -44,59 +66,213 @@ public class ChatNoteService {
   private final ChatNoteMapper mapper;
   private final ChatNoteMarkdownGenerator markdownGenerator;
   private final LabelRepository labelRepository;
+  private final MarkdownUploadReader uploadReader;
+  private final ChatNotePreviewCache previewCache;
+  private final ChatNoteSourceRepository sourceRepository;
+  private final ChatNoteContentCache contentCache;
 
   /**
    * Upload and process a markdown archive
    */
   public ChatNoteDetailResponse uploadChatNote(String markdownContent, String userId) {
+    return uploadChatNote(markdownContent, userId, false);
+  }
+
+  /**
+   * Upload and process a markdown archive. If the user already uploaded the same archive, the
+   * existing note is returned without parsing again, or copied when {@code copyOnDuplicate} is set.
+   */
+  public ChatNoteDetailResponse uploadChatNote(String markdownContent, String userId,
+      boolean copyOnDuplicate) {
     log.info("Processing archive upload for user: {}", userId);
 
+    String contentHash = preprocessor.contentHash(markdownContent);
+    ChatNote existing = findDuplicate(userId, contentHash);
+    if (existing != null) {
+      return toDuplicateResponse(existing, userId, copyOnDuplicate);
+    }
+
     // Parse and validate markdown
     ChatNoteValidationResult validationResult = preprocessor.preprocess(markdownContent);
+    return toDetailResponse(saveChatNote(validationResult, contentHash, markdownContent, userId,
+        IngestProgressListener.NONE));
+  }
+
+  /**
+   * Upload and process a markdown archive streamed from a file. The stream is decoded
+   * incrementally and rejected as soon as it exceeds the maximum upload size.
+   */
+  public ChatNoteDetailResponse uploadChatNote(InputStream markdownStream, String userId)
+      throws IOException {
+    return uploadChatNote(markdownStream, userId, false);
+  }
+
+  /**
+   * Upload a streamed markdown archive, deduplicating like
+   * {@link #uploadChatNote(String, String, boolean)}.
+   */
+  public ChatNoteDetailResponse uploadChatNote(InputStream markdownStream, String userId,
+      boolean copyOnDuplicate) throws IOException {
+    log.info("Processing streamed archive upload for user: {}", userId);
+
+    try (UploadedArchive archive = uploadReader.read(markdownStream)) {
+      String contentHash = preprocessor.contentHash(archive.text());
+      ChatNote existing = findDuplicate(userId, contentHash);
+      if (existing != null) {
+        return toDuplicateResponse(existing, userId, copyOnDuplicate);
+      }
+      return toDetailResponse(
+          parseAndSave(archive, contentHash, userId, IngestProgressListener.NONE));
+    }
+  }
+
+  /**
+   * Parse, validate and store a streamed archive, reporting progress along the way. Used by
+   * background ingest jobs.
+   *
+   * @return the id of the new chat note, or of the existing note holding the same archive
+   */
+  public String ingestChatNote(InputStream markdownStream, String userId,
+      IngestProgressListener listener) throws IOException {
+    try (UploadedArchive archive = uploadReader.read(markdownStream)) {
+      String contentHash = preprocessor.contentHash(archive.text());
+      ChatNote existing = findDuplicate(userId, contentHash);
+      if (existing != null) {
+        log.info("Archive already uploaded as chat note {}", existing.getId());
+        return existing.getId();
+      }
+      return parseAndSave(archive, contentHash, userId, listener).getId();
+    }
+  }
+
+  /**
+   * Parse and validate an archive without storing it. A valid archive is cached under the returned
+   * token, so confirming the preview stores it without parsing again.
+   */
+  public ChatNotePreviewResponse previewChatNote(String markdownContent, String userId) {
+    log.info("Previewing archive upload for user: {}", userId);
+
+    String contentHash = preprocessor.contentHash(markdownContent);
+    ChatNoteValidationResult validationResult = preprocessor.preprocess(markdownContent);
+    if (!validationResult.isValid()) {
+      return ChatNotePreviewResponse.builder().valid(false)
+          .errors(validationResult.getErrors()).build();
+    }
+
+    ChatNoteDto chatNoteDto = validationResult.getChatNoteDto();
+    ChatNote existing = findDuplicate(userId, contentHash);
+    ChatNoteSource source = ArchiveSources.compress(markdownContent);
+    // Strings of the parsed archive take about two bytes per character of the paste
+    String token = previewCache.put(userId, contentHash, chatNoteDto, source,
+        markdownContent.length() * 2L + source.getContent().length);
+    return ChatNotePreviewResponse.builder().token(token).valid(true).errors(List.of())
+        .metadata(chatNoteDto.getMetadata())
+        .duplicateOf(existing != null ? existing.getId() : null)
+        .expiresAt(token != null ? previewCache.expiresAt() : null).build();
+  }
+
+  /**
+   * Store the archive of a preview of the user. The preview can only be confirmed once.
+   *
+   * @throws ChatNotePreviewNotFoundException if the preview expired or is unknown
+   */
+  public ChatNoteDetailResponse confirmPreview(String token, String userId) {
+    ChatNotePreviewCache.Entry preview = previewCache.take(token, userId);
+    if (preview == null) {
+      throw new ChatNotePreviewNotFoundException();
+    }
+
+    ChatNote existing = findDuplicate(userId, preview.contentHash);
+    if (existing != null) {
+      return toDuplicateResponse(existing, userId, false);
+    }
+    return toDetailResponse(storeChatNote(preview.chatNoteDto, preview.contentHash, preview.source,
+        userId, IngestProgressListener.NONE));
+  }
 
+  /**
+   * Find a note of the user, not in the trash, that was created from the same archive
+   */
+  private ChatNote findDuplicate(String userId, String contentHash) {
+    return repository.findFirstByUserIdAndContentHashAndIsTrashedFalse(userId, contentHash)
+        .orElse(null);
+  }
+
+  private ChatNoteDetailResponse toDuplicateResponse(ChatNote existing, String userId,
+      boolean copyOnDuplicate) {
+    if (copyOnDuplicate) {
+      log.info("Archive already uploaded as chat note {}, copying it", existing.getId());
+      return toDetailResponse(copyChatNote(existing, userId));
+    }
+    log.info("Archive already uploaded as chat note {}", existing.getId());
+    ChatNoteDetailResponse response = toDetailResponse(existing);
+    response.setDuplicate(true);
+    return response;
+  }
+
+  private ChatNote parseAndSave(UploadedArchive archive, String contentHash, String userId,
+      IngestProgressListener listener) throws IOException {
+    ChatNoteValidationResult validationResult =
+        preprocessor.preprocess(archive.text(), archive.sizeInBytes(), listener);
+    return saveChatNote(validationResult, contentHash, archive.text(), userId, listener);
+  }
+
+  private ChatNote saveChatNote(ChatNoteValidationResult validationResult, String contentHash,
+      CharSequence markdownContent, String userId, IngestProgressListener listener) {
     if (!validationResult.isValid()) {
       log.warn("Chat note validation failed: {}", validationResult.getErrors());
       throw new InvalidChatNoteException(
           "Chat note validation failed: " + String.join(", ", validationResult.getErrors()));
     }
 
+    return storeChatNote(validationResult.getChatNoteDto(), contentHash,
+        ArchiveSources.compress(markdownContent), userId, listener);
+  }
+
+  private ChatNote storeChatNote(ChatNoteDto chatNoteDto, String contentHash,
+      ChatNoteSource source, String userId, IngestProgressListener listener) {
     // Convert to entity and save ChatNote metadata
-    ChatNoteDto chatNoteDto = validationResult.getChatNoteDto();
     ChatNote entity = mapper.toEntity(chatNoteDto, userId);
+    entity.setContentHash(contentHash);
     ChatNote saved = repository.save(entity);
 
     log.info("Chat note metadata saved successfully with id: {}", saved.getId());
+    listener.onProgress(IngestJobStatus.STORING, "Chat note stored");
+
+    // Keep the original archive, so the note can be reprocessed by a newer parser
+    source.setChatNoteId(saved.getId());
+    sourceRepository.save(source);
 
     // Save artifacts to separate collection
-    if (chatNoteDto.getArtifacts() != null && !chatNoteDto.getArtifacts().isEmpty()) {
-      List<Artifact> artifacts = chatNoteDto.getArtifacts().stream().map(artifactDto -> Artifact
-          .builder().chatNoteId(saved.getId()).type(artifactDto.getType())
-          .title(artifactDto.getTitle()).language(artifactDto.getLanguage())
-          .version(artifactDto.getVersion()).iterations(artifactDto.getIterations())
-          .evolutionNotes(artifactDto.getEvolutionNotes()).content(artifactDto.getContent())
-          .build()).toList();
-
-      artifactRepository.saveAll(artifacts);
+    List<Artifact> artifacts = mapper.toArtifacts(chatNoteDto.getArtifacts(), saved.getId());
+    saveInBatches(artifactRepository, artifacts, "artifacts", listener);
+    if (!artifacts.isEmpty()) {
       log.info("Saved {} artifacts for chat note {}", artifacts.size(), saved.getId());
     }
 
     // Save attachments to separate collection
-    if (chatNoteDto.getAttachments() != null && !chatNoteDto.getAttachments().isEmpty()) {
-      List<Attachment> attachments = chatNoteDto.getAttachments().stream()
-          .map(attachmentDto -> Attachment.builder().chatNoteId(saved.getId())
-              .filename(attachmentDto.getFilename()).content(attachmentDto.getContent())
-              .isSummarized(attachmentDto.getIsSummarized())
-              .originalSize(attachmentDto.getOriginalSize())
-              .summarizationLevel(attachmentDto.getSummarizationLevel())
-              .contentPreserved(attachmentDto.getContentPreserved())
-              .processingLimitation(attachmentDto.getProcessingLimitation()).build())
-          .toList();
-
-      attachmentRepository.saveAll(attachments);
+    List<Attachment> attachments =
+        mapper.toAttachments(chatNoteDto.getAttachments(), saved.getId());
+    saveInBatches(attachmentRepository, attachments, "attachments", listener);
+    if (!attachments.isEmpty()) {
       log.info("Saved {} attachments for chat note {}", attachments.size(), saved.getId());
     }
 
-    return toDetailResponse(saved);
+    return saved;
+  }
+
+  /**
+   * Saves the documents in batches of {@link #STORE_BATCH_SIZE}, reporting "N of M stored" after
+   * each batch. Most archives fit in a single batch.
+   */
+  private <T> void saveInBatches(MongoRepository<T, String> target, List<T> documents,
+      String kind, IngestProgressListener listener) {
+    for (int from = 0; from < documents.size(); from += STORE_BATCH_SIZE) {
+      int to = Math.min(from + STORE_BATCH_SIZE, documents.size());
+      target.saveAll(documents.subList(from, to));
+      listener.onProgress(IngestJobStatus.STORING,
+          String.format("%d of %d %s stored", to, documents.size(), kind));
+    }
   }
 
   /**
@@ -115,6 +291,15 @@ public class ChatNoteService {
       throw new IllegalArgumentException("Cannot copy a non-public chat note");
     }
 
+    return toDetailResponse(copyChatNote(sourceNote, userId));
+  }
+
+  /**
+   * Copy a note with its artifacts and attachments to the user's workspace, without parsing
+   */
+  private ChatNote copyChatNote(ChatNote sourceNote, String userId) {
+    String sourceNoteId = sourceNote.getId();
+
     // Create a new note entity by copying all fields from source
     // Use builder to create a clean copy without the ID (so MongoDB generates a new one)
     ChatNote copiedNote = ChatNote.builder().archiveVersion(sourceNote.getArchiveVersion())
@@ -124,10 +309,13 @@ public class ChatNoteService {
         .artifactCount(sourceNote.getArtifactCount())
         .chatNoteCompleteness(sourceNote.getChatNoteCompleteness())
         .workaroundsCount(sourceNote.getWorkaroundsCount())
-        .totalFileSize(sourceNote.getTotalFileSize()).title(sourceNote.getTitle())
+        .totalFileSize(sourceNote.getTotalFileSize()).contentHash(sourceNote.getContentHash())
+        .title(sourceNote.getTitle())
         .conversationDate(sourceNote.getConversationDate())
         .tags(sourceNote.getTags() != null ? List.copyOf(sourceNote.getTags()) : null)
         .labelIds(new java.util.ArrayList<>()) // Don't copy labels (user-specific)
+        .editedFields(sourceNote.getEditedFields() != null
+            ? new java.util.ArrayList<>(sourceNote.getEditedFields()) : null)
         .summary(sourceNote.getSummary())
         .workarounds(
             sourceNote.getWorkarounds() != null ? List.copyOf(sourceNote.getWorkarounds()) : null)
@@ -135,16 +323,17 @@ public class ChatNoteService {
         .isPublic(false) // Set as private by default
         .isArchived(false).isTrashed(false).isFavorite(false).trashedAt(null).viewCount(0L).build();
 
-    // Save the copied note
-    ChatNote saved = repository.save(copiedNote);
+    // Save the copied note, with card fields of its own in case the source was never backfilled
+    ChatNote saved = repository.save(mapper.updateDerivedFields(copiedNote));
 
     log.info("Chat note copied successfully with new id: {}", saved.getId());
 
     // Copy artifacts from source to new note
-    List<Artifact> sourceArtifacts = artifactRepository.findByChatNoteIdOrderByCreatedAtDesc(sourceNoteId);
+    List<Artifact> sourceArtifacts = artifactRepository.findByChatNoteIdOrderByOrdinal(sourceNoteId);
     if (!sourceArtifacts.isEmpty()) {
       List<Artifact> copiedArtifacts = sourceArtifacts.stream()
-          .map(artifact -> Artifact.builder().chatNoteId(saved.getId()).type(artifact.getType())
+          .map(artifact -> Artifact.builder().chatNoteId(saved.getId())
+              .ordinal(artifact.getOrdinal()).type(artifact.getType())
               .title(artifact.getTitle()).language(artifact.getLanguage())
               .version(artifact.getVersion()).iterations(artifact.getIterations())
               .evolutionNotes(artifact.getEvolutionNotes()).content(artifact.getContent()).build())
@@ -154,11 +343,12 @@ public class ChatNoteService {
     }
 
     // Copy attachments from source to new note
-    List<Attachment> sourceAttachments = attachmentRepository.findByChatNoteIdOrderByCreatedAtDesc(sourceNoteId);
+    List<Attachment> sourceAttachments = attachmentRepository.findByChatNoteIdOrderByOrdinal(sourceNoteId);
     if (!sourceAttachments.isEmpty()) {
       List<Attachment> copiedAttachments = sourceAttachments.stream()
           .map(attachment -> Attachment.builder().chatNoteId(saved.getId())
-              .filename(attachment.getFilename()).content(attachment.getContent())
+              .ordinal(attachment.getOrdinal()).filename(attachment.getFilename())
+              .content(attachment.getContent())
               .isSummarized(attachment.getIsSummarized()).originalSize(attachment.getOriginalSize())
               .summarizationLevel(attachment.getSummarizationLevel())
               .contentPreserved(attachment.getContentPreserved())
@@ -168,74 +358,122 @@ public class ChatNoteService {
       log.info("Copied {} attachments to new note {}", copiedAttachments.size(), saved.getId());
     }
 
-    return toDetailResponse(saved);
+    // Copy the original archive, so the copy can be reprocessed as well
+    sourceRepository.findByChatNoteId(sourceNoteId)
+        .ifPresent(source -> sourceRepository.save(ArchiveSources.copy(source, saved.getId())));
+
+    return saved;
   }
 
   /**
-   * Get archive by ID (lightweight - without artifact/attachment content)
+   * Get archive by ID (lightweight - without artifact/attachment content or full markdown)
    */
   public ChatNoteDetailLightResponse getChatNoteById(String id) {
-    ChatNote archive = repository.findById(id).orElseThrow(() -> new ChatNoteNotFoundException(id));
+    return getChatNoteById(id, false);
+  }
+
+  /**
+   * Get archive by ID without artifact/attachment content. The full markdown, which embeds every
+   * artifact and attachment, is only generated when requested.
+   */
+  public ChatNoteDetailLightResponse getChatNoteById(String id, boolean includeFullMarkdown) {
+    ChatNoteDetail detail = findDetail(id);
+    ChatNote archive = detail.getChatNote();
 
     // Increment view count
+    repository.incrementViewCount(id);
     archive.setViewCount(archive.getViewCount() + 1);
-    repository.save(archive);
 
-    return toDetailLightResponse(archive);
+    ChatNoteDetailLightResponse response = toDetailLightResponse(detail);
+    if (includeFullMarkdown) {
+      response.setFullMarkdown(markdownGenerator.generateMarkdown(archive));
+    }
+    return response;
   }
 
   /**
-   * Get artifact content by archive ID and artifact index
+   * Get a public chat note for its share page, without counting a view. Share pages count their
+   * views apart from rendering, see {@link ChatNoteShareService}.
+   *
+   * @throws ChatNoteNotFoundException if the note does not exist or is not public
    */
-  public Artifact getArtifactContent(String archiveId, int index) {
-    // Verify archive exists
-    if (!repository.existsById(archiveId)) {
-      throw new ChatNoteNotFoundException(archiveId);
+  public ChatNoteDetailLightResponse getPublicChatNote(String id) {
+    ChatNoteDetail detail = findDetail(id);
+    if (!Boolean.TRUE.equals(detail.getChatNote().getIsPublic())) {
+      throw new ChatNoteNotFoundException(id);
     }
+    return toDetailLightResponse(detail);
+  }
 
-    // Fetch artifacts from separate collection
-    List<Artifact> artifacts = artifactRepository.findByChatNoteIdOrderByCreatedAtDesc(archiveId);
+  /**
+   * Get the weak ETag of one representation of the current version of a chat note, reading only
+   * its version field. Conditional requests matching it can be answered without loading or
+   * generating any content. The tag is weak because views change the view count without changing
+   * the version, so a revalidated copy may show an older count.
+   *
+   * @param variant the representation, so that different ones of a version never share a tag
+   * @return the ETag, or null if the note does not exist
+   */
+  public String getChatNoteETag(String id, String variant) {
+    return repository.findVersionById(id).map(ChatNote::getUpdatedAt)
+        .map(version -> "W/\"" + id + "-" + version.toEpochMilli() + "-" + variant + "\"")
+        .orElse(null);
+  }
 
-    if (index < 0 || index >= artifacts.size()) {
-      throw new IllegalArgumentException(
-          "Invalid artifact index: " + index + " for archive: " + archiveId);
-    }
+  /**
+   * Get a chat note to download, counting the download as a view
+   */
+  public ChatNote getChatNoteForDownload(String id) {
+    ChatNote chatNote =
+        repository.findById(id).orElseThrow(() -> new ChatNoteNotFoundException(id));
+
+    repository.incrementViewCount(id);
+    chatNote.setViewCount(chatNote.getViewCount() + 1);
 
-    return artifacts.get(index);
+    return chatNote;
   }
 
   /**
-   * Get attachment content by archive ID and attachment index
+   * Write the full markdown archive of a chat note as UTF-8. Artifacts and attachments are
+   * streamed from the database one at a time instead of building the whole archive in memory.
    */
-  public Attachment getAttachmentContent(String archiveId, int index) {
-    // Verify archive exists
-    if (!repository.existsById(archiveId)) {
-      throw new ChatNoteNotFoundException(archiveId);
-    }
-
-    // Fetch attachments from separate collection
-    List<Attachment> attachments = attachmentRepository.findByChatNoteIdOrderByCreatedAtDesc(archiveId);
+  public void writeMarkdown(ChatNote chatNote, OutputStream outputStream) throws IOException {
+    Writer writer =
+        new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    markdownGenerator.writeMarkdown(chatNote, writer);
+    writer.flush();
+  }
 
-    if (index < 0 || index >= attachments.size()) {
-      throw new IllegalArgumentException(
-          "Invalid attachment index: " + index + " for archive: " + archiveId);
-    }
+  /**
+   * Get artifact content by archive ID and artifact index
+   */
+  public Artifact getArtifactContent(String archiveId, int index) {
+    // Fetch the single artifact at that position from separate collection
+    return artifactRepository.findByChatNoteIdAndOrdinal(archiveId, index)
+        .orElseThrow(() -> invalidIndex("artifact", archiveId, index));
+  }
 
-    return attachments.get(index);
+  /**
+   * Get attachment content by archive ID and attachment index
+   */
+  public Attachment getAttachmentContent(String archiveId, int index) {
+    // Fetch the single attachment at that position from separate collection
+    return attachmentRepository.findByChatNoteIdAndOrdinal(archiveId, index)
+        .orElseThrow(() -> invalidIndex("attachment", archiveId, index));
   }
 
   /**
    * Get all archives (paginated)
    */
   public Page<ChatNoteResponse> getAllChatNotes(Pageable pageable) {
-    return repository.findAll(pageable).map(this::toResponse);
+    return repository.findAllCards(pageable).map(this::toResponse);
   }
 
   /**
    * Get archives by user ID
    */
   public List<ChatNoteResponse> getChatNotesByUserId(String userId) {
-    return repository.findByUserId(userId).stream().map(this::toResponse).toList();
+    return repository.findCardsByUserId(userId).stream().map(this::toResponse).toList();
   }
 
   /**
@@ -273,14 +511,16 @@ public class ChatNoteService {
    * Update archive visibility
    */
   public ChatNoteDetailResponse updateVisibility(String id, Boolean isPublic) {
-    ChatNote archive = repository.findById(id).orElseThrow(() -> new ChatNoteNotFoundException(id));
+    ChatNoteDetail detail = findDetail(id);
+    ChatNote archive = detail.getChatNote();
 
     archive.setIsPublic(isPublic);
     ChatNote updated = repository.save(archive);
+    contentCache.invalidate(updated.getId());
 
     log.info("Chat note {} visibility updated to: {}", id, isPublic);
 
-    return toDetailResponse(updated);
+    return toDetailResponse(updated, detail);
   }
 
   /**
@@ -291,7 +531,7 @@ public class ChatNoteService {
       throw new ChatNoteNotFoundException(id);
     }
 
-    repository.deleteById(id);
+    deleteWithRelated(id);
     log.info("Chat note deleted: {}", id);
   }
 
@@ -313,7 +553,7 @@ public class ChatNoteService {
       return Page.empty(pageable);
     }
 
-    Page<ChatNote> chatNotes;
+    Page<ChatNoteCard> chatNotes;
     if ("OR".equalsIgnoreCase(operator)) {
       chatNotes = repository.findByTagsIn(tags, pageable);
     } else {
@@ -333,7 +573,7 @@ public class ChatNoteService {
       return Page.empty(pageable);
     }
 
-    Page<ChatNote> chatNotes;
+    Page<ChatNoteCard> chatNotes;
     if ("OR".equalsIgnoreCase(operator)) {
       chatNotes = repository.findByTagsInAndUserId(tags, userId, pageable);
     } else {
@@ -353,7 +593,7 @@ public class ChatNoteService {
       return Page.empty(pageable);
     }
 
-    Page<ChatNote> chatNotes;
+    Page<ChatNoteCard> chatNotes;
     if ("OR".equalsIgnoreCase(operator)) {
       chatNotes = repository.findActiveByTagsIn(tags, pageable);
     } else {
@@ -373,7 +613,7 @@ public class ChatNoteService {
       return Page.empty(pageable);
     }
 
-    Page<ChatNote> chatNotes;
+    Page<ChatNoteCard> chatNotes;
     if ("OR".equalsIgnoreCase(operator)) {
       chatNotes = repository.findActiveByTagsInAndUserId(tags, userId, pageable);
     } else {
@@ -390,8 +630,8 @@ public class ChatNoteService {
    * Assign labels to a chat note
    */
   public ChatNoteDetailResponse assignLabelsToNote(String noteId, List<String> labelIds) {
-    ChatNote chatNote =
-        repository.findById(noteId).orElseThrow(() -> new ChatNoteNotFoundException(noteId));
+    ChatNoteDetail detail = findDetail(noteId);
+    ChatNote chatNote = detail.getChatNote();
 
     String currentUserId = SecurityUtils.getCurrentUserId();
 
@@ -424,27 +664,29 @@ public class ChatNoteService {
     }
 
     ChatNote updated = repository.save(chatNote);
+    contentCache.invalidate(updated.getId());
     log.info("Labels {} assigned to chat note {}", labelIds, noteId);
 
-    return toDetailResponse(updated);
+    return toDetailResponse(updated, detail);
   }
 
   /**
    * Remove a label from a chat note
    */
   public ChatNoteDetailResponse removeLabelFromNote(String noteId, String labelId) {
-    ChatNote chatNote =
-        repository.findById(noteId).orElseThrow(() -> new ChatNoteNotFoundException(noteId));
+    ChatNoteDetail detail = findDetail(noteId);
+    ChatNote chatNote = detail.getChatNote();
 
     if (chatNote.getLabelIds() != null) {
       chatNote.getLabelIds().remove(labelId);
       ChatNote updated = repository.save(chatNote);
+      contentCache.invalidate(updated.getId());
 
       log.info("Label {} removed from chat note {}", labelId, noteId);
-      return toDetailResponse(updated);
+      return toDetailResponse(updated, detail);
     }
 
-    return toDetailResponse(chatNote);
+    return toDetailResponse(detail);
   }
 
   /**
@@ -456,7 +698,7 @@ public class ChatNoteService {
       return Page.empty(pageable);
     }
 
-    Page<ChatNote> chatNotes;
+    Page<ChatNoteCard> chatNotes;
     if ("OR".equalsIgnoreCase(operator)) {
       chatNotes = repository.findByLabelIdsIn(labelIds, pageable);
     } else {
@@ -476,7 +718,7 @@ public class ChatNoteService {
       return Page.empty(pageable);
     }
 
-    Page<ChatNote> chatNotes;
+    Page<ChatNoteCard> chatNotes;
     if ("OR".equalsIgnoreCase(operator)) {
       chatNotes = repository.findByLabelIdsInAndUserId(labelIds, userId, pageable);
     } else {
@@ -496,7 +738,7 @@ public class ChatNoteService {
       return Page.empty(pageable);
     }
 
-    Page<ChatNote> chatNotes;
+    Page<ChatNoteCard> chatNotes;
     if ("OR".equalsIgnoreCase(operator)) {
       chatNotes = repository.findActiveByLabelIdsIn(labelIds, pageable);
     } else {
@@ -516,7 +758,7 @@ public class ChatNoteService {
       return Page.empty(pageable);
     }
 
-    Page<ChatNote> chatNotes;
+    Page<ChatNoteCard> chatNotes;
     if ("OR".equalsIgnoreCase(operator)) {
       chatNotes = repository.findActiveByLabelIdsInAndUserId(labelIds, userId, pageable);
     } else {
@@ -533,15 +775,16 @@ public class ChatNoteService {
    * Toggle favorite status (star/unstar)
    */
   public ChatNoteDetailResponse toggleFavorite(String id, Boolean isFavorite) {
-    ChatNote chatNote =
-        repository.findById(id).orElseThrow(() -> new ChatNoteNotFoundException(id));
+    ChatNoteDetail detail = findDetail(id);
+    ChatNote chatNote = detail.getChatNote();
 
     chatNote.setIsFavorite(isFavorite);
     ChatNote updated = repository.save(chatNote);
+    contentCache.invalidate(updated.getId());
 
     log.info("Chat note {} favorite status updated to: {}", id, isFavorite);
 
-    return toDetailResponse(updated);
+    return toDetailResponse(updated, detail);
   }
 
   /**
@@ -564,47 +807,50 @@ public class ChatNoteService {
    * Update archive status (archive/unarchive)
    */
   public ChatNoteDetailResponse updateArchiveStatus(String id, Boolean isArchived) {
-    ChatNote chatNote =
-        repository.findById(id).orElseThrow(() -> new ChatNoteNotFoundException(id));
+    ChatNoteDetail detail = findDetail(id);
+    ChatNote chatNote = detail.getChatNote();
 
     chatNote.setIsArchived(isArchived);
     ChatNote updated = repository.save(chatNote);
+    contentCache.invalidate(updated.getId());
 
     log.info("Chat note {} archive status updated to: {}", id, isArchived);
 
-    return toDetailResponse(updated);
+    return toDetailResponse(updated, detail);
   }
 
   /**
    * Move chat note to trash (soft delete)
    */
   public ChatNoteDetailResponse moveToTrash(String id) {
-    ChatNote chatNote =
-        repository.findById(id).orElseThrow(() -> new ChatNoteNotFoundException(id));
+    ChatNoteDetail detail = findDetail(id);
+    ChatNote chatNote = detail.getChatNote();
 
     chatNote.setIsTrashed(true);
     chatNote.setTrashedAt(java.time.Instant.now());
     ChatNote updated = repository.save(chatNote);
+    contentCache.invalidate(updated.getId());
 
     log.info("Chat note {} moved to trash", id);
 
-    return toDetailResponse(updated);
+    return toDetailResponse(updated, detail);
   }
 
   /**
    * Restore chat note from trash
    */
   public ChatNoteDetailResponse restoreFromTrash(String id) {
-    ChatNote chatNote =
-        repository.findById(id).orElseThrow(() -> new ChatNoteNotFoundException(id));
+    ChatNoteDetail detail = findDetail(id);
+    ChatNote chatNote = detail.getChatNote();
 
     chatNote.setIsTrashed(false);
     chatNote.setTrashedAt(null);
     ChatNote updated = repository.save(chatNote);
+    contentCache.invalidate(updated.getId());
 
     log.info("Chat note {} restored from trash", id);
 
-    return toDetailResponse(updated);
+    return toDetailResponse(updated, detail);
   }
 
   /**
@@ -615,14 +861,19 @@ public class ChatNoteService {
       throw new ChatNoteNotFoundException(id);
     }
 
-    // Delete related artifacts and attachments (cascading)
+    deleteWithRelated(id);
+    log.info("Chat note {} permanently deleted", id);
+  }
+
+  /**
+   * Delete a chat note with its artifacts, attachments and archive source (cascading)
+   */
+  private void deleteWithRelated(String id) {
     artifactRepository.deleteByChatNoteId(id);
     attachmentRepository.deleteByChatNoteId(id);
-    log.info("Deleted artifacts and attachments for chat note {}", id);
-
-    // Delete the chat note itself
+    sourceRepository.deleteByChatNoteId(id);
     repository.deleteById(id);
-    log.info("Chat note {} permanently deleted", id);
+    contentCache.invalidate(id);
   }
 
   /**
@@ -634,32 +885,71 @@ public class ChatNoteService {
   }
 
   /**
-   * Get archived chat notes for a user
+   * Get all archived chat notes (paginated) - for admin or global view
    */
-  public List<ChatNoteResponse> getArchivedChatNotes(String userId) {
-    return repository.findByUserIdAndIsArchivedTrueAndIsTrashedFalse(userId).stream()
-        .map(this::toResponse).toList();
+  public Page<ChatNoteResponse> getAllArchivedChatNotes(Pageable pageable) {
+    return repository.findByIsArchivedTrueAndIsTrashedFalse(pageable).map(this::toResponse);
   }
 
   /**
-   * Get trashed chat notes for a user
+   * Get all trashed chat notes (paginated) - for admin or global view
    */
-  public List<ChatNoteResponse> getTrashedChatNotes(String userId) {
-    return repository.findByUserIdAndIsTrashedTrue(userId).stream().map(this::toResponse).toList();
+  public Page<ChatNoteResponse> getAllTrashedChatNotes(Pageable pageable) {
+    return repository.findByIsTrashedTrue(pageable).map(this::toResponse);
   }
 
+  // ==================== Keyset Card Lists ====================
+  // Infinite scroll reads the cards after a cursor, newest first, without skipping or counting.
+  // The next cursor is the position after the last card of the slice.
+
+  private static final Sort KEYSET_SORT = Sort.by(Sort.Direction.DESC, "createdAt", "id");
+
   /**
-   * Get all archived chat notes (paginated) - for admin or global view
+   * The first page of the given size in keyset order; the cursor itself bounds the query
    */
-  public Page<ChatNoteResponse> getAllArchivedChatNotes(Pageable pageable) {
-    return repository.findByIsArchivedTrueAndIsTrashedFalse(pageable).map(this::toResponse);
+  private static Pageable keysetPage(int size) {
+    return PageRequest.of(0, size, KEYSET_SORT);
+  }
+
+  public Slice<ChatNoteResponse> getActiveChatNotes(String userId, ChatNoteCursor after,
+      int size) {
+    return repository.findActiveCardsBefore(after.getCreatedAt(), after.getId(), userId,
+        keysetPage(size)).map(this::toResponse);
+  }
+
+  public Slice<ChatNoteResponse> getArchivedChatNotes(String userId, ChatNoteCursor after,
+      int size) {
+    return repository.findArchivedCardsBefore(after.getCreatedAt(), after.getId(), userId,
+        keysetPage(size)).map(this::toResponse);
+  }
+
+  public Slice<ChatNoteResponse> getTrashedChatNotes(String userId, ChatNoteCursor after,
+      int size) {
+    return repository.findTrashedCardsBefore(after.getCreatedAt(), after.getId(), userId,
+        keysetPage(size)).map(this::toResponse);
+  }
+
+  public Slice<ChatNoteResponse> getFavoriteChatNotes(String userId, ChatNoteCursor after,
+      int size) {
+    return repository.findFavoriteCardsBefore(after.getCreatedAt(), after.getId(), userId,
+        keysetPage(size)).map(this::toResponse);
+  }
+
+  public Slice<ChatNoteResponse> getPublicChatNotes(ChatNoteCursor after, int size) {
+    return repository.findPublicCardsBefore(after.getCreatedAt(), after.getId(),
+        keysetPage(size)).map(this::toResponse);
   }
 
   /**
-   * Get all trashed chat notes (paginated) - for admin or global view
+   * Active notes of the user with any of the labels
    */
-  public Page<ChatNoteResponse> getAllTrashedChatNotes(Pageable pageable) {
-    return repository.findByIsTrashedTrue(pageable).map(this::toResponse);
+  public Slice<ChatNoteResponse> filterActiveByAnyLabelForUser(String userId,
+      List<String> labelIds, ChatNoteCursor after, int size) {
+    if (labelIds == null || labelIds.isEmpty()) {
+      return new SliceImpl<>(List.of(), keysetPage(size), false);
+    }
+    return repository.findActiveCardsWithAnyLabelBefore(after.getCreatedAt(), after.getId(),
+        userId, labelIds, keysetPage(size)).map(this::toResponse);
   }
 
   /**
@@ -671,7 +961,7 @@ public class ChatNoteService {
     List<ChatNote> oldTrashedNotes = repository.findByIsTrashedTrueAndTrashedAtBefore(cutoffDate);
 
     int count = oldTrashedNotes.size();
-    repository.deleteAll(oldTrashedNotes);
+    oldTrashedNotes.forEach(note -> deleteWithRelated(note.getId()));
 
     log.info("Purged {} chat notes trashed before {}", count, cutoffDate);
     return count;
@@ -683,53 +973,59 @@ public class ChatNoteService {
    * Update chat note title
    */
   public ChatNoteDetailResponse updateTitle(String id, String title) {
-    ChatNote chatNote =
-        repository.findById(id).orElseThrow(() -> new ChatNoteNotFoundException(id));
+    ChatNoteDetail detail = findDetail(id);
+    ChatNote chatNote = detail.getChatNote();
 
     chatNote.setTitle(title);
+    markEdited(chatNote, "title");
 
     ChatNote updated = repository.save(chatNote);
+    contentCache.invalidate(updated.getId());
     log.info("Chat note {} title updated", id);
 
-    return toDetailResponse(updated);
+    return toDetailResponse(updated, detail);
   }
 
   /**
    * Update chat note tags
    */
   public ChatNoteDetailResponse updateTags(String id, List<String> tags) {
-    ChatNote chatNote =
-        repository.findById(id).orElseThrow(() -> new ChatNoteNotFoundException(id));
+    ChatNoteDetail detail = findDetail(id);
+    ChatNote chatNote = detail.getChatNote();
 
     chatNote.setTags(tags);
+    markEdited(chatNote, "tags");
 
     ChatNote updated = repository.save(chatNote);
+    contentCache.invalidate(updated.getId());
     log.info("Chat note {} tags updated", id);
 
-    return toDetailResponse(updated);
+    return toDetailResponse(updated, detail);
   }
 
   /**
    * Update conversation date
    */
   public ChatNoteDetailResponse updateConversationDate(String id, java.time.LocalDate date) {
-    ChatNote chatNote =
-        repository.findById(id).orElseThrow(() -> new ChatNoteNotFoundException(id));
+    ChatNoteDetail detail = findDetail(id);
+    ChatNote chatNote = detail.getChatNote();
 
     chatNote.setConversationDate(date);
+    markEdited(chatNote, "conversationDate");
 
     ChatNote updated = repository.save(chatNote);
+    contentCache.invalidate(updated.getId());
     log.info("Chat note {} conversation date updated", id);
 
-    return toDetailResponse(updated);
+    return toDetailResponse(updated, detail);
   }
 
   /**
    * Update initial query section
    */
   public ChatNoteDetailResponse updateInitialQuery(String id, String description) {
-    ChatNote chatNote =
-        repository.findById(id).orElseThrow(() -> new ChatNoteNotFoundException(id));
+    ChatNoteDetail detail = findDetail(id);
+    ChatNote chatNote = detail.getChatNote();
 
     if (chatNote.getSummary() == null) {
       chatNote.setSummary(ConversationSummary.builder().build());
@@ -742,11 +1038,14 @@ public class ChatNoteService {
     }
 
     querySection.setDescription(description);
+    markEdited(chatNote, "initialQuery");
+    mapper.updateDerivedFields(chatNote);
 
     ChatNote updated = repository.save(chatNote);
+    contentCache.invalidate(updated.getId());
     log.info("Chat note {} initial query updated", id);
 
-    return toDetailResponse(updated);
+    return toDetailResponse(updated, detail);
   }
 
   /**
@@ -754,8 +1053,8 @@ public class ChatNoteService {
    */
   public ChatNoteDetailResponse updateKeyInsights(String id, String description,
       List<String> keyPoints) {
-    ChatNote chatNote =
-        repository.findById(id).orElseThrow(() -> new ChatNoteNotFoundException(id));
+    ChatNoteDetail detail = findDetail(id);
+    ChatNote chatNote = detail.getChatNote();
 
     if (chatNote.getSummary() == null) {
       chatNote.setSummary(ConversationSummary.builder().build());
@@ -769,19 +1068,22 @@ public class ChatNoteService {
 
     insightsSection.setDescription(description);
     insightsSection.setKeyPoints(keyPoints);
+    markEdited(chatNote, "keyInsights");
+    mapper.updateDerivedFields(chatNote);
 
     ChatNote updated = repository.save(chatNote);
+    contentCache.invalidate(updated.getId());
     log.info("Chat note {} key insights updated", id);
 
-    return toDetailResponse(updated);
+    return toDetailResponse(updated, detail);
   }
 
   /**
    * Update follow-up explorations section
    */
   public ChatNoteDetailResponse updateFollowUpExplorations(String id, String description) {
-    ChatNote chatNote =
-        repository.findById(id).orElseThrow(() -> new ChatNoteNotFoundException(id));
+    ChatNoteDetail detail = findDetail(id);
+    ChatNote chatNote = detail.getChatNote();
 
     if (chatNote.getSummary() == null) {
       chatNote.setSummary(ConversationSummary.builder().build());
@@ -794,19 +1096,22 @@ public class ChatNoteService {
     }
 
     followUpSection.setDescription(description);
+    markEdited(chatNote, "followUpExplorations");
+    mapper.updateDerivedFields(chatNote);
 
     ChatNote updated = repository.save(chatNote);
+    contentCache.invalidate(updated.getId());
     log.info("Chat note {} follow-up explorations updated", id);
 
-    return toDetailResponse(updated);
+    return toDetailResponse(updated, detail);
   }
 
   /**
    * Update references list (replaces entire list)
    */
   public ChatNoteDetailResponse updateReferences(String id, List<ReferenceDto> referenceDtos) {
-    ChatNote chatNote =
-        repository.findById(id).orElseThrow(() -> new ChatNoteNotFoundException(id));
+    ChatNoteDetail detail = findDetail(id);
+    ChatNote chatNote = detail.getChatNote();
 
     if (chatNote.getSummary() == null) {
       chatNote.setSummary(ConversationSummary.builder().build());
@@ -820,11 +1125,13 @@ public class ChatNoteService {
             .toList();
 
     chatNote.getSummary().setReferences(references);
+    markEdited(chatNote, "references");
 
     ChatNote updated = repository.save(chatNote);
+    contentCache.invalidate(updated.getId());
     log.info("Chat note {} references updated", id);
 
-    return toDetailResponse(updated);
+    return toDetailResponse(updated, detail);
   }
 
   /**
@@ -832,28 +1139,21 @@ public class ChatNoteService {
    */
   public ChatNoteDetailResponse updateArtifactContent(String id, int index, String content) {
     // Verify chat note exists
-    ChatNote chatNote =
-        repository.findById(id).orElseThrow(() -> new ChatNoteNotFoundException(id));
-
-    // Fetch artifacts from separate collection
-    List<Artifact> artifacts = artifactRepository.findByChatNoteIdOrderByCreatedAtDesc(id);
+    ChatNoteDetail detail = findDetail(id);
+    ChatNote chatNote = detail.getChatNote();
 
-    if (index < 0 || index >= artifacts.size()) {
-      throw new IllegalArgumentException(
-          "Invalid artifact index: " + index + " for chat note: " + id);
+    // Update the content of the single artifact at that position in place
+    if (artifactRepository.updateContentByChatNoteIdAndOrdinal(id, index, content) == 0) {
+      throw invalidIndex("artifact", id, index);
     }
+    markEdited(chatNote, "artifacts");
 
-    // Update artifact content
-    Artifact artifact = artifacts.get(index);
-    artifact.setContent(content);
-    artifactRepository.save(artifact);
-
-    // Invalidate markdown cache
     ChatNote updated = repository.save(chatNote);
+    contentCache.invalidate(updated.getId());
 
     log.info("Chat note {} artifact {} content updated", id, index);
 
-    return toDetailResponse(updated);
+    return toDetailResponse(updated, detail);
   }
 
   /**
@@ -861,33 +1161,53 @@ public class ChatNoteService {
    */
   public ChatNoteDetailResponse updateAttachmentContent(String id, int index, String content) {
     // Verify chat note exists
-    ChatNote chatNote =
-        repository.findById(id).orElseThrow(() -> new ChatNoteNotFoundException(id));
+    ChatNoteDetail detail = findDetail(id);
+    ChatNote chatNote = detail.getChatNote();
 
-    // Fetch attachments from separate collection
-    List<Attachment> attachments = attachmentRepository.findByChatNoteIdOrderByCreatedAtDesc(id);
-
-    if (index < 0 || index >= attachments.size()) {
-      throw new IllegalArgumentException(
-          "Invalid attachment index: " + index + " for chat note: " + id);
+    // Update the content of the single attachment at that position in place
+    if (attachmentRepository.updateContentByChatNoteIdAndOrdinal(id, index, content) == 0) {
+      throw invalidIndex("attachment", id, index);
     }
+    markEdited(chatNote, "attachments");
 
-    // Update attachment content
-    Attachment attachment = attachments.get(index);
-    attachment.setContent(content);
-    attachmentRepository.save(attachment);
-
-    // Invalidate markdown cache
     ChatNote updated = repository.save(chatNote);
+    contentCache.invalidate(updated.getId());
 
     log.info("Chat note {} attachment {} content updated", id, index);
 
-    return toDetailResponse(updated);
+    return toDetailResponse(updated, detail);
   }
 
   // ==================== Private Helper Methods ====================
 
-  private ChatNoteResponse toResponse(ChatNote archive) {
+  /**
+   * Error for an index matching no artifact or attachment, telling a missing chat note apart. The
+   * chat note is only looked up once the indexed query found nothing.
+   */
+  private RuntimeException invalidIndex(String kind, String chatNoteId, int index) {
+    if (!repository.existsById(chatNoteId)) {
+      return new ChatNoteNotFoundException(chatNoteId);
+    }
+    return new IllegalArgumentException(
+        "Invalid " + kind + " index: " + index + " for chat note: " + chatNoteId);
+  }
+
+  /**
+   * Records a field the user changed, so reprocessing the source keeps the user's version
+   */
+  private static void markEdited(ChatNote chatNote, String field) {
+    if (chatNote.getEditedFields() == null) {
+      chatNote.setEditedFields(new java.util.ArrayList<>());
+    }
+    if (!chatNote.getEditedFields().contains(field)) {
+      chatNote.getEditedFields().add(field);
+    }
+  }
+
+  /**
+   * Build a list response from the card fields, the only ones list queries read
+   */
+  private ChatNoteResponse toResponse(ChatNoteCard archive) {
     return ChatNoteResponse.builder().id(archive.getId()).title(archive.getTitle())
         .conversationDate(archive.getConversationDate()).tags(archive.getTags())
         .labelIds(archive.getLabelIds()) // Include labelIds
@@ -896,15 +1216,31 @@ public class ChatNoteService {
         .attachmentCount(archive.getAttachmentCount()).artifactCount(archive.getArtifactCount())
         .viewCount(archive.getViewCount()).isPublic(archive.getIsPublic())
         .isArchived(archive.getIsArchived()).isTrashed(archive.getIsTrashed())
-        .isFavorite(archive.getIsFavorite()).createdAt(archive.getCreatedAt())
+        .isFavorite(archive.getIsFavorite()).contentPreview(archive.getContentPreview())
+        .wordCount(archive.getWordCount()).createdAt(archive.getCreatedAt())
         .updatedAt(archive.getUpdatedAt()).build();
   }
 
+  /**
+   * Load a chat note with its artifact and attachment metadata in one round-trip
+   */
+  private ChatNoteDetail findDetail(String id) {
+    return repository.findDetailById(id).orElseThrow(() -> new ChatNoteNotFoundException(id));
+  }
+
   private ChatNoteDetailResponse toDetailResponse(ChatNote archive) {
-    // Fetch artifacts and attachments from separate collections
-    List<Artifact> artifacts = artifactRepository.findByChatNoteIdOrderByCreatedAtDesc(archive.getId());
-    List<Attachment> attachments = attachmentRepository.findByChatNoteIdOrderByCreatedAtDesc(archive.getId());
+    return toDetailResponse(archive, findDetail(archive.getId()));
+  }
+
+  private ChatNoteDetailResponse toDetailResponse(ChatNoteDetail detail) {
+    return toDetailResponse(detail.getChatNote(), detail);
+  }
 
+  /**
+   * Build the response from the given state of the note, with the artifacts and attachments loaded
+   * along with it. Saving a note leaves those untouched, so they need not be read again.
+   */
+  private ChatNoteDetailResponse toDetailResponse(ChatNote archive, ChatNoteDetail detail) {
     return ChatNoteDetailResponse.builder().id(archive.getId())
         .archiveVersion(archive.getArchiveVersion()).archiveType(archive.getArchiveType())
         .createdDate(archive.getCreatedDate()).originalPlatform(archive.getOriginalPlatform())
@@ -913,35 +1249,19 @@ public class ChatNoteService {
         .workaroundsCount(archive.getWorkaroundsCount()).totalFileSize(archive.getTotalFileSize())
         .title(archive.getTitle()).conversationDate(archive.getConversationDate())
         .tags(archive.getTags()).labelIds(archive.getLabelIds()) // Include labelIds
-        .summary(archive.getSummary()).artifacts(artifacts)
-        .attachments(attachments).workarounds(archive.getWorkarounds())
-        .userId(archive.getUserId()).isPublic(archive.getIsPublic())
-        .isArchived(archive.getIsArchived()).isTrashed(archive.getIsTrashed())
-        .isFavorite(archive.getIsFavorite()).trashedAt(archive.getTrashedAt())
-        .viewCount(archive.getViewCount()).createdAt(archive.getCreatedAt())
-        .updatedAt(archive.getUpdatedAt()).build();
+        .summary(archive.getSummary()).artifacts(toArtifactMetadata(detail.getArtifacts()))
+        .attachments(toAttachmentMetadata(detail.getAttachments()))
+        .workarounds(archive.getWorkarounds()).userId(archive.getUserId())
+        .isPublic(archive.getIsPublic()).isArchived(archive.getIsArchived())
+        .isTrashed(archive.getIsTrashed()).isFavorite(archive.getIsFavorite())
+        .trashedAt(archive.getTrashedAt()).viewCount(archive.getViewCount())
+        .createdAt(archive.getCreatedAt()).updatedAt(archive.getUpdatedAt()).build();
   }
 
-  private ChatNoteDetailLightResponse toDetailLightResponse(ChatNote archive) {
-    // Fetch artifacts and attachments from separate collections
-    List<Artifact> artifacts = artifactRepository.findByChatNoteIdOrderByCreatedAtDesc(archive.getId());
-    List<Attachment> attachments = attachmentRepository.findByChatNoteIdOrderByCreatedAtDesc(archive.getId());
-
-    // Convert artifacts to metadata only (no content)
-    List<ArtifactMetadata> artifactMetadata = artifacts.stream()
-        .map(a -> ArtifactMetadata.builder().type(a.getType()).title(a.getTitle())
-            .language(a.getLanguage()).version(a.getVersion()).iterations(a.getIterations())
-            .evolutionNotes(a.getEvolutionNotes()).build())
-        .toList();
-
-    // Convert attachments to metadata only (no content)
-    List<AttachmentMetadata> attachmentMetadata = attachments.stream()
-        .map(att -> AttachmentMetadata.builder().filename(att.getFilename())
-            .isSummarized(att.getIsSummarized()).originalSize(att.getOriginalSize())
-            .summarizationLevel(att.getSummarizationLevel())
-            .contentPreserved(att.getContentPreserved())
-            .processingLimitation(att.getProcessingLimitation()).build())
-        .toList();
+  private ChatNoteDetailLightResponse toDetailLightResponse(ChatNoteDetail detail) {
+    ChatNote archive = detail.getChatNote();
+    String conversationContent = contentCache.get(archive.getId(), archive.getUpdatedAt(),
+        () -> markdownGenerator.generateConversationContent(archive));
 
     return ChatNoteDetailLightResponse.builder().id(archive.getId())
         .archiveVersion(archive.getArchiveVersion()).archiveType(archive.getArchiveType())
@@ -950,14 +1270,36 @@ public class ChatNoteService {
         .chatNoteCompleteness(archive.getChatNoteCompleteness().name())
         .workaroundsCount(archive.getWorkaroundsCount()).totalFileSize(archive.getTotalFileSize())
         .title(archive.getTitle()).conversationDate(archive.getConversationDate())
-        .tags(archive.getTags()).summary(archive.getSummary()).artifacts(artifactMetadata)
-        .attachments(attachmentMetadata).workarounds(archive.getWorkarounds())
-        .conversationContent(markdownGenerator.generateConversationContent(archive))
-        .fullMarkdown(markdownGenerator.generateMarkdown(archive)).userId(archive.getUserId())
+        .tags(archive.getTags()).summary(archive.getSummary())
+        .artifacts(toArtifactMetadata(detail.getArtifacts()))
+        .attachments(toAttachmentMetadata(detail.getAttachments()))
+        .workarounds(archive.getWorkarounds())
+        .conversationContent(conversationContent).userId(archive.getUserId())
         .isPublic(archive.getIsPublic()).isArchived(archive.getIsArchived())
         .isTrashed(archive.getIsTrashed()).isFavorite(archive.getIsFavorite())
         .trashedAt(archive.getTrashedAt()).viewCount(archive.getViewCount())
         .createdAt(archive.getCreatedAt()).updatedAt(archive.getUpdatedAt()).build();
   }
 
+  private static List<ArtifactMetadata> toArtifactMetadata(List<Artifact> artifacts) {
+    return artifacts.stream()
+        .map(a -> ArtifactMetadata.builder().type(a.getType()).title(a.getTitle())
+            .language(a.getLanguage()).version(a.getVersion()).iterations(a.getIterations())
+            .evolutionNotes(a.getEvolutionNotes()).contentPreview(a.getContentPreview())
+            .contentLength(a.getContentLength()).build())
+        .toList();
+  }
+
+  private static List<AttachmentMetadata> toAttachmentMetadata(List<Attachment> attachments) {
+    return attachments.stream()
+        .map(att -> AttachmentMetadata.builder().filename(att.getFilename())
+            .isSummarized(att.getIsSummarized()).originalSize(att.getOriginalSize())
+            .summarizationLevel(att.getSummarizationLevel())
+            .contentPreserved(att.getContentPreserved())
+            .processingLimitation(att.getProcessingLimitation())
+            .contentPreview(att.getContentPreview()).contentLength(att.getContentLength())
+            .build())
+        .toList();
+  }
+
 }
@@ -0,0 +1,30 @@
+package me.moonote.app.chatkeep.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Rendered share pages of public chat notes, keyed by note ID and locale. Entries are not
+ * invalidated explicitly: every change of a note, including its visibility, moves its version.
+ */
+@Component
+class ChatNoteSharePageCache extends VersionedTextCache {
+
+  @Value("${chatkeep.share-cache.max-entries:1000}")
+  private int maxEntries = 1000;
+
+  @Value("${chatkeep.share-cache.max-size:64MB}")
+  private DataSize maxSize = DataSize.ofMegabytes(64);
+
+  @Override
+  int maxEntries() {
+    return maxEntries;
+  }
+
+  @Override
+  DataSize maxSize() {
+    return maxSize;
+  }
+
+}
@@ -0,0 +1,69 @@
+package me.moonote.app.chatkeep.service;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import org.springframework.stereotype.Service;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import me.moonote.app.chatkeep.dto.response.ChatNoteDetailLightResponse;
+import me.moonote.app.chatkeep.model.ChatNote;
+import me.moonote.app.chatkeep.repository.ChatNoteRepository;
+import me.moonote.app.chatkeep.validation.ChatNoteNotFoundException;
+
+/**
+ * Public share pages of chat notes.
+ *
+ * A page is rendered once per note version and locale, with the conversation converted to HTML on
+ * the server, and served from {@link ChatNoteSharePageCache} until the note changes. Concurrent
+ * visitors of a page that is not cached yet wait for a single rendering. Every visit reads only
+ * the version of the note; views are counted in memory and written periodically by
+ * {@link ChatNoteViewCounter}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatNoteShareService {
+
+  private final ChatNoteRepository repository;
+  private final ChatNoteService chatNoteService;
+  private final ChatNoteSharePageCache pageCache;
+  private final ChatNoteViewCounter viewCounter;
+  private final MarkdownHtmlRenderer markdownRenderer;
+
+  /**
+   * Get the strong ETag of the share page of the current note version in the locale
+   *
+   * @return the quoted ETag, or null if the note does not exist, is not public or has no version
+   */
+  public String getSharePageETag(String id, Locale locale) {
+    return findPublicVersion(id).map(ChatNote::getUpdatedAt).map(version -> "\"" + id + "-"
+        + version.toEpochMilli() + "-" + locale.toLanguageTag() + "\"").orElse(null);
+  }
+
+  /**
+   * Get the share page of the current note version in the locale, counting a view. On a cache
+   * miss, the page is rendered from the note and its conversation as HTML.
+   *
+   * @throws ChatNoteNotFoundException if the note does not exist or is not public
+   */
+  public String getSharePage(String id, Locale locale,
+      BiFunction<ChatNoteDetailLightResponse, String, String> pageRenderer) {
+    ChatNote version = findPublicVersion(id).orElseThrow(() -> {
+      log.warn("Attempted to access missing or non-public ChatNote via share link: {}", id);
+      return new ChatNoteNotFoundException(id);
+    });
+
+    viewCounter.record(id);
+    return pageCache.get(id + "/" + locale.toLanguageTag(), version.getUpdatedAt(), () -> {
+      ChatNoteDetailLightResponse note = chatNoteService.getPublicChatNote(id);
+      return pageRenderer.apply(note, markdownRenderer.render(note.getConversationContent()));
+    });
+  }
+
+  private Optional<ChatNote> findPublicVersion(String id) {
+    return repository.findVersionById(id)
+        .filter(version -> Boolean.TRUE.equals(version.getIsPublic()));
+  }
+
+}
@@ -0,0 +1,59 @@
+package me.moonote.app.chatkeep.service;
+
+import java.util.List;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.stereotype.Component;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import me.moonote.app.chatkeep.model.ChatNote;
+
+/**
+ * Drops chat note indexes that were replaced under a new name.
+ *
+ * Automatic index creation only adds the indexes declared on {@link ChatNote}, so the ones they
+ * replaced would otherwise stay and slow down every write.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+class ChatNoteSupersededIndexes {
+
+  // Replaced by the same keys ending with _id, for keyset pagination
+  static final List<String> NAMES = List.of("userId_isTrashed_isArchived_createdAt",
+      "userId_isFavorite_createdAt", "userId_labelIds_createdAt", "isPublic_createdAt");
+
+  private final MongoTemplate mongoTemplate;
+
+  /**
+   * Runs in the background to keep startup independent of MongoDB.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  void drop() {
+    Thread.ofVirtual().name("superseded-index-drop").start(() -> {
+      try {
+        List<String> dropped = dropAll();
+        if (!dropped.isEmpty()) {
+          log.info("Dropped superseded chat note indexes {}", dropped);
+        }
+      } catch (Exception e) {
+        log.warn("Could not drop superseded chat note indexes: {}", e.getMessage());
+      }
+    });
+  }
+
+  /**
+   * @return the names of the indexes dropped
+   */
+  List<String> dropAll() {
+    IndexOperations indexOps = mongoTemplate.indexOps(ChatNote.class);
+    List<String> dropped =
+        indexOps.getIndexInfo().stream().map(IndexInfo::getName).filter(NAMES::contains).toList();
+    dropped.forEach(indexOps::dropIndex);
+    return dropped;
+  }
+
+}
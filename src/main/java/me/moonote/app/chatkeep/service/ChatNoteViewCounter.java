@@ -0,0 +1,103 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import me.moonote.app.chatkeep.model.ChatNote;
+
+/**
+ * Counts views in memory and adds them to the notes periodically, one {@code $inc} per viewed note
+ * in a single bulk write. A popular note costs one write per interval instead of one per view.
+ * Views counted since the last flush are lost if the server dies, and are written on a clean
+ * shutdown.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+class ChatNoteViewCounter {
+
+  private final MongoTemplate mongoTemplate;
+
+  private final Map<String, Long> pending = new ConcurrentHashMap<>();
+
+  @Value("${chatkeep.view-count.flush-interval:10s}")
+  private Duration flushInterval = Duration.ofSeconds(10);
+
+  private ScheduledExecutorService scheduler;
+
+  @PostConstruct
+  void start() {
+    scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("views-"));
+    long interval = flushInterval.toMillis();
+    scheduler.scheduleWithFixedDelay(() -> {
+      try {
+        flush();
+      } catch (RuntimeException e) {
+        log.warn("Failed to write view counts, retrying on the next flush", e);
+      }
+    }, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  void stop() throws InterruptedException {
+    scheduler.shutdown();
+    scheduler.awaitTermination(5, TimeUnit.SECONDS);
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      log.warn("Failed to write view counts on shutdown, {} notes lost views", pending.size(), e);
+    }
+  }
+
+  void record(String chatNoteId) {
+    pending.merge(chatNoteId, 1L, Long::sum);
+  }
+
+  /**
+   * Write the views counted so far. Views of a failed write are counted again for the next flush.
+   *
+   * @return the number of notes updated
+   */
+  synchronized int flush() {
+    if (pending.isEmpty()) {
+      return 0;
+    }
+    Map<String, Long> views = new HashMap<>();
+    // Removing an entry is atomic with the increments, views counted after it start a new entry
+    for (String chatNoteId : pending.keySet()) {
+      Long count = pending.remove(chatNoteId);
+      if (count != null) {
+        views.put(chatNoteId, count);
+      }
+    }
+
+    BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, ChatNote.class);
+    views.forEach((chatNoteId, count) -> bulk.updateOne(query(where("_id").is(chatNoteId)),
+        new Update().inc("viewCount", count)));
+    try {
+      bulk.execute();
+    } catch (RuntimeException e) {
+      views.forEach((chatNoteId, count) -> pending.merge(chatNoteId, count, Long::sum));
+      throw e;
+    }
+    return views.size();
+  }
+
+}
@@ -0,0 +1,323 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import me.moonote.app.chatkeep.dto.response.BulkImportResponse;
+import me.moonote.app.chatkeep.dto.response.BulkImportResult;
+import me.moonote.app.chatkeep.dto.response.IngestJobResponse;
+import me.moonote.app.chatkeep.model.IngestJob;
+import me.moonote.app.chatkeep.model.IngestJobStatus;
+import me.moonote.app.chatkeep.model.IngestJobType;
+import me.moonote.app.chatkeep.repository.IngestJobRepository;
+import me.moonote.app.chatkeep.validation.IngestJobNotFoundException;
+
+/**
+ * Runs uploads and imports in the background.
+ *
+ * The input is copied to a temporary file before the request returns, then parsed and stored on a
+ * bounded executor. Every progress step is written to the job document and pushed to the job's
+ * SSE subscribers. Subscribers are held in memory, so events are only pushed by the instance that
+ * runs the job; the job document can always be polled.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IngestJobService {
+
+  private final IngestJobRepository repository;
+  private final MongoTemplate mongoTemplate;
+  private final ChatNoteService chatNoteService;
+  private final ChatNoteImportService importService;
+
+  @Value("${chatkeep.ingest.threads:2}")
+  private int threads = 2;
+
+  /**
+   * Jobs waiting for a thread. Further jobs are handled by the rejection policy.
+   */
+  @Value("${chatkeep.ingest.queue-capacity:50}")
+  private int queueCapacity = 50;
+
+  /**
+   * {@code reject} answers 503 when the queue is full, {@code caller-runs} processes the job on the
+   * request thread instead.
+   */
+  @Value("${chatkeep.ingest.rejection-policy:reject}")
+  private String rejectionPolicy = "reject";
+
+  @Value("${chatkeep.ingest.sse-timeout:10m}")
+  private Duration sseTimeout = Duration.ofMinutes(10);
+
+  private final Map<String, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+  private ThreadPoolExecutor executor;
+
+  @PostConstruct
+  void start() {
+    RejectedExecutionHandler handler = switch (rejectionPolicy.toLowerCase(Locale.ROOT)) {
+      case "reject" -> new ThreadPoolExecutor.AbortPolicy();
+      case "caller-runs" -> new ThreadPoolExecutor.CallerRunsPolicy();
+      default -> throw new IllegalArgumentException(
+          "Unknown chatkeep.ingest.rejection-policy: " + rejectionPolicy);
+    };
+    executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("ingest-"),
+        handler);
+  }
+
+  @PreDestroy
+  void stop() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Jobs that were queued or running when the server stopped will never finish; mark them failed
+   * so clients stop waiting. Runs in the background to keep startup independent of MongoDB.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  void failInterruptedJobs() {
+    Instant startedAt = Instant.now();
+    Thread.ofVirtual().name("ingest-recovery").start(() -> {
+      try {
+        long count = mongoTemplate.updateMulti(
+            query(where("status").nin(IngestJobStatus.COMPLETED, IngestJobStatus.FAILED)
+                .and("createdAt").lt(startedAt)),
+            new Update().set("status", IngestJobStatus.FAILED)
+                .set("message", "Interrupted by a server restart. Please upload again.")
+                .set("updatedAt", Instant.now()),
+            IngestJob.class).getModifiedCount();
+        if (count > 0) {
+          log.warn("Marked {} interrupted ingest jobs as failed", count);
+        }
+      } catch (Exception e) {
+        log.warn("Could not check for interrupted ingest jobs: {}", e.getMessage());
+      }
+    });
+  }
+
+  /**
+   * Queue a pasted archive.
+   *
+   * @throws RejectedExecutionException if the queue is full
+   */
+  public IngestJobResponse submit(String markdownContent, String userId) throws IOException {
+    Path input = Files.createTempFile("chatkeep-ingest-", ".md");
+    Files.writeString(input, markdownContent == null ? "" : markdownContent,
+        StandardCharsets.UTF_8);
+    return submit(IngestJobType.UPLOAD, "pasted archive", input, userId);
+  }
+
+  /**
+   * Queue an uploaded file. The stream is copied before this returns, so it may be closed.
+   *
+   * @throws RejectedExecutionException if the queue is full
+   */
+  public IngestJobResponse submit(IngestJobType type, String filename, InputStream in,
+      String userId) throws IOException {
+    Path input = Files.createTempFile("chatkeep-ingest-", ".tmp");
+    try {
+      Files.copy(in, input, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      Files.deleteIfExists(input);
+      throw e;
+    }
+    return submit(type, filename, input, userId);
+  }
+
+  private IngestJobResponse submit(IngestJobType type, String filename, Path input,
+      String userId) throws IOException {
+    IngestJob job;
+    try {
+      job = repository.save(IngestJob.builder().userId(userId).type(type).filename(filename)
+          .status(IngestJobStatus.QUEUED).message("Waiting to be processed")
+          .chatNoteIds(List.of()).errors(List.of()).build());
+    } catch (RuntimeException e) {
+      Files.deleteIfExists(input);
+      throw e;
+    }
+    log.info("Queued {} job {} for user: {}", type, job.getId(), userId);
+
+    try {
+      executor.execute(() -> run(job, input));
+    } catch (RejectedExecutionException e) {
+      Files.deleteIfExists(input);
+      finish(job.getId(), IngestJobStatus.FAILED, "Too many uploads in progress", List.of(),
+          List.of("Too many uploads in progress. Please try again later."));
+      throw e;
+    }
+    return toResponse(job);
+  }
+
+  /**
+   * Get a job of the user.
+   *
+   * @throws IngestJobNotFoundException if the job does not exist or belongs to another user
+   */
+  public IngestJobResponse getJob(String jobId, String userId) {
+    return repository.findByIdAndUserId(jobId, userId).map(IngestJobService::toResponse)
+        .orElseThrow(() -> new IngestJobNotFoundException(jobId));
+  }
+
+  /**
+   * Subscribe to the progress events of a job of the user. The current state is sent right away;
+   * the stream completes with the {@code completed} or {@code failed} event.
+   *
+   * @throws IngestJobNotFoundException if the job does not exist or belongs to another user
+   */
+  public SseEmitter subscribe(String jobId, String userId) {
+    if (repository.findByIdAndUserId(jobId, userId).isEmpty()) {
+      throw new IngestJobNotFoundException(jobId);
+    }
+
+    SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+    // Register before reading the job again, so no event between the read and the registration is
+    // lost
+    subscribers.compute(jobId, (id, emitters) -> {
+      List<SseEmitter> list = emitters != null ? emitters : new CopyOnWriteArrayList<>();
+      list.add(emitter);
+      return list;
+    });
+    Runnable unsubscribe = () -> unsubscribe(jobId, emitter);
+    emitter.onCompletion(unsubscribe);
+    emitter.onTimeout(unsubscribe);
+    emitter.onError(e -> unsubscribe.run());
+
+    IngestJob job = repository.findByIdAndUserId(jobId, userId).orElse(null);
+    if (job == null) {
+      unsubscribe.run();
+      throw new IngestJobNotFoundException(jobId);
+    }
+    send(emitter, job);
+    return emitter;
+  }
+
+  /**
+   * Removes the emitter, and the job's entry along with its last emitter.
+   */
+  private void unsubscribe(String jobId, SseEmitter emitter) {
+    subscribers.computeIfPresent(jobId, (id, emitters) -> {
+      emitters.remove(emitter);
+      return emitters.isEmpty() ? null : emitters;
+    });
+  }
+
+  private void run(IngestJob job, Path input) {
+    String jobId = job.getId();
+    IngestProgressListener listener = (status, message) -> progress(jobId, status, message);
+
+    try (InputStream in = Files.newInputStream(input)) {
+      if (job.getType() == IngestJobType.IMPORT) {
+        BulkImportResponse response =
+            importService.importArchives(in, job.getFilename(), job.getUserId(), listener);
+        List<String> chatNoteIds = response.getResults().stream()
+            .filter(BulkImportResult::isSuccess).map(BulkImportResult::getChatNoteId).distinct()
+            .toList();
+        List<String> errors = response.getResults().stream().filter(result -> !result.isSuccess())
+            .map(result -> result.getSource() + ": " + String.join(", ", result.getErrors()))
+            .toList();
+        finish(jobId, IngestJobStatus.COMPLETED, String.format("Imported %d of %d archives",
+            response.getImportedCount(), response.getTotalCount()), chatNoteIds, errors);
+      } else {
+        String chatNoteId = chatNoteService.ingestChatNote(in, job.getUserId(), listener);
+        finish(jobId, IngestJobStatus.COMPLETED, "Chat note uploaded successfully",
+            List.of(chatNoteId), List.of());
+      }
+    } catch (Exception e) {
+      log.warn("Ingest job {} failed: {}", jobId, e.getMessage());
+      finish(jobId, IngestJobStatus.FAILED, "Upload failed", List.of(),
+          List.of(String.valueOf(e.getMessage())));
+    } finally {
+      try {
+        Files.deleteIfExists(input);
+      } catch (IOException e) {
+        log.warn("Could not delete ingest input {}", input, e);
+      }
+    }
+  }
+
+  private void progress(String jobId, IngestJobStatus status, String message) {
+    update(jobId, new Update().set("status", status).set("message", message));
+  }
+
+  private void finish(String jobId, IngestJobStatus status, String message,
+      List<String> chatNoteIds, List<String> errors) {
+    log.info("Ingest job {} {}: {}", jobId, status, message);
+    update(jobId, new Update().set("status", status).set("message", message)
+        .set("chatNoteIds", chatNoteIds).set("errors", errors));
+  }
+
+  private void update(String jobId, Update update) {
+    IngestJob job = mongoTemplate.findAndModify(query(where("id").is(jobId)),
+        update.set("updatedAt", Instant.now()), FindAndModifyOptions.options().returnNew(true),
+        IngestJob.class);
+    if (job == null) {
+      return;
+    }
+    List<SseEmitter> emitters = subscribers.getOrDefault(jobId, List.of());
+    emitters.forEach(emitter -> send(emitter, job));
+    if (job.getStatus().isFinished()) {
+      subscribers.remove(jobId);
+    }
+  }
+
+  /**
+   * Sends the job as a {@code progress}, {@code completed} or {@code failed} event, completing
+   * the stream on the last two.
+   */
+  private static void send(SseEmitter emitter, IngestJob job) {
+    String event = switch (job.getStatus()) {
+      case COMPLETED -> "completed";
+      case FAILED -> "failed";
+      default -> "progress";
+    };
+    try {
+      emitter.send(SseEmitter.event().name(event).data(toResponse(job)));
+      if (job.getStatus().isFinished()) {
+        emitter.complete();
+      }
+    } catch (IOException | IllegalStateException e) {
+      // The client went away; the completion callback unsubscribes the emitter
+      emitter.completeWithError(e);
+    }
+  }
+
+  static IngestJobResponse toResponse(IngestJob job) {
+    return IngestJobResponse.builder().id(job.getId()).type(job.getType().name())
+        .filename(job.getFilename()).status(job.getStatus().name())
+        .finished(job.getStatus().isFinished()).message(job.getMessage())
+        .chatNoteIds(job.getChatNoteIds()).errors(job.getErrors()).createdAt(job.getCreatedAt())
+        .updatedAt(job.getUpdatedAt()).build();
+  }
+
+}
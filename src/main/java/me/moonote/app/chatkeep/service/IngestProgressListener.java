@@ -0,0 +1,16 @@
+package me.moonote.app.chatkeep.service;
+
+import me.moonote.app.chatkeep.model.IngestJobStatus;
+
+/**
+ * Receives the progress of an upload or import as it moves through parsing and persistence.
+ */
+@FunctionalInterface
+public interface IngestProgressListener {
+
+  IngestProgressListener NONE = (status, message) -> {
+  };
+
+  void onProgress(IngestJobStatus status, String message);
+
+}
@@ -0,0 +1,603 @@
+package me.moonote.app.chatkeep.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Offset index over a markdown archive, built with a single line-oriented pass.
+ *
+ * Building the index also normalizes the archive boundaries (code block wrappers, preamble before
+ * the first {@code ---} line, everything from {@code _End of archived conversation_} on) without
+ * copying the content. All positions are offsets into the original text; extractors only
+ * materialize the pieces they keep. The text is usually a string, but large uploads are indexed
+ * straight from a memory-mapped buffer (see {@link MarkdownUploadReader}).
+ *
+ * Every scan is linear in the archive size and polls the upload's {@link ParseBudget}.
+ */
+@Slf4j
+final class MarkdownArchiveIndex {
+
+  static final String END_MARKER = "_End of archived conversation_";
+
+  private static final int LINES_PER_BUDGET_CHECK = 256;
+
+  private static final String ARTIFACT_OPENER = ":::artifact ";
+  private static final String ATTACHMENT_OPENER = ":::attachment filename=\"";
+  private static final String BLOCK_CLOSER = ":::";
+
+  /**
+   * A line starting with {@code ##}. The section body ends at the next line starting with
+   * {@code ##} or {@code ---}; the heading block ends at the next {@code ##} line.
+   */
+  static final class Heading {
+    final String name;
+    final int lineStart;
+    final int lineEnd;
+    int sectionEnd = -1;
+    int blockEnd = -1;
+
+    Heading(String name, int lineStart, int lineEnd) {
+      this.name = name;
+      this.lineStart = lineStart;
+      this.lineEnd = lineEnd;
+    }
+  }
+
+  /**
+   * A {@code :::artifact} or {@code :::attachment} block. The header holds the attributes (or the
+   * filename), the content runs up to the line before the closing {@code :::}.
+   */
+  static final class Block {
+    final int headerStart;
+    final int headerEnd;
+    final int contentStart;
+    int contentEnd = -1;
+
+    Block(int headerStart, int headerEnd, int contentStart) {
+      this.headerStart = headerStart;
+      this.headerEnd = headerEnd;
+      this.contentStart = contentStart;
+    }
+  }
+
+  private final CharSequence source;
+  private final ParseBudget budget;
+  private int start;
+  private int end;
+
+  private boolean frontmatterOpened;
+  private int yamlStart = -1;
+  private int yamlEnd = -1;
+  private int titleStart = -1;
+  private int titleEnd = -1;
+
+  private final List<Heading> headings = new ArrayList<>();
+  private final List<Block> artifacts = new ArrayList<>();
+  private final List<Block> attachments = new ArrayList<>();
+
+  private MarkdownArchiveIndex(CharSequence source, ParseBudget budget) {
+    this.source = source;
+    this.budget = budget;
+    this.start = 0;
+    this.end = source.length();
+  }
+
+  /**
+   * Normalizes the boundaries of the given archive and indexes its structure.
+   *
+   * @param content the raw markdown content, may be null
+   * @param budget the time budget of the upload
+   * @return the index
+   */
+  static MarkdownArchiveIndex build(CharSequence content, ParseBudget budget) {
+    MarkdownArchiveIndex index = normalize(content, budget);
+    if (index.start < index.end) {
+      index.scan();
+    }
+    return index;
+  }
+
+  /**
+   * Normalizes the boundaries of the given archive without indexing its structure. Only
+   * {@link #contentHash()}, {@link #utf8Length()} and {@link #toString()} are meaningful on the
+   * result.
+   *
+   * @param content the raw markdown content, may be null
+   * @param budget the time budget of the upload
+   * @return the normalized, unscanned index
+   */
+  static MarkdownArchiveIndex normalize(CharSequence content, ParseBudget budget) {
+    MarkdownArchiveIndex index =
+        new MarkdownArchiveIndex(content == null ? "" : content, budget);
+    index.trim();
+    if (index.start < index.end) {
+      index.stripCodeBlockWrappers();
+      index.trimBeforeArchiveStart();
+      index.trimAfterArchiveEnd();
+    }
+    return index;
+  }
+
+  /**
+   * Strips code block wrappers (```) that users often add when copying archives.
+   */
+  private void stripCodeBlockWrappers() {
+    int openingEnd = openingFenceEnd();
+    if (openingEnd < 0) {
+      return;
+    }
+
+    // Content is trimmed, so a matching closing fence is a trailing line made of backticks only
+    int fenceLength = 0;
+    while (source.charAt(start + fenceLength) == '`') {
+      fenceLength++;
+    }
+    int closing = end;
+    while (closing > start && source.charAt(closing - 1) == '`') {
+      closing--;
+    }
+    if (end - closing < fenceLength || closing - 1 < openingEnd
+        || source.charAt(closing - 1) != '\n') {
+      log.debug("Opening code fence found but no matching closing fence, leaving content as-is");
+      return;
+    }
+
+    start = openingEnd;
+    end = closing - 1;
+    log.debug("Stripped code block wrappers from markdown content");
+  }
+
+  /**
+   * Returns the end of an opening fence (``` or ```language or ````) at the start of the archive,
+   * or -1. The fence line ends at the last newline of the whitespace following the language tag.
+   */
+  private int openingFenceEnd() {
+    int fenceEnd = start;
+    while (fenceEnd < end && source.charAt(fenceEnd) == '`') {
+      fenceEnd++;
+    }
+    if (fenceEnd - start < 3) {
+      return -1;
+    }
+
+    int languageStart = skipWhitespace(fenceEnd);
+    int languageEnd = languageStart;
+    while (languageEnd < end && isWordChar(source.charAt(languageEnd))) {
+      languageEnd++;
+    }
+    int lineBreak = lastNewline(languageEnd, skipWhitespace(languageEnd));
+    if (lineBreak < 0) {
+      lineBreak = lastNewline(fenceEnd, languageStart);
+    }
+    return lineBreak < 0 ? -1 : lineBreak + 1;
+  }
+
+  /**
+   * Moves the start to the first {@code ---} line (YAML frontmatter opening), dropping any preamble
+   * text the AI added before the archive.
+   */
+  private void trimBeforeArchiveStart() {
+    int lines = 0;
+    for (int lineStart = start; lineStart < end;) {
+      if (++lines % LINES_PER_BUDGET_CHECK == 0) {
+        budget.check();
+      }
+      int lineEnd = lineEnd(lineStart);
+      if (startsWith("---", lineStart) && lineStart + 3 <= lineEnd
+          && isBlank(lineStart + 3, lineEnd)) {
+        if (lineStart > start) {
+          log.debug("Trimmed {} characters before archive start (preamble text removed)",
+              lineStart - start);
+        }
+        start = lineStart;
+        frontmatterOpened = true;
+        return;
+      }
+      lineStart = lineEnd + 1;
+    }
+  }
+
+  /**
+   * Moves the end to the {@code _End of archived conversation_} marker, dropping the marker and any
+   * follow-up text the AI added after the archive.
+   */
+  private void trimAfterArchiveEnd() {
+    int marker = indexOf(END_MARKER, start);
+    if (marker < 0 || marker + END_MARKER.length() > end) {
+      return;
+    }
+
+    int originalLength = end - start;
+    end = marker;
+    trim();
+    if (end - start < originalLength) {
+      log.debug("Trimmed {} characters after archive end (follow-up text and end marker removed)",
+          originalLength - (end - start));
+    }
+  }
+
+  private void scan() {
+    boolean inFrontmatter = frontmatterOpened;
+    boolean afterFrontmatter = !frontmatterOpened;
+    Heading lastHeading = null;
+    Block openArtifact = null;
+    Block openAttachment = null;
+    int lines = 0;
+
+    for (int lineStart = start; lineStart < end;) {
+      if (++lines % LINES_PER_BUDGET_CHECK == 0) {
+        budget.check();
+      }
+      int lineEnd = lineEnd(lineStart);
+
+      if (lineStart == start && frontmatterOpened) {
+        // Opening delimiter, the YAML body starts on the next line
+        yamlStart = lineEnd + 1;
+      } else if (lineStart < lineEnd) {
+        char first = source.charAt(lineStart);
+        boolean rule = first == '-' && startsWith("---", lineStart);
+        boolean heading = first == '#' && startsWith("##", lineStart);
+
+        if (rule || heading) {
+          if (lastHeading != null && lastHeading.sectionEnd < 0) {
+            lastHeading.sectionEnd = lineStart;
+          }
+        }
+
+        if (heading) {
+          if (lastHeading != null) {
+            lastHeading.blockEnd = lineStart;
+          }
+          lastHeading = new Heading(headingName(lineStart, lineEnd), lineStart, lineEnd);
+          headings.add(lastHeading);
+        } else if (first == '#' && titleStart < 0 && startsWith("# ", lineStart)) {
+          int textEnd = lineStart + 2;
+          while (textEnd < lineEnd && source.charAt(textEnd) != '\r') {
+            textEnd++;
+          }
+          if (textEnd > lineStart + 2) {
+            titleStart = lineStart + 2;
+            titleEnd = textEnd;
+          }
+        }
+
+        if (inFrontmatter && rule && lineStart > yamlStart) {
+          yamlEnd = lineStart - 1;
+          inFrontmatter = false;
+          afterFrontmatter = true;
+        } else if (afterFrontmatter && first == ':') {
+          openArtifact = scanArtifactLine(openArtifact, lineStart, lineEnd);
+          openAttachment = scanAttachmentLine(openAttachment, lineStart, lineEnd);
+        }
+      }
+
+      lineStart = lineEnd + 1;
+    }
+
+    if (lastHeading != null) {
+      if (lastHeading.sectionEnd < 0) {
+        lastHeading.sectionEnd = end;
+      }
+      lastHeading.blockEnd = end;
+    }
+  }
+
+  /**
+   * Artifact and attachment blocks are tracked independently: any line starting with {@code :::}
+   * closes an open block, and a closing line never opens a new one.
+   */
+  private Block scanArtifactLine(Block open, int lineStart, int lineEnd) {
+    if (open != null) {
+      if (startsWith(BLOCK_CLOSER, lineStart) && lineStart > open.contentStart) {
+        open.contentEnd = lineStart - 1;
+        artifacts.add(open);
+        return null;
+      }
+      return open;
+    }
+    if (startsWith(ARTIFACT_OPENER, lineStart)) {
+      return new Block(lineStart + ARTIFACT_OPENER.length(), lineEnd, lineEnd + 1);
+    }
+    return null;
+  }
+
+  private Block scanAttachmentLine(Block open, int lineStart, int lineEnd) {
+    if (open != null) {
+      if (startsWith(BLOCK_CLOSER, lineStart) && lineStart > open.contentStart) {
+        open.contentEnd = lineStart - 1;
+        attachments.add(open);
+        return null;
+      }
+      return open;
+    }
+    if (startsWith(ATTACHMENT_OPENER, lineStart)) {
+      int filenameStart = lineStart + ATTACHMENT_OPENER.length();
+      int headerEnd = lineEnd;
+      while (headerEnd > filenameStart && source.charAt(headerEnd - 1) <= ' ') {
+        headerEnd--;
+      }
+      if (headerEnd > filenameStart && source.charAt(headerEnd - 1) == '"') {
+        return new Block(filenameStart, headerEnd - 1, lineEnd + 1);
+      }
+    }
+    return null;
+  }
+
+  private String headingName(int lineStart, int lineEnd) {
+    int nameStart = lineStart;
+    while (nameStart < lineEnd && source.charAt(nameStart) == '#') {
+      nameStart++;
+    }
+    return text(nameStart, lineEnd);
+  }
+
+  private int lineEnd(int lineStart) {
+    int newline = indexOf('\n', lineStart);
+    return newline < 0 || newline > end ? end : newline;
+  }
+
+  private int skipWhitespace(int from) {
+    while (from < end && Character.isWhitespace(source.charAt(from))) {
+      from++;
+    }
+    return from;
+  }
+
+  private int lastNewline(int from, int to) {
+    for (int i = to - 1; i >= from; i--) {
+      if (source.charAt(i) == '\n') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isWordChar(char c) {
+    return c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+  }
+
+  private boolean isBlank(int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (!Character.isWhitespace(source.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean startsWith(String prefix, int at) {
+    if (source instanceof String string) {
+      return string.startsWith(prefix, at);
+    }
+    if (at < 0 || at + prefix.length() > source.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (source.charAt(at + i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int indexOf(char c, int from) {
+    if (source instanceof String string) {
+      return string.indexOf(c, from);
+    }
+    for (int i = from; i < source.length(); i++) {
+      if (source.charAt(i) == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int indexOf(String str, int from) {
+    if (source instanceof String string) {
+      return string.indexOf(str, from);
+    }
+    char first = str.charAt(0);
+    for (int at = indexOf(first, from); at >= 0; at = indexOf(first, at + 1)) {
+      if (startsWith(str, at)) {
+        return at;
+      }
+    }
+    return -1;
+  }
+
+  private void trim() {
+    while (start < end && source.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && source.charAt(end - 1) <= ' ') {
+      end--;
+    }
+  }
+
+  /**
+   * Returns the trimmed text between two offsets.
+   */
+  String text(int from, int to) {
+    while (from < to && source.charAt(from) <= ' ') {
+      from++;
+    }
+    while (to > from && source.charAt(to - 1) <= ' ') {
+      to--;
+    }
+    return substring(from, to);
+  }
+
+  /**
+   * Returns the text between two offsets as is.
+   */
+  String substring(int from, int to) {
+    return source.subSequence(from, to).toString();
+  }
+
+  /**
+   * Returns whether the archive starts with {@code ---}.
+   */
+  boolean startsWithDelimiter() {
+    int at = start;
+    while (at < end && source.charAt(at) <= ' ') {
+      at++;
+    }
+    return startsWith("---", at) && at + 3 <= end;
+  }
+
+  /**
+   * Returns whether the archive has a closed YAML frontmatter.
+   */
+  boolean hasFrontmatter() {
+    return yamlEnd >= 0;
+  }
+
+  /**
+   * Returns the YAML frontmatter body, or null if the frontmatter is missing or not closed.
+   */
+  String yaml() {
+    return hasFrontmatter() ? substring(yamlStart, yamlEnd) : null;
+  }
+
+  /**
+   * Returns the text of the first {@code # } line, or null if there is none.
+   */
+  String title() {
+    return titleStart < 0 ? null : substring(titleStart, titleEnd);
+  }
+
+  /**
+   * Returns whether any {@code ##} heading starts with the given name.
+   */
+  boolean hasHeadingStartingWith(String name) {
+    return headings.stream().anyMatch(heading -> heading.name.startsWith(name));
+  }
+
+  /**
+   * Returns the {@code ##} headings with the given name in document order.
+   */
+  List<Heading> headings(String name) {
+    return headings.stream().filter(heading -> heading.name.equals(name)).toList();
+  }
+
+  List<Block> artifacts() {
+    return artifacts;
+  }
+
+  List<Block> attachments() {
+    return attachments;
+  }
+
+  /**
+   * Polls the time budget of the upload.
+   */
+  void checkBudget() {
+    budget.check();
+  }
+
+  /**
+   * Returns the text following the first {@code opener} (which ends with {@code [}) up to the
+   * first {@code ]} on the same line, or null if there is none.
+   */
+  String findBracketed(String opener) {
+    int at = indexOf(opener, start);
+    while (at >= 0 && at + opener.length() <= end) {
+      int valueStart = at + opener.length();
+      int lineEnd = lineEnd(valueStart);
+      for (int close = valueStart + 1; close < lineEnd; close++) {
+        if (source.charAt(close) == ']') {
+          return substring(valueStart, close);
+        }
+      }
+      // No later opener on this line can be closed either
+      at = indexOf(opener, lineEnd);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the first non-blank line following the first {@code label} that is followed by
+   * whitespace, or null if there is none.
+   */
+  String findAfterWhitespace(String label) {
+    for (int at = indexOf(label, start); at >= 0
+        && at + label.length() <= end; at = indexOf(label, at + 1)) {
+      int valueStart = at + label.length();
+      if (valueStart < end && Character.isWhitespace(source.charAt(valueStart))) {
+        valueStart = skipWhitespace(valueStart);
+        return valueStart < end ? text(valueStart, lineEnd(valueStart)) : "";
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Finds the first position where {@code pattern} matches, trying only the occurrences of
+   * {@code literal}. The pattern must begin with the literal and match a bounded length.
+   *
+   * @return the matcher positioned on the match, or null if there is none
+   */
+  Matcher find(Pattern pattern, String literal) {
+    Matcher matcher = pattern.matcher(source);
+    for (int at = indexOf(literal, start); at >= 0
+        && at + literal.length() <= end; at = indexOf(literal, at + 1)) {
+      if (matcher.region(at, end).lookingAt()) {
+        return matcher;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns a 64-bit FNV-1a hash of the normalized archive as 16 hex digits. Carriage returns are
+   * skipped, so the same archive pasted with CRLF or LF line endings hashes the same.
+   */
+  String contentHash() {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = start; i < end; i++) {
+      char c = source.charAt(i);
+      if (c == '\r') {
+        continue;
+      }
+      hash = (hash ^ (c & 0xff)) * 0x100000001b3L;
+      hash = (hash ^ (c >>> 8)) * 0x100000001b3L;
+    }
+    return String.format("%016x", hash);
+  }
+
+  /**
+   * Returns the UTF-8 encoded size of the archive without encoding it.
+   */
+  long utf8Length() {
+    long bytes = 0;
+    for (int i = start; i < end; i++) {
+      char c = source.charAt(i);
+      if (c < 0x80) {
+        bytes++;
+      } else if (c < 0x800) {
+        bytes += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < end
+          && Character.isLowSurrogate(source.charAt(i + 1))) {
+        bytes += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        bytes++; // unpaired surrogates are encoded as '?'
+      } else {
+        bytes += 3;
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Returns the normalized archive as a string.
+   */
+  @Override
+  public String toString() {
+    return substring(start, end);
+  }
+
+}
@@ -1,5 +1,6 @@
 package me.moonote.app.chatkeep.service;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
@@ -11,10 +12,17 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.yaml.snakeyaml.Yaml;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
@@ -30,6 +38,7 @@ import me.moonote.app.chatkeep.dto.QuerySectionDto;
 import me.moonote.app.chatkeep.dto.ReferenceDto;
 import me.moonote.app.chatkeep.dto.ReferenceType;
 import me.moonote.app.chatkeep.dto.WorkaroundDto;
+import me.moonote.app.chatkeep.model.IngestJobStatus;
 import me.moonote.app.chatkeep.validation.ChatNoteValidationResult;
 import me.moonote.app.chatkeep.validation.InvalidChatNoteException;
 import me.moonote.app.chatkeep.validation.JsonSchemaValidator;
@@ -40,46 +49,149 @@ import me.moonote.app.chatkeep.validation.ValidationResult;
 @RequiredArgsConstructor
 public class MarkdownChatNotePreprocessor {
 
+  private static final Pattern DATE_PATTERN =
+      Pattern.compile("\\*\\*Date:\\*\\* (\\d{4}-\\d{2}-\\d{2})");
+  private static final Pattern BULLET_PATTERN =
+      Pattern.compile("^[-*]\\s+(.+)$", Pattern.MULTILINE);
+
+  private static final String ATTACHMENTS_REFERENCED = "Attachments referenced";
+  private static final List<String> ARTIFACTS_CREATED =
+      List.of("Artifacts created", "Artifacts referenced");
+
+  private static final Pattern ORIGINAL_SIZE_PATTERN = Pattern.compile("- Original size: (.+)");
+  private static final Pattern SUMMARIZATION_LEVEL_PATTERN =
+      Pattern.compile("- Summarization level: (.+)");
+  private static final Pattern CONTENT_PRESERVED_PATTERN =
+      Pattern.compile("- Content preserved: (.+)");
+  private static final Pattern PROCESSING_LIMITATION_PATTERN =
+      Pattern.compile("- Processing limitation: (.+)");
+
+  private static final Pattern ARTIFACT_COUNT_PATTERN =
+      Pattern.compile("ARTIFACT_COUNT:\\s*(\\d+)");
+  private static final Pattern ATTACHMENT_COUNT_PATTERN =
+      Pattern.compile("ATTACHMENT_COUNT:\\s*(\\d+)");
+
   private final ObjectMapper objectMapper;
   private final JsonSchemaValidator schemaValidator;
 
+  /**
+   * Wall-clock budget for preprocessing one upload. Uploads are open to anonymous users, so a
+   * crafted or badly mangled paste must not be able to hold a request thread indefinitely.
+   */
+  @Value("${chatkeep.preprocessor.time-budget:5s}")
+  private Duration timeBudget = Duration.ofSeconds(5);
+
+  /**
+   * Schema validation stops after this many errors instead of reporting every bad element.
+   */
+  @Value("${chatkeep.preprocessor.max-validation-errors:10}")
+  private int maxValidationErrors = 10;
+
+  /**
+   * Archives of at least this size have their sections, artifacts and attachments extracted on
+   * parallel tasks. Smaller archives are parsed on the calling thread.
+   */
+  @Value("${chatkeep.preprocessor.parallel-threshold:512KB}")
+  private DataSize parallelThreshold = DataSize.ofKilobytes(512);
+
+  /**
+   * Hashes the archive after normalizing its boundaries, without parsing it. Identical archives
+   * hash the same however they were wrapped or padded when pasted.
+   */
+  public String contentHash(CharSequence markdownContent) {
+    return MarkdownArchiveIndex.normalize(markdownContent, ParseBudget.of(timeBudget))
+        .contentHash();
+  }
+
   public ChatNoteValidationResult preprocess(String markdownContent) {
+    return preprocess(markdownContent, -1);
+  }
+
+  /**
+   * Preprocesses an archive whose encoded size is already known, e.g. counted while streaming an
+   * upload, so it does not have to be measured again.
+   *
+   * @param markdownContent the archive text
+   * @param sizeInBytes the size of the uploaded file, or -1 to measure the normalized archive
+   */
+  public ChatNoteValidationResult preprocess(CharSequence markdownContent, long sizeInBytes) {
+    return preprocess(markdownContent, sizeInBytes, IngestProgressListener.NONE);
+  }
+
+  /**
+   * Preprocesses an archive, reporting when it has been stripped, parsed and validated.
+   */
+  public ChatNoteValidationResult preprocess(CharSequence markdownContent, long sizeInBytes,
+      IngestProgressListener listener) {
     try {
       log.info("Starting preprocessing of markdown archive");
 
-      // Step 0: Strip code block wrappers and trim extraneous content
-      markdownContent = stripAndTrimArchive(markdownContent);
+      // Step 0: Strip code block wrappers, trim extraneous content and index the archive
+      MarkdownArchiveIndex archive =
+          MarkdownArchiveIndex.build(markdownContent, ParseBudget.of(timeBudget));
+
+      listener.onProgress(IngestJobStatus.STRIPPED, "Archive normalized");
 
       // Step 1: Validate basic structure
-      List<String> structuralErrors = validateBasicStructure(markdownContent);
+      List<String> structuralErrors = validateBasicStructure(archive);
       if (!structuralErrors.isEmpty()) {
         log.warn("Archive structural validation failed: {}", structuralErrors);
         return ChatNoteValidationResult.failure(structuralErrors);
       }
 
-      // Step 2-6: Parse all sections
-      ChatNoteMetadataDto metadata = parseYamlFrontmatter(markdownContent);
-      ConversationSummaryDto summary = parseSummary(markdownContent);
-      List<ArtifactDto> artifacts = extractArtifacts(markdownContent);
-      List<AttachmentDto> attachments = extractAttachments(markdownContent);
-      List<WorkaroundDto> workarounds = extractWorkarounds(markdownContent);
+      long archiveSize = sizeInBytes >= 0 ? sizeInBytes : archive.utf8Length();
+
+      // Step 2-6: Parse all sections, fanned out across cores for very large archives
+      ChatNoteMetadataDto metadata;
+      ConversationSummaryDto summary;
+      List<ArtifactDto> artifacts;
+      List<AttachmentDto> attachments;
+      List<WorkaroundDto> workarounds;
+      if (archiveSize >= parallelThreshold.toBytes()) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+          Future<ChatNoteMetadataDto> metadataTask =
+              executor.submit(() -> parseYamlFrontmatter(archive));
+          Future<ConversationSummaryDto> summaryTask =
+              executor.submit(() -> parseSummary(archive));
+          Future<List<ArtifactDto>> artifactsTask =
+              executor.submit(() -> extractArtifacts(archive, executor));
+          Future<List<AttachmentDto>> attachmentsTask =
+              executor.submit(() -> extractAttachments(archive, executor));
+          Future<List<WorkaroundDto>> workaroundsTask =
+              executor.submit(() -> extractWorkarounds(archive));
+
+          // Joined in the sequential order, so a failing archive reports the same error
+          metadata = join(metadataTask);
+          summary = join(summaryTask);
+          artifacts = join(artifactsTask);
+          attachments = join(attachmentsTask);
+          workarounds = join(workaroundsTask);
+        }
+      } else {
+        metadata = parseYamlFrontmatter(archive);
+        summary = parseSummary(archive);
+        artifacts = extractArtifacts(archive, null);
+        attachments = extractAttachments(archive, null);
+        workarounds = extractWorkarounds(archive);
+      }
 
       // Step 7: Calculate and set counts from actual content (backend is authoritative)
-      calculateAndSetMetadataCounts(metadata, artifacts, attachments, workarounds, markdownContent);
+      calculateAndSetMetadataCounts(metadata, artifacts, attachments, workarounds, archiveSize);
+
+      listener.onProgress(IngestJobStatus.PARSED, String.format(
+          "Parsed %d artifacts and %d attachments", artifacts.size(), attachments.size()));
 
       // Step 8: Create JSON structure
       ChatNoteDto chatNoteDto = ChatNoteDto.builder().metadata(metadata).summary(summary)
           .artifacts(artifacts).attachments(attachments).workarounds(workarounds).build();
 
-      // Step 9: Convert to JSON
-      String json = objectMapper.writeValueAsString(chatNoteDto);
-      log.debug("Converted archive to JSON, size: {} bytes", json.length());
-
-      // Step 10: Validate against schema
-      ValidationResult validationResult = schemaValidator.validate(json);
+      // Step 9: Validate against schema on the object tree, stopping at the first errors
+      ValidationResult validationResult =
+          schemaValidator.validate(chatNoteDto, maxValidationErrors);
 
       if (validationResult.isValid()) {
         log.info("Chat note validation successful");
+        listener.onProgress(IngestJobStatus.VALIDATED, "Archive is valid");
         return ChatNoteValidationResult.success(chatNoteDto);
       } else {
         log.warn("Chat note validation failed: {}", validationResult.getErrors());
@@ -92,142 +204,20 @@ public class MarkdownChatNotePreprocessor {
     }
   }
 
-  /**
-   * Strips code block wrappers and trims extraneous content before/after the archive.
-   *
-   * Performs three cleanup operations:
-   * 1. Strips code block wrappers (```) that users often add when copying archives
-   * 2. Trims any content before the archive starts (first `---` YAML delimiter)
-   * 3. Trims any content after the archive ends (`_End of archived conversation_`)
-   *
-   * @param content the markdown content
-   * @return cleaned content with wrappers removed and boundaries trimmed
-   */
-  private String stripAndTrimArchive(String content) {
-    if (content == null || content.trim().isEmpty()) {
-      return content;
-    }
-
-    String cleaned = content.trim();
+  private ChatNoteMetadataDto parseYamlFrontmatter(MarkdownArchiveIndex archive) {
+    String yamlContent = archive.yaml();
 
-    // Operation 1: Strip code block wrappers
-    cleaned = stripCodeBlockWrappers(cleaned);
-
-    // Operation 2: Trim everything before archive start (first `---`)
-    cleaned = trimBeforeArchiveStart(cleaned);
-
-    // Operation 3: Trim everything after archive end
-    cleaned = trimAfterArchiveEnd(cleaned);
-
-    return cleaned;
-  }
-
-  /**
-   * Strips code block wrappers (```) from markdown content if present.
-   *
-   * Handles: - Plain code blocks: ```content``` - Language-specific blocks: ```markdown content ```
-   * - Multiple backticks: ````content````
-   */
-  private String stripCodeBlockWrappers(String content) {
-    String trimmed = content.trim();
-
-    // Pattern to match opening code fence: ``` or ```language or ````
-    Pattern openingPattern = Pattern.compile("^(`{3,})\\s*[\\w]*\\s*\\n");
-    Matcher openingMatcher = openingPattern.matcher(trimmed);
-
-    if (!openingMatcher.find()) {
-      return content;
-    }
-
-    String fence = openingMatcher.group(1);
-    int fenceLength = fence.length();
-
-    // Check if content ends with matching closing fence
-    Pattern closingPattern = Pattern.compile("\\n`{" + fenceLength + ",}\\s*$");
-    Matcher closingMatcher = closingPattern.matcher(trimmed);
-
-    if (!closingMatcher.find()) {
-      log.debug("Opening code fence found but no matching closing fence, leaving content as-is");
-      return content;
-    }
-
-    // Remove opening and closing fences
-    int startIndex = openingMatcher.end();
-    int endIndex = closingMatcher.start();
-
-    String unwrapped = trimmed.substring(startIndex, endIndex);
-    log.debug("Stripped code block wrappers from markdown content");
-
-    return unwrapped;
-  }
-
-  /**
-   * Trims all content before the archive starts (first `---` YAML frontmatter delimiter).
-   * Handles cases where AI adds preamble text before the actual archive.
-   */
-  private String trimBeforeArchiveStart(String content) {
-    // Find first occurrence of `---` at the start of a line (YAML frontmatter opening)
-    Pattern yamlStartPattern = Pattern.compile("^---\\s*$", Pattern.MULTILINE);
-    Matcher matcher = yamlStartPattern.matcher(content);
-
-    if (!matcher.find()) {
-      // No YAML frontmatter found, return as-is
-      return content;
-    }
-
-    int startIndex = matcher.start();
-    if (startIndex == 0) {
-      // Archive already starts at beginning, no trimming needed
-      return content;
-    }
-
-    String trimmed = content.substring(startIndex);
-    log.debug("Trimmed {} characters before archive start (preamble text removed)", startIndex);
-
-    return trimmed;
-  }
-
-  /**
-   * Trims all content after the archive ends (`_End of archived conversation_` marker).
-   * Handles cases where AI adds follow-up text after the archive.
-   */
-  private String trimAfterArchiveEnd(String content) {
-    String endMarker = "_End of archived conversation_";
-    int endMarkerIndex = content.indexOf(endMarker);
-
-    if (endMarkerIndex == -1) {
-      // No end marker found, return as-is
-      return content;
-    }
-
-    // Trim at the END marker (inclusive - remove the marker itself)
-    String trimmed = content.substring(0, endMarkerIndex).trim();
-
-    int charactersRemoved = content.length() - trimmed.length();
-    if (charactersRemoved > 0) {
-      log.debug("Trimmed {} characters after archive end (follow-up text and end marker removed)",
-          charactersRemoved);
-    }
-
-    return trimmed;
-  }
-
-  private ChatNoteMetadataDto parseYamlFrontmatter(String content) {
-    Pattern yamlPattern = Pattern.compile("^---\\s*\\n(.*?)\\n---", Pattern.DOTALL);
-    Matcher matcher = yamlPattern.matcher(content);
-
-    if (!matcher.find()) {
+    if (yamlContent == null) {
       throw new InvalidChatNoteException("YAML frontmatter not found");
     }
 
-    String yamlContent = matcher.group(1);
     Yaml yaml = new Yaml();
     Map<String, Object> yamlMap = yaml.load(yamlContent);
 
     // Extract title, date, tags from the main content
-    String title = extractTitle(content);
-    LocalDate conversationDate = extractConversationDate(content);
-    List<String> tags = extractTags(content);
+    String title = extractTitle(archive);
+    LocalDate conversationDate = extractConversationDate(archive);
+    List<String> tags = extractTags(archive);
 
     // Parse CREATED_DATE with flexible format support
     LocalDate createdDate = parseFlexibleDate(String.valueOf(yamlMap.get("CREATED_DATE")));
@@ -244,38 +234,29 @@ public class MarkdownChatNotePreprocessor {
         .conversationDate(conversationDate).tags(tags).build();
   }
 
-  private String extractTitle(String content) {
-    Pattern titlePattern = Pattern.compile("^# (.+)$", Pattern.MULTILINE);
-    Matcher matcher = titlePattern.matcher(content);
-    if (matcher.find()) {
-      return matcher.group(1);
-    }
-    return "Untitled Archive";
+  private String extractTitle(MarkdownArchiveIndex archive) {
+    String title = archive.title();
+    return title != null ? title : "Untitled Archive";
   }
 
-  private LocalDate extractConversationDate(String content) {
-    Pattern datePattern = Pattern.compile("\\*\\*Date:\\*\\* (\\d{4}-\\d{2}-\\d{2})");
-    Matcher matcher = datePattern.matcher(content);
-    if (matcher.find()) {
+  private LocalDate extractConversationDate(MarkdownArchiveIndex archive) {
+    Matcher matcher = archive.find(DATE_PATTERN, "**Date:** ");
+    if (matcher != null) {
       return LocalDate.parse(matcher.group(1));
     }
     return LocalDate.now();
   }
 
-  private List<String> extractTags(String content) {
+  private List<String> extractTags(MarkdownArchiveIndex archive) {
     // Try with brackets first: **Tags:** [tag1, tag2, tag3]
-    Pattern tagsPatternWithBrackets = Pattern.compile("\\*\\*Tags:\\*\\* \\[(.+?)\\]");
-    Matcher matcher = tagsPatternWithBrackets.matcher(content);
-    if (matcher.find()) {
-      String tagsStr = matcher.group(1);
+    String tagsStr = archive.findBracketed("**Tags:** [");
+    if (tagsStr != null) {
       return Arrays.stream(tagsStr.split(",")).map(String::trim).collect(Collectors.toList());
     }
 
     // Fallback: Try without brackets: **Tags:** tag1, tag2, tag3
-    Pattern tagsPatternWithoutBrackets = Pattern.compile("\\*\\*Tags:\\*\\*\\s+(.+?)(?=\\n|$)");
-    matcher = tagsPatternWithoutBrackets.matcher(content);
-    if (matcher.find()) {
-      String tagsStr = matcher.group(1).trim();
+    tagsStr = archive.findAfterWhitespace("**Tags:**");
+    if (tagsStr != null) {
       return Arrays.stream(tagsStr.split(",")).map(String::trim).filter(s -> !s.isEmpty())
           .collect(Collectors.toList());
     }
@@ -329,125 +310,127 @@ public class MarkdownChatNotePreprocessor {
     return LocalDate.now();
   }
 
-  private ConversationSummaryDto parseSummary(String content) {
-    return ConversationSummaryDto.builder().initialQuery(parseInitialQuery(content))
-        .keyInsights(parseKeyInsights(content))
-        .followUpExplorations(parseFollowUpExplorations(content))
-        .references(parseReferences(content)).build();
+  private ConversationSummaryDto parseSummary(MarkdownArchiveIndex archive) {
+    return ConversationSummaryDto.builder().initialQuery(parseInitialQuery(archive))
+        .keyInsights(parseKeyInsights(archive))
+        .followUpExplorations(parseFollowUpExplorations(archive))
+        .references(parseReferences(archive)).build();
   }
 
-  private QuerySectionDto parseInitialQuery(String content) {
+  /**
+   * Returns the trimmed body of the first non-empty "## heading" section, bounded by the next "##"
+   * or "---" line, or null if there is none.
+   */
+  private String findSection(MarkdownArchiveIndex archive, String heading) {
+    for (MarkdownArchiveIndex.Heading section : archive.headings(heading)) {
+      String body = archive.text(section.lineEnd, section.sectionEnd);
+      if (!body.isEmpty()) {
+        return body;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns everything before the first "**Attachments referenced" / "**Artifacts created" /
+   * "**Artifacts referenced" line of a section (excluding its first line), trimmed.
+   */
+  private String extractDescription(String sectionContent) {
+    for (int at = sectionContent.indexOf("\n**", 1); at >= 0; at =
+        sectionContent.indexOf("\n**", at + 1)) {
+      int label = at + 3;
+      if (sectionContent.startsWith(ATTACHMENTS_REFERENCED, label)
+          || ARTIFACTS_CREATED.stream().anyMatch(name -> sectionContent.startsWith(name, label))) {
+        return sectionContent.substring(0, at).trim();
+      }
+    }
+    return sectionContent;
+  }
+
+  private QuerySectionDto parseInitialQuery(MarkdownArchiveIndex archive) {
     // Extract section content between "## Initial Query" and next "##" or "---"
-    Pattern sectionPattern =
-        Pattern.compile("## Initial Query\\s*\\n\\n(.+?)(?=\\n##|\\n---)", Pattern.DOTALL);
-    Matcher matcher = sectionPattern.matcher(content);
+    String sectionContent = findSection(archive, "Initial Query");
 
-    if (!matcher.find()) {
+    if (sectionContent == null) {
       return QuerySectionDto.builder().build();
     }
 
-    String sectionContent = matcher.group(1).trim();
-
     // Extract description (everything before artifacts/attachments references)
-    Pattern descPattern = Pattern.compile(
-        "^(.+?)(?=\\n\\*\\*(?:Attachments referenced|Artifacts (?:created|referenced)))",
-        Pattern.DOTALL);
-    Matcher descMatcher = descPattern.matcher(sectionContent);
-    String description = descMatcher.find() ? descMatcher.group(1).trim() : sectionContent;
+    String description = extractDescription(sectionContent);
 
     // Extract attachments referenced (flexible format - with or without brackets)
     List<String> attachmentsReferenced =
-        extractReferencedItems(sectionContent, "Attachments referenced");
+        extractReferencedItems(sectionContent, List.of(ATTACHMENTS_REFERENCED));
 
     // Extract artifacts created/referenced (flexible format)
     List<String> artifactsCreated =
-        extractReferencedItems(sectionContent, "Artifacts (?:created|referenced)");
+        extractReferencedItems(sectionContent, ARTIFACTS_CREATED);
 
     return QuerySectionDto.builder().description(description)
         .attachmentsReferenced(attachmentsReferenced).artifactsCreated(artifactsCreated).build();
   }
 
-  private InsightsSectionDto parseKeyInsights(String content) {
+  private InsightsSectionDto parseKeyInsights(MarkdownArchiveIndex archive) {
     // Extract section content between "## Key Insights" and next "##" or "---"
-    Pattern sectionPattern =
-        Pattern.compile("## Key Insights\\s*\\n\\n(.+?)(?=\\n##|\\n---)", Pattern.DOTALL);
-    Matcher matcher = sectionPattern.matcher(content);
+    String sectionContent = findSection(archive, "Key Insights");
 
-    if (!matcher.find()) {
+    if (sectionContent == null) {
       return InsightsSectionDto.builder().build();
     }
 
-    String sectionContent = matcher.group(1).trim();
-
     // Extract description (everything before artifacts/attachments references)
-    Pattern descPattern = Pattern.compile(
-        "^(.+?)(?=\\n\\*\\*(?:Attachments referenced|Artifacts (?:created|referenced)))",
-        Pattern.DOTALL);
-    Matcher descMatcher = descPattern.matcher(sectionContent);
-    String description = descMatcher.find() ? descMatcher.group(1).trim() : sectionContent;
+    String description = extractDescription(sectionContent);
 
     // Extract key points (all bullet points in the description)
     List<String> keyPoints = new ArrayList<>();
-    Pattern bulletPattern = Pattern.compile("^[-*]\\s+(.+)$", Pattern.MULTILINE);
-    Matcher bulletMatcher = bulletPattern.matcher(description);
+    Matcher bulletMatcher = BULLET_PATTERN.matcher(description);
     while (bulletMatcher.find()) {
       keyPoints.add(bulletMatcher.group(1).trim());
     }
 
     // Extract attachments referenced
     List<String> attachmentsReferenced =
-        extractReferencedItems(sectionContent, "Attachments referenced");
+        extractReferencedItems(sectionContent, List.of(ATTACHMENTS_REFERENCED));
 
     // Extract artifacts created/referenced
     List<String> artifactsCreated =
-        extractReferencedItems(sectionContent, "Artifacts (?:created|referenced)");
+        extractReferencedItems(sectionContent, ARTIFACTS_CREATED);
 
     return InsightsSectionDto.builder().description(description).keyPoints(keyPoints)
         .attachmentsReferenced(attachmentsReferenced).artifactsCreated(artifactsCreated).build();
   }
 
-  private FollowUpSectionDto parseFollowUpExplorations(String content) {
+  private FollowUpSectionDto parseFollowUpExplorations(MarkdownArchiveIndex archive) {
     // Extract section content between "## Follow-up Explorations" and next "##" or "---"
-    Pattern sectionPattern =
-        Pattern.compile("## Follow-up Explorations\\s*\\n\\n(.+?)(?=\\n##|\\n---)", Pattern.DOTALL);
-    Matcher matcher = sectionPattern.matcher(content);
+    String sectionContent = findSection(archive, "Follow-up Explorations");
 
-    if (!matcher.find()) {
+    if (sectionContent == null) {
       return FollowUpSectionDto.builder().build();
     }
 
-    String sectionContent = matcher.group(1).trim();
-
     // Extract description (everything before artifacts/attachments references)
-    Pattern descPattern = Pattern.compile(
-        "^(.+?)(?=\\n\\*\\*(?:Attachments referenced|Artifacts (?:created|referenced)))",
-        Pattern.DOTALL);
-    Matcher descMatcher = descPattern.matcher(sectionContent);
-    String description = descMatcher.find() ? descMatcher.group(1).trim() : sectionContent;
+    String description = extractDescription(sectionContent);
 
     // Extract attachments referenced
     List<String> attachmentsReferenced =
-        extractReferencedItems(sectionContent, "Attachments referenced");
+        extractReferencedItems(sectionContent, List.of(ATTACHMENTS_REFERENCED));
 
     // Extract artifacts created/referenced
     List<String> artifactsCreated =
-        extractReferencedItems(sectionContent, "Artifacts (?:created|referenced)");
+        extractReferencedItems(sectionContent, ARTIFACTS_CREATED);
 
     return FollowUpSectionDto.builder().description(description)
         .attachmentsReferenced(attachmentsReferenced).artifactsCreated(artifactsCreated).build();
   }
 
-  private List<ReferenceDto> parseReferences(String content) {
+  private List<ReferenceDto> parseReferences(MarkdownArchiveIndex archive) {
     List<ReferenceDto> references = new ArrayList<>();
-    Pattern refsPattern =
-        Pattern.compile("## References/Links\\s*\\n\\n(.+?)(?=\\n##|\\n---)", Pattern.DOTALL);
-    Matcher matcher = refsPattern.matcher(content);
+    String refsSection = findSection(archive, "References/Links");
 
-    if (!matcher.find()) {
+    if (refsSection == null) {
       return references;
     }
 
-    String refsSection = matcher.group(1);
     String[] lines = refsSection.split("\n");
 
     for (String line : lines) {
@@ -462,11 +445,10 @@ public class MarkdownChatNotePreprocessor {
       String lineContent = trimmedLine.substring(1).trim();
 
       // Try Format 1: Markdown link [Description](URL)
-      Pattern mdLinkPattern = Pattern.compile("\\[(.+?)\\]\\((.+?)\\)");
-      Matcher mdLinkMatcher = mdLinkPattern.matcher(lineContent);
-      if (mdLinkMatcher.find()) {
-        references.add(ReferenceDto.builder().description(mdLinkMatcher.group(1).trim())
-            .url(mdLinkMatcher.group(2).trim()).type(ReferenceType.EXTERNAL_LINK).build());
+      String[] mdLink = findMarkdownLink(lineContent);
+      if (mdLink != null) {
+        references.add(ReferenceDto.builder().description(mdLink[0].trim())
+            .url(mdLink[1].trim()).type(ReferenceType.EXTERNAL_LINK).build());
         continue;
       }
 
@@ -499,119 +481,190 @@ public class MarkdownChatNotePreprocessor {
     return references;
   }
 
-  private List<ArtifactDto> extractArtifacts(String content) {
-    List<ArtifactDto> artifacts = new ArrayList<>();
-
-    // Find the end of YAML frontmatter to avoid matching examples in INSTRUCTIONS_FOR_AI
-    int yamlEnd = findYamlFrontmatterEnd(content);
-    String contentAfterYaml = yamlEnd > 0 ? content.substring(yamlEnd) : content;
-
-    Pattern artifactPattern = Pattern.compile(
-        ":::artifact (.*?)\\n(.*?)\\n:::", Pattern.DOTALL);
-
-    Matcher matcher = artifactPattern.matcher(contentAfterYaml);
+  /**
+   * Finds the first markdown link [Description](URL) in a line.
+   *
+   * @return the description and URL, or null if there is no link
+   */
+  private String[] findMarkdownLink(String line) {
+    for (int open = line.indexOf('['); open >= 0; open = line.indexOf('[', open + 1)) {
+      int middle = line.indexOf("](", open + 2);
+      if (middle < 0) {
+        return null;
+      }
+      int close = line.indexOf(')', middle + 3);
+      if (close < 0) {
+        return null;
+      }
+      return new String[] {line.substring(open + 1, middle), line.substring(middle + 2, close)};
+    }
+    return null;
+  }
 
-    while (matcher.find()) {
-      String attributes = matcher.group(1);
-      String artifactContent = matcher.group(2).trim();
+  /**
+   * Extracts the artifacts in archive order, on the executor if one is given.
+   */
+  private List<ArtifactDto> extractArtifacts(MarkdownArchiveIndex archive,
+      ExecutorService executor) throws ExecutionException, InterruptedException {
+    // Blocks are only indexed after the YAML frontmatter, so examples in INSTRUCTIONS_FOR_AI are
+    // never matched
+    return mapInOrder(archive.artifacts(), block -> toArtifact(archive, block), executor);
+  }
 
-      Map<String, String> attrs = parseAttributes(attributes);
+  private ArtifactDto toArtifact(MarkdownArchiveIndex archive, MarkdownArchiveIndex.Block block) {
+    archive.checkBudget();
+    String artifactContent = archive.text(block.contentStart, block.contentEnd);
 
-      // Extract evolution notes (lines starting with #)
-      String evolutionNotes = extractEvolutionNotes(artifactContent);
-      String cleanContent = removeEvolutionNotes(artifactContent);
+    Map<String, String> attrs =
+        parseAttributes(archive.substring(block.headerStart, block.headerEnd));
 
-      artifacts.add(ArtifactDto.builder().type(attrs.get("type")).title(attrs.get("title"))
-          .language(attrs.get("language")).version(attrs.get("version"))
-          .iterations(attrs.get("iterations")).evolutionNotes(evolutionNotes).content(cleanContent)
-          .build());
-    }
+    // Extract evolution notes (lines starting with #)
+    String evolutionNotes = extractEvolutionNotes(artifactContent);
+    String cleanContent = removeEvolutionNotes(artifactContent);
 
-    return artifacts;
+    return ArtifactDto.builder().type(attrs.get("type")).title(attrs.get("title"))
+        .language(attrs.get("language")).version(attrs.get("version"))
+        .iterations(attrs.get("iterations")).evolutionNotes(evolutionNotes).content(cleanContent)
+        .build();
   }
 
   /**
-   * Find the end position of YAML frontmatter (second "---" marker). Returns the index after the
-   * closing "---", or -1 if not found.
+   * Extracts the attachments in archive order, on the executor if one is given.
    */
-  private int findYamlFrontmatterEnd(String content) {
-    Pattern yamlPattern =
-        Pattern.compile("^---\\s*\\n.*?\\n---", Pattern.DOTALL | Pattern.MULTILINE);
-    Matcher matcher = yamlPattern.matcher(content);
-    if (matcher.find()) {
-      return matcher.end();
-    }
-    return -1;
+  private List<AttachmentDto> extractAttachments(MarkdownArchiveIndex archive,
+      ExecutorService executor) throws ExecutionException, InterruptedException {
+    return mapInOrder(archive.attachments(), block -> toAttachment(archive, block), executor);
   }
 
-  private List<AttachmentDto> extractAttachments(String content) {
-    List<AttachmentDto> attachments = new ArrayList<>();
+  private AttachmentDto toAttachment(MarkdownArchiveIndex archive,
+      MarkdownArchiveIndex.Block block) {
+    archive.checkBudget();
+    String filename = archive.substring(block.headerStart, block.headerEnd);
+    String attachmentContent = archive.text(block.contentStart, block.contentEnd);
 
-    // Find the end of YAML frontmatter to avoid matching examples in INSTRUCTIONS_FOR_AI
-    int yamlEnd = findYamlFrontmatterEnd(content);
-    String contentAfterYaml = yamlEnd > 0 ? content.substring(yamlEnd) : content;
+    boolean isSummarized = attachmentContent.contains("⚠️ NOTE:");
 
-    Pattern attachmentPattern = Pattern.compile(
-        ":::attachment filename=\"(.*?)\"\\n(.*?)\\n:::",
-        Pattern.DOTALL);
+    AttachmentDto.AttachmentDtoBuilder builder = AttachmentDto.builder().filename(filename)
+        .content(attachmentContent).isSummarized(isSummarized);
 
-    Matcher matcher = attachmentPattern.matcher(contentAfterYaml);
+    if (isSummarized) {
+      parseWarningDetails(attachmentContent, builder);
+    }
 
-    while (matcher.find()) {
-      String filename = matcher.group(1);
-      String attachmentContent = matcher.group(2).trim();
+    return builder.build();
+  }
 
-      boolean isSummarized = attachmentContent.contains("⚠️ NOTE:");
+  /**
+   * Maps the blocks one task each when an executor is given, collecting the results in block
+   * order either way.
+   */
+  private static <R> List<R> mapInOrder(List<MarkdownArchiveIndex.Block> blocks,
+      Function<MarkdownArchiveIndex.Block, R> mapper, ExecutorService executor)
+      throws ExecutionException, InterruptedException {
+    List<R> results = new ArrayList<>(blocks.size());
+    if (executor == null || blocks.size() < 2) {
+      blocks.forEach(block -> results.add(mapper.apply(block)));
+      return results;
+    }
 
-      AttachmentDto.AttachmentDtoBuilder builder = AttachmentDto.builder().filename(filename)
-          .content(attachmentContent).isSummarized(isSummarized);
+    List<Future<R>> tasks = new ArrayList<>(blocks.size());
+    for (MarkdownArchiveIndex.Block block : blocks) {
+      tasks.add(executor.submit(() -> mapper.apply(block)));
+    }
+    for (Future<R> task : tasks) {
+      results.add(join(task));
+    }
+    return results;
+  }
 
-      if (isSummarized) {
-        parseWarningDetails(attachmentContent, builder);
+  /**
+   * Waits for a parse task, rethrowing its exception as is so errors read the same as on the
+   * sequential path.
+   */
+  private static <T> T join(Future<T> task) throws ExecutionException, InterruptedException {
+    try {
+      return task.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
       }
-
-      attachments.add(builder.build());
+      throw e;
     }
-
-    return attachments;
   }
 
-  private List<WorkaroundDto> extractWorkarounds(String content) {
+  /**
+   * Extracts workaround entries: consecutive paragraphs starting with "- **filename**: " in the
+   * "## Workarounds Used" section. Intro text and "None - ..." paragraphs are skipped.
+   */
+  private List<WorkaroundDto> extractWorkarounds(MarkdownArchiveIndex archive) {
     List<WorkaroundDto> workarounds = new ArrayList<>();
-    Pattern workaroundsPattern = Pattern.compile(
-        "## Workarounds Used\\s*\\n\\n.*?\\n\\n((?:- \\*\\*.+?\\*\\*:.+?\\n\\n)+)", Pattern.DOTALL);
 
-    Matcher matcher = workaroundsPattern.matcher(content);
+    for (MarkdownArchiveIndex.Heading section : archive.headings("Workarounds Used")) {
+      String body = archive.substring(section.lineEnd, section.blockEnd);
+      boolean inEntries = false;
 
-    if (matcher.find()) {
-      String workaroundsSection = matcher.group(1);
-      Pattern entryPattern =
-          Pattern.compile("- \\*\\*(.+?)\\*\\*: (.+?)(?=\\n\\n|$)", Pattern.DOTALL);
-      Matcher entryMatcher = entryPattern.matcher(workaroundsSection);
-
-      while (entryMatcher.find()) {
-        String filename = entryMatcher.group(1);
-        String description = entryMatcher.group(2).trim();
+      for (int paragraphStart = 0; paragraphStart < body.length();) {
+        archive.checkBudget();
+        int paragraphEnd = body.indexOf("\n\n", paragraphStart);
+        if (paragraphEnd < 0) {
+          paragraphEnd = body.length();
+        }
+        String paragraph = body.substring(paragraphStart, paragraphEnd).trim();
+        paragraphStart = paragraphEnd + 2;
+
+        if (paragraph.startsWith("- **")) {
+          inEntries = true;
+          int separator = paragraph.indexOf("**: ", 5);
+          if (separator >= 0) {
+            workarounds.add(WorkaroundDto.builder().filename(paragraph.substring(4, separator))
+                .workaround(paragraph.substring(separator + 4).trim()).build());
+          }
+        } else if (inEntries && !paragraph.isEmpty()) {
+          break;
+        }
+      }
 
-        workarounds.add(WorkaroundDto.builder().filename(filename).workaround(description).build());
+      if (!workarounds.isEmpty()) {
+        break;
       }
     }
 
     return workarounds;
   }
 
+  /**
+   * Parses name="value" pairs from an artifact header. Empty values are ignored.
+   */
   private Map<String, String> parseAttributes(String attributeString) {
     Map<String, String> attrs = new HashMap<>();
-    Pattern attrPattern = Pattern.compile("(\\w+)=\"([^\"]+)\"");
-    Matcher matcher = attrPattern.matcher(attributeString);
 
-    while (matcher.find()) {
-      attrs.put(matcher.group(1), matcher.group(2));
+    int from = 0;
+    for (int equals = attributeString.indexOf("=\"", from); equals >= 0; equals =
+        attributeString.indexOf("=\"", from)) {
+      int nameStart = equals;
+      while (nameStart > from && isWordChar(attributeString.charAt(nameStart - 1))) {
+        nameStart--;
+      }
+      int valueEnd = attributeString.indexOf('"', equals + 2);
+      if (valueEnd < 0) {
+        break;
+      }
+      if (nameStart == equals || valueEnd == equals + 2) {
+        from = equals + 1;
+        continue;
+      }
+      attrs.put(attributeString.substring(nameStart, equals),
+          attributeString.substring(equals + 2, valueEnd));
+      from = valueEnd + 1;
     }
 
     return attrs;
   }
 
+  private static boolean isWordChar(char c) {
+    return c == '_' || Character.isLetterOrDigit(c) && c < 0x80;
+  }
+
   private String extractEvolutionNotes(String content) {
     StringBuilder notes = new StringBuilder();
     String[] lines = content.split("\n");
@@ -650,27 +703,22 @@ public class MarkdownChatNotePreprocessor {
   }
 
   private void parseWarningDetails(String content, AttachmentDto.AttachmentDtoBuilder builder) {
-    Pattern sizePattern = Pattern.compile("- Original size: (.+)");
-    Pattern levelPattern = Pattern.compile("- Summarization level: (.+)");
-    Pattern preservedPattern = Pattern.compile("- Content preserved: (.+)");
-    Pattern limitationPattern = Pattern.compile("- Processing limitation: (.+)");
-
-    Matcher sizeMatcher = sizePattern.matcher(content);
+    Matcher sizeMatcher = ORIGINAL_SIZE_PATTERN.matcher(content);
     if (sizeMatcher.find()) {
       builder.originalSize(sizeMatcher.group(1).trim());
     }
 
-    Matcher levelMatcher = levelPattern.matcher(content);
+    Matcher levelMatcher = SUMMARIZATION_LEVEL_PATTERN.matcher(content);
     if (levelMatcher.find()) {
       builder.summarizationLevel(levelMatcher.group(1).trim());
     }
 
-    Matcher preservedMatcher = preservedPattern.matcher(content);
+    Matcher preservedMatcher = CONTENT_PRESERVED_PATTERN.matcher(content);
     if (preservedMatcher.find()) {
       builder.contentPreserved(preservedMatcher.group(1).trim());
     }
 
-    Matcher limitationMatcher = limitationPattern.matcher(content);
+    Matcher limitationMatcher = PROCESSING_LIMITATION_PATTERN.matcher(content);
     if (limitationMatcher.find()) {
       builder.processingLimitation(limitationMatcher.group(1).trim());
     }
@@ -681,24 +729,47 @@ public class MarkdownChatNotePreprocessor {
    * With brackets: **Attachments referenced:** [file1.md, file2.png] - Without brackets:
    * **Artifacts referenced:** script.sh (final version)
    */
-  private List<String> extractReferencedItems(String sectionContent, String fieldName) {
-    // Pattern matches: **FieldName:** [items] or **FieldName:** items
-    // Use .*? instead of .+? to allow empty brackets []
-    Pattern pattern = Pattern.compile(
-        "\\*\\*" + fieldName + ":\\*\\*\\s*(?:\\[(.*?)\\]|(.+?)(?=\\n|$))", Pattern.DOTALL);
-    Matcher matcher = pattern.matcher(sectionContent);
-
-    if (matcher.find()) {
-      // Group 1: items inside brackets [...]
-      // Group 2: items without brackets
-      String itemsStr = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
-
-      if (itemsStr != null && !itemsStr.trim().isEmpty()) {
-        // Split by comma and clean up
-        return Arrays.stream(itemsStr.split(",")).map(String::trim).filter(s -> !s.isEmpty())
-            .collect(Collectors.toList());
+  private List<String> extractReferencedItems(String sectionContent, List<String> fieldNames) {
+    // Matches the first **FieldName:** [items] or **FieldName:** items
+    int label = -1;
+    int valueStart = -1;
+    for (String fieldName : fieldNames) {
+      String marker = "**" + fieldName + ":**";
+      int at = sectionContent.indexOf(marker);
+      if (at >= 0 && (label < 0 || at < label)) {
+        label = at;
+        valueStart = at + marker.length();
+      }
+    }
+    if (label < 0) {
+      return Collections.emptyList();
+    }
+
+    while (valueStart < sectionContent.length()
+        && Character.isWhitespace(sectionContent.charAt(valueStart))) {
+      valueStart++;
+    }
+
+    String itemsStr = null;
+    if (valueStart < sectionContent.length() && sectionContent.charAt(valueStart) == '[') {
+      // Items inside brackets [...], which may be empty or span lines
+      int close = sectionContent.indexOf(']', valueStart + 1);
+      if (close >= 0) {
+        itemsStr = sectionContent.substring(valueStart + 1, close);
       }
     }
+    if (itemsStr == null) {
+      // Items without brackets, up to the end of the line
+      int lineEnd = sectionContent.indexOf('\n', valueStart);
+      itemsStr = sectionContent.substring(valueStart,
+          lineEnd < 0 ? sectionContent.length() : lineEnd);
+    }
+
+    if (!itemsStr.trim().isEmpty()) {
+      // Split by comma and clean up
+      return Arrays.stream(itemsStr.split(",")).map(String::trim).filter(s -> !s.isEmpty())
+          .collect(Collectors.toList());
+    }
 
     return Collections.emptyList();
   }
@@ -707,23 +778,22 @@ public class MarkdownChatNotePreprocessor {
    * Validates the basic structure of the archive markdown. Checks for required sections and proper
    * formatting.
    *
-   * @param content the markdown content
+   * @param archive the indexed markdown content
    * @return list of validation error messages (empty if valid)
    */
-  private List<String> validateBasicStructure(String content) {
+  private List<String> validateBasicStructure(MarkdownArchiveIndex archive) {
     List<String> errors = new ArrayList<>();
 
     // Check for YAML frontmatter
-    if (!content.trim().startsWith("---")) {
+    if (!archive.startsWithDelimiter()) {
       errors.add(
           "Missing YAML frontmatter at the beginning of the archive. Archives must start with '---' followed by metadata fields. "
               + "This may indicate the AI did not follow the archiving specification correctly.");
       return errors; // Can't continue without YAML
     }
 
-    Pattern yamlPattern = Pattern.compile("^---\\s*\\n(.*?)\\n---", Pattern.DOTALL);
-    Matcher yamlMatcher = yamlPattern.matcher(content);
-    if (!yamlMatcher.find()) {
+    String yamlContent = archive.yaml();
+    if (yamlContent == null) {
       errors.add(
           "Malformed YAML frontmatter. Expected format: '---' (opening), metadata fields, '---' (closing). "
               + "Make sure the YAML section is properly closed with '---' on its own line.");
@@ -731,13 +801,13 @@ public class MarkdownChatNotePreprocessor {
     }
 
     // Check for required sections
-    if (!content.contains("## Initial Query")) {
+    if (!archive.hasHeadingStartingWith("Initial Query")) {
       errors.add(
           "Missing required section: '## Initial Query'. This section should describe what the user was trying to accomplish. "
               + "The AI may have skipped this section or used a different heading.");
     }
 
-    if (!content.contains("## Key Insights")) {
+    if (!archive.hasHeadingStartingWith("Key Insights")) {
       errors.add(
           "Missing required section: '## Key Insights'. This section should contain the main findings or solutions. "
               + "The AI may have skipped this section or used a different heading.");
@@ -745,13 +815,11 @@ public class MarkdownChatNotePreprocessor {
 
     // Check for Conversation Artifacts section (if ARTIFACT_COUNT > 0)
     // Accept both "## Conversation Artifacts" (current spec) and "## Artifacts" (legacy)
-    String yamlContent = yamlMatcher.group(1);
-    Pattern artifactCountPattern = Pattern.compile("ARTIFACT_COUNT:\\s*(\\d+)");
-    Matcher artifactCountMatcher = artifactCountPattern.matcher(yamlContent);
+    Matcher artifactCountMatcher = ARTIFACT_COUNT_PATTERN.matcher(yamlContent);
     if (artifactCountMatcher.find()) {
       int artifactCount = Integer.parseInt(artifactCountMatcher.group(1));
-      if (artifactCount > 0 && !content.contains("## Conversation Artifacts")
-          && !content.contains("## Artifacts")) {
+      if (artifactCount > 0 && !archive.hasHeadingStartingWith("Conversation Artifacts")
+          && !archive.hasHeadingStartingWith("Artifacts")) {
         errors.add(
             "Missing '## Conversation Artifacts' (or '## Artifacts') section, but ARTIFACT_COUNT is "
                 + artifactCount + ". "
@@ -760,11 +828,10 @@ public class MarkdownChatNotePreprocessor {
     }
 
     // Check for Attachments section (if ATTACHMENT_COUNT > 0)
-    Pattern attachmentCountPattern = Pattern.compile("ATTACHMENT_COUNT:\\s*(\\d+)");
-    Matcher attachmentCountMatcher = attachmentCountPattern.matcher(yamlContent);
+    Matcher attachmentCountMatcher = ATTACHMENT_COUNT_PATTERN.matcher(yamlContent);
     if (attachmentCountMatcher.find()) {
       int attachmentCount = Integer.parseInt(attachmentCountMatcher.group(1));
-      if (attachmentCount > 0 && !content.contains("## Attachments")) {
+      if (attachmentCount > 0 && !archive.hasHeadingStartingWith("Attachments")) {
         errors.add("Missing '## Attachments' section, but ATTACHMENT_COUNT is " + attachmentCount
             + ". "
             + "Either the section is missing or the count is incorrect. Attachments should be inputs provided to the conversation.");
@@ -782,19 +849,18 @@ public class MarkdownChatNotePreprocessor {
    * @param artifacts the list of extracted artifacts
    * @param attachments the list of extracted attachments
    * @param workarounds the list of extracted workarounds
-   * @param markdownContent the full markdown content for size calculation
+   * @param sizeInBytes the UTF-8 size of the full markdown content
    */
   private void calculateAndSetMetadataCounts(ChatNoteMetadataDto metadata,
       List<ArtifactDto> artifacts, List<AttachmentDto> attachments,
-      List<WorkaroundDto> workarounds, String markdownContent) {
+      List<WorkaroundDto> workarounds, long sizeInBytes) {
 
     // Calculate counts from actual content
     metadata.setArtifactCount(artifacts.size());
     metadata.setAttachmentCount(attachments.size());
     metadata.setWorkaroundsCount(workarounds.size());
 
-    // Calculate total file size from markdown content
-    long sizeInBytes = markdownContent.getBytes(java.nio.charset.StandardCharsets.UTF_8).length;
+    // Total file size, counted while reading the upload or measured from the archive
     long sizeInKB = (sizeInBytes + 512) / 1024; // Round to nearest KB
     metadata.setTotalFileSize(sizeInKB + " KB");
 
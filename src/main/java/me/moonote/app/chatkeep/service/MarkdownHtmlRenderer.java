@@ -0,0 +1,32 @@
+package me.moonote.app.chatkeep.service;
+
+import java.util.List;
+import org.commonmark.Extension;
+import org.commonmark.ext.autolink.AutolinkExtension;
+import org.commonmark.ext.gfm.strikethrough.StrikethroughExtension;
+import org.commonmark.ext.gfm.tables.TablesExtension;
+import org.commonmark.parser.Parser;
+import org.commonmark.renderer.html.HtmlRenderer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Converts markdown to HTML with GitHub flavored tables, strikethrough and autolinks, breaking
+ * lines like the client-side renderer did. Raw HTML in the markdown is escaped and unsafe link
+ * URLs are dropped, since the output is served on public pages.
+ */
+@Component
+class MarkdownHtmlRenderer {
+
+  private static final List<Extension> EXTENSIONS = List.of(TablesExtension.create(),
+      StrikethroughExtension.create(), AutolinkExtension.create());
+
+  // Both are immutable and thread-safe
+  private final Parser parser = Parser.builder().extensions(EXTENSIONS).build();
+  private final HtmlRenderer renderer = HtmlRenderer.builder().extensions(EXTENSIONS)
+      .escapeHtml(true).sanitizeUrls(true).softbreak("<br />\n").build();
+
+  String render(String markdown) {
+    return renderer.render(parser.parse(markdown == null ? "" : markdown));
+  }
+
+}
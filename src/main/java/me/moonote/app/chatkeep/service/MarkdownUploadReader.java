@@ -0,0 +1,190 @@
+package me.moonote.app.chatkeep.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import lombok.extern.slf4j.Slf4j;
+import me.moonote.app.chatkeep.validation.ArchiveTooLargeException;
+
+/**
+ * Decodes uploaded markdown archives from a stream with bounded heap usage.
+ *
+ * Bytes are decoded incrementally and counted as they arrive, so an oversized upload is rejected
+ * as soon as it crosses the limit and the file size never has to be measured again. Archives up
+ * to the spill threshold are decoded into a string; larger ones are decoded into a temporary file
+ * that the preprocessor indexes through a memory-mapped buffer.
+ */
+@Slf4j
+@Component
+class MarkdownUploadReader {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * Uploads larger than this are rejected while they are being read.
+   */
+  @Value("${chatkeep.upload.max-size:10MB}")
+  private DataSize maxSize = DataSize.ofMegabytes(10);
+
+  /**
+   * Uploads larger than this are decoded to a temporary file instead of the heap.
+   */
+  @Value("${chatkeep.upload.spill-threshold:1MB}")
+  private DataSize spillThreshold = DataSize.ofMegabytes(1);
+
+  /**
+   * Reads and decodes a UTF-8 archive. Malformed input is replaced, as with
+   * {@code new String(bytes, UTF_8)}. The caller closes the stream and the returned archive.
+   *
+   * @throws ArchiveTooLargeException if the stream is longer than the maximum upload size
+   */
+  UploadedArchive read(InputStream in) throws IOException {
+    return read(in, maxSize);
+  }
+
+  /**
+   * Reads and decodes a UTF-8 archive with a size limit other than the upload default.
+   */
+  UploadedArchive read(InputStream in, DataSize limit) throws IOException {
+    CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    CharSink sink = new CharSink();
+
+    try {
+      long total = 0;
+      int read;
+      while ((read = in.read(bytes.array(), bytes.position(), bytes.remaining())) != -1) {
+        total += read;
+        if (total > limit.toBytes()) {
+          throw new ArchiveTooLargeException(limit);
+        }
+        if (total > spillThreshold.toBytes()) {
+          sink.spill();
+        }
+        bytes.position(bytes.position() + read);
+        bytes.flip();
+        decode(decoder, bytes, chars, sink, false);
+        bytes.compact();
+      }
+
+      bytes.flip();
+      decode(decoder, bytes, chars, sink, true);
+      while (decoder.flush(chars).isOverflow()) {
+        sink.write(chars);
+      }
+      sink.write(chars);
+      return sink.finish(total);
+    } catch (IOException | RuntimeException e) {
+      sink.discard();
+      throw e;
+    }
+  }
+
+  private static void decode(CharsetDecoder decoder, ByteBuffer bytes, CharBuffer chars,
+      CharSink sink, boolean endOfInput) throws IOException {
+    while (decoder.decode(bytes, chars, endOfInput).isOverflow()) {
+      sink.write(chars);
+    }
+    sink.write(chars);
+  }
+
+  /**
+   * Collects decoded characters on the heap until {@link #spill()}, then as UTF-16 in a temporary
+   * file so they can be mapped back as a {@link CharBuffer}.
+   */
+  private static final class CharSink {
+
+    private StringBuilder heap = new StringBuilder();
+    private Path file;
+    private FileChannel channel;
+    private ByteBuffer out;
+
+    void spill() throws IOException {
+      if (channel != null) {
+        return;
+      }
+      file = Files.createTempFile("chatkeep-upload-", ".txt");
+      channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      out = ByteBuffer.allocate(BUFFER_SIZE * Character.BYTES);
+      log.debug("Spilling upload to {}", file);
+      writeToFile(CharBuffer.wrap(heap));
+      heap = null;
+    }
+
+    /**
+     * Drains the decoded characters of the given buffer and clears it.
+     */
+    void write(CharBuffer chars) throws IOException {
+      chars.flip();
+      if (channel == null) {
+        heap.append(chars);
+      } else {
+        writeToFile(chars);
+      }
+      chars.clear();
+    }
+
+    UploadedArchive finish(long sizeInBytes) throws IOException {
+      if (channel == null) {
+        return new UploadedArchive(heap.toString(), sizeInBytes, null);
+      }
+      flush();
+      CharBuffer text =
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asCharBuffer();
+      channel.close();
+      return new UploadedArchive(text, sizeInBytes, file);
+    }
+
+    void discard() {
+      if (channel == null) {
+        return;
+      }
+      try {
+        channel.close();
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        log.warn("Could not delete upload spill file {}", file, e);
+      }
+    }
+
+    /**
+     * Copies the characters in bulk through a char view of the output buffer, whose position is
+     * then advanced past them.
+     */
+    private void writeToFile(CharBuffer chars) throws IOException {
+      while (chars.hasRemaining()) {
+        CharBuffer view = out.asCharBuffer();
+        int length = Math.min(view.remaining(), chars.remaining());
+        view.put(chars.slice(chars.position(), length));
+        chars.position(chars.position() + length);
+        out.position(out.position() + length * Character.BYTES);
+        if (out.remaining() < Character.BYTES) {
+          flush();
+        }
+      }
+    }
+
+    private void flush() throws IOException {
+      out.flip();
+      while (out.hasRemaining()) {
+        channel.write(out);
+      }
+      out.clear();
+    }
+  }
+
+}
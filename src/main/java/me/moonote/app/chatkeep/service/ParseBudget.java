@@ -0,0 +1,35 @@
+package me.moonote.app.chatkeep.service;
+
+import java.time.Duration;
+import me.moonote.app.chatkeep.validation.InvalidChatNoteException;
+
+/**
+ * Wall-clock budget for preprocessing a single upload. Scanners call {@link #check()} while they
+ * walk the archive, so a pathological paste fails fast instead of pinning a request thread.
+ */
+final class ParseBudget {
+
+  private final Duration limit;
+  private final long deadline;
+
+  private ParseBudget(Duration limit) {
+    this.limit = limit;
+    this.deadline = System.nanoTime() + limit.toNanos();
+  }
+
+  static ParseBudget of(Duration limit) {
+    return new ParseBudget(limit);
+  }
+
+  /**
+   * @throws InvalidChatNoteException if the budget is exhausted
+   */
+  void check() {
+    if (System.nanoTime() - deadline > 0) {
+      throw new InvalidChatNoteException("Archive could not be processed within "
+          + limit.toMillis() + " ms. The file is too large or malformed; "
+          + "make sure it follows the archiving specification.");
+    }
+  }
+
+}
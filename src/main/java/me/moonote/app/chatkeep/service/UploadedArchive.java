@@ -0,0 +1,63 @@
+package me.moonote.app.chatkeep.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Decoded text of an uploaded archive and the number of bytes it was decoded from. Large uploads
+ * are backed by a memory-mapped temporary file, which is deleted on {@link #close()}.
+ *
+ * A mapping cannot be released explicitly; it is unmapped once its buffer becomes unreachable.
+ * {@link #close()} therefore drops this archive's reference to the text before deleting the file,
+ * and {@link #text()} fails afterwards. Text parsed from it must not outlive the archive: the file
+ * is gone, so on systems that keep deleted files open its pages stay in use only until then, and
+ * elsewhere the delete fails and is logged.
+ */
+@Slf4j
+final class UploadedArchive implements Closeable {
+
+  private CharSequence text;
+  private final long sizeInBytes;
+  private final Path spillFile;
+
+  UploadedArchive(CharSequence text, long sizeInBytes, Path spillFile) {
+    this.text = text;
+    this.sizeInBytes = sizeInBytes;
+    this.spillFile = spillFile;
+  }
+
+  /**
+   * @throws IllegalStateException if the archive was closed
+   */
+  CharSequence text() {
+    if (text == null) {
+      throw new IllegalStateException("Uploaded archive already closed");
+    }
+    return text;
+  }
+
+  long sizeInBytes() {
+    return sizeInBytes;
+  }
+
+  boolean isSpilled() {
+    return spillFile != null;
+  }
+
+  @Override
+  public void close() {
+    text = null;
+    if (spillFile == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(spillFile);
+    } catch (IOException e) {
+      log.warn("Could not delete upload spill file {}", spillFile, e);
+    }
+  }
+
+}
@@ -0,0 +1,140 @@
+package me.moonote.app.chatkeep.service;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.springframework.util.unit.DataSize;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Text generated from a chat note, cached per key and note version.
+ *
+ * Entries are versioned by the note's {@code updatedAt}, so a note saved by another instance is
+ * regenerated on its next lookup. The cache is bounded by entry count and by the heap size of the
+ * text, dropping the least recently used entries first. Concurrent lookups of the same key and
+ * version share a single generation.
+ */
+@Slf4j
+abstract class VersionedTextCache {
+
+  private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, CompletableFuture<String>> loading = new ConcurrentHashMap<>();
+  private long totalWeight;
+
+  abstract int maxEntries();
+
+  abstract DataSize maxSize();
+
+  private static final class Entry {
+    final Instant version;
+    final String content;
+
+    Entry(Instant version, String content) {
+      this.version = version;
+      this.content = content;
+    }
+
+    long weight() {
+      return VersionedTextCache.weight(content);
+    }
+  }
+
+  /**
+   * Returns the cached text of the note version, generating it if needed. Notes without a version
+   * are generated every time.
+   */
+  String get(String key, Instant version, Supplier<String> generator) {
+    if (version == null) {
+      return generator.get();
+    }
+    String cached = lookup(key, version);
+    if (cached != null) {
+      return cached;
+    }
+
+    String loadingKey = key + '@' + version;
+    CompletableFuture<String> future = new CompletableFuture<>();
+    CompletableFuture<String> running = loading.putIfAbsent(loadingKey, future);
+    if (running != null) {
+      return await(running);
+    }
+    try {
+      // Another thread may have stored the text between the lookup and the registration
+      String content = lookup(key, version);
+      if (content == null) {
+        content = generator.get();
+        store(key, version, content);
+      }
+      future.complete(content);
+      return content;
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      loading.remove(loadingKey, future);
+    }
+  }
+
+  synchronized void invalidate(String key) {
+    Entry entry = entries.remove(key);
+    if (entry != null) {
+      totalWeight -= entry.weight();
+    }
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  private synchronized String lookup(String key, Instant version) {
+    Entry entry = entries.get(key);
+    return entry != null && entry.version.equals(version) ? entry.content : null;
+  }
+
+  private synchronized void store(String key, Instant version, String content) {
+    long weight = weight(content);
+    if (weight > maxSize().toBytes()) {
+      log.debug("Text of {} ({} bytes) exceeds the cache size, not cached", key, weight);
+      return;
+    }
+    Entry previous = entries.get(key);
+    if (previous != null && previous.version.isAfter(version)) {
+      // A slower generation of an older version must not replace a newer one
+      return;
+    }
+
+    invalidate(key);
+    Iterator<Entry> eldest = entries.values().iterator();
+    while (eldest.hasNext()
+        && (entries.size() >= maxEntries() || totalWeight + weight > maxSize().toBytes())) {
+      totalWeight -= eldest.next().weight();
+      eldest.remove();
+    }
+    entries.put(key, new Entry(version, content));
+    totalWeight += weight;
+  }
+
+  /**
+   * Approximate heap size of the text in bytes
+   */
+  private static long weight(String content) {
+    return 2L * (content == null ? 0 : content.length()) + 64;
+  }
+
+  private static String await(CompletableFuture<String> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+}
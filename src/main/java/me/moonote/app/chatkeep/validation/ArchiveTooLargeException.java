@@ -0,0 +1,11 @@
+package me.moonote.app.chatkeep.validation;
+
+import org.springframework.util.unit.DataSize;
+
+public class ArchiveTooLargeException extends InvalidChatNoteException {
+
+  public ArchiveTooLargeException(DataSize maxSize) {
+    super("Archive exceeds the maximum upload size of " + maxSize.toKilobytes() + " KB");
+  }
+
+}
@@ -0,0 +1,9 @@
+package me.moonote.app.chatkeep.validation;
+
+public class ChatNotePreviewNotFoundException extends RuntimeException {
+
+  public ChatNotePreviewNotFoundException() {
+    super("Preview expired or not found. Please preview the archive again.");
+  }
+
+}
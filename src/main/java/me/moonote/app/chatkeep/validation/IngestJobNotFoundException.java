@@ -0,0 +1,9 @@
+package me.moonote.app.chatkeep.validation;
+
+public class IngestJobNotFoundException extends RuntimeException {
+
+  public IngestJobNotFoundException(String id) {
+    super("Ingest job not found with id: " + id);
+  }
+
+}
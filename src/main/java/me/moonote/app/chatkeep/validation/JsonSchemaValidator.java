@@ -2,6 +2,7 @@ package me.moonote.app.chatkeep.validation;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -9,11 +10,13 @@ import java.util.stream.Collectors;
 import org.springframework.stereotype.Component;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.networknt.schema.JsonSchema;
 import com.networknt.schema.JsonSchemaFactory;
 import com.networknt.schema.SpecVersion;
 import com.networknt.schema.ValidationMessage;
 import lombok.extern.slf4j.Slf4j;
+import me.moonote.app.chatkeep.dto.ChatNoteDto;
 
 @Slf4j
 @Component
@@ -45,24 +48,78 @@ public class JsonSchemaValidator {
 
   public ValidationResult validate(String json) {
     try {
-      JsonNode jsonNode = objectMapper.readTree(json);
-      Set<ValidationMessage> errors = archiveSchema.validate(jsonNode);
+      return validate(objectMapper.readTree(json));
+    } catch (Exception e) {
+      log.error("Error validating JSON", e);
+      return ValidationResult.builder().valid(false)
+          .errors(Collections.singletonList(e.getMessage())).build();
+    }
+  }
 
-      if (errors.isEmpty()) {
-        return ValidationResult.builder().valid(true).errors(Collections.emptyList()).build();
-      } else {
-        List<String> errorMessages =
-            errors.stream().map(ValidationMessage::getMessage).collect(Collectors.toList());
+  public ValidationResult validate(JsonNode jsonNode) {
+    return toResult(archiveSchema.validate(jsonNode));
+  }
+
+  /**
+   * Validates a chat note on its object tree, without serializing it to a JSON string first.
+   *
+   * Artifacts and attachments are checked element by element against their own schemas, and
+   * validation stops once {@code maxErrors} errors are collected, so a bad artifact is reported
+   * without walking the rest of a large document.
+   *
+   * @param chatNote the chat note to validate
+   * @param maxErrors the maximum number of errors to collect
+   * @return the validation result
+   */
+  public ValidationResult validate(ChatNoteDto chatNote, int maxErrors) {
+    try {
+      JsonNode jsonNode = objectMapper.valueToTree(chatNote);
+      if (!(jsonNode instanceof ObjectNode document)) {
+        return validate(jsonNode);
+      }
 
-        return ValidationResult.builder().valid(false).errors(errorMessages).build();
+      List<String> errorMessages = new ArrayList<>();
+      validateElements(document, "artifacts", artifactSchema, errorMessages, maxErrors);
+      validateElements(document, "attachments", attachmentSchema, errorMessages, maxErrors);
+
+      if (errorMessages.size() < maxErrors) {
+        // Everything else against the archive schema, without re-walking the checked elements
+        ObjectNode rest = objectMapper.createObjectNode();
+        rest.setAll(document);
+        for (String field : List.of("artifacts", "attachments")) {
+          if (rest.path(field).isArray()) {
+            rest.putArray(field);
+          }
+        }
+        archiveSchema.validate(rest).stream().map(ValidationMessage::getMessage)
+            .limit(maxErrors - errorMessages.size()).forEach(errorMessages::add);
       }
+
+      return ValidationResult.builder().valid(errorMessages.isEmpty()).errors(errorMessages)
+          .build();
     } catch (Exception e) {
-      log.error("Error validating JSON", e);
+      log.error("Error validating chat note", e);
       return ValidationResult.builder().valid(false)
           .errors(Collections.singletonList(e.getMessage())).build();
     }
   }
 
+  private void validateElements(ObjectNode document, String field, JsonSchema schema,
+      List<String> errorMessages, int maxErrors) {
+    JsonNode elements = document.path(field);
+    for (int i = 0; i < elements.size() && errorMessages.size() < maxErrors; i++) {
+      String location = "$." + field + "[" + i + "]";
+      for (ValidationMessage error : schema.validate(elements.get(i))) {
+        if (errorMessages.size() >= maxErrors) {
+          break;
+        }
+        // Element schemas report paths relative to the element
+        String message = error.getMessage();
+        errorMessages.add(message.startsWith("$") ? location + message.substring(1) : message);
+      }
+    }
+  }
+
   public ValidationResult validateMetadata(String json) {
     return validateAgainstSchema(json, metadataSchema);
   }
@@ -71,23 +128,22 @@ public class JsonSchemaValidator {
     return validateAgainstSchema(json, artifactSchema);
   }
 
+  public ValidationResult validateArtifact(JsonNode jsonNode) {
+    return toResult(artifactSchema.validate(jsonNode));
+  }
+
   public ValidationResult validateAttachment(String json) {
     return validateAgainstSchema(json, attachmentSchema);
   }
 
+  public ValidationResult validateAttachment(JsonNode jsonNode) {
+    return toResult(attachmentSchema.validate(jsonNode));
+  }
+
   private ValidationResult validateAgainstSchema(String json, JsonSchema schema) {
     try {
       JsonNode jsonNode = objectMapper.readTree(json);
-      Set<ValidationMessage> errors = schema.validate(jsonNode);
-
-      if (errors.isEmpty()) {
-        return ValidationResult.builder().valid(true).errors(Collections.emptyList()).build();
-      } else {
-        List<String> errorMessages =
-            errors.stream().map(ValidationMessage::getMessage).collect(Collectors.toList());
-
-        return ValidationResult.builder().valid(false).errors(errorMessages).build();
-      }
+      return toResult(schema.validate(jsonNode));
     } catch (Exception e) {
       log.error("Error validating JSON against schema", e);
       return ValidationResult.builder().valid(false)
@@ -95,6 +151,17 @@ public class JsonSchemaValidator {
     }
   }
 
+  private ValidationResult toResult(Set<ValidationMessage> errors) {
+    if (errors.isEmpty()) {
+      return ValidationResult.builder().valid(true).errors(Collections.emptyList()).build();
+    } else {
+      List<String> errorMessages =
+          errors.stream().map(ValidationMessage::getMessage).collect(Collectors.toList());
+
+      return ValidationResult.builder().valid(false).errors(errorMessages).build();
+    }
+  }
+
   private InputStream loadSchemaFromResource(String path) throws IOException {
     InputStream inputStream = getClass().getClassLoader().getResourceAsStream(path);
     if (inputStream == null) {
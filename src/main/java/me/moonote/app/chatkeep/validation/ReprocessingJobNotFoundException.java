@@ -0,0 +1,9 @@
+package me.moonote.app.chatkeep.validation;
+
+public class ReprocessingJobNotFoundException extends RuntimeException {
+
+  public ReprocessingJobNotFoundException(String id) {
+    super("Reprocessing job not found with id: " + id);
+  }
+
+}
@@ -76,7 +76,7 @@ function duplicateChatNote(noteId) {
     if (!confirm('Duplicate this ChatNote?')) return;
 
     // Fetch original note
-    fetch(`/api/v1/chat-notes/${noteId}`)
+    fetch(`/api/v1/chat-notes/${noteId}?fullMarkdown=true`)
     .then(response => response.json())
     .then(data => {
         if (data.success) {
@@ -740,23 +740,24 @@ function closePasteModal() {
     }
 }
 
-function handlePasteSubmit(event) {
-    event.preventDefault();
+// Token of the last valid preview and the content it was made for
+let pastePreview = null;
 
+/**
+ * Dry run of the pasted archive: shows what would be imported, or why it is invalid. Importing
+ * unchanged content afterwards stores the parsed preview instead of parsing it again.
+ */
+function handlePastePreview() {
     const content = document.getElementById('archive-content').value.trim();
     if (!content) {
         showToast('Please paste archive content', 'warning');
         return;
     }
 
-    // Show loading state
-    const submitBtn = document.getElementById('paste-submit-btn');
-    const originalText = submitBtn.innerHTML;
-    submitBtn.disabled = true;
-    submitBtn.innerHTML = '<i class="fas fa-spinner fa-spin mr-2"></i>Importing...';
+    const panel = document.getElementById('paste-preview');
+    pastePreview = null;
 
-    // Submit to backend
-    fetch('/api/v1/chat-notes', {
+    fetch('/api/v1/chat-notes/preview', {
         method: 'POST',
         headers: {
             'Content-Type': 'application/json'
@@ -767,25 +768,152 @@ function handlePasteSubmit(event) {
     })
     .then(response => response.json())
     .then(data => {
-        if (data.success) {
-            showToast('Archive imported successfully', 'success');
-            closePasteModal();
-
-            // Reload current view
-            htmx.ajax('GET', '/fragments/chat-notes', {
-                target: '#notes-grid',
-                swap: 'innerHTML'
-            });
+        if (!data.success) {
+            throw new Error(data.message || 'Preview failed');
+        }
+        const preview = data.data;
+        const lines = [];
+        if (preview.valid) {
+            const metadata = preview.metadata;
+            lines.push(metadata.title);
+            lines.push(`${metadata.artifactCount} artifacts, ${metadata.attachmentCount} attachments, `
+                + `${metadata.workaroundsCount} workarounds`);
+            if (metadata.tags && metadata.tags.length) {
+                lines.push(metadata.tags.join(', '));
+            }
+            if (preview.duplicateOf) {
+                lines.push('This archive has already been imported.');
+            }
+            if (preview.token) {
+                pastePreview = { token: preview.token, content: content };
+            }
         } else {
-            showToast(data.message || 'Import failed', 'error');
-            submitBtn.disabled = false;
-            submitBtn.innerHTML = originalText;
+            lines.push(...preview.errors);
+        }
+        panel.textContent = lines.join('\n');
+        panel.classList.toggle('text-red-600', !preview.valid);
+        panel.style.whiteSpace = 'pre-line';
+        panel.classList.remove('hidden');
+    })
+    .catch(err => {
+        console.error('Preview error:', err);
+        showToast(err.message || 'Preview failed', 'error');
+    });
+}
+
+function handlePasteSubmit(event) {
+    event.preventDefault();
+
+    const content = document.getElementById('archive-content').value.trim();
+    if (!content) {
+        showToast('Please paste archive content', 'warning');
+        return;
+    }
+
+    // Store the previewed archive if the content has not changed since
+    const preview = pastePreview && pastePreview.content === content ? pastePreview : null;
+    pastePreview = null;
+
+    // Show loading state
+    const submitBtn = document.getElementById('paste-submit-btn');
+    const originalText = submitBtn.innerHTML;
+    submitBtn.disabled = true;
+    submitBtn.innerHTML = '<i class="fas fa-spinner fa-spin mr-2"></i>Importing...';
+
+    // Progress messages (normalized, parsed, validated, stored) replace the indicator text
+    const indicator = document.getElementById('paste-validation-indicator');
+    const showProgress = job => {
+        if (indicator) {
+            indicator.classList.remove('hidden');
+            indicator.querySelector('span').textContent = job.message;
         }
+    };
+
+    // Submit to backend as a background job and follow its progress
+    const request = preview
+        ? fetch(`/api/v1/chat-notes/preview/${preview.token}/confirm`, { method: 'POST' })
+        : fetch('/api/v1/chat-notes?async=true', {
+            method: 'POST',
+            headers: {
+                'Content-Type': 'application/json'
+            },
+            body: JSON.stringify({
+                markdownContent: content
+            })
+        });
+
+    request
+    .then(response => response.json())
+    .then(data => {
+        if (!data.success) {
+            throw new Error(data.message || 'Import failed');
+        }
+        return preview ? data.data : followIngestJob(data.data.id, showProgress);
+    })
+    .then(() => {
+        showToast('Archive imported successfully', 'success');
+        closePasteModal();
+
+        // Reload current view
+        htmx.ajax('GET', '/fragments/chat-notes', {
+            target: '#notes-grid',
+            swap: 'innerHTML'
+        });
     })
     .catch(err => {
         console.error('Import error:', err);
-        showToast('Import failed. Please check the archive format.', 'error');
+        showToast(err.message || 'Import failed. Please check the archive format.', 'error');
+        if (indicator) {
+            indicator.classList.add('hidden');
+        }
         submitBtn.disabled = false;
         submitBtn.innerHTML = originalText;
     });
 }
+
+/**
+ * Follow an ingest job over SSE. Resolves with the job once it completes, rejects with its errors
+ * if it fails. Falls back to polling when the event stream is not available.
+ */
+function followIngestJob(jobId, onProgress) {
+    return new Promise((resolve, reject) => {
+        const settle = job => {
+            if (job.status === 'COMPLETED') {
+                resolve(job);
+            } else {
+                reject(new Error((job.errors && job.errors.join(', ')) || job.message));
+            }
+        };
+
+        const poll = () => {
+            fetch(`/api/v1/ingest-jobs/${jobId}`)
+                .then(response => response.json())
+                .then(data => {
+                    if (!data.success) {
+                        throw new Error(data.message || 'Import failed');
+                    }
+                    onProgress(data.data);
+                    if (data.data.finished) {
+                        settle(data.data);
+                    } else {
+                        setTimeout(poll, 1000);
+                    }
+                })
+                .catch(reject);
+        };
+
+        const events = new EventSource(`/api/v1/ingest-jobs/${jobId}/events`);
+        events.addEventListener('progress', e => onProgress(JSON.parse(e.data)));
+        ['completed', 'failed'].forEach(name => {
+            events.addEventListener(name, e => {
+                events.close();
+                settle(JSON.parse(e.data));
+            });
+        });
+        events.onerror = () => {
+            // The stream ended without a final event (timeout, proxy, restart)
+            events.close();
+            poll();
+        };
+    });
+}
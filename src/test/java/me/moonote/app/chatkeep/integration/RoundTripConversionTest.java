@@ -74,15 +74,15 @@ class RoundTripConversionTest {
 
     // Mock repository behavior to return our test data regardless of chatNoteId
     // (chatNoteId might be null in tests since entities aren't saved to MongoDB)
-    when(artifactRepository.findByChatNoteIdOrderByCreatedAtDesc(anyString()))
+    when(artifactRepository.findByChatNoteIdOrderByOrdinal(anyString()))
         .thenAnswer(invocation -> new ArrayList<>(testArtifacts));
-    when(attachmentRepository.findByChatNoteIdOrderByCreatedAtDesc(anyString()))
+    when(attachmentRepository.findByChatNoteIdOrderByOrdinal(anyString()))
         .thenAnswer(invocation -> new ArrayList<>(testAttachments));
 
     // Also handle null ID case
-    when(artifactRepository.findByChatNoteIdOrderByCreatedAtDesc(null))
+    when(artifactRepository.findByChatNoteIdOrderByOrdinal(null))
         .thenAnswer(invocation -> new ArrayList<>(testArtifacts));
-    when(attachmentRepository.findByChatNoteIdOrderByCreatedAtDesc(null))
+    when(attachmentRepository.findByChatNoteIdOrderByOrdinal(null))
         .thenAnswer(invocation -> new ArrayList<>(testAttachments));
 
     // Load the original markdown
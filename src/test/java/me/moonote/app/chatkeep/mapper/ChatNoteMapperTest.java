@@ -5,12 +5,14 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import me.moonote.app.chatkeep.dto.ChatNoteDto;
+import me.moonote.app.chatkeep.model.Artifact;
 import me.moonote.app.chatkeep.model.ChatNote;
 import me.moonote.app.chatkeep.model.ChatNoteCompleteness;
 import me.moonote.app.chatkeep.model.ConversationSummary;
@@ -410,4 +412,54 @@ class ChatNoteMapperTest {
     assertNotNull(followUpDesc, "Follow-up description should not be null");
     assertTrue(followUpDesc.length() > 50, "Follow-up description should be substantial");
   }
+
+  @Test
+  void testToArtifacts_ShouldAssignOrdinalsInArchiveOrder() {
+    // Act
+    List<Artifact> artifacts = mapper.toArtifacts(chatNoteDto.getArtifacts(), "note-id");
+
+    // Assert - ordinals follow the order of the artifacts in the archive
+    assertFalse(artifacts.isEmpty(), "Dragonwell archive should have artifacts");
+    for (int i = 0; i < artifacts.size(); i++) {
+      assertEquals(i, artifacts.get(i).getOrdinal(), "Ordinal should match archive position");
+      assertEquals(chatNoteDto.getArtifacts().get(i).getTitle(), artifacts.get(i).getTitle());
+      assertEquals("note-id", artifacts.get(i).getChatNoteId());
+    }
+  }
+
+  @Test
+  void testToEntity_ShouldComputeContentPreviewAndWordCount() {
+    // Act
+    ChatNote chatNote = mapper.toEntity(chatNoteDto, "test-user-123");
+
+    // Assert - derived fields are stored with the note, matching the summary
+    assertEquals(mapper.generateContentPreview(chatNote), chatNote.getContentPreview());
+    assertTrue(chatNote.getContentPreview().length() <= 203, "Preview should be truncated");
+    assertTrue(chatNote.getWordCount() > 0, "Word count should be computed");
+  }
+
+  @Test
+  void testUpdateDerivedFields_ShouldCountWordsOfTheSummaryTexts() {
+    // Arrange
+    ChatNote chatNote = ChatNote.builder()
+        .summary(ConversationSummary.builder()
+            .initialQuery(QuerySection.builder().description("  How do I\tindex  this? ")
+                .attachmentsReferenced(List.of("notes.md")).build())
+            .keyInsights(InsightsSection.builder().description("Use a compound index.")
+                .keyPoints(List.of("Equality first", "then sort\nfields")).build())
+            .followUpExplorations(FollowUpSection.builder().description("").build()).build())
+        .build();
+
+    // Act
+    mapper.updateDerivedFields(chatNote);
+
+    // Assert - referenced file names are not words of the conversation
+    assertEquals(14, chatNote.getWordCount());
+    assertEquals("  How do I\tindex  this?  Use a compound index.", chatNote.getContentPreview());
+
+    chatNote.getSummary().getInitialQuery().setDescription("Short");
+    mapper.updateDerivedFields(chatNote);
+    assertEquals(10, chatNote.getWordCount());
+    assertEquals("Short Use a compound index.", chatNote.getContentPreview());
+  }
 }
@@ -0,0 +1,131 @@
+package me.moonote.app.chatkeep.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import me.moonote.app.chatkeep.model.ChatNote;
+import me.moonote.app.chatkeep.model.ChatNoteCard;
+import me.moonote.app.chatkeep.model.ChatNoteCompleteness;
+import me.moonote.app.chatkeep.model.ConversationSummary;
+import me.moonote.app.chatkeep.model.QuerySection;
+import me.moonote.app.chatkeep.model.Workaround;
+
+/**
+ * Compares the bytes received for a page of cards read as full ChatNote documents against the
+ * ChatNoteCard projection, on a {@link MongoTestDatabase}.
+ */
+class ChatNoteCardProjectionBenchmarkTest {
+
+  private static final String DATABASE = "chatkeep-benchmark";
+  private static final String USER = "user";
+  private static final int NOTES = 40;
+  private static final String TEXT = "Lorem ipsum dolor sit amet. ".repeat(500);
+  private static final Pageable PAGE =
+      PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "createdAt"));
+
+  private final AtomicLong replyBytes = new AtomicLong();
+  private volatile Document lastFind;
+  private MongoTestDatabase database;
+  private MongoTemplate mongoTemplate;
+  private ChatNoteRepository repository;
+
+  @BeforeEach
+  void setUp() {
+    database = MongoTestDatabase.open(DATABASE, new CommandListener() {
+      @Override
+      public void commandStarted(CommandStartedEvent event) {
+        if (event.getCommandName().equals("find")) {
+          lastFind = Document.parse(event.getCommand().toJson());
+        }
+      }
+
+      @Override
+      public void commandSucceeded(CommandSucceededEvent event) {
+        if (event.getCommandName().equals("find")) {
+          replyBytes.addAndGet(size(event.getResponse()));
+        }
+      }
+    });
+    mongoTemplate = database.mongoTemplate();
+    repository = database.chatNoteRepository();
+
+    Instant now = Instant.now();
+    mongoTemplate.insertAll(IntStream.range(0, NOTES)
+        .mapToObj(i -> ChatNote.builder().userId(USER).title("Note " + i)
+            .tags(List.of("java", "mongodb")).originalPlatform("Claude")
+            .chatNoteCompleteness(ChatNoteCompleteness.COMPLETE).artifactCount(2)
+            .attachmentCount(1).viewCount(0L).isPublic(false).isArchived(false)
+            .isTrashed(false).isFavorite(false)
+            .summary(ConversationSummary.builder()
+                .initialQuery(QuerySection.builder().description(TEXT).build()).build())
+            .workarounds(List.of(Workaround.builder().workaround(TEXT).build()))
+            .createdAt(now.minusSeconds(i)).updatedAt(now.minusSeconds(i)).build())
+        .toList());
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (database != null) {
+      database.close();
+    }
+  }
+
+  @Test
+  void testCardQuery_ShouldOnlyFetchTheCardFields() {
+    Page<ChatNoteCard> cards =
+        repository.findByUserIdAndIsArchivedFalseAndIsTrashedFalse(USER, PAGE);
+    assertEquals(20, cards.getContent().size());
+    ChatNoteCard newest = cards.getContent().get(0);
+    assertEquals("Note 0", newest.getTitle());
+    assertEquals(ChatNoteCompleteness.COMPLETE, newest.getChatNoteCompleteness());
+
+    Document projection = lastFind.get("projection", Document.class);
+    assertNotNull(projection, "The card query should send a projection");
+    assertFalse(projection.containsKey("summary"));
+    assertFalse(projection.containsKey("workarounds"));
+    assertTrue(projection.containsKey("title"));
+
+    replyBytes.set(0);
+    findFullPage();
+    long fullBytes = replyBytes.getAndSet(0);
+
+    repository.findByUserIdAndIsArchivedFalseAndIsTrashedFalse(USER, PAGE);
+    long cardBytes = replyBytes.getAndSet(0);
+
+    assertTrue(cardBytes * 20 < fullBytes,
+        () -> "Cards should move a small fraction of the bytes, but moved %,d bytes against %,d"
+            .formatted(cardBytes, fullBytes));
+  }
+
+  /**
+   * The former list query: the same page read as full documents
+   */
+  private List<ChatNote> findFullPage() {
+    return mongoTemplate.find(query(where("userId").is(USER).and("isArchived").is(false)
+        .and("isTrashed").is(false)).with(PAGE), ChatNote.class);
+  }
+
+  private static long size(BsonDocument document) {
+    return new RawBsonDocument(document, new BsonDocumentCodec()).getByteBuffer().remaining();
+  }
+
+}
@@ -0,0 +1,117 @@
+package me.moonote.app.chatkeep.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import me.moonote.app.chatkeep.model.Artifact;
+import me.moonote.app.chatkeep.model.Attachment;
+import me.moonote.app.chatkeep.model.ChatNote;
+import me.moonote.app.chatkeep.model.ChatNoteDetail;
+
+/**
+ * Compares the round-trips of assembling a note detail through {@code $lookup} against the former
+ * findById plus one query per collection, on a {@link MongoTestDatabase}.
+ */
+class ChatNoteDetailLookupBenchmarkTest {
+
+  private static final String DATABASE = "chatkeep-benchmark";
+  private static final int ITEMS = 20;
+  private static final int ITERATIONS = 20;
+  private static final String CONTENT = "Lorem ipsum dolor sit amet. ".repeat(2_000);
+
+  private final AtomicInteger commands = new AtomicInteger();
+  private MongoTestDatabase database;
+  private MongoTemplate mongoTemplate;
+  private ChatNoteRepositoryCustomImpl repository;
+  private String chatNoteId;
+
+  @BeforeEach
+  void setUp() {
+    database = MongoTestDatabase.open(DATABASE, event -> commands.incrementAndGet());
+    mongoTemplate = database.mongoTemplate();
+    repository = new ChatNoteRepositoryCustomImpl(mongoTemplate);
+
+    ChatNote chatNote = mongoTemplate.insert(ChatNote.builder().title("Benchmark")
+        .userId("user").artifactCount(ITEMS).attachmentCount(ITEMS).viewCount(0L)
+        .updatedAt(Instant.now()).build());
+    chatNoteId = chatNote.getId();
+    mongoTemplate.insertAll(IntStream.range(0, ITEMS)
+        .mapToObj(i -> Artifact.builder().chatNoteId(chatNoteId).ordinal(i).type("code")
+            .title("Artifact " + i).content(CONTENT).build())
+        .toList());
+    mongoTemplate.insertAll(IntStream.range(0, ITEMS)
+        .mapToObj(i -> Attachment.builder().chatNoteId(chatNoteId).ordinal(i)
+            .filename("attachment-" + i + ".txt").content(CONTENT).build())
+        .toList());
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (database != null) {
+      database.close();
+    }
+  }
+
+  @Test
+  void testFindDetailById_ShouldLoadInOneRoundTrip() {
+    ChatNoteDetail detail = repository.findDetailById(chatNoteId).orElseThrow();
+    ChatNoteDetail separate = findDetailSeparately();
+
+    assertEquals("Benchmark", detail.getChatNote().getTitle());
+    assertEquals(titles(separate.getArtifacts()), titles(detail.getArtifacts()));
+    assertEquals(separate.getAttachments().stream().map(Attachment::getFilename).toList(),
+        detail.getAttachments().stream().map(Attachment::getFilename).toList());
+    assertTrue(detail.getArtifacts().stream().allMatch(a -> a.getContent() == null),
+        "Artifact content is left out");
+    assertTrue(detail.getAttachments().stream().allMatch(a -> a.getContent() == null),
+        "Attachment content is left out");
+    assertEquals(CONTENT.substring(0, 300), detail.getArtifacts().get(0).getContentPreview());
+    assertEquals(CONTENT.length(), detail.getAttachments().get(0).getContentLength());
+    assertTrue(repository.findDetailById("0123456789abcdef01234567").isEmpty());
+
+    commands.set(0);
+    for (int i = 0; i < ITERATIONS; i++) {
+      findDetailSeparately();
+    }
+    int separateCommands = commands.getAndSet(0);
+
+    for (int i = 0; i < ITERATIONS; i++) {
+      repository.findDetailById(chatNoteId);
+    }
+    int lookupCommands = commands.getAndSet(0);
+
+    assertEquals(3 * ITERATIONS, separateCommands, "Separate queries take three round-trips");
+    assertEquals(ITERATIONS, lookupCommands, "$lookup takes one round-trip");
+  }
+
+  /**
+   * The former assembly: the note, then the artifact and attachment metadata
+   */
+  private ChatNoteDetail findDetailSeparately() {
+    ChatNote chatNote = mongoTemplate.findById(chatNoteId, ChatNote.class);
+    return ChatNoteDetail.builder().chatNote(chatNote)
+        .artifacts(mongoTemplate.find(metadataQuery(), Artifact.class))
+        .attachments(mongoTemplate.find(metadataQuery(), Attachment.class)).build();
+  }
+
+  private Query metadataQuery() {
+    Query query = query(where("chatNoteId").is(chatNoteId)).with(Sort.by("ordinal"));
+    query.fields().exclude("content");
+    return query;
+  }
+
+  private static List<String> titles(List<Artifact> artifacts) {
+    return artifacts.stream().map(Artifact::getTitle).toList();
+  }
+
+}
@@ -0,0 +1,205 @@
+package me.moonote.app.chatkeep.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import me.moonote.app.chatkeep.dto.request.ChatNoteCursor;
+import me.moonote.app.chatkeep.model.ChatNote;
+
+/**
+ * Explains every query shape the application runs through {@link ChatNoteRepository}, with the
+ * sorts the controllers pass, and fails when a winning plan scans the collection or sorts in
+ * memory. Repository methods are called for real and the commands they send, including the counts
+ * of pages, are captured and explained, so the check follows the derived queries as they are.
+ *
+ * Runs on a {@link MongoTestDatabase} with the indexes declared on {@link ChatNote}. Global
+ * listings across every user are not covered: they serve admin endpoints and are left to full
+ * scans.
+ */
+class ChatNoteIndexExplainTest {
+
+  private static final String DATABASE = "chatkeep-explain";
+  private static final int NOTES = 600;
+  private static final String USER = "user-1";
+  private static final String HEX_ID = "7fffffffffffffffffffffff";
+  private static final Set<String> EXPLAINED = Set.of("find", "aggregate", "count");
+  private static final Set<String> FORBIDDEN_STAGES = Set.of("COLLSCAN", "SORT");
+
+  private static final Pageable NEWEST =
+      PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "createdAt"));
+  private static final Pageable RECENTLY_UPDATED =
+      PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "updatedAt"));
+  private static final Pageable RECENTLY_TRASHED =
+      PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "trashedAt"));
+  private static final Pageable KEYSET =
+      PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "createdAt", "id"));
+
+  private final List<BsonDocument> commands = Collections.synchronizedList(new ArrayList<>());
+  private volatile boolean capturing;
+  private MongoTestDatabase database;
+  private ChatNoteRepository repository;
+
+  @BeforeEach
+  void setUp() {
+    database = MongoTestDatabase.open(DATABASE, event -> {
+      if (capturing && EXPLAINED.contains(event.getCommandName())) {
+        commands.add(event.getCommand().clone());
+      }
+    });
+    database.ensureIndexes(ChatNote.class);
+    repository = database.chatNoteRepository();
+
+    Instant now = Instant.now();
+    database.mongoTemplate().insertAll(IntStream.range(0, NOTES).mapToObj(i -> {
+      boolean trashed = i % 10 == 0;
+      return ChatNote.builder().userId("user-" + i % 3).title("Note " + i)
+          .contentHash("hash-" + i).tags(List.of("tag-" + i % 10, "topic-" + i % 3))
+          .labelIds(List.of("label-" + i % 6)).isPublic(i % 4 == 0).isArchived(i % 7 == 0)
+          .isTrashed(trashed).isFavorite(i % 5 == 0).viewCount(0L)
+          .trashedAt(trashed ? now.minusSeconds(3_600L * i) : null)
+          .createdAt(now.minusSeconds(60L * i)).updatedAt(now.minusSeconds(30L * i)).build();
+    }).toList());
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (database != null) {
+      database.close();
+    }
+  }
+
+  @Test
+  void testQueryShapes_ShouldUseIndexesForFilteringAndSorting() {
+    Map<String, Runnable> shapes = new LinkedHashMap<>();
+    List<String> tags = List.of("tag-1", "topic-1");
+    List<String> labels = List.of("label-1", "label-4");
+
+    shapes.put("duplicate upload", () -> repository
+        .findFirstByUserIdAndContentHashAndIsTrashedFalse(USER, "hash-1"));
+    shapes.put("notes of a user", () -> repository.findByUserId(USER));
+    shapes.put("active notes", () -> repository
+        .findByUserIdAndIsArchivedFalseAndIsTrashedFalse(USER, NEWEST));
+    shapes.put("search", () -> repository.searchActiveByUserId(USER, "Note 1"));
+    shapes.put("favorites", () -> repository
+        .findByUserIdAndIsFavoriteTrue(USER, RECENTLY_UPDATED));
+    shapes.put("active favorites", () -> repository
+        .findFavoriteActiveByUserId(USER, RECENTLY_UPDATED));
+    shapes.put("shared notes", () -> repository.findByIsPublic(true, NEWEST));
+    shapes.put("trash by date", () -> repository.findByIsTrashedTrue(RECENTLY_TRASHED));
+    shapes.put("auto-purge", () -> repository
+        .findByIsTrashedTrueAndTrashedAtBefore(Instant.now().minusSeconds(86_400L * 30)));
+    shapes.put("tags, any", () -> repository.findByTagsInAndUserId(tags, USER, NEWEST));
+    shapes.put("tags, all", () -> repository
+        .findByTagsContainingAllAndUserId(tags, USER, NEWEST));
+    shapes.put("active tags, any", () -> repository
+        .findActiveByTagsInAndUserId(tags, USER, NEWEST));
+    shapes.put("active tags, all", () -> repository
+        .findActiveByTagsContainingAllAndUserId(tags, USER, NEWEST));
+    shapes.put("labels, any", () -> repository.findByLabelIdsInAndUserId(labels, USER, NEWEST));
+    shapes.put("labels, all", () -> repository
+        .findByLabelIdsContainingAllAndUserId(labels, USER, NEWEST));
+    shapes.put("active labels, any", () -> repository
+        .findActiveByLabelIdsInAndUserId(labels, USER, RECENTLY_UPDATED));
+    shapes.put("active labels, all", () -> repository
+        .findActiveByLabelIdsContainingAllAndUserId(labels, USER, RECENTLY_UPDATED));
+    shapes.put("notes of a label", () -> repository.findByLabelIdsContaining("label-1"));
+    ChatNoteCursor after = ChatNoteCursor.after(Instant.now().minusSeconds(60L * 90), HEX_ID);
+    shapes.put("active cards after", () -> repository
+        .findActiveCardsBefore(after.getCreatedAt(), after.getId(), USER, KEYSET));
+    shapes.put("archived cards after", () -> repository
+        .findArchivedCardsBefore(after.getCreatedAt(), after.getId(), USER, KEYSET));
+    shapes.put("trashed cards after", () -> repository
+        .findTrashedCardsBefore(after.getCreatedAt(), after.getId(), USER, KEYSET));
+    shapes.put("favorite cards after", () -> repository
+        .findFavoriteCardsBefore(after.getCreatedAt(), after.getId(), USER, KEYSET));
+    shapes.put("shared cards after", () -> repository
+        .findPublicCardsBefore(after.getCreatedAt(), after.getId(), KEYSET));
+    shapes.put("labeled cards after", () -> repository.findActiveCardsWithAnyLabelBefore(
+        after.getCreatedAt(), after.getId(), USER, labels, KEYSET));
+    shapes.put("workspace export", () -> {
+      try (Stream<ChatNote> notes =
+          repository.streamByUserIdAndIsTrashedFalseOrderByIsArchivedAscCreatedAtAsc(USER)) {
+        notes.findFirst();
+      }
+    });
+
+    List<String> failures = new ArrayList<>();
+    shapes.forEach((shape, query) -> {
+      commands.clear();
+      capturing = true;
+      try {
+        query.run();
+      } finally {
+        capturing = false;
+      }
+      assertFalse(commands.isEmpty(), shape + " should send a query");
+
+      for (BsonDocument command : List.copyOf(commands)) {
+        List<String> stages = new ArrayList<>();
+        collectWinningPlanStages(explain(command), false, stages);
+        if (stages.isEmpty() || stages.stream().anyMatch(FORBIDDEN_STAGES::contains)) {
+          failures.add(shape + " (" + command.getFirstKey() + "): " + stages);
+        }
+      }
+    });
+
+    assertTrue(failures.isEmpty(),
+        () -> "Query shapes without a suitable index, with their winning plan stages: " + failures);
+  }
+
+  /**
+   * Explain the command as sent, without the fields the driver adds to every command
+   */
+  private BsonDocument explain(BsonDocument command) {
+    BsonDocument explained = new BsonDocument();
+    command.forEach((key, value) -> {
+      if (!key.startsWith("$") && !key.equals("lsid") && !key.equals("txnNumber")) {
+        explained.append(key, value);
+      }
+    });
+    BsonDocument explain = new BsonDocument("explain", explained).append("verbosity",
+        new BsonString("queryPlanner"));
+    return database.client().getDatabase(DATABASE).runCommand(explain, BsonDocument.class);
+  }
+
+  /**
+   * Stages of every winning plan in the explain output, which nests them differently for finds,
+   * aggregations and the slot-based engine
+   */
+  private static void collectWinningPlanStages(BsonValue value, boolean inWinningPlan,
+      List<String> stages) {
+    if (value.isDocument()) {
+      BsonDocument document = value.asDocument();
+      if (inWinningPlan && document.containsKey("stage")
+          && document.get("stage").isString()) {
+        stages.add(document.getString("stage").getValue());
+      }
+      document.forEach((key, child) -> {
+        if (!key.equals("rejectedPlans")) {
+          collectWinningPlanStages(child, inWinningPlan || key.equals("winningPlan"), stages);
+        }
+      });
+    } else if (value.isArray()) {
+      for (BsonValue child : value.asArray()) {
+        collectWinningPlanStages(child, inWinningPlan, stages);
+      }
+    }
+  }
+
+}
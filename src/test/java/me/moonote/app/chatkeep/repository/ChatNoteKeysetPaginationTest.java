@@ -0,0 +1,100 @@
+package me.moonote.app.chatkeep.repository;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import me.moonote.app.chatkeep.dto.request.ChatNoteCursor;
+import me.moonote.app.chatkeep.model.ChatNote;
+import me.moonote.app.chatkeep.model.ChatNoteCard;
+
+/**
+ * Walks card lists slice by slice through {@link ChatNoteCursor} tokens, on a
+ * {@link MongoTestDatabase}.
+ */
+class ChatNoteKeysetPaginationTest {
+
+  private static final String DATABASE = "chatkeep-keyset";
+  private static final String USER = "user";
+  private static final int NOTES = 45;
+  private static final int SIZE = 7;
+  private static final Pageable KEYSET =
+      PageRequest.of(0, SIZE, Sort.by(Sort.Direction.DESC, "createdAt", "id"));
+
+  private final List<String> commands = Collections.synchronizedList(new ArrayList<>());
+  private MongoTestDatabase database;
+  private ChatNoteRepository repository;
+  private List<ChatNote> active;
+
+  @BeforeEach
+  void setUp() {
+    database = MongoTestDatabase.open(DATABASE, event -> commands.add(event.getCommandName()));
+    repository = database.chatNoteRepository();
+
+    // Notes created five at a time share their creation time, so the cursor relies on the ID
+    Instant now = Instant.now();
+    List<ChatNote> notes = IntStream.range(0, NOTES)
+        .mapToObj(i -> ChatNote.builder().userId(i % 9 == 0 ? "other" : USER).title("Note " + i)
+            .isPublic(false).isArchived(i % 4 == 0).isTrashed(false).isFavorite(false)
+            .viewCount(0L).createdAt(now.minusSeconds(i / 5)).updatedAt(now).build())
+        .toList();
+    active = database.mongoTemplate().insertAll(notes).stream()
+        .filter(note -> note.getUserId().equals(USER) && !note.getIsArchived())
+        .sorted(Comparator.comparing(ChatNote::getCreatedAt)
+            .thenComparing(ChatNote::getId).reversed())
+        .toList();
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (database != null) {
+      database.close();
+    }
+  }
+
+  @Test
+  void testActiveCards_ShouldWalkEveryNoteOnceInOrder() {
+    List<String> walked = new ArrayList<>();
+    int slices = 0;
+    String token = null;
+    commands.clear();
+    do {
+      ChatNoteCursor after = ChatNoteCursor.decode(token);
+      Slice<ChatNoteCard> slice = repository.findActiveCardsBefore(after.getCreatedAt(),
+          after.getId(), USER, KEYSET);
+      slices++;
+      slice.forEach(card -> walked.add(card.getId()));
+      ChatNoteCard last = slice.getContent().get(slice.getNumberOfElements() - 1);
+      token = slice.hasNext() ? ChatNoteCursor.after(last.getCreatedAt(), last.getId()).encode()
+          : null;
+    } while (token != null);
+
+    assertEquals(active.stream().map(ChatNote::getId).toList(), walked);
+    assertEquals((active.size() + SIZE - 1) / SIZE, slices);
+    assertFalse(commands.contains("count"), "Slices should not count the notes");
+  }
+
+  @Test
+  void testCursor_ShouldRoundTripThroughItsToken() {
+    ChatNote note = active.get(3);
+    ChatNoteCursor cursor = ChatNoteCursor.after(note.getCreatedAt(), note.getId());
+
+    String token = cursor.encode();
+    assertTrue(token.matches("[A-Za-z0-9_-]+"), "Tokens should be URL-safe: " + token);
+    assertEquals(cursor, ChatNoteCursor.decode(token));
+    assertEquals(ChatNoteCursor.START, ChatNoteCursor.decode(""));
+    assertThrows(IllegalArgumentException.class, () -> ChatNoteCursor.decode("not-a-cursor"));
+    assertThrows(IllegalArgumentException.class, () -> ChatNoteCursor.decode("!!"));
+  }
+
+}
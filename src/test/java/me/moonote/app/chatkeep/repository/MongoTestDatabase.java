@@ -0,0 +1,129 @@
+package me.moonote.app.chatkeep.repository;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.utility.DockerImageName;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+
+/**
+ * Scratch database for tests that need a real MongoDB. It lives on a MongoDB container shared by
+ * the whole test run when Docker is available, and on the local MongoDB otherwise; tests are
+ * skipped when neither is reachable. The database is dropped when opened and when closed.
+ */
+public final class MongoTestDatabase implements AutoCloseable {
+
+  private static final String IMAGE = "mongo:8.0";
+  private static final String LOCAL_URI = "mongodb://localhost:27017";
+
+  private static String connectionString;
+
+  private final MongoClient client;
+  private final MongoTemplate mongoTemplate;
+  private final MongoRepositoryFactory repositoryFactory;
+
+  private MongoTestDatabase(MongoClient client, String database) {
+    this.client = client;
+    this.mongoTemplate = new MongoTemplate(client, database);
+    this.repositoryFactory = new MongoRepositoryFactory(mongoTemplate);
+    mongoTemplate.getDb().drop();
+  }
+
+  public static MongoTestDatabase open(String database) {
+    return open(database, new CommandListener() {});
+  }
+
+  /**
+   * Opens the database, passing every command sent through it to the consumer
+   */
+  public static MongoTestDatabase open(String database, Consumer<CommandStartedEvent> commands) {
+    return open(database, new CommandListener() {
+      @Override
+      public void commandStarted(CommandStartedEvent event) {
+        commands.accept(event);
+      }
+    });
+  }
+
+  /**
+   * Opens the database, or skips the calling test when no MongoDB is reachable
+   */
+  public static MongoTestDatabase open(String database, CommandListener listener) {
+    MongoClient client = MongoClients.create(MongoClientSettings.builder()
+        .applyConnectionString(new ConnectionString(connectionString()))
+        .applyToClusterSettings(cluster -> cluster.serverSelectionTimeout(1, TimeUnit.SECONDS))
+        .addCommandListener(listener).build());
+    try {
+      client.getDatabase(database).runCommand(new Document("ping", 1));
+    } catch (Exception e) {
+      client.close();
+      assumeTrue(false, "No MongoDB container or local MongoDB: " + e.getMessage());
+    }
+    return new MongoTestDatabase(client, database);
+  }
+
+  /**
+   * The container is started once and removed by Testcontainers when the test run ends
+   */
+  private static synchronized String connectionString() {
+    if (connectionString == null) {
+      if (DockerClientFactory.instance().isDockerAvailable()) {
+        MongoDBContainer container = new MongoDBContainer(DockerImageName.parse(IMAGE));
+        container.start();
+        connectionString = container.getConnectionString();
+      } else {
+        connectionString = LOCAL_URI;
+      }
+    }
+    return connectionString;
+  }
+
+  public MongoClient client() {
+    return client;
+  }
+
+  public MongoTemplate mongoTemplate() {
+    return mongoTemplate;
+  }
+
+  /**
+   * Creates the indexes declared on the entity, like automatic index creation does
+   */
+  public void ensureIndexes(Class<?> entity) {
+    IndexOperations indexOps = mongoTemplate.indexOps(entity);
+    new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext())
+        .resolveIndexFor(entity).forEach(indexOps::createIndex);
+  }
+
+  public ChatNoteRepository chatNoteRepository() {
+    return repositoryFactory.getRepository(ChatNoteRepository.class,
+        RepositoryFragments.just(new ChatNoteRepositoryCustomImpl(mongoTemplate)));
+  }
+
+  public <T> T repository(Class<T> repositoryInterface) {
+    return repositoryFactory.getRepository(repositoryInterface);
+  }
+
+  @Override
+  public void close() {
+    try {
+      mongoTemplate.getDb().drop();
+    } finally {
+      client.close();
+    }
+  }
+
+}
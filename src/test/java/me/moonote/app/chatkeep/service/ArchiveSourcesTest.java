@@ -0,0 +1,39 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import me.moonote.app.chatkeep.model.ChatNoteSource;
+
+/**
+ * Compression of the archive sources kept for reprocessing.
+ */
+@SpringBootTest
+class ArchiveSourcesTest {
+
+  @Test
+  void testCompress_ShouldRestoreTheOriginalText() {
+    // Multi-byte characters straddling the chunk boundaries must survive the chunked encoding
+    String text = "---\narchive_format: v1.0\n---\n# 標題 ☕\n".repeat(2000) + "😀 end";
+    ChatNoteSource source = ArchiveSources.compress(CharBuffer.wrap(text));
+
+    assertEquals(text, ArchiveSources.decompress(source));
+    assertEquals(text.getBytes(StandardCharsets.UTF_8).length, source.getOriginalSize());
+    assertTrue(source.getContent().length < source.getOriginalSize() / 10,
+        "Repetitive archives should compress well");
+  }
+
+  @Test
+  void testCopy_ShouldAssignTheSourceToAnotherNote() {
+    ChatNoteSource source = ArchiveSources.compress("# Title");
+    source.setChatNoteId("note-1");
+    ChatNoteSource copy = ArchiveSources.copy(source, "note-2");
+
+    assertEquals("note-2", copy.getChatNoteId());
+    assertEquals("# Title", ArchiveSources.decompress(copy));
+    assertNull(copy.getId());
+  }
+
+}
@@ -0,0 +1,132 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Slice;
+import me.moonote.app.chatkeep.dto.request.ChatNoteCursor;
+import me.moonote.app.chatkeep.dto.response.ChatNoteResponse;
+import me.moonote.app.chatkeep.dto.response.LabelResponse;
+import me.moonote.app.chatkeep.mapper.ChatNoteMapper;
+import me.moonote.app.chatkeep.mapper.LabelMapper;
+import me.moonote.app.chatkeep.model.ChatNote;
+import me.moonote.app.chatkeep.model.ChatNoteCard;
+import me.moonote.app.chatkeep.model.ChatNoteCompleteness;
+import me.moonote.app.chatkeep.model.Label;
+import me.moonote.app.chatkeep.repository.ArtifactRepository;
+import me.moonote.app.chatkeep.repository.AttachmentRepository;
+import me.moonote.app.chatkeep.repository.ChatNoteRepository;
+import me.moonote.app.chatkeep.repository.ChatNoteSourceRepository;
+import me.moonote.app.chatkeep.repository.LabelRepository;
+import me.moonote.app.chatkeep.repository.MongoTestDatabase;
+
+/**
+ * Counts the MongoDB commands of a grid render, whose cards and labels are read through
+ * {@link ChatNoteCardLoader}, on a {@link MongoTestDatabase}.
+ */
+class ChatNoteCardLoaderTest {
+
+  private static final String DATABASE = "chatkeep-loader";
+  private static final String USER = "user";
+  private static final int NOTES = 120;
+  private static final int LABELS = 12;
+
+  private final List<String> commands = Collections.synchronizedList(new ArrayList<>());
+  private MongoTestDatabase database;
+  private ChatNoteRepository chatNoteRepository;
+  private LabelRepository labelRepository;
+  private ChatNoteService chatNoteService;
+
+  @BeforeEach
+  void setUp() {
+    database = MongoTestDatabase.open(DATABASE, event -> commands.add(event.getCommandName()));
+    chatNoteRepository = database.chatNoteRepository();
+    labelRepository = database.repository(LabelRepository.class);
+    chatNoteService = new ChatNoteService(mock(MarkdownChatNotePreprocessor.class),
+        chatNoteRepository, mock(ArtifactRepository.class), mock(AttachmentRepository.class),
+        mock(ChatNoteMapper.class), mock(ChatNoteMarkdownGenerator.class), labelRepository,
+        mock(MarkdownUploadReader.class), mock(ChatNotePreviewCache.class),
+        mock(ChatNoteSourceRepository.class), new ChatNoteContentCache());
+
+    List<Label> labels = labelRepository.saveAll(IntStream.range(0, LABELS)
+        .mapToObj(i -> Label.builder().userId(USER).name("Label " + i)
+            .normalizedName("label " + i).color("#FF5733").build())
+        .toList());
+    Instant now = Instant.now();
+    database.mongoTemplate().insertAll(IntStream.range(0, NOTES)
+        .mapToObj(i -> ChatNote.builder().userId(USER).title("Note " + i)
+            .chatNoteCompleteness(ChatNoteCompleteness.COMPLETE)
+            .contentPreview("Preview " + i).wordCount(2)
+            .labelIds(List.of(labels.get(i % LABELS).getId(),
+                labels.get((i + 1) % LABELS).getId()))
+            .isPublic(false).isArchived(false).isTrashed(false).isFavorite(false)
+            .viewCount(0L).createdAt(now.minusSeconds(i)).updatedAt(now.minusSeconds(i)).build())
+        .toList());
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (database != null) {
+      database.close();
+    }
+  }
+
+  @Test
+  void testGridRender_ShouldSendTheSameCommandsWhateverThePageSize() {
+    List<String> expected = null;
+    for (int size : List.of(5, 20, 100)) {
+      commands.clear();
+      List<ChatNoteResponse> notes = renderGrid(size);
+      assertEquals(size, notes.size());
+      assertTrue(notes.stream().allMatch(note -> note.getLabels().size() == 2),
+          "Every card should get its labels");
+
+      if (expected == null) {
+        expected = List.copyOf(commands);
+      } else {
+        assertEquals(expected, commands, "Commands should not grow with the page size");
+      }
+    }
+    assertEquals(List.of("find", "find"), expected, "One query for the cards, one for the labels");
+  }
+
+  @Test
+  void testCard_ShouldReadEachKeyOnce() {
+    ChatNoteCardLoader loader = newLoader();
+    String id = chatNoteService.getActiveChatNotes(USER, ChatNoteCursor.START, 1).getContent()
+        .get(0).getId();
+
+    commands.clear();
+    ChatNoteCard card = loader.card(id).orElseThrow();
+    assertEquals(card, loader.card(id).orElseThrow());
+    List<LabelResponse> labels = loader.labels(card.getLabelIds());
+    assertEquals(labels, loader.labels(card.getLabelIds()));
+    assertTrue(loader.card("000000000000000000000000").isEmpty());
+    assertTrue(loader.labels(null).isEmpty());
+
+    assertEquals(List.of("find", "find", "find"), commands,
+        "The card, its labels and the missing card are read once each");
+  }
+
+  /**
+   * The grid fragment: a keyset slice of cards, then the labels of every card of the slice
+   */
+  private List<ChatNoteResponse> renderGrid(int size) {
+    Slice<ChatNoteResponse> slice =
+        chatNoteService.getActiveChatNotes(USER, ChatNoteCursor.START, size);
+    assertTrue(slice.hasNext());
+    return newLoader().withLabels(slice.getContent());
+  }
+
+  private ChatNoteCardLoader newLoader() {
+    return new ChatNoteCardLoader(chatNoteRepository, labelRepository, new LabelMapper());
+  }
+
+}
@@ -0,0 +1,125 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Versioning, bounds and single-flight loading of generated conversation content.
+ */
+@SpringBootTest
+class ChatNoteContentCacheTest {
+
+  private static final Instant V1 = Instant.parse("2025-10-02T08:00:00Z");
+  private static final Instant V2 = V1.plusSeconds(60);
+
+  private ChatNoteContentCache cache;
+  private AtomicInteger generations;
+
+  @BeforeEach
+  void setUp() {
+    cache = new ChatNoteContentCache();
+    ReflectionTestUtils.setField(cache, "maxEntries", 3);
+    ReflectionTestUtils.setField(cache, "maxSize", DataSize.ofBytes(1000));
+    generations = new AtomicInteger();
+  }
+
+  private String generate(String text) {
+    generations.incrementAndGet();
+    return text;
+  }
+
+  @Test
+  void testGet_ShouldGenerateOncePerVersion() {
+    assertEquals("a", cache.get("note", V1, () -> generate("a")));
+    assertEquals("a", cache.get("note", V1, () -> generate("b")));
+    assertEquals(1, generations.get());
+
+    assertEquals("b", cache.get("note", V2, () -> generate("b")),
+        "A newer version of the note is generated again");
+    assertEquals(2, generations.get());
+  }
+
+  @Test
+  void testInvalidate_ShouldGenerateAgain() {
+    cache.get("note", V1, () -> generate("a"));
+    cache.invalidate("note");
+
+    assertEquals("b", cache.get("note", V1, () -> generate("b")));
+    assertEquals(2, generations.get());
+  }
+
+  @Test
+  void testGet_ShouldDropTheLeastRecentlyUsedNotesBeyondTheBounds() {
+    cache.get("1", V1, () -> generate("1"));
+    cache.get("2", V1, () -> generate("2"));
+    cache.get("3", V1, () -> generate("3"));
+    cache.get("1", V1, () -> generate("1"));
+    cache.get("4", V1, () -> generate("4"));
+
+    assertEquals(3, cache.size(), "At most maxEntries notes are kept");
+    cache.get("1", V1, () -> generate("1"));
+    assertEquals(4, generations.get(), "The recently viewed note is kept");
+    cache.get("2", V1, () -> generate("2"));
+    assertEquals(5, generations.get(), "The least recently viewed note is dropped");
+
+    cache.get("5", V1, () -> generate("x".repeat(440)));
+    assertEquals(1, cache.size(), "Older notes are dropped to stay within maxSize");
+    cache.get("6", V1, () -> generate("x".repeat(600)));
+    assertEquals(1, cache.size(), "Content larger than the cache is not cached");
+  }
+
+  @Test
+  void testGet_ShouldShareOneGenerationBetweenConcurrentViewers() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      Future<String> first = executor.submit(() -> cache.get("note", V1, () -> {
+        started.countDown();
+        await(release);
+        return generate("a");
+      }));
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      Future<String> second = executor.submit(() -> cache.get("note", V1, () -> generate("b")));
+      Future<String> third = executor.submit(() -> cache.get("note", V1, () -> generate("c")));
+      Thread.sleep(100);
+      release.countDown();
+
+      assertEquals("a", first.get(5, TimeUnit.SECONDS));
+      assertEquals("a", second.get(5, TimeUnit.SECONDS));
+      assertEquals("a", third.get(5, TimeUnit.SECONDS));
+      assertEquals(1, generations.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testGet_ShouldNotCacheNotesWithoutVersion() {
+    cache.get("note", null, () -> generate("a"));
+    cache.get("note", null, () -> generate("a"));
+
+    assertEquals(2, generations.get());
+    assertEquals(0, cache.size());
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
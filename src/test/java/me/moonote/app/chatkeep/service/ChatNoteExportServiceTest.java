@@ -0,0 +1,164 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import me.moonote.app.chatkeep.dto.ChatNoteDto;
+import me.moonote.app.chatkeep.mapper.ChatNoteMapper;
+import me.moonote.app.chatkeep.model.Artifact;
+import me.moonote.app.chatkeep.model.Attachment;
+import me.moonote.app.chatkeep.model.ChatNote;
+import me.moonote.app.chatkeep.repository.ArtifactRepository;
+import me.moonote.app.chatkeep.repository.AttachmentRepository;
+import me.moonote.app.chatkeep.repository.ChatNoteRepository;
+import me.moonote.app.chatkeep.validation.JsonSchemaValidator;
+
+/**
+ * Workspace export over batches of notes, with artifacts and attachments read per batch.
+ */
+@SpringBootTest
+class ChatNoteExportServiceTest {
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private JsonSchemaValidator schemaValidator;
+
+  private ChatNoteRepository chatNoteRepository;
+  private ChatNoteMarkdownGenerator generator;
+  private ChatNoteExportService exportService;
+
+  private final List<ChatNote> notes = new ArrayList<>();
+  private final List<Artifact> artifacts = new ArrayList<>();
+  private final List<Attachment> attachments = new ArrayList<>();
+  private final AtomicInteger openCursors = new AtomicInteger();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    String markdown =
+        Files.readString(Paths.get("src/test/resources/archive-markdowns/dragonwell.md"));
+    ChatNoteDto dto = new MarkdownChatNotePreprocessor(objectMapper, schemaValidator)
+        .preprocess(markdown).getChatNoteDto();
+    ChatNoteMapper mapper = new ChatNoteMapper();
+
+    // Created in the reverse order of their IDs, note b without artifacts
+    for (String id : List.of("c", "b", "a")) {
+      ChatNote chatNote = mapper.toEntity(dto, "user");
+      chatNote.setId(id);
+      chatNote.setTitle("Note " + id);
+      notes.add(chatNote);
+      if (!id.equals("b")) {
+        artifacts.addAll(mapper.toArtifacts(dto.getArtifacts(), id));
+      }
+      attachments.add(Attachment.builder().chatNoteId(id).ordinal(0).filename(id + ".md")
+          .content("Attachment of " + id).isSummarized(false).build());
+    }
+
+    chatNoteRepository = mock(ChatNoteRepository.class);
+    ArtifactRepository artifactRepository = mock(ArtifactRepository.class);
+    AttachmentRepository attachmentRepository = mock(AttachmentRepository.class);
+    when(chatNoteRepository.streamByUserIdAndIsTrashedFalseOrderByIsArchivedAscCreatedAtAsc("user"))
+        .thenAnswer(invocation -> cursor(notes));
+    when(artifactRepository.streamByChatNoteIdIn(any())).thenAnswer(invocation -> cursor(
+        ofNotes(artifacts, Artifact::getChatNoteId, invocation.getArgument(0))));
+    when(attachmentRepository.streamByChatNoteIdIn(any())).thenAnswer(invocation -> cursor(
+        ofNotes(attachments, Attachment::getChatNoteId, invocation.getArgument(0))));
+    when(artifactRepository.findByChatNoteIdOrderByOrdinal(anyString()))
+        .thenAnswer(invocation -> ofNotes(artifacts, Artifact::getChatNoteId,
+            List.of(invocation.<String>getArgument(0))));
+    when(attachmentRepository.findByChatNoteIdOrderByOrdinal(anyString()))
+        .thenAnswer(invocation -> ofNotes(attachments, Attachment::getChatNoteId,
+            List.of(invocation.<String>getArgument(0))));
+
+    generator = new ChatNoteMarkdownGenerator(artifactRepository, attachmentRepository);
+    exportService = new ChatNoteExportService(chatNoteRepository, artifactRepository,
+        attachmentRepository, generator, mock(MongoTemplate.class));
+    ReflectionTestUtils.setField(exportService, "batchSize", 2);
+  }
+
+  /**
+   * Items of the given notes sorted like the repository query, by note then ordinal
+   */
+  private static <T> List<T> ofNotes(List<T> items, Function<T, String> chatNoteId,
+      Collection<String> chatNoteIds) {
+    return items.stream().filter(item -> chatNoteIds.contains(chatNoteId.apply(item)))
+        .sorted(Comparator.comparing(chatNoteId)).toList();
+  }
+
+  private <T> Stream<T> cursor(List<T> items) {
+    openCursors.incrementAndGet();
+    return new ArrayList<>(items).stream().onClose(openCursors::decrementAndGet);
+  }
+
+  @Test
+  void testExportWorkspace_ShouldWriteTheMarkdownOfEveryNote() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals(3, exportService.exportWorkspace("user", false, out));
+
+    Map<String, String> entries = unzip(out.toByteArray());
+    assertEquals(List.of("notes/Note_b-b.md", "notes/Note_c-c.md", "notes/Note_a-a.md"),
+        List.copyOf(entries.keySet()), "Batches are written in the order of note IDs");
+    for (ChatNote chatNote : notes) {
+      assertEquals(generator.generateMarkdown(chatNote),
+          entries.get("notes/Note_" + chatNote.getId() + "-" + chatNote.getId() + ".md"));
+    }
+    assertEquals(0, openCursors.get());
+  }
+
+  @Test
+  void testExportWorkspace_ShouldCloseCursorsWhenTheClientGoesAway() {
+    OutputStream disconnected = new OutputStream() {
+      private int written;
+
+      @Override
+      public void write(int b) throws IOException {
+        if (++written > 1024) {
+          throw new IOException("Connection reset by peer");
+        }
+      }
+    };
+
+    assertThrows(IOException.class,
+        () -> exportService.exportWorkspace("user", false, disconnected));
+    assertEquals(0, openCursors.get());
+  }
+
+  private static Map<String, String> unzip(byte[] zip) throws IOException {
+    Map<String, String> entries = new LinkedHashMap<>();
+    try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+      for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+        entries.put(entry.getName(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+      }
+    }
+    return entries;
+  }
+
+}
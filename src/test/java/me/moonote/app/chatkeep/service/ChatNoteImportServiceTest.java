@@ -0,0 +1,145 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import me.moonote.app.chatkeep.model.ChatNote;
+import me.moonote.app.chatkeep.service.ChatNoteImportService.ParsedArchive;
+
+/**
+ * Parsing side of bulk imports: splitting, ZIP handling and per-archive failures.
+ */
+@SpringBootTest
+class ChatNoteImportServiceTest {
+
+  @Autowired
+  private ChatNoteImportService importService;
+
+  @Autowired
+  private MarkdownChatNotePreprocessor preprocessor;
+
+  private String dragonwell;
+  private String gemini;
+  private String mongodb;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    dragonwell = read("dragonwell.md");
+    gemini = read("gemini_example.md");
+    mongodb = read("mongodb_newsql.md");
+    ReflectionTestUtils.setField(importService, "maxArchives", 500);
+  }
+
+  @Test
+  void testMultiArchiveFile_ShouldParseEachArchiveInOrder() throws IOException {
+    String content = dragonwell + "\n\n" + gemini + "\n\n" + mongodb + "\n\n";
+
+    List<ParsedArchive> parsed = parse(content.getBytes(StandardCharsets.UTF_8), "export.md");
+
+    assertEquals(3, parsed.size());
+    assertEquals(List.of("export.md#1", "export.md#2", "export.md#3"),
+        parsed.stream().map(archive -> archive.source).toList());
+    assertTrue(parsed.stream().allMatch(ParsedArchive::isValid),
+        "All archives should be valid: " + parsed.stream().map(a -> a.errors).toList());
+    assertTrue(title(parsed.get(0)).startsWith("Building Dragonwell"));
+    assertTrue(title(parsed.get(1)).startsWith("OAuth 2.0"));
+    assertTrue(title(parsed.get(2)).startsWith("Database Architecture"));
+  }
+
+  @Test
+  void testZip_ShouldReportBadEntriesWithoutFailingTheOthers() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+      addEntry(zip, "archives/dragonwell.md", dragonwell);
+      addEntry(zip, "archives/broken.md", "# Not an archive\n\nJust some notes.");
+      addEntry(zip, "archives/notes.txt", "plain text");
+      addEntry(zip, "__MACOSX/archives/._dragonwell.md", "resource fork");
+      addEntry(zip, "archives/gemini.markdown", gemini);
+    }
+
+    List<ParsedArchive> parsed = parse(bytes.toByteArray(), "export.zip");
+
+    assertEquals(List.of("archives/dragonwell.md", "archives/broken.md", "archives/notes.txt",
+        "archives/gemini.markdown"), parsed.stream().map(archive -> archive.source).toList());
+    assertTrue(parsed.get(0).isValid());
+    assertFalse(parsed.get(1).isValid());
+    assertFalse(parsed.get(1).errors.isEmpty());
+    assertFalse(parsed.get(2).isValid());
+    assertTrue(parsed.get(3).isValid());
+  }
+
+  @Test
+  void testArchiveLimit_ShouldSkipArchivesBeyondIt() throws IOException {
+    ReflectionTestUtils.setField(importService, "maxArchives", 2);
+    String content = dragonwell + gemini + mongodb;
+
+    List<ParsedArchive> parsed = parse(content.getBytes(StandardCharsets.UTF_8), "export.md");
+
+    assertEquals(3, parsed.size());
+    assertTrue(parsed.get(0).isValid());
+    assertTrue(parsed.get(1).isValid());
+    assertTrue(parsed.get(2).errors.get(0).startsWith("Skipped"));
+  }
+
+  @Test
+  void testDuplicates_ShouldNotBeParsedAgain() throws IOException {
+    ChatNote existing = ChatNote.builder().id("existing").title("Gemini").build();
+    String geminiHash = preprocessor.contentHash(gemini);
+    String content = dragonwell + "\n\n" + gemini + "\n\n" + dragonwell.replace("\n", "\r\n");
+
+    List<ParsedArchive> parsed = importService.parse(
+        new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), "export.md",
+        contentHash -> contentHash.equals(geminiHash) ? Optional.of(existing) : Optional.empty());
+
+    assertEquals(3, parsed.size());
+    assertTrue(parsed.get(0).isValid());
+    assertSame(existing, parsed.get(1).existing);
+    assertNull(parsed.get(1).chatNoteDto);
+    assertTrue(parsed.get(2).repeated);
+    assertNull(parsed.get(2).chatNoteDto);
+    assertEquals(parsed.get(0).contentHash, parsed.get(2).contentHash);
+  }
+
+  @Test
+  void testSplit_ShouldDropBlankTextAfterTheLastArchive() {
+    String marker = MarkdownArchiveIndex.END_MARKER;
+
+    assertEquals(2, ChatNoteImportService.split("a " + marker + "\nb " + marker + "\n \n").size());
+    assertEquals(3, ChatNoteImportService.split("a " + marker + "b " + marker + "c").size());
+    assertEquals(1, ChatNoteImportService.split("no marker").size());
+  }
+
+  private List<ParsedArchive> parse(byte[] bytes, String filename) throws IOException {
+    return importService.parse(new ByteArrayInputStream(bytes), filename,
+        contentHash -> Optional.empty());
+  }
+
+  private static String title(ParsedArchive archive) {
+    return archive.chatNoteDto.getMetadata().getTitle();
+  }
+
+  private static void addEntry(ZipOutputStream zip, String name, String content)
+      throws IOException {
+    zip.putNextEntry(new ZipEntry(name));
+    zip.write(content.getBytes(StandardCharsets.UTF_8));
+    zip.closeEntry();
+  }
+
+  private static String read(String filename) throws IOException {
+    return Files.readString(Paths.get("src/test/resources/archive-markdowns/" + filename));
+  }
+
+}
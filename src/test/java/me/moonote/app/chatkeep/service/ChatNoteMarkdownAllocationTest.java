@@ -0,0 +1,102 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import me.moonote.app.chatkeep.dto.ChatNoteDto;
+import me.moonote.app.chatkeep.mapper.ChatNoteMapper;
+import me.moonote.app.chatkeep.model.ChatNote;
+import me.moonote.app.chatkeep.repository.ArtifactRepository;
+import me.moonote.app.chatkeep.repository.AttachmentRepository;
+import me.moonote.app.chatkeep.validation.ChatNoteValidationResult;
+import me.moonote.app.chatkeep.validation.JsonSchemaValidator;
+
+/**
+ * Measures heap allocation of markdown generation over the test archives. Every section is written
+ * into one buffer sized from the stored text, so a call allocates a few copies of its output
+ * instead of a copy per section plus the growth of each builder.
+ */
+@SpringBootTest
+class ChatNoteMarkdownAllocationTest {
+
+  private static final int ITERATIONS = 50;
+  private static final List<String> ARCHIVES =
+      List.of("dragonwell.md", "gemini_example.md", "mongodb_newsql.md");
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private JsonSchemaValidator schemaValidator;
+
+  private ChatNoteMarkdownGenerator generator;
+  private List<ChatNote> chatNotes;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    MarkdownChatNotePreprocessor preprocessor =
+        new MarkdownChatNotePreprocessor(objectMapper, schemaValidator);
+    ChatNoteMapper mapper = new ChatNoteMapper();
+    ArtifactRepository artifactRepository = mock(ArtifactRepository.class);
+    AttachmentRepository attachmentRepository = mock(AttachmentRepository.class);
+    generator = new ChatNoteMarkdownGenerator(artifactRepository, attachmentRepository);
+
+    chatNotes = new ArrayList<>();
+    for (String archive : ARCHIVES) {
+      String markdown =
+          Files.readString(Paths.get("src/test/resources/archive-markdowns/" + archive));
+      ChatNoteValidationResult result = preprocessor.preprocess(markdown);
+      assertTrue(result.isValid(), archive + " should be valid: " + result.getErrors());
+
+      ChatNoteDto dto = result.getChatNoteDto();
+      ChatNote chatNote = mapper.toEntity(dto, "test-user");
+      chatNote.setId(archive);
+      when(artifactRepository.findByChatNoteIdOrderByOrdinal(archive))
+          .thenReturn(mapper.toArtifacts(dto.getArtifacts(), archive));
+      when(attachmentRepository.findByChatNoteIdOrderByOrdinal(archive))
+          .thenReturn(mapper.toAttachments(dto.getAttachments(), archive));
+      chatNotes.add(chatNote);
+    }
+  }
+
+  @Test
+  void testGenerateMarkdown_ShouldAllocateFewCopiesOfItsOutput() {
+    for (ChatNote chatNote : chatNotes) {
+      String markdown = generator.generateMarkdown(chatNote);
+      // Warm up
+      for (int i = 0; i < 10; i++) {
+        generator.generateMarkdown(chatNote);
+      }
+
+      long bytes = allocatedBytes(() -> generator.generateMarkdown(chatNote)) / ITERATIONS;
+      long outputBytes = 2L * markdown.length(); // The output holds non-Latin-1 characters
+
+      assertTrue(bytes < 4 * outputBytes,
+          () -> ("%s should allocate less than 4 copies of its output, but allocated %,d bytes "
+              + "for %,d chars").formatted(chatNote.getId(), bytes, markdown.length()));
+    }
+  }
+
+  private long allocatedBytes(Runnable runnable) {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().threadId();
+    long before = threads.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < ITERATIONS; i++) {
+      runnable.run();
+    }
+    return threads.getThreadAllocatedBytes(threadId) - before;
+  }
+
+}
@@ -1,9 +1,11 @@
 package me.moonote.app.chatkeep.service;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.LocalDate;
@@ -73,17 +75,23 @@ class ChatNoteMarkdownGeneratorTest {
 
     // Mock repository behavior to return our test data regardless of chatNoteId
     // (chatNoteId might be null in tests since entities aren't saved to MongoDB)
-    when(artifactRepository.findByChatNoteIdOrderByCreatedAtDesc(anyString()))
+    when(artifactRepository.findByChatNoteIdOrderByOrdinal(anyString()))
         .thenAnswer(invocation -> new ArrayList<>(testArtifacts));
-    when(attachmentRepository.findByChatNoteIdOrderByCreatedAtDesc(anyString()))
+    when(attachmentRepository.findByChatNoteIdOrderByOrdinal(anyString()))
         .thenAnswer(invocation -> new ArrayList<>(testAttachments));
 
     // Also handle null ID case
-    when(artifactRepository.findByChatNoteIdOrderByCreatedAtDesc(null))
+    when(artifactRepository.findByChatNoteIdOrderByOrdinal(null))
         .thenAnswer(invocation -> new ArrayList<>(testArtifacts));
-    when(attachmentRepository.findByChatNoteIdOrderByCreatedAtDesc(null))
+    when(attachmentRepository.findByChatNoteIdOrderByOrdinal(null))
         .thenAnswer(invocation -> new ArrayList<>(testAttachments));
 
+    // Streaming variants used by writeMarkdown
+    when(artifactRepository.streamByChatNoteIdOrderByOrdinal(any()))
+        .thenAnswer(invocation -> new ArrayList<>(testArtifacts).stream());
+    when(attachmentRepository.streamByChatNoteIdOrderByOrdinal(any()))
+        .thenAnswer(invocation -> new ArrayList<>(testAttachments).stream());
+
     // Load and preprocess the dragonwell markdown for reference
     dragonwellMarkdown =
         Files.readString(Paths.get("src/test/resources/archive-markdowns/dragonwell.md"));
@@ -459,6 +467,20 @@ class ChatNoteMarkdownGeneratorTest {
         "Should show URL only if description is null");
   }
 
+  @Test
+  void testWriteMarkdown_ShouldWriteTheSameMarkdownAsGenerateMarkdown() throws IOException {
+    // Arrange - Dragonwell artifacts plus an attachment
+    testAttachments.add(Attachment.builder().chatNoteId("test-note-id").filename("test.md")
+        .content("# Test Document\n\nSome content here.").isSummarized(false).build());
+
+    // Act
+    StringWriter writer = new StringWriter();
+    generator.writeMarkdown(dragonwellChatNote, writer);
+
+    // Assert
+    assertEquals(generator.generateMarkdown(dragonwellChatNote), writer.toString());
+  }
+
   @Test
   void testGenerateConversationContent_WithNullChatNote_ShouldThrowException() {
     // Act & Assert
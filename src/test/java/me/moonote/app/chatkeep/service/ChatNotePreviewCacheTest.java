@@ -0,0 +1,74 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import me.moonote.app.chatkeep.dto.ChatNoteDto;
+
+/**
+ * Bounds, expiry and ownership of cached upload previews.
+ */
+@SpringBootTest
+class ChatNotePreviewCacheTest {
+
+  private static final Instant NOW = Instant.parse("2025-10-02T08:00:00Z");
+
+  private ChatNotePreviewCache cache;
+
+  @BeforeEach
+  void setUp() {
+    cache = new ChatNotePreviewCache();
+    cache.clock = Clock.fixed(NOW, ZoneOffset.UTC);
+    ReflectionTestUtils.setField(cache, "ttl", Duration.ofMinutes(10));
+    ReflectionTestUtils.setField(cache, "maxEntries", 3);
+    ReflectionTestUtils.setField(cache, "maxSize", DataSize.ofBytes(1000));
+  }
+
+  @Test
+  void testTake_ShouldReturnThePreviewOnceToItsOwner() {
+    ChatNoteDto dto = new ChatNoteDto();
+    String token = cache.put("alice", "hash", dto, null, 100);
+
+    assertNull(cache.take(token, "bob"), "Another user may not confirm the preview");
+    ChatNotePreviewCache.Entry entry = cache.take(token, "alice");
+    assertSame(dto, entry.chatNoteDto);
+    assertEquals("hash", entry.contentHash);
+    assertNull(cache.take(token, "alice"), "A preview can only be confirmed once");
+  }
+
+  @Test
+  void testTake_ShouldNotReturnExpiredPreviews() {
+    String token = cache.put("alice", "hash", new ChatNoteDto(), null, 100);
+
+    cache.clock = Clock.fixed(NOW.plus(Duration.ofMinutes(11)), ZoneOffset.UTC);
+
+    assertNull(cache.take(token, "alice"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void testPut_ShouldDropTheOldestPreviewsBeyondTheBounds() {
+    String first = cache.put("alice", "1", new ChatNoteDto(), null, 100);
+    String second = cache.put("alice", "2", new ChatNoteDto(), null, 100);
+    cache.put("alice", "3", new ChatNoteDto(), null, 100);
+    cache.put("alice", "4", new ChatNoteDto(), null, 100);
+
+    assertEquals(3, cache.size(), "At most maxEntries previews are kept");
+    assertNull(cache.take(first, "alice"));
+
+    cache.put("alice", "5", new ChatNoteDto(), null, 900);
+
+    assertEquals(2, cache.size(), "Older previews are dropped to stay within maxSize");
+    assertNull(cache.take(second, "alice"));
+    assertNull(cache.put("alice", "6", new ChatNoteDto(), null, 2000),
+        "A preview larger than the cache is not cached");
+  }
+
+}
@@ -0,0 +1,82 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import me.moonote.app.chatkeep.mapper.ChatNoteMapper;
+import me.moonote.app.chatkeep.model.ChatNote;
+import me.moonote.app.chatkeep.repository.ArtifactRepository;
+import me.moonote.app.chatkeep.repository.AttachmentRepository;
+import me.moonote.app.chatkeep.repository.ChatNoteRepository;
+import me.moonote.app.chatkeep.repository.ChatNoteSourceRepository;
+import me.moonote.app.chatkeep.repository.LabelRepository;
+import me.moonote.app.chatkeep.validation.ChatNoteNotFoundException;
+
+/**
+ * Every way of deleting a chat note removes its artifacts, attachments and archive source with it.
+ */
+@SpringBootTest
+class ChatNoteServiceDeleteTest {
+
+  private ChatNoteRepository repository;
+  private ArtifactRepository artifactRepository;
+  private AttachmentRepository attachmentRepository;
+  private ChatNoteSourceRepository sourceRepository;
+  private ChatNoteService chatNoteService;
+
+  @BeforeEach
+  void setUp() {
+    repository = mock(ChatNoteRepository.class);
+    artifactRepository = mock(ArtifactRepository.class);
+    attachmentRepository = mock(AttachmentRepository.class);
+    sourceRepository = mock(ChatNoteSourceRepository.class);
+    chatNoteService = new ChatNoteService(mock(MarkdownChatNotePreprocessor.class), repository,
+        artifactRepository, attachmentRepository, mock(ChatNoteMapper.class),
+        mock(ChatNoteMarkdownGenerator.class), mock(LabelRepository.class),
+        mock(MarkdownUploadReader.class), mock(ChatNotePreviewCache.class), sourceRepository,
+        new ChatNoteContentCache());
+  }
+
+  private void verifyDeletedWithRelated(String id) {
+    verify(artifactRepository).deleteByChatNoteId(id);
+    verify(attachmentRepository).deleteByChatNoteId(id);
+    verify(sourceRepository).deleteByChatNoteId(id);
+    verify(repository).deleteById(id);
+  }
+
+  @Test
+  void testPurgeOldTrashedNotes_ShouldDeleteTheSourcesOfPurgedNotes() {
+    Instant trashedAt = Instant.now().minusSeconds(86_400L * 45);
+    when(repository.findByIsTrashedTrueAndTrashedAtBefore(any())).thenReturn(List.of(
+        ChatNote.builder().id("a").isTrashed(true).trashedAt(trashedAt).build(),
+        ChatNote.builder().id("b").isTrashed(true).trashedAt(trashedAt).build()));
+
+    assertEquals(2, chatNoteService.purgeOldTrashedNotes());
+    verifyDeletedWithRelated("a");
+    verifyDeletedWithRelated("b");
+  }
+
+  @Test
+  void testDeleteChatNote_ShouldDeleteItsSource() {
+    when(repository.existsById("note")).thenReturn(true);
+
+    chatNoteService.deleteChatNote("note");
+    verifyDeletedWithRelated("note");
+  }
+
+  @Test
+  void testDeleteChatNote_ShouldLeaveEverythingWhenNotFound() {
+    assertThrows(ChatNoteNotFoundException.class, () -> chatNoteService.deleteChatNote("missing"));
+    verify(sourceRepository, never()).deleteByChatNoteId(any());
+    verify(repository, never()).deleteById(any());
+  }
+
+}
@@ -0,0 +1,181 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import me.moonote.app.chatkeep.dto.response.ChatNoteDetailLightResponse;
+import me.moonote.app.chatkeep.model.ChatNote;
+import me.moonote.app.chatkeep.repository.ChatNoteRepository;
+import me.moonote.app.chatkeep.validation.ChatNoteNotFoundException;
+
+/**
+ * Share pages rendered once per note version and locale, with views counted apart from rendering.
+ */
+@SpringBootTest
+class ChatNoteShareServiceTest {
+
+  private static final Instant V1 = Instant.parse("2025-10-02T08:00:00Z");
+  private static final Instant V2 = V1.plusSeconds(60);
+
+  private ChatNoteRepository repository;
+  private ChatNoteService chatNoteService;
+  private MongoTemplate mongoTemplate;
+  private BulkOperations bulk;
+  private ChatNoteViewCounter viewCounter;
+  private ChatNoteShareService shareService;
+  private AtomicInteger renderings;
+
+  @BeforeEach
+  void setUp() {
+    repository = mock(ChatNoteRepository.class);
+    chatNoteService = mock(ChatNoteService.class);
+    mongoTemplate = mock(MongoTemplate.class);
+    bulk = mock(BulkOperations.class);
+    when(mongoTemplate.bulkOps(BulkMode.UNORDERED, ChatNote.class)).thenReturn(bulk);
+
+    viewCounter = new ChatNoteViewCounter(mongoTemplate);
+    shareService = new ChatNoteShareService(repository, chatNoteService,
+        new ChatNoteSharePageCache(), viewCounter, new MarkdownHtmlRenderer());
+    renderings = new AtomicInteger();
+
+    version("note", V1, true);
+    when(chatNoteService.getPublicChatNote("note")).thenReturn(ChatNoteDetailLightResponse
+        .builder().id("note").title("Shared").conversationContent("Hello\n**world**").build());
+  }
+
+  private void version(String id, Instant updatedAt, boolean isPublic) {
+    when(repository.findVersionById(id)).thenReturn(
+        Optional.of(ChatNote.builder().id(id).updatedAt(updatedAt).isPublic(isPublic).build()));
+  }
+
+  private String render(ChatNoteDetailLightResponse note, String conversationHtml) {
+    renderings.incrementAndGet();
+    return "<h1>" + note.getTitle() + "</h1>" + conversationHtml;
+  }
+
+  @Test
+  void testGetSharePage_ShouldRenderOncePerVersionAndLocale() {
+    String page = shareService.getSharePage("note", Locale.ENGLISH, this::render);
+    assertEquals("<h1>Shared</h1><p>Hello<br />\n<strong>world</strong></p>\n", page);
+    assertEquals(page, shareService.getSharePage("note", Locale.ENGLISH, this::render));
+    assertEquals(1, renderings.get());
+
+    shareService.getSharePage("note", Locale.TRADITIONAL_CHINESE, this::render);
+    assertEquals(2, renderings.get(), "Each locale has its own page");
+
+    version("note", V2, true);
+    shareService.getSharePage("note", Locale.ENGLISH, this::render);
+    assertEquals(3, renderings.get(), "A newer version of the note is rendered again");
+    verify(chatNoteService, times(3)).getPublicChatNote("note");
+  }
+
+  @Test
+  void testGetSharePage_ShouldRenderConcurrentMissesOnce() throws Exception {
+    int visitors = 16;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(visitors);
+    try {
+      List<Future<String>> pages = new ArrayList<>();
+      for (int i = 0; i < visitors; i++) {
+        pages.add(executor.submit(() -> {
+          start.await();
+          return shareService.getSharePage("note", Locale.ENGLISH, (note, html) -> {
+            try {
+              Thread.sleep(100); // Keep the rendering running while the others arrive
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            return render(note, html);
+          });
+        }));
+      }
+      start.countDown();
+      for (Future<String> page : pages) {
+        assertTrue(page.get(5, TimeUnit.SECONDS).startsWith("<h1>Shared</h1>"));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(1, renderings.get());
+
+    assertEquals(1, viewCounter.flush(), "Every visit is counted, in a single update");
+    verify(bulk).updateOne(any(Query.class), eq(new Update().inc("viewCount", (long) visitors)));
+    verify(bulk).execute();
+  }
+
+  @Test
+  void testGetSharePage_ShouldRejectNotesThatAreNotPublic() {
+    version("private", V1, false);
+    when(repository.findVersionById("missing")).thenReturn(Optional.empty());
+
+    assertThrows(ChatNoteNotFoundException.class,
+        () -> shareService.getSharePage("private", Locale.ENGLISH, this::render));
+    assertThrows(ChatNoteNotFoundException.class,
+        () -> shareService.getSharePage("missing", Locale.ENGLISH, this::render));
+    assertNull(shareService.getSharePageETag("private", Locale.ENGLISH));
+    assertEquals(0, renderings.get());
+    assertEquals(0, viewCounter.flush(), "Rejected visits are not counted");
+    verify(chatNoteService, never()).getPublicChatNote(any());
+  }
+
+  @Test
+  void testGetSharePageETag_ShouldChangeWithVersionAndLocale() {
+    String english = shareService.getSharePageETag("note", Locale.ENGLISH);
+    assertEquals("\"note-" + V1.toEpochMilli() + "-en\"", english);
+    assertNotEquals(english, shareService.getSharePageETag("note", Locale.SIMPLIFIED_CHINESE));
+
+    version("note", V2, true);
+    assertNotEquals(english, shareService.getSharePageETag("note", Locale.ENGLISH));
+  }
+
+  @Test
+  void testRender_ShouldEscapeRawHtmlAndUnsafeLinks() {
+    MarkdownHtmlRenderer renderer = new MarkdownHtmlRenderer();
+
+    String html = renderer.render("<script>alert(1)</script>\n\n[x](javascript:alert(1))");
+    assertFalse(html.contains("<script>"), html);
+    assertFalse(html.contains("javascript:"), html);
+
+    assertTrue(renderer.render("| a | b |\n|---|---|\n| 1 | 2 |").contains("<table>"));
+    assertTrue(renderer.render("~~gone~~").contains("<del>gone</del>"));
+  }
+
+  @Test
+  void testFlush_ShouldKeepViewsOfAFailedWrite() {
+    viewCounter.record("note");
+    viewCounter.record("note");
+    when(bulk.execute()).thenThrow(new IllegalStateException("MongoDB is down"));
+    assertThrows(IllegalStateException.class, viewCounter::flush);
+
+    viewCounter.record("note");
+    BulkOperations retry = mock(BulkOperations.class);
+    when(mongoTemplate.bulkOps(BulkMode.UNORDERED, ChatNote.class)).thenReturn(retry);
+    assertEquals(1, viewCounter.flush());
+    verify(retry).updateOne(any(Query.class), eq(new Update().inc("viewCount", 3L)));
+  }
+
+}
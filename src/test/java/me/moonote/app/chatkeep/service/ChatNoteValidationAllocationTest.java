@@ -0,0 +1,114 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import me.moonote.app.chatkeep.dto.ArtifactDto;
+import me.moonote.app.chatkeep.dto.ChatNoteDto;
+import me.moonote.app.chatkeep.validation.ChatNoteValidationResult;
+import me.moonote.app.chatkeep.validation.JsonSchemaValidator;
+import me.moonote.app.chatkeep.validation.ValidationResult;
+
+/**
+ * Compares heap allocation of schema validation on the object tree against the former
+ * serialize-then-reparse path, on an archive padded with a large artifact.
+ */
+@SpringBootTest
+class ChatNoteValidationAllocationTest {
+
+  private static final int ITERATIONS = 20;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private JsonSchemaValidator schemaValidator;
+
+  private ChatNoteDto chatNoteDto;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    MarkdownChatNotePreprocessor preprocessor =
+        new MarkdownChatNotePreprocessor(objectMapper, schemaValidator);
+    String markdown =
+        Files.readString(Paths.get("src/test/resources/archive-markdowns/dragonwell.md"));
+    ChatNoteValidationResult result = preprocessor.preprocess(markdown);
+    assertTrue(result.isValid(), "Fixture should be valid: " + result.getErrors());
+
+    chatNoteDto = result.getChatNoteDto();
+    chatNoteDto.getArtifacts().add(ArtifactDto.builder().type("document").title("Large")
+        .content("Lorem ipsum dolor sit amet. ".repeat(40_000)).build());
+  }
+
+  @Test
+  void testTreeValidation_ShouldAllocateLessThanStringRoundTrip() throws Exception {
+    // Warm up both paths
+    for (int i = 0; i < 3; i++) {
+      validateViaString();
+      schemaValidator.validate(chatNoteDto, 10);
+    }
+
+    long stringBytes = allocatedBytes(() -> validateViaString());
+    long treeBytes = allocatedBytes(() -> schemaValidator.validate(chatNoteDto, 10));
+
+    assertTrue(treeBytes < stringBytes / 2,
+        () -> "Tree validation should allocate well under half of the string round-trip, "
+            + "but allocated %,d bytes per upload against %,d".formatted(treeBytes / ITERATIONS,
+                stringBytes / ITERATIONS));
+  }
+
+  @Test
+  void testTreeValidation_ShouldMatchStringValidation() throws Exception {
+    assertTrue(schemaValidator.validate(chatNoteDto, 10).isValid());
+
+    chatNoteDto.getArtifacts().get(0).setTitle(null);
+    ValidationResult stringResult = validateViaString();
+    ValidationResult treeResult = schemaValidator.validate(chatNoteDto, 10);
+
+    assertFalse(treeResult.isValid());
+    assertEquals(stringResult.getErrors(), treeResult.getErrors());
+  }
+
+  @Test
+  void testFailFast_ShouldStopAtMaxErrors() {
+    List<ArtifactDto> artifacts = chatNoteDto.getArtifacts();
+    for (int i = 0; i < 50; i++) {
+      artifacts.add(ArtifactDto.builder().type("code").build());
+    }
+
+    ValidationResult result = schemaValidator.validate(chatNoteDto, 3);
+
+    assertFalse(result.isValid());
+    assertEquals(3, result.getErrors().size());
+  }
+
+  private ValidationResult validateViaString() throws JsonProcessingException {
+    return schemaValidator.validate(objectMapper.writeValueAsString(chatNoteDto));
+  }
+
+  private long allocatedBytes(ThrowingRunnable runnable) throws Exception {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().threadId();
+    long before = threads.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < ITERATIONS; i++) {
+      runnable.run();
+    }
+    return threads.getThreadAllocatedBytes(threadId) - before;
+  }
+
+  @FunctionalInterface
+  private interface ThrowingRunnable {
+    void run() throws Exception;
+  }
+
+}
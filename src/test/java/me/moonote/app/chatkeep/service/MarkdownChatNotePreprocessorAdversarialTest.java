@@ -0,0 +1,207 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import me.moonote.app.chatkeep.validation.ChatNoteValidationResult;
+import me.moonote.app.chatkeep.validation.JsonSchemaValidator;
+
+/**
+ * Hostile inputs that used to trigger regex backtracking. The work must grow linearly with the
+ * input: growing the payload 8x may not grow the characters read from it by much more than 8x.
+ *
+ * Reads are counted on the archive text itself, which the index scans and searches, and on every
+ * piece copied out of it. Extractors then work on those copies; the wall-clock check of
+ * {@link MarkdownChatNotePreprocessorBenchmarkTest} covers them as well.
+ */
+@SpringBootTest
+class MarkdownChatNotePreprocessorAdversarialTest {
+
+  static final int SMALL = 20_000;
+  static final int LARGE = SMALL * 8;
+
+  static final String SKELETON = """
+      ---
+      ARCHIVE_FORMAT_VERSION: "1.0"
+      ARCHIVE_TYPE: conversation_summary
+      CREATED_DATE: 2025-10-02
+      ORIGINAL_PLATFORM: Claude
+      ---
+
+      # Hostile Archive
+
+      **Date:** 2025-10-02
+      **Tags:** [test]
+
+      ---
+
+      ## Initial Query
+
+      Query text.
+
+      ---
+
+      ## Key Insights
+
+      Insight text.
+
+      ---
+
+      """;
+
+  static final IntFunction<String> SECTION_WITHOUT_TERMINATOR =
+      n -> SKELETON + "## Follow-up Explorations" + " \n".repeat(n) + "x";
+  static final IntFunction<String> SECTION_WITH_WHITESPACE_RUNS =
+      n -> SKELETON + "## References/Links\n\n" + "\n\n\n\n-".repeat(n / 4);
+  static final IntFunction<String> UNTERMINATED_WORKAROUND_ENTRIES =
+      n -> SKELETON + "## Workarounds Used\n\nIntro\n\n" + "- **a**:b\n\n- **".repeat(n / 16);
+  static final IntFunction<String> WORKAROUND_WITHOUT_SEPARATOR =
+      n -> SKELETON + "## Workarounds Used\n\nIntro\n\n- **" + "*".repeat(n) + "\n\n";
+  static final IntFunction<String> UNCLOSED_ARTIFACT_OPENERS =
+      n -> SKELETON + ":::artifact type=\"code\" title=\"t\"\n".repeat(n / 32);
+  static final IntFunction<String> LONG_ARTIFACT_ATTRIBUTE_WORD =
+      n -> SKELETON + ":::artifact " + "a".repeat(n) + "\ncontent\n:::\n";
+  static final IntFunction<String> REPEATED_TAG_OPENERS =
+      n -> SKELETON.replace("**Tags:** [test]", "**Tags:** [".repeat(n / 10));
+  static final IntFunction<String> REFERENCES_WITH_OPEN_BRACKETS =
+      n -> SKELETON + "## References/Links\n\n- " + "[".repeat(n) + "\n\n---\n";
+  static final IntFunction<String> REFERENCED_ITEMS_WITHOUT_CLOSING_BRACKET =
+      n -> SKELETON.replace("Insight text.",
+          "Insight text.\n\n**Artifacts created:** [" + "a, ".repeat(n / 3));
+  static final IntFunction<String> CODE_FENCE_WITH_WHITESPACE_RUN =
+      n -> "```" + " ".repeat(n) + "markdown" + " ".repeat(n) + "x\n" + SKELETON;
+
+  static final List<IntFunction<String>> PAYLOADS = List.of(SECTION_WITHOUT_TERMINATOR,
+      SECTION_WITH_WHITESPACE_RUNS, UNTERMINATED_WORKAROUND_ENTRIES, WORKAROUND_WITHOUT_SEPARATOR,
+      UNCLOSED_ARTIFACT_OPENERS, LONG_ARTIFACT_ATTRIBUTE_WORD, REPEATED_TAG_OPENERS,
+      REFERENCES_WITH_OPEN_BRACKETS, REFERENCED_ITEMS_WITHOUT_CLOSING_BRACKET,
+      CODE_FENCE_WITH_WHITESPACE_RUN);
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private JsonSchemaValidator schemaValidator;
+
+  private MarkdownChatNotePreprocessor preprocessor;
+
+  @BeforeEach
+  void setUp() {
+    preprocessor = new MarkdownChatNotePreprocessor(objectMapper, schemaValidator);
+  }
+
+  @Test
+  void testSectionWithoutTerminator_ShouldParseInLinearTime() {
+    assertLinear(SECTION_WITHOUT_TERMINATOR);
+  }
+
+  @Test
+  void testSectionWithWhitespaceRuns_ShouldParseInLinearTime() {
+    assertLinear(SECTION_WITH_WHITESPACE_RUNS);
+  }
+
+  @Test
+  void testUnterminatedWorkaroundEntries_ShouldParseInLinearTime() {
+    assertLinear(UNTERMINATED_WORKAROUND_ENTRIES);
+  }
+
+  @Test
+  void testWorkaroundWithoutSeparator_ShouldParseInLinearTime() {
+    assertLinear(WORKAROUND_WITHOUT_SEPARATOR);
+  }
+
+  @Test
+  void testUnclosedArtifactOpeners_ShouldParseInLinearTime() {
+    assertLinear(UNCLOSED_ARTIFACT_OPENERS);
+  }
+
+  @Test
+  void testLongArtifactAttributeWord_ShouldParseInLinearTime() {
+    assertLinear(LONG_ARTIFACT_ATTRIBUTE_WORD);
+  }
+
+  @Test
+  void testRepeatedTagOpeners_ShouldParseInLinearTime() {
+    assertLinear(REPEATED_TAG_OPENERS);
+  }
+
+  @Test
+  void testReferencesWithOpenBrackets_ShouldParseInLinearTime() {
+    assertLinear(REFERENCES_WITH_OPEN_BRACKETS);
+  }
+
+  @Test
+  void testReferencedItemsWithoutClosingBracket_ShouldParseInLinearTime() {
+    assertLinear(REFERENCED_ITEMS_WITHOUT_CLOSING_BRACKET);
+  }
+
+  @Test
+  void testCodeFenceWithWhitespaceRun_ShouldParseInLinearTime() {
+    assertLinear(CODE_FENCE_WITH_WHITESPACE_RUN);
+  }
+
+  @Test
+  void testExhaustedTimeBudget_ShouldFailWithClearError() {
+    ReflectionTestUtils.setField(preprocessor, "timeBudget", Duration.ZERO);
+
+    ChatNoteValidationResult result = preprocessor.preprocess(SKELETON + "line\n".repeat(10_000));
+
+    assertFalse(result.isValid());
+    assertTrue(result.getErrors().get(0).contains("could not be processed within"),
+        "Error should explain the time limit: " + result.getErrors());
+  }
+
+  private void assertLinear(IntFunction<String> payload) {
+    long smallReads = countReads(payload.apply(SMALL));
+    long largeReads = countReads(payload.apply(LARGE));
+
+    assertTrue(smallReads > 0, "Reads of the archive should be counted");
+    assertTrue(largeReads <= smallReads * 8 * 2,
+        "Reads grew superlinearly: " + smallReads + " for " + SMALL + " units, " + largeReads
+            + " for " + LARGE);
+  }
+
+  private long countReads(String markdown) {
+    LongAdder reads = new LongAdder();
+    preprocessor.preprocess(new CountingCharSequence(markdown, reads), -1);
+    return reads.sum();
+  }
+
+  /**
+   * Counts the characters read one by one and copied out, like a memory-mapped upload is read.
+   */
+  private record CountingCharSequence(CharSequence text, LongAdder reads) implements CharSequence {
+
+    @Override
+    public char charAt(int index) {
+      reads.increment();
+      return text.charAt(index);
+    }
+
+    @Override
+    public int length() {
+      return text.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return new CountingCharSequence(text.subSequence(start, end), reads);
+    }
+
+    @Override
+    public String toString() {
+      reads.add(text.length());
+      return text.toString();
+    }
+
+  }
+
+}
@@ -0,0 +1,76 @@
+package me.moonote.app.chatkeep.service;
+
+import static me.moonote.app.chatkeep.service.MarkdownChatNotePreprocessorAdversarialTest.LARGE;
+import static me.moonote.app.chatkeep.service.MarkdownChatNotePreprocessorAdversarialTest.PAYLOADS;
+import static me.moonote.app.chatkeep.service.MarkdownChatNotePreprocessorAdversarialTest.SMALL;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import me.moonote.app.chatkeep.validation.JsonSchemaValidator;
+
+/**
+ * Parse time of the hostile inputs of {@link MarkdownChatNotePreprocessorAdversarialTest}: growing
+ * the payload 8x may not grow the parse time by much more than 8x. Timing depends on the machine,
+ * so this only runs with {@code -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest
+class MarkdownChatNotePreprocessorBenchmarkTest {
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private JsonSchemaValidator schemaValidator;
+
+  private MarkdownChatNotePreprocessor preprocessor;
+
+  @BeforeEach
+  void setUp() {
+    preprocessor = new MarkdownChatNotePreprocessor(objectMapper, schemaValidator);
+  }
+
+  @Test
+  void testHostileInputs_ShouldParseInLinearTime() {
+    for (IntFunction<String> payload : PAYLOADS) {
+      assertLinearTime(payload);
+    }
+  }
+
+  private void assertLinearTime(IntFunction<String> payload) {
+    String small = payload.apply(SMALL);
+    String large = payload.apply(LARGE);
+
+    // Warm up so the comparison is not dominated by JIT compilation
+    for (int i = 0; i < 3; i++) {
+      preprocessor.preprocess(small);
+    }
+
+    long smallNanos = medianNanos(small);
+    long largeNanos = medianNanos(large);
+
+    long allowedNanos = smallNanos * 8 * 4 + Duration.ofMillis(100).toNanos();
+    assertTrue(largeNanos <= allowedNanos,
+        "Parse time grew superlinearly: " + smallNanos / 1_000_000 + " ms for " + small.length()
+            + " chars, " + largeNanos / 1_000_000 + " ms for " + large.length() + " chars");
+  }
+
+  private long medianNanos(String markdown) {
+    long[] samples = new long[3];
+    for (int i = 0; i < samples.length; i++) {
+      long start = System.nanoTime();
+      preprocessor.preprocess(markdown);
+      samples[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(samples);
+    return samples[1];
+  }
+
+}
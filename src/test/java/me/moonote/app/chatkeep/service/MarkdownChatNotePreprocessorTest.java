@@ -5,10 +5,14 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import me.moonote.app.chatkeep.dto.ArtifactDto;
 import me.moonote.app.chatkeep.dto.ChatNoteDto;
@@ -18,6 +22,7 @@ import me.moonote.app.chatkeep.dto.FollowUpSectionDto;
 import me.moonote.app.chatkeep.dto.InsightsSectionDto;
 import me.moonote.app.chatkeep.dto.QuerySectionDto;
 import me.moonote.app.chatkeep.dto.ReferenceDto;
+import me.moonote.app.chatkeep.model.IngestJobStatus;
 import me.moonote.app.chatkeep.validation.ChatNoteValidationResult;
 import me.moonote.app.chatkeep.validation.JsonSchemaValidator;
 
@@ -424,4 +429,60 @@ class MarkdownChatNotePreprocessorTest {
     assertTrue(result.isValid(), "Validation should succeed with whitespace around fences");
     assertNotNull(result.getChatNoteDto(), "ChatNoteDto should not be null");
   }
+
+  @Test
+  void testPreprocess_ShouldReportProgressInOrder() {
+    // Arrange
+    List<IngestJobStatus> stages = new ArrayList<>();
+
+    // Act
+    ChatNoteValidationResult result = preprocessor.preprocess(dragonwellMarkdown, -1,
+        (status, message) -> stages.add(status));
+
+    // Assert - stripped, parsed and validated are reported once each
+    assertTrue(result.isValid(), "Validation should succeed");
+    assertEquals(
+        List.of(IngestJobStatus.STRIPPED, IngestJobStatus.PARSED, IngestJobStatus.VALIDATED),
+        stages);
+  }
+
+  @Test
+  void testContentHash_ShouldIgnoreWrappersAndLineEndings() {
+    // Arrange - the same archive wrapped in a fence, padded and with CRLF line endings
+    String wrapped = "Here is the archive:\n```markdown\n"
+        + dragonwellMarkdown.replace("\n", "\r\n") + "\n```\n";
+
+    // Act
+    String hash = preprocessor.contentHash(dragonwellMarkdown);
+
+    // Assert - identical archives hash the same, a changed archive does not
+    assertEquals(16, hash.length());
+    assertEquals(hash, preprocessor.contentHash(wrapped));
+    assertNotEquals(hash,
+        preprocessor.contentHash(dragonwellMarkdown.replaceFirst("Dragonwell", "Dragonwel1")));
+  }
+
+  @Test
+  void testParallelExtraction_ShouldMatchSequentialExtraction() throws IOException {
+    MarkdownChatNotePreprocessor parallel =
+        new MarkdownChatNotePreprocessor(objectMapper, schemaValidator);
+    ReflectionTestUtils.setField(parallel, "parallelThreshold", DataSize.ofBytes(0));
+
+    for (String fixture : List.of("dragonwell.md", "gemini_example.md", "mongodb_newsql.md")) {
+      String markdown =
+          Files.readString(Paths.get("src/test/resources/archive-markdowns/" + fixture));
+
+      ChatNoteValidationResult expected = preprocessor.preprocess(markdown);
+      ChatNoteValidationResult actual = parallel.preprocess(markdown);
+
+      // Same DTO tree, with artifacts and attachments in archive order
+      assertTrue(actual.isValid(), fixture + " should be valid: " + actual.getErrors());
+      assertEquals(expected.getChatNoteDto(), actual.getChatNoteDto(), fixture);
+    }
+
+    // Failures surface the same error as on the sequential path
+    String broken = dragonwellMarkdown.replaceFirst("---", "");
+    assertEquals(preprocessor.preprocess(broken).getErrors(),
+        parallel.preprocess(broken).getErrors());
+  }
 }
@@ -0,0 +1,131 @@
+package me.moonote.app.chatkeep.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import me.moonote.app.chatkeep.validation.ArchiveTooLargeException;
+import me.moonote.app.chatkeep.validation.ChatNoteValidationResult;
+
+@SpringBootTest
+class MarkdownUploadReaderTest {
+
+  @Autowired
+  private MarkdownUploadReader uploadReader;
+
+  @Autowired
+  private MarkdownChatNotePreprocessor preprocessor;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  private byte[] archiveBytes;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    archiveBytes =
+        Files.readAllBytes(Paths.get("src/test/resources/archive-markdowns/dragonwell.md"));
+    ReflectionTestUtils.setField(uploadReader, "maxSize", DataSize.ofMegabytes(10));
+    ReflectionTestUtils.setField(uploadReader, "spillThreshold", DataSize.ofMegabytes(1));
+  }
+
+  @Test
+  void testSmallUpload_ShouldDecodeOnHeapAndCountBytes() throws IOException {
+    try (UploadedArchive archive = uploadReader.read(new ByteArrayInputStream(archiveBytes))) {
+      assertFalse(archive.isSpilled());
+      assertEquals(new String(archiveBytes, StandardCharsets.UTF_8), archive.text().toString());
+      assertEquals(archiveBytes.length, archive.sizeInBytes());
+    }
+  }
+
+  @Test
+  void testLargeUpload_ShouldSpillToMappedFileAndParseIdentically() throws Exception {
+    ReflectionTestUtils.setField(uploadReader, "spillThreshold", DataSize.ofKilobytes(4));
+
+    Path spillFile;
+    UploadedArchive closed;
+    try (UploadedArchive archive = uploadReader.read(new ByteArrayInputStream(archiveBytes))) {
+      closed = archive;
+      assertTrue(archive.isSpilled());
+      spillFile = (Path) ReflectionTestUtils.getField(archive, "spillFile");
+
+      String expected = new String(archiveBytes, StandardCharsets.UTF_8);
+      assertEquals(expected, archive.text().toString());
+
+      ChatNoteValidationResult fromHeap = preprocessor.preprocess(expected, archiveBytes.length);
+      ChatNoteValidationResult fromFile =
+          preprocessor.preprocess(archive.text(), archive.sizeInBytes());
+      assertTrue(fromFile.isValid(), "Spilled archive should be valid: " + fromFile.getErrors());
+      assertEquals(objectMapper.writeValueAsString(fromHeap.getChatNoteDto()),
+          objectMapper.writeValueAsString(fromFile.getChatNoteDto()));
+      assertEquals((archiveBytes.length + 512) / 1024 + " KB",
+          fromFile.getChatNoteDto().getMetadata().getTotalFileSize());
+    }
+    assertFalse(Files.exists(spillFile), "Spill file should be deleted on close");
+    assertThrows(IllegalStateException.class, closed::text,
+        "Mapped text should not be reachable through a closed archive");
+  }
+
+  @Test
+  void testMultiByteCharactersAcrossBufferBoundaries_ShouldDecodeIntact() throws IOException {
+    ReflectionTestUtils.setField(uploadReader, "spillThreshold", DataSize.ofKilobytes(20));
+    String content = "a가😀é".repeat(10_000);
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+
+    try (UploadedArchive archive = uploadReader.read(new ByteArrayInputStream(bytes))) {
+      assertTrue(archive.isSpilled());
+      assertEquals(content, archive.text().toString());
+      assertEquals(bytes.length, archive.sizeInBytes());
+    }
+  }
+
+  @Test
+  void testOversizedUpload_ShouldBeRejectedBeforeReadingEverything() {
+    ReflectionTestUtils.setField(uploadReader, "maxSize", DataSize.ofKilobytes(64));
+    CountingInputStream in = new CountingInputStream(new byte[10 * 1024 * 1024]);
+
+    assertThrows(ArchiveTooLargeException.class, () -> uploadReader.read(in));
+    assertTrue(in.bytesRead <= 64 * 1024 + 8192,
+        "Reader should stop at the limit, but read " + in.bytesRead + " bytes");
+  }
+
+  private static final class CountingInputStream extends InputStream {
+
+    private final ByteArrayInputStream delegate;
+    private long bytesRead;
+
+    CountingInputStream(byte[] bytes) {
+      this.delegate = new ByteArrayInputStream(bytes);
+    }
+
+    @Override
+    public int read() {
+      int b = delegate.read();
+      if (b >= 0) {
+        bytesRead++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      int n = delegate.read(b, off, len);
+      if (n > 0) {
+        bytesRead += n;
+      }
+      return n;
+    }
+  }
+
+}